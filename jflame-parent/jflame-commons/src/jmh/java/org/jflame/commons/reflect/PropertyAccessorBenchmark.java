@@ -0,0 +1,59 @@
+package org.jflame.commons.reflect;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.jflame.toolkit.test.entity.Cat;
+
+/**
+ * 属性赋值对比:反射调用setter与PropertyAccessors预编译setter的吞吐量.
+ * <p>
+ * 运行: mvn -P benchmark -pl jflame-commons test-compile exec:java -Dexec.args="PropertyAccessorBenchmark"
+ *
+ * @author zyc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyAccessorBenchmark {
+
+    private Method writeMethod;
+    private BiConsumer<Object,Object> setter;
+    private Cat cat;
+
+    @Setup
+    public void setup() {
+        writeMethod = BeanHelper.getPropertyDescriptor(Cat.class, "name")
+                .getWriteMethod();
+        setter = PropertyAccessors.setter(writeMethod);
+        cat = new Cat();
+    }
+
+    @Benchmark
+    public Cat reflect() throws ReflectiveOperationException {
+        writeMethod.invoke(cat, "cat");
+        return cat;
+    }
+
+    @Benchmark
+    public Cat compiled() {
+        setter.accept(cat, "cat");
+        return cat;
+    }
+
+}
@@ -1,6 +1,7 @@
 package org.jflame.commons.csv;
 
 import java.io.BufferedReader;
+import java.io.CharArrayReader;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
@@ -10,8 +11,13 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.NumberFormat;
 import java.time.temporal.Temporal;
 import java.util.ArrayList;
@@ -19,7 +25,15 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
-
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import org.jflame.commons.convert.Converter;
@@ -32,10 +46,12 @@ import org.jflame.commons.excel.ExcelColumnProperty;
 import org.jflame.commons.excel.ExcelConvertUtils;
 import org.jflame.commons.excel.IExcelEntity;
 import org.jflame.commons.excel.validator.DefaultExcelValidator;
+import org.jflame.commons.excel.validator.DuplicateChecker;
 import org.jflame.commons.excel.validator.ExcelValidationException;
 import org.jflame.commons.excel.validator.IExcelValidator;
 import org.jflame.commons.exception.ConvertException;
 import org.jflame.commons.model.Chars;
+import org.jflame.commons.reflect.PropertyAccessors;
 import org.jflame.commons.util.CharsetHelper;
 import org.jflame.commons.util.CollectionHelper;
 import org.jflame.commons.util.NumberHelper;
@@ -86,7 +102,13 @@ public class CsvReader implements Closeable {
     public static final int ESCAPE_MODE_BACKSLASH = 2;
 
     private boolean stepValid = true;// 是否执行单行验证,验证失败即中断
+    /**
+     * 并行读取时每块的默认字节数
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final long MAX_SCAN_SEGMENT = 256 * 1024 * 1024;
     private boolean allowDuplicate = true;// 是否允许重复数据
+    private DuplicateChecker<?> duplicateChecker;
 
     /**
      * 构造函数
@@ -1149,48 +1171,48 @@ public class CsvReader implements Closeable {
             validator = new DefaultExcelValidator<T>();
         }
 
-        List<ExcelColumnProperty> lstDescriptors = ExcelConvertUtils.resolveExcelColumnProperty(dataClass, false,
-                Optional.empty());
-        if (CollectionHelper.isEmpty(lstDescriptors)) {
-            throw new CsvAccessException("没有找到要转换的属性");
-        }
-
         T newObj = null;
         List<T> results = new ArrayList<>();
-        String colValue;
-        Object currentValue;
+        DuplicateChecker<T> checker = null;
+        if (duplicateChecker != null) {
+            duplicateChecker.reset();
+            checker = (DuplicateChecker<T>) duplicateChecker;
+        } else if (!allowDuplicate) {
+            checker = DuplicateChecker.exact();
+        }
+        // 布隆过滤模式确认阶段需要的行号
+        List<Integer> lineNumbers = checker != null && !checker.isExact() ? new ArrayList<>() : null;
 
         try {
             readHeaders();
+            EntityBinder<T> binder = new EntityBinder<>(dataClass, getHeaders());
             while (readRecord()) {
-                newObj = dataClass.newInstance();
-                for (ExcelColumnProperty colProperty : lstDescriptors) {
-                    colValue = get(colProperty.getName());
-                    if (colProperty.getReadConverter() != null) {
-                        currentValue = colProperty.getReadConverter()
-                                .convert(colValue);
-                    } else {
-                        Converter readConverter = getReadConverter(colProperty.getPropertyDescriptor()
-                                .getPropertyType(), colProperty.getFmt());
-                        colProperty.setReadConverter(readConverter);
-                        currentValue = readConverter.convert(colValue);
-                    }
-                    colProperty.getPropertyDescriptor()
-                            .getWriteMethod()
-                            .invoke(newObj, currentValue);
-                }
+                newObj = binder.bind(getValues());
                 // 单行验证
                 if (stepValid) {
                     validator.valid(newObj, (int) getCurrentRecord());
                 }
 
-                if (!allowDuplicate) {
-                    if (results.contains(newObj)) {
-                        throw new ExcelAccessException("重复数据 第" + getCurrentRecord() + "行");
+                if (checker != null) {
+                    // 报告的行号为记录序号,标题行为第1行
+                    int lineNumber = (int) getCurrentRecord() + 2;
+                    if (checker.check(newObj, lineNumber) >= 0) {
+                        checker.throwIfDuplicated();
+                    }
+                    if (lineNumbers != null) {
+                        lineNumbers.add(lineNumber);
                     }
                 }
                 results.add(newObj);
             }
+            if (checker != null && checker.needConfirm()) {
+                for (int j = 0; j < results.size(); j++) {
+                    checker.confirm(results.get(j), lineNumbers.get(j));
+                }
+                checker.throwIfDuplicated();
+            }
+        } catch (ExcelAccessException | CsvAccessException e) {
+            throw e;
         } catch (Exception e) {
             throw new CsvAccessException("failed to new instance for " + dataClass, e);
         }
@@ -1213,6 +1235,400 @@ public class CsvReader implements Closeable {
         throw new ConvertException("csv 不支持的转换字符串到" + needClazz);
     }
 
+    /**
+     * 以Stream方式逐条读取剩余的记录,关闭Stream时关闭CsvReader.IO异常包装为CsvAccessException
+     * 
+     * @return Stream&lt;String[]&gt;
+     */
+    public Stream<String[]> stream() {
+        Spliterator<String[]> spliterator = new Spliterators.AbstractSpliterator<String[]>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+
+            @Override
+            public boolean tryAdvance(Consumer<? super String[]> action) {
+                try {
+                    if (readRecord()) {
+                        action.accept(getValues());
+                        return true;
+                    }
+                    return false;
+                } catch (IOException e) {
+                    throw new CsvAccessException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false)
+                .onClose(this::close);
+    }
+
+    /**
+     * 读取标题行后以Stream方式逐条转换为实体,不检查重复数据.关闭Stream时关闭CsvReader
+     * 
+     * @param dataClass 实体类型
+     * @param validator 验证器,为null使用DefaultValidator验证
+     * @return Stream&lt;T&gt;
+     */
+    public <T extends IExcelEntity> Stream<T> streamEntity(final Class<T> dataClass, IExcelValidator<T> validator) {
+        final IExcelValidator<T> rowValidator = validator == null ? new DefaultExcelValidator<T>() : validator;
+        final EntityBinder<T> binder;
+        try {
+            readHeaders();
+            binder = new EntityBinder<>(dataClass, getHeaders());
+        } catch (IOException e) {
+            throw new CsvAccessException(e);
+        }
+        return stream().map(values -> {
+            T newObj = binder.bind(values);
+            if (stepValid) {
+                rowValidator.valid(newObj, (int) getCurrentRecord());
+            }
+            return newObj;
+        });
+    }
+
+    /**
+     * 并行读取csv文件的所有记录,只适用于以文件路径创建且未开始读取的CsvReader.
+     * <p>
+     * 文件以内存映射方式按chunkSize顺序扫描一遍,在引号外的记录分隔符处切分为多个块,各块在ForkJoin线程池中并行解析.
+     * 解析使用Stream终端操作所在的ForkJoinPool,默认为公共池.字符编码须兼容ASCII(如utf-8,gbk),否则整个文件作为一块解析.
+     * 某一块超过2GB无法内存映射时(如编码不兼容ASCII或长时间没有记录分隔符)退化为顺序读取.
+     * 关闭Stream时关闭CsvReader
+     * 
+     * @param hasHeader 第一行是否为标题行,是则先读取标题行,之后可由{@link #getHeaders()}获取,标题行不包含在结果中
+     * @param ordered 是否保持记录在文件中的顺序,不需要时无序处理可减少等待
+     * @return Stream&lt;String[]&gt;
+     */
+    public Stream<String[]> parallelStream(boolean hasHeader, boolean ordered) {
+        return parallelStream(hasHeader, ordered, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * 并行读取csv文件的所有记录,说明见{@link #parallelStream(boolean, boolean)}
+     * 
+     * @param hasHeader 第一行是否为标题行
+     * @param ordered 是否保持记录在文件中的顺序
+     * @param chunkSize 每块的字节数,实际在其后的第一个记录分隔符处切分
+     * @return Stream&lt;String[]&gt;
+     */
+    public Stream<String[]> parallelStream(boolean hasHeader, boolean ordered, int chunkSize) {
+        return parallelChunks(hasHeader, ordered, chunkSize, (chunkReader, recordOffset) -> {
+            List<String[]> records = new ArrayList<>();
+            while (chunkReader.readRecord()) {
+                records.add(chunkReader.getValues());
+            }
+            return records;
+        }, this::stream);
+    }
+
+    /**
+     * 并行读取csv文件转换为实体,第一行须为标题行,不检查重复数据.validator会被多个线程调用,须线程安全.
+     * 验证时传入的行索引由记录分隔符计算,空行会计入.其他说明见{@link #parallelStream(boolean, boolean)}
+     * 
+     * @param dataClass 实体类型
+     * @param validator 验证器,为null使用DefaultValidator验证
+     * @param ordered 是否保持记录在文件中的顺序
+     * @return Stream&lt;T&gt;
+     */
+    public <T extends IExcelEntity> Stream<T> parallelEntityStream(final Class<T> dataClass,
+            IExcelValidator<T> validator, boolean ordered) {
+        final IExcelValidator<T> rowValidator = validator == null ? new DefaultExcelValidator<T>() : validator;
+        final boolean validate = stepValid;
+        return parallelChunks(true, ordered, DEFAULT_CHUNK_SIZE, (chunkReader, recordOffset) -> {
+            // 转换器非线程安全,每块单独创建
+            EntityBinder<T> binder = new EntityBinder<>(dataClass, headersHolder.Headers);
+            List<T> results = new ArrayList<>();
+            T newObj;
+            while (chunkReader.readRecord()) {
+                newObj = binder.bind(chunkReader.getValues());
+                if (validate) {
+                    rowValidator.valid(newObj, (int) (recordOffset + chunkReader.getCurrentRecord()));
+                }
+                results.add(newObj);
+            }
+            return results;
+        }, () -> {
+            EntityBinder<T> binder = new EntityBinder<>(dataClass, headersHolder.Headers);
+            return stream().map(values -> {
+                T newObj = binder.bind(values);
+                if (validate) {
+                    rowValidator.valid(newObj, (int) getCurrentRecord());
+                }
+                return newObj;
+            });
+        });
+    }
+
+    /**
+     * 切分文件并行解析各块
+     * 
+     * @param chunkParser 解析一块,参数为该块的CsvReader和块内首条记录之前的记录数(不含标题行)
+     * @param sequential 有块超过可映射大小时,在已读取标题行的当前CsvReader上顺序读取
+     */
+    private <R> Stream<R> parallelChunks(boolean hasHeader, boolean ordered, int chunkSize,
+            ChunkParser<R> chunkParser, Supplier<Stream<R>> sequential) {
+        if (fileName == null || initialized) {
+            throw new IllegalStateException("并行读取只适用于以文件路径创建且未开始读取的CsvReader");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be greater than 0");
+        }
+        final Charset chunkCharset = charset;
+        final FileChannel channel;
+        final List<long[]> chunks;
+        try {
+            if (hasHeader) {
+                readHeaders();
+            }
+            channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new CsvAccessException(e);
+        }
+        try {
+            chunks = splitChunks(channel, chunkSize, chunkCharset);
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(channel);
+            throw e instanceof CsvAccessException ? (CsvAccessException) e : new CsvAccessException(e);
+        }
+        for (int i = 0; i < chunks.size(); i++) {
+            long end = i + 1 < chunks.size() ? chunks.get(i + 1)[0] : chunks.get(i)[1];
+            if (end - chunks.get(i)[0] > Integer.MAX_VALUE) {
+                closeQuietly(channel);
+                return sequential.get();
+            }
+        }
+        Stream<R> result = IntStream.range(0, chunks.size())
+                .parallel()
+                .mapToObj(i -> {
+                    long[] chunk = chunks.get(i);
+                    long end = i + 1 < chunks.size() ? chunks.get(i + 1)[0] : chunk[1];
+                    try {
+                        CharBuffer chars = chunkCharset
+                                .decode(channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], end - chunk[0]));
+                        CsvReader chunkReader = new CsvReader(
+                                new CharArrayReader(chars.array(), chars.arrayOffset() + chars.position(),
+                                        chars.remaining()),
+                                userSettings.Delimiter);
+                        chunkReader.copySettings(this);
+                        long recordOffset = chunk[2];
+                        if (hasHeader) {
+                            if (i == 0) {
+                                chunkReader.skipRecord();
+                            } else {
+                                recordOffset--;
+                            }
+                        }
+                        try {
+                            return chunkParser.parse(chunkReader, recordOffset);
+                        } finally {
+                            chunkReader.close();
+                        }
+                    } catch (IOException e) {
+                        throw new CsvAccessException(e);
+                    }
+                })
+                .flatMap(List::stream);
+        if (!ordered) {
+            result = result.unordered();
+        }
+        return result.onClose(() -> {
+            closeQuietly(channel);
+            close();
+        });
+    }
+
+    /**
+     * 顺序扫描文件,在引号外的记录分隔符处切分.返回每块的{起始位置,文件大小,块前的记录数}
+     */
+    private List<long[]> splitChunks(FileChannel channel, int chunkSize, Charset chunkCharset) throws IOException {
+        long fileSize = channel.size();
+        List<long[]> chunks = new ArrayList<>();
+        chunks.add(new long[] { 0,fileSize,0 });
+        if (fileSize <= chunkSize || !isAsciiCompatible(chunkCharset)) {
+            return chunks;
+        }
+        final byte qualifier = (byte) userSettings.TextQualifier;
+        final byte delimiter = (byte) userSettings.Delimiter;
+        final byte recordDelimiter = useCustomRecordDelimiter ? (byte) userSettings.RecordDelimiter : (byte) Chars.LF;
+        final byte comment = (byte) userSettings.Comment;
+        final boolean backslashEscape = userSettings.EscapeMode == ESCAPE_MODE_BACKSLASH;
+
+        boolean inQuotes = false;
+        boolean pendingQuote = false;// 引号内遇到引号,可能是结束也可能是转义
+        boolean escaped = false;
+        boolean inComment = false;
+        boolean fieldStart = true;
+        boolean recordStart = true;
+        long records = 0;
+        long chunkStart = 0;
+        byte b;
+        for (long segmentStart = 0; segmentStart < fileSize; segmentStart += MAX_SCAN_SEGMENT) {
+            long segmentSize = Math.min(MAX_SCAN_SEGMENT, fileSize - segmentStart);
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentSize);
+            for (int i = 0; i < segmentSize; i++) {
+                b = segment.get(i);
+                if (inComment) {
+                    if (b != recordDelimiter) {
+                        continue;
+                    }
+                    inComment = false;
+                } else if (inQuotes) {
+                    if (escaped) {
+                        escaped = false;
+                        continue;
+                    }
+                    if (pendingQuote) {
+                        pendingQuote = false;
+                        if (b == qualifier) {
+                            continue;
+                        }
+                        inQuotes = false;
+                    } else {
+                        if (backslashEscape && b == Chars.BACKSLASH) {
+                            escaped = true;
+                        } else if (b == qualifier) {
+                            if (backslashEscape) {
+                                inQuotes = false;
+                                fieldStart = false;
+                            } else {
+                                pendingQuote = true;
+                            }
+                        }
+                        continue;
+                    }
+                }
+                if (b == recordDelimiter) {
+                    fieldStart = recordStart = true;
+                    records++;
+                    long next = segmentStart + i + 1;
+                    if (next - chunkStart >= chunkSize && next < fileSize) {
+                        chunks.add(new long[] { next,fileSize,records });
+                        chunkStart = next;
+                    }
+                } else if (!useCustomRecordDelimiter && b == Chars.CR) {
+                    fieldStart = recordStart = true;
+                } else if (b == delimiter) {
+                    fieldStart = true;
+                    recordStart = false;
+                } else if (userSettings.UseTextQualifier && fieldStart && b == qualifier) {
+                    inQuotes = true;
+                    fieldStart = recordStart = false;
+                } else if (userSettings.UseComments && recordStart && b == comment) {
+                    inComment = true;
+                } else if (!(userSettings.TrimWhitespace && (b == Letters.SPACE || b == Chars.TAB))) {
+                    fieldStart = recordStart = false;
+                }
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * 字符编码是否兼容ASCII,分隔符和引号编码为相同的单字节
+     */
+    private boolean isAsciiCompatible(Charset chunkCharset) {
+        char[] specials = { userSettings.TextQualifier,userSettings.Delimiter,Chars.LF,Chars.CR,
+                userSettings.RecordDelimiter,userSettings.Comment,Chars.BACKSLASH };
+        for (char c : specials) {
+            if (c > 0x7f) {
+                return false;
+            }
+        }
+        byte[] encoded = new String(specials).getBytes(chunkCharset);
+        if (encoded.length != specials.length) {
+            return false;
+        }
+        for (int i = 0; i < specials.length; i++) {
+            if (encoded[i] != specials[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void copySettings(CsvReader source) {
+        userSettings.TextQualifier = source.userSettings.TextQualifier;
+        userSettings.TrimWhitespace = source.userSettings.TrimWhitespace;
+        userSettings.UseTextQualifier = source.userSettings.UseTextQualifier;
+        userSettings.Delimiter = source.userSettings.Delimiter;
+        userSettings.RecordDelimiter = source.userSettings.RecordDelimiter;
+        userSettings.Comment = source.userSettings.Comment;
+        userSettings.UseComments = source.userSettings.UseComments;
+        userSettings.EscapeMode = source.userSettings.EscapeMode;
+        userSettings.SafetySwitch = source.userSettings.SafetySwitch;
+        userSettings.SkipEmptyRecords = source.userSettings.SkipEmptyRecords;
+        userSettings.CaptureRawRecord = source.userSettings.CaptureRawRecord;
+        useCustomRecordDelimiter = source.useCustomRecordDelimiter;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * 解析一块数据
+     */
+    private interface ChunkParser<R> {
+
+        List<R> parse(CsvReader chunkReader, long recordOffset) throws IOException;
+    }
+
+    /**
+     * 按标题行将一条记录转换为实体,标题行确定后属性所在列和转换器只解析一次.非线程安全
+     */
+    private static final class EntityBinder<T> {
+
+        private final Supplier<T> instantiator;
+        private final List<ExcelColumnProperty> columnPropertys;
+        private final int[] columnIndexes;
+
+        EntityBinder(Class<T> dataClass, String[] headers) {
+            columnPropertys = ExcelConvertUtils.resolveExcelColumnProperty(dataClass, false, Optional.empty());
+            if (CollectionHelper.isEmpty(columnPropertys)) {
+                throw new CsvAccessException("没有找到要转换的属性");
+            }
+            instantiator = PropertyAccessors.constructor(dataClass);
+            columnIndexes = new int[columnPropertys.size()];
+            ExcelColumnProperty colProperty;
+            for (int j = 0; j < columnIndexes.length; j++) {
+                colProperty = columnPropertys.get(j);
+                // 标题重复时取最后一个
+                columnIndexes[j] = headers == null ? -1 : ArrayUtils.lastIndexOf(headers, colProperty.getName());
+                if (colProperty.getReadConverter() == null && colProperty.getPropertyDescriptor()
+                        .getPropertyType() != String.class) {
+                    colProperty.setReadConverter(getReadConverter(colProperty.getPropertyDescriptor()
+                            .getPropertyType(), colProperty.getFmt()));
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        T bind(String[] values) {
+            T newObj = instantiator.get();
+            ExcelColumnProperty colProperty = null;
+            String colValue;
+            Object currentValue;
+            try {
+                for (int j = 0; j < columnIndexes.length; j++) {
+                    colProperty = columnPropertys.get(j);
+                    colValue = columnIndexes[j] >= 0 && columnIndexes[j] < values.length ? values[columnIndexes[j]]
+                            : StringUtils.EMPTY;
+                    // 字符串属性无需转换
+                    currentValue = colProperty.getReadConverter() == null ? colValue
+                            : colProperty.getReadConverter()
+                                    .convert(colValue);
+                    colProperty.setValue(newObj, currentValue);
+                }
+            } catch (RuntimeException e) {
+                throw new CsvAccessException("'" + colProperty.getName() + "'值转换失败", e);
+            }
+            return newObj;
+        }
+    }
+
     /**
      * Returns the column header value for a given column index.
      * 
@@ -1501,10 +1917,24 @@ public class CsvReader implements Closeable {
         this.stepValid = stepValid;
     }
 
+    /**
+     * 设置是否允许重复数据,数据重复使用对象equals和hashCode方法比较
+     * 
+     * @param allowDuplicate true=允许
+     */
     public void setAllowDuplicate(boolean allowDuplicate) {
         this.allowDuplicate = allowDuplicate;
     }
 
+    /**
+     * 设置重复数据检查方式,设置后忽略allowDuplicate总是检查重复
+     * 
+     * @param duplicateChecker DuplicateChecker,其类型须与导入的类型一致
+     */
+    public void setDuplicateChecker(DuplicateChecker<?> duplicateChecker) {
+        this.duplicateChecker = duplicateChecker;
+    }
+
     protected void finalize() {
         close(false);
     }
@@ -420,9 +420,7 @@ public class CsvWriter implements Closeable {
                 writeRecord(headers);
                 for (T rowData : dataList) {
                     for (ExcelColumnProperty currentProperty : columnPropertys) {
-                        Object currentValue = currentProperty.getPropertyDescriptor()
-                                .getReadMethod()
-                                .invoke(rowData);
+                        Object currentValue = currentProperty.getValue(rowData);
                         if (currentValue == null || StringUtils.EMPTY.equals(currentValue)) {
                             write(StringUtils.EMPTY);
                         } else {
@@ -1,9 +1,12 @@
 package org.jflame.commons.excel;
 
 import java.beans.PropertyDescriptor;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import org.jflame.commons.convert.Converter;
 import org.jflame.commons.convert.ObjectToStringConverter;
+import org.jflame.commons.reflect.PropertyAccessors;
 
 /**
  * ExcelColumn注解属性封装类
@@ -21,6 +24,8 @@ public class ExcelColumnProperty implements Comparable<ExcelColumnProperty> {
     private ObjectToStringConverter writeConverter;
     private Converter readConverter;
     private boolean preventSCINotation = false;
+    private Function<Object,Object> getter;
+    private BiConsumer<Object,Object> setter;
 
     public String getName() {
         return name;
@@ -86,6 +91,38 @@ public class ExcelColumnProperty implements Comparable<ExcelColumnProperty> {
         this.preventSCINotation = preventSCINotation;
     }
 
+    /**
+     * 读取bean的属性值,使用预编译的getter
+     * 
+     * @param bean
+     * @return 属性值
+     */
+    public Object getValue(Object bean) {
+        if (getter == null) {
+            getter = PropertyAccessors.getter(propertyDescriptor.getReadMethod());
+        }
+        return getter.apply(bean);
+    }
+
+    /**
+     * 设置bean的属性值,使用预编译的setter
+     * 
+     * @param bean
+     * @param value
+     *            属性值
+     */
+    public void setValue(Object bean, Object value) {
+        if (setter == null) {
+            setter = PropertyAccessors.setter(propertyDescriptor.getWriteMethod());
+        }
+        setter.accept(bean, value);
+    }
+
+    void setAccessors(Function<Object,Object> getter, BiConsumer<Object,Object> setter) {
+        this.getter = getter;
+        this.setter = setter;
+    }
+
     public int compareTo(ExcelColumnProperty obj) {
         return this.order - obj.order;
     }
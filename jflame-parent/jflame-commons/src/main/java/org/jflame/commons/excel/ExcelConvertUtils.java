@@ -17,6 +17,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import org.jflame.commons.convert.CalendarToStringConverter;
 import org.jflame.commons.convert.Converter;
@@ -36,6 +38,7 @@ import org.jflame.commons.exception.BusinessException;
 import org.jflame.commons.exception.ConvertException;
 import org.jflame.commons.model.pair.IIntKeyPair;
 import org.jflame.commons.reflect.BeanHelper;
+import org.jflame.commons.reflect.PropertyAccessors;
 import org.jflame.commons.util.NumberHelper;
 import org.jflame.commons.util.StringHelper;
 
@@ -127,10 +130,22 @@ public final class ExcelConvertUtils {
      *            excel单元格
      * @return java属性值
      */
-    @SuppressWarnings("unchecked")
     public static Object extractValueFromCell(final ExcelColumnProperty property, final Cell cell) {
-        Object cellValue = getCellValue(cell);
-        if (cell == null) {
+        return convertCellValue(property, getCellValue(cell));
+    }
+
+    /**
+     * 转换已读取的excel单元格值到java属性
+     * 
+     * @param property
+     *            ExcelColumnProperty
+     * @param cellValue
+     *            单元格值,类型请看{@link #getCellValue}
+     * @return java属性值
+     */
+    @SuppressWarnings("unchecked")
+    public static Object convertCellValue(final ExcelColumnProperty property, final Object cellValue) {
+        if (cellValue == null) {
             return null;
         }
         Class<?> valueClazz = cellValue.getClass();
@@ -304,7 +319,7 @@ public final class ExcelConvertUtils {
     }
 
     /**
-     * 根据excel column获取bean的属性.
+     * 根据excel column获取bean的属性.注解解析结果和预编译的属性读写函数按类型缓存
      * 
      * @param dataClass
      *            Class&lt;? extends IExcelEntity&gt;
@@ -316,52 +331,91 @@ public final class ExcelConvertUtils {
      */
     public static <T> List<ExcelColumnProperty> resolveExcelColumnProperty(Class<T> dataClass, boolean isWrite,
             Optional<String> group) {
-        List<ExcelColumnProperty> as = new ArrayList<ExcelColumnProperty>();
-
-        final Class<ExcelColumn> clazz = ExcelColumn.class;
-        final String clazzName = "class";
-
+        List<ColumnMeta> columnMetas = COLUMN_META_CACHE.get(dataClass);
+        List<ExcelColumnProperty> as = new ArrayList<ExcelColumnProperty>(columnMetas.size());
         ExcelColumnProperty newProperty;
         ExcelColumn tmpAnns;
-        Field tmpField;
-        Method tmpReadMethod;
-        PropertyDescriptor[] properties = BeanHelper.getPropertyDescriptors(dataClass);
-
-        for (PropertyDescriptor propDesc : properties) {
-            if (clazzName.equals(propDesc.getName())) {
-                continue;
-            }
-            tmpAnns = null;
-            tmpReadMethod = propDesc.getReadMethod();
-            if (tmpReadMethod != null && tmpReadMethod.isAnnotationPresent(clazz)) {
-                tmpAnns = tmpReadMethod.getAnnotation(clazz);
-            }
-            if (tmpAnns == null) {
-                tmpField = FieldUtils.getField(dataClass, propDesc.getName(), true);
-                if (tmpField != null && tmpField.isAnnotationPresent(clazz)) {
-                    tmpAnns = tmpField.getAnnotation(clazz);
+        for (ColumnMeta meta : columnMetas) {
+            tmpAnns = meta.annotation;
+            if (group.isPresent()) {
+                if (ArrayUtils.isEmpty(tmpAnns.group()) || !ArrayUtils.contains(tmpAnns.group(), group.get())) {
+                    continue;
                 }
             }
-            if (tmpAnns != null) {
-                if (group.isPresent()) {
-                    if (ArrayUtils.isEmpty(tmpAnns.group()) || !ArrayUtils.contains(tmpAnns.group(), group.get())) {
-                        continue;
+            newProperty = new ExcelColumnProperty();
+            newProperty.setPropertyDescriptor(meta.propertyDescriptor);
+            newProperty.setOrder(tmpAnns.order());
+            // newProperty.setConvert(tmpAnns.convert());
+            newProperty.setFmt(tmpAnns.fmt());
+            newProperty.setName(tmpAnns.name());
+            newProperty.setWidth(tmpAnns.width());
+            newProperty.setAccessors(meta.getter, meta.setter);
+            setConverter(isWrite, newProperty, tmpAnns);
+
+            as.add(newProperty);
+        }
+        return as;
+    }
+
+    /**
+     * 按类型缓存的@ExcelColumn标注属性,已按order排序.ExcelColumnProperty会缓存非线程安全的转换器,所以每次解析重新创建
+     */
+    private static final ClassValue<List<ColumnMeta>> COLUMN_META_CACHE = new ClassValue<List<ColumnMeta>>() {
+
+        @Override
+        protected List<ColumnMeta> computeValue(Class<?> dataClass) {
+            List<ColumnMeta> metas = new ArrayList<>();
+            final Class<ExcelColumn> clazz = ExcelColumn.class;
+            final String clazzName = "class";
+
+            ExcelColumn tmpAnns;
+            Field tmpField;
+            Method tmpReadMethod;
+            PropertyDescriptor[] properties = BeanHelper.getPropertyDescriptors(dataClass);
+
+            for (PropertyDescriptor propDesc : properties) {
+                if (clazzName.equals(propDesc.getName())) {
+                    continue;
+                }
+                tmpAnns = null;
+                tmpReadMethod = propDesc.getReadMethod();
+                if (tmpReadMethod != null && tmpReadMethod.isAnnotationPresent(clazz)) {
+                    tmpAnns = tmpReadMethod.getAnnotation(clazz);
+                }
+                if (tmpAnns == null) {
+                    tmpField = FieldUtils.getField(dataClass, propDesc.getName(), true);
+                    if (tmpField != null && tmpField.isAnnotationPresent(clazz)) {
+                        tmpAnns = tmpField.getAnnotation(clazz);
                     }
                 }
-                newProperty = new ExcelColumnProperty();
-                newProperty.setPropertyDescriptor(propDesc);
-                newProperty.setOrder(tmpAnns.order());
-                // newProperty.setConvert(tmpAnns.convert());
-                newProperty.setFmt(tmpAnns.fmt());
-                newProperty.setName(tmpAnns.name());
-                newProperty.setWidth(tmpAnns.width());
-                setConverter(isWrite, newProperty, tmpAnns);
-
-                as.add(newProperty);
+                if (tmpAnns != null) {
+                    metas.add(new ColumnMeta(propDesc, tmpAnns));
+                }
             }
+            metas.sort((m1, m2) -> m1.annotation.order() - m2.annotation.order());
+            return Collections.unmodifiableList(metas);
+        }
+    };
+
+    private static final class ColumnMeta {
+
+        final PropertyDescriptor propertyDescriptor;
+        final ExcelColumn annotation;
+        final Function<Object,Object> getter;
+        final BiConsumer<Object,Object> setter;
+
+        ColumnMeta(PropertyDescriptor propertyDescriptor, ExcelColumn annotation) {
+            this.propertyDescriptor = propertyDescriptor;
+            this.annotation = annotation;
+            Method readMethod = propertyDescriptor.getReadMethod();
+            Method writeMethod = propertyDescriptor.getWriteMethod();
+            getter = readMethod != null ? PropertyAccessors.getter(readMethod) : bean -> {
+                throw new ExcelAccessException("属性没有get方法:" + propertyDescriptor.getName());
+            };
+            setter = writeMethod != null ? PropertyAccessors.setter(writeMethod) : (bean, value) -> {
+                throw new ExcelAccessException("属性没有set方法:" + propertyDescriptor.getName());
+            };
         }
-        Collections.sort(as);
-        return as;
     }
 
     private static void setConverter(boolean isWrite, ExcelColumnProperty newProperty, ExcelColumn tmpAnns) {
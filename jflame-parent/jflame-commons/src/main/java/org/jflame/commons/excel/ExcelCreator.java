@@ -4,13 +4,28 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.IntFunction;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
@@ -83,6 +98,8 @@ public class ExcelCreator implements Closeable {
     private Map<Integer,Integer> rowIndexMap = new HashMap<>();// 记录每个sheet的当前行索引
     private SXSSFSheet currentSheet;
     private Integer currentSheetIndex;
+    private int maxRowsPerSheet;// 分批导出时每个sheet的最大行数,0不限制
+    private ExecutorService prefetchExecutor;
     // @SuppressWarnings("rawtypes")
     // private Map<Class<? extends IExcelEntity>,EntityRowWriter> rowWriterMap = new HashMap<>();
 
@@ -154,26 +171,42 @@ public class ExcelCreator implements Closeable {
      */
     public <T> void batchFillEntityData(final String group, final int maxRow, final int batchSize,
             final IntFunction<List<T>> batchDataFetcher) {
+        batchFillEntityData(group, maxRow, batchSize, batchDataFetcher, 0);
+    }
+
+    /**
+     * 分批次获取实体数据导出到excel,写入当前批次的同时在后台线程预取后续批次.
+     * <p>
+     * 预取的批次存放在容量为prefetchBatches的有界队列中,队列满时后台线程等待,内存中最多保留prefetchBatches+1个批次.
+     * batchDataFetcher将在后台线程中调用,需线程安全且不能依赖调用线程绑定的资源(如当前线程的事务)
+     * 
+     * @param group
+     *            分组，null时导出所有{@code @ExcelColumn}标注的的属性
+     * @param maxRow
+     *            导出数据总大小
+     * @param batchSize
+     *            一次获取数据行数
+     * @param batchDataFetcher
+     *            获取数据的函数，接收参数为当前页数
+     * @param prefetchBatches
+     *            预取批次数,小于等于0时不预取,在当前线程依次获取写入
+     */
+    public <T> void batchFillEntityData(final String group, final int maxRow, final int batchSize,
+            final IntFunction<List<T>> batchDataFetcher, final int prefetchBatches) {
         if (currentSheet == null) {
             selectSheet(0);
         }
-        Row row = null;
-        int maxPage = countMaxPage(maxRow, batchSize);
-        List<T> dataList;
-        EntityRowWriter<T> rowWriter = null;
-        for (int i = 1; i <= maxPage; i++) {
-            dataList = batchDataFetcher.apply(i);
-            if (CollectionHelper.isNotEmpty(dataList)) {
-                if (i == 1) {
-                    rowWriter = createEntityRowWriter(dataList, group);
-                    createTitleRow(currentSheet, rowWriter.getColumnPropertys());
-                }
-                for (T rowData : dataList) {
-                    row = currentSheet.createRow(getAndMoveRowIndex());
-                    rowWriter.fillRow(rowData, row);
-                }
+        // 第一个非空批次时根据数据类型创建
+        final List<EntityRowWriter<T>> rowWriterHolder = new ArrayList<>(1);
+        forEachBatch(countMaxPage(maxRow, batchSize), batchDataFetcher, prefetchBatches, dataList -> {
+            if (rowWriterHolder.isEmpty()) {
+                rowWriterHolder.add(createEntityRowWriter(dataList, group));
+                createTitleRow(currentSheet, rowWriterHolder.get(0)
+                        .getColumnPropertys());
             }
-        }
+            EntityRowWriter<T> rowWriter = rowWriterHolder.get(0);
+            writeRows(dataList, rowWriter, rowWriter.getColumnPropertys());
+        });
     }
 
     public <T> void fillData(final Iterable<T> dataList, IExcelRowWriter<T> rowWriter) {
@@ -189,20 +222,131 @@ public class ExcelCreator implements Closeable {
 
     public <T> void batchFillData(final int maxRow, final int batchSize, final IntFunction<List<T>> batchDataFetcher,
             IExcelRowWriter<T> rowWriter) {
+        batchFillData(maxRow, batchSize, batchDataFetcher, rowWriter, 0);
+    }
+
+    /**
+     * 分批次获取数据导出到excel,写入当前批次的同时在后台线程预取后续批次.说明见
+     * {@link #batchFillEntityData(String, int, int, IntFunction, int)}
+     * 
+     * @param maxRow
+     *            导出数据总大小
+     * @param batchSize
+     *            一次获取数据行数
+     * @param batchDataFetcher
+     *            获取数据的函数，接收参数为当前页数
+     * @param rowWriter
+     *            行写入器
+     * @param prefetchBatches
+     *            预取批次数,小于等于0时不预取
+     */
+    public <T> void batchFillData(final int maxRow, final int batchSize, final IntFunction<List<T>> batchDataFetcher,
+            IExcelRowWriter<T> rowWriter, final int prefetchBatches) {
         if (currentSheet == null) {
             selectSheet(0);
         }
+        forEachBatch(countMaxPage(maxRow, batchSize), batchDataFetcher, prefetchBatches,
+                dataList -> writeRows(dataList, rowWriter, null));
+    }
+
+    /**
+     * 写入一批数据行,当前sheet达到最大行数时新建sheet继续写入
+     * 
+     * @param columns
+     *            新sheet的标题列,为null时新sheet不创建标题行
+     */
+    private <T> void writeRows(List<T> dataList, IExcelRowWriter<T> rowWriter, List<ExcelColumnProperty> columns) {
         Row row = null;
-        int maxPage = countMaxPage(maxRow, batchSize);
-        List<T> dataList;
-        for (int i = 1; i <= maxPage; i++) {
-            dataList = batchDataFetcher.apply(i);
-            if (CollectionHelper.isNotEmpty(dataList)) {
-                for (T rowData : dataList) {
-                    row = currentSheet.createRow(getAndMoveRowIndex());
-                    rowWriter.fillRow(rowData, row);
+        for (T rowData : dataList) {
+            if (maxRowsPerSheet > 0 && getRowIndex() >= maxRowsPerSheet) {
+                currentSheet = workbook.createSheet();
+                currentSheetIndex = workbook.getSheetIndex(currentSheet);
+                if (columns != null) {
+                    createTitleRow(currentSheet, columns);
+                }
+            }
+            row = currentSheet.createRow(getAndMoveRowIndex());
+            rowWriter.fillRow(rowData, row);
+        }
+    }
+
+    /**
+     * 依次获取每一批数据交给batchWriter写入,空批次跳过.prefetchBatches大于0时由后台线程预取
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void forEachBatch(final int maxPage, final IntFunction<List<T>> batchDataFetcher,
+            final int prefetchBatches, final Consumer<List<T>> batchWriter) {
+        if (prefetchBatches <= 0) {
+            List<T> dataList;
+            for (int i = 1; i <= maxPage; i++) {
+                dataList = batchDataFetcher.apply(i);
+                if (CollectionHelper.isNotEmpty(dataList)) {
+                    batchWriter.accept(dataList);
+                }
+            }
+            return;
+        }
+        final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(prefetchBatches);
+        ExecutorService executor = prefetchExecutor;
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "excel-prefetch");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        Future<?> prefetchTask = executor.submit(() -> {
+            for (int i = 1; i <= maxPage; i++) {
+                Object batch;
+                try {
+                    batch = batchDataFetcher.apply(i);
+                    if (batch == null) {
+                        batch = Collections.emptyList();
+                    }
+                } catch (Throwable e) {
+                    queue.put(new FetchFailure(e));
+                    return null;
+                }
+                queue.put(batch);
+            }
+            return null;
+        });
+        try {
+            Object batch;
+            for (int i = 1; i <= maxPage; i++) {
+                batch = queue.take();
+                if (batch instanceof FetchFailure) {
+                    Throwable cause = ((FetchFailure) batch).cause;
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new ExcelAccessException("获取第" + i + "批数据异常", cause);
+                }
+                if (!((List<T>) batch).isEmpty()) {
+                    batchWriter.accept((List<T>) batch);
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+            throw new ExcelAccessException("导出数据被中断", e);
+        } finally {
+            prefetchTask.cancel(true);
+            if (executor != prefetchExecutor) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * 预取数据时的异常
+     */
+    private static final class FetchFailure {
+
+        final Throwable cause;
+
+        FetchFailure(Throwable cause) {
+            this.cause = cause;
         }
     }
 
@@ -394,6 +538,32 @@ public class ExcelCreator implements Closeable {
         rowIndexMap.put(currentSheetIndex, rowIndex);
     }
 
+    private int getRowIndex() {
+        Integer index = rowIndexMap.get(currentSheetIndex);
+        return index == null ? 0 : index;
+    }
+
+    /**
+     * 设置分批导出时每个sheet的最大行数(含标题行),超过后新建sheet继续写入,实体数据在新sheet上重复标题行.0为不限制,
+     * xlsx单个sheet最多1048576行
+     * 
+     * @param maxRowsPerSheet
+     *            每个sheet的最大行数
+     */
+    public void setMaxRowsPerSheet(int maxRowsPerSheet) {
+        this.maxRowsPerSheet = maxRowsPerSheet;
+    }
+
+    /**
+     * 设置分批导出预取数据使用的线程池,不设置时每次导出新建单线程执行,导出完成后关闭.设置的线程池由调用方关闭
+     * 
+     * @param prefetchExecutor
+     *            线程池
+     */
+    public void setPrefetchExecutor(ExecutorService prefetchExecutor) {
+        this.prefetchExecutor = prefetchExecutor;
+    }
+
     /**
      * 在第一个工作表上创建标题行.
      * 
@@ -462,7 +632,7 @@ public class ExcelCreator implements Closeable {
         defaultTitleStyle.setFont(titleCellFont);
     }
 
-    private int countMaxPage(final int maxRow, final int batchSize) {
+    private static int countMaxPage(final int maxRow, final int batchSize) {
         int maxPage;
         if (maxRow % batchSize == 0) {
             maxPage = (int) (maxRow / batchSize);
@@ -553,6 +723,116 @@ public class ExcelCreator implements Closeable {
         ExcelCreator.export(data, out, false);
     }
 
+    /**
+     * 大数据量实体数据并行导出为多个excel文件并打包为zip.
+     * <p>
+     * 数据按rowsPerFile拆分为多个文件,各文件由parallelism个线程并行分批获取写入临时文件,再按顺序写入zip,文件名为"fileNamePrefix_序号.xlsx".
+     * batchDataFetcher会在多个线程中并发调用,需线程安全
+     * 
+     * @param group
+     *            分组，null时导出所有{@code @ExcelColumn}标注的的属性
+     * @param maxRow
+     *            导出数据总大小
+     * @param batchSize
+     *            一次获取数据行数
+     * @param rowsPerFile
+     *            每个文件的数据行数,不是batchSize整数倍时向上取整
+     * @param batchDataFetcher
+     *            获取数据的函数，接收参数为全局页数
+     * @param parallelism
+     *            并行生成文件的线程数
+     * @param fileNamePrefix
+     *            zip中excel文件名前缀
+     * @param out
+     *            zip输出流,不关闭
+     * @throws ExcelAccessException
+     */
+    public static <T> void exportZip(final String group, final int maxRow, final int batchSize, final int rowsPerFile,
+            final IntFunction<List<T>> batchDataFetcher, final int parallelism, final String fileNamePrefix,
+            final OutputStream out) throws ExcelAccessException {
+        final int totalPage = countMaxPage(maxRow, batchSize);
+        final int pagesPerFile = Math.max(countMaxPage(rowsPerFile, batchSize), 1);
+        final int fileCount = countMaxPage(totalPage, pagesPerFile);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(Math.min(parallelism, fileCount), 1));
+        List<Future<Path>> futures = new ArrayList<>(fileCount);
+        // 已创建还未写入zip的临时文件
+        final Set<Path> tmpFiles = ConcurrentHashMap.newKeySet();
+        try {
+            for (int i = 0; i < fileCount; i++) {
+                final int pageOffset = i * pagesPerFile;
+                final int pages = Math.min(pagesPerFile, totalPage - pageOffset);
+                futures.add(executor.submit(() -> {
+                    Path tmpFile = Files.createTempFile("excel", ".xlsx");
+                    tmpFiles.add(tmpFile);
+                    try (ExcelCreator creator = new ExcelCreator();
+                            OutputStream fileOut = Files.newOutputStream(tmpFile)) {
+                        creator.batchFillEntityData(group, pages * batchSize, batchSize,
+                                page -> batchDataFetcher.apply(pageOffset + page));
+                        creator.write(fileOut);
+                    }
+                    return tmpFile;
+                }));
+            }
+            ZipOutputStream zipOut = new ZipOutputStream(out);
+            for (int i = 0; i < fileCount; i++) {
+                Path tmpFile = futures.get(i)
+                        .get();
+                try {
+                    zipOut.putNextEntry(new ZipEntry(fileNamePrefix + '_' + (i + 1) + ".xlsx"));
+                    Files.copy(tmpFile, zipOut);
+                    zipOut.closeEntry();
+                } finally {
+                    Files.deleteIfExists(tmpFile);
+                    tmpFiles.remove(tmpFile);
+                }
+            }
+            zipOut.finish();
+            zipOut.flush();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ExcelAccessException) {
+                throw (ExcelAccessException) e.getCause();
+            }
+            throw new ExcelAccessException("excel导出异常", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+            throw new ExcelAccessException("excel导出被中断", e);
+        } catch (IOException e) {
+            throw new ExcelAccessException("excel写入异常", e);
+        } finally {
+            // 取消未完成的任务,等待正在执行的任务结束后删除未写入zip的临时文件
+            executor.shutdownNow();
+            awaitTermination(executor);
+            for (Path tmpFile : tmpFiles) {
+                try {
+                    Files.deleteIfExists(tmpFile);
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * 等待线程池中的任务全部结束,期间的中断在结束后恢复
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread()
+                    .interrupt();
+        }
+    }
+
     static void setFileDownloadHeader(HttpServletResponse response, String fileName) {
         String encodedfileName = CharsetHelper.reEncodeGBK(fileName);
         response.setHeader("Content-Disposition", "attachment; filename=\"" + encodedfileName + "\"");
@@ -11,6 +11,7 @@ import java.util.Optional;
 import org.jflame.commons.excel.handler.ArrayRowReader;
 import org.jflame.commons.excel.handler.EntityRowReader;
 import org.jflame.commons.excel.validator.DefaultExcelValidator;
+import org.jflame.commons.excel.validator.DuplicateChecker;
 import org.jflame.commons.excel.validator.ExcelValidationException;
 import org.jflame.commons.excel.validator.IExcelValidator;
 import org.jflame.commons.util.CollectionHelper;
@@ -52,6 +53,7 @@ public class ExcelImportor implements Closeable {
     private final Logger log = LoggerFactory.getLogger(ExcelImportor.class);
     // private boolean stepValid = true;// 是否执行单行验证,验证失败即中断
     private boolean allowDuplicate = true;// 是否允许重复数据
+    private DuplicateChecker<?> duplicateChecker;
     private int startRowIndex = 1;
     // private List<Integer> curRowIndexs = new ArrayList<Integer>();
     private Workbook workbook;
@@ -173,7 +175,10 @@ public class ExcelImportor implements Closeable {
         // curRowIndexs.clear();
         Row curRow;
         T newObj = null;
-        List<T> results = new ArrayList<>(sheet.getLastRowNum());
+        List<T> results = new ArrayList<>(currentSheet.getLastRowNum());
+        DuplicateChecker<T> checker = getDuplicateChecker();
+        // 布隆过滤模式确认阶段需要的行号
+        List<Integer> lineNumbers = checker != null && !checker.isExact() ? new ArrayList<>() : null;
 
         Iterator<Row> rowIterator = currentSheet.rowIterator();
         while (rowIterator.hasNext()) {
@@ -185,14 +190,23 @@ public class ExcelImportor implements Closeable {
             // 验证
             validator.valid(newObj, curRow.getRowNum());
 
-            if (!allowDuplicate) {
-                if (results.contains(newObj)) {
+            if (checker != null) {
+                if (checker.check(newObj, curRow.getRowNum() + 1) >= 0) {
                     log.error("重复数据停止导入,行数:{},对象:{}", (curRow.getRowNum() + 1), newObj);
-                    throw new ExcelAccessException("重复数据 第" + (curRow.getRowNum() + 1) + "行");
+                    checker.throwIfDuplicated();
+                }
+                if (lineNumbers != null) {
+                    lineNumbers.add(curRow.getRowNum() + 1);
                 }
             }
             results.add(newObj);
         }
+        if (checker != null && checker.needConfirm()) {
+            for (int i = 0; i < results.size(); i++) {
+                checker.confirm(results.get(i), lineNumbers.get(i));
+            }
+            checker.throwIfDuplicated();
+        }
 
         return results;
     }
@@ -265,7 +279,7 @@ public class ExcelImportor implements Closeable {
     }
 
     /**
-     * 设置是否允许重复数据,数据重复使用对象equals方法比较,所以如果需要去重导入对象类型应重写equals
+     * 设置是否允许重复数据,数据重复使用对象equals和hashCode方法比较,所以如果需要去重导入对象类型应重写equals和hashCode
      * 
      * @param ignoreRepeat
      *            true=允许
@@ -274,6 +288,25 @@ public class ExcelImportor implements Closeable {
         this.allowDuplicate = ignoreRepeat;
     }
 
+    /**
+     * 设置重复数据检查方式,设置后忽略allowDuplicate总是检查重复.未设置且不允许重复时使用{@link DuplicateChecker#exact()}
+     * 
+     * @param duplicateChecker
+     *            DuplicateChecker,其类型须与导入的类型一致
+     */
+    public void setDuplicateChecker(DuplicateChecker<?> duplicateChecker) {
+        this.duplicateChecker = duplicateChecker;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> DuplicateChecker<T> getDuplicateChecker() {
+        if (duplicateChecker != null) {
+            duplicateChecker.reset();
+            return (DuplicateChecker<T>) duplicateChecker;
+        }
+        return allowDuplicate ? null : DuplicateChecker.exact();
+    }
+
     @Override
     public void close() throws IOException {
         if (pkg != null) {
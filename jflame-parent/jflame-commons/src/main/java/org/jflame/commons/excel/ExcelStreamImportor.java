@@ -0,0 +1,341 @@
+package org.jflame.commons.excel;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.jflame.commons.excel.handler.ArrayRowReader;
+import org.jflame.commons.excel.handler.EntityRowReader;
+import org.jflame.commons.excel.validator.DefaultExcelValidator;
+import org.jflame.commons.excel.validator.DuplicateChecker;
+import org.jflame.commons.excel.validator.ExcelValidationException;
+import org.jflame.commons.excel.validator.IExcelValidator;
+import org.jflame.commons.util.CollectionHelper;
+
+import org.apache.poi.ooxml.util.SAXHelper;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * xlsx流式导入工具类.使用SAX逐行解析工作表,每行转换后交给回调处理,不构建工作簿对象也不保留导入结果,适合大文件导入.
+ * <p>
+ * 行数据转换与{@link ExcelImportor}相同,由{@link ExcelColumn}注解决定,同样支持数据验证和重复数据检查.只支持xlsx格式.
+ * 示例:
+ * 
+ * <pre>
+ * try (ExcelStreamImportor xlsImport = new ExcelStreamImportor(file)) {
+ *     xlsImport.setStartRowIndex(1);
+ *     int count = xlsImport.importSheet(Pet.class, 500, pets -&gt; petService.saveBatch(pets));
+ * } catch (ExcelValidationException e) {
+ *     // 验证失败,之前的批次已处理
+ * }
+ * </pre>
+ * 
+ * @see ExcelColumn
+ * @author zyc
+ */
+public class ExcelStreamImportor implements Closeable {
+
+    private final Logger log = LoggerFactory.getLogger(ExcelStreamImportor.class);
+    private boolean allowDuplicate = true;// 是否允许重复数据
+    private DuplicateChecker<?> duplicateChecker;
+    private int startRowIndex = 1;
+    private OPCPackage pkg;
+    private XSSFReader xssfReader;
+    private ReadOnlySharedStringsTable sharedStrings;
+    private StylesTable styles;
+    private boolean date1904;
+
+    /**
+     * 构造函数
+     * 
+     * @param excelFile
+     *            指定excel文件
+     * @throws ExcelAccessException
+     */
+    public ExcelStreamImportor(String excelFile) throws ExcelAccessException {
+        this(new File(excelFile));
+    }
+
+    public ExcelStreamImportor(File excelFile) throws ExcelAccessException {
+        try {
+            pkg = OPCPackage.open(excelFile, PackageAccess.READ);
+            xssfReader = new XSSFReader(pkg);
+            sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            styles = xssfReader.getStylesTable();
+            date1904 = isDate1904();
+        } catch (IOException | OpenXML4JException | SAXException | ParserConfigurationException e) {
+            if (pkg != null) {
+                pkg.revert();
+            }
+            throw new ExcelAccessException("未能读取文件,或文件格式损坏," + excelFile, e);
+        }
+    }
+
+    /**
+     * 逐行导入第一张工作表数据,转换为dataClass对象后交给rowConsumer处理.使用默认验证器验证
+     * 
+     * @param dataClass
+     *            转换类型class
+     * @param rowConsumer
+     *            每行对象的处理
+     * @return 导入的行数
+     */
+    public <T> int importSheet(final Class<T> dataClass, Consumer<T> rowConsumer)
+            throws ExcelAccessException, ExcelValidationException {
+        return importSheet(0, dataClass, null, rowConsumer);
+    }
+
+    /**
+     * 逐行导入指定的工作表数据,转换为dataClass对象后交给rowConsumer处理
+     * 
+     * @param sheetIndex
+     *            工作表索引,从0开始
+     * @param dataClass
+     *            转换类型class
+     * @param validator
+     *            指定数据验证类,为null使用DefaultValidator验证
+     * @param rowConsumer
+     *            每行对象的处理
+     * @exception ExcelAccessException
+     *                导入出错
+     * @exception ExcelValidationException
+     *                单元格数据验证异常,之前的行已处理
+     * @return 导入的行数
+     */
+    public <T> int importSheet(int sheetIndex, final Class<T> dataClass, IExcelValidator<T> validator,
+            Consumer<T> rowConsumer) throws ExcelAccessException, ExcelValidationException {
+        final IExcelValidator<T> rowValidator = validator == null ? new DefaultExcelValidator<T>() : validator;
+        List<ExcelColumnProperty> lstDescriptors = ExcelConvertUtils.resolveExcelColumnProperty(dataClass, false,
+                Optional.empty());
+        if (CollectionHelper.isEmpty(lstDescriptors)) {
+            throw new ExcelAccessException("没有找到要转换的属性");
+        }
+
+        EntityRowReader<T> rowHandler = new EntityRowReader<>(lstDescriptors, dataClass);
+        final DuplicateChecker<T> checker = getDuplicateChecker();
+        final int[] count = { 0 };
+        processSheet(sheetIndex, (cellValues, rowIndex) -> {
+            T newObj = rowHandler.extractRow(cellValues, rowIndex);
+            // 验证
+            rowValidator.valid(newObj, rowIndex);
+            if (checker != null && checker.check(newObj, rowIndex + 1) >= 0) {
+                log.error("重复数据停止导入,行数:{},对象:{}", (rowIndex + 1), newObj);
+                checker.throwIfDuplicated();
+            }
+            rowConsumer.accept(newObj);
+            count[0]++;
+        });
+        if (checker != null && checker.needConfirm()) {
+            // 布隆过滤模式再解析一次工作表确认疑似重复的行
+            processSheet(sheetIndex,
+                    (cellValues, rowIndex) -> checker.confirm(rowHandler.extractRow(cellValues, rowIndex), rowIndex + 1));
+            checker.throwIfDuplicated();
+        }
+        return count[0];
+    }
+
+    /**
+     * 分批导入第一张工作表数据,每batchSize行交给batchConsumer处理一次.使用默认验证器验证
+     * 
+     * @param dataClass
+     *            转换类型class
+     * @param batchSize
+     *            每批行数
+     * @param batchConsumer
+     *            每批对象的处理
+     * @return 导入的行数
+     */
+    public <T> int importSheet(final Class<T> dataClass, int batchSize, Consumer<List<T>> batchConsumer)
+            throws ExcelAccessException, ExcelValidationException {
+        return importSheet(0, dataClass, null, batchSize, batchConsumer);
+    }
+
+    /**
+     * 分批导入指定的工作表数据,每batchSize行交给batchConsumer处理一次
+     * 
+     * @param sheetIndex
+     *            工作表索引,从0开始
+     * @param dataClass
+     *            转换类型class
+     * @param validator
+     *            指定数据验证类,为null使用DefaultValidator验证
+     * @param batchSize
+     *            每批行数
+     * @param batchConsumer
+     *            每批对象的处理
+     * @exception ExcelAccessException
+     *                导入出错
+     * @exception ExcelValidationException
+     *                单元格数据验证异常,之前的批次已处理
+     * @return 导入的行数
+     */
+    public <T> int importSheet(int sheetIndex, final Class<T> dataClass, IExcelValidator<T> validator, int batchSize,
+            Consumer<List<T>> batchConsumer) throws ExcelAccessException, ExcelValidationException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be greater than 0");
+        }
+        final List<T> batch = new ArrayList<>(batchSize);
+        int count = importSheet(sheetIndex, dataClass, validator, newObj -> {
+            batch.add(newObj);
+            if (batch.size() >= batchSize) {
+                batchConsumer.accept(new ArrayList<>(batch));
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            batchConsumer.accept(batch);
+        }
+        return count;
+    }
+
+    /**
+     * 逐行导入指定的工作表数据,转换为数组.数组元素类型只可能是bool,double,date,string类型
+     * 
+     * @param sheetIndex
+     *            工作表索引,从0开始
+     * @param rowConsumer
+     *            每行数组的处理
+     * @return 导入的行数
+     */
+    public int importSheet(int sheetIndex, Consumer<Object[]> rowConsumer) throws ExcelAccessException {
+        ArrayRowReader rowHandler = new ArrayRowReader();
+        final int[] count = { 0 };
+        processSheet(sheetIndex, (cellValues, rowIndex) -> {
+            rowConsumer.accept(rowHandler.extractRow(cellValues, rowIndex));
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    private void processSheet(int sheetIndex, ObjIntConsumer<Object[]> rowConsumer) {
+        InputStream sheetStream = null;
+        try {
+            Iterator<InputStream> sheetIterator = xssfReader.getSheetsData();
+            for (int i = 0; sheetIterator.hasNext(); i++) {
+                InputStream stream = sheetIterator.next();
+                if (i == sheetIndex) {
+                    sheetStream = stream;
+                    break;
+                }
+                stream.close();
+            }
+            if (sheetStream == null) {
+                throw new ExcelAccessException("工作表不存在,索引:" + sheetIndex);
+            }
+            XMLReader sheetParser = SAXHelper.newXMLReader();
+            sheetParser.setContentHandler(
+                    new SheetSaxHandler(sharedStrings, styles, date1904, startRowIndex, rowConsumer));
+            sheetParser.parse(new InputSource(sheetStream));
+        } catch (SAXException e) {
+            if (e.getException() instanceof RuntimeException) {
+                throw (RuntimeException) e.getException();
+            }
+            throw new ExcelAccessException("解析工作表失败", e);
+        } catch (IOException | OpenXML4JException | ParserConfigurationException e) {
+            throw new ExcelAccessException("读取工作表失败", e);
+        } finally {
+            if (sheetStream != null) {
+                try {
+                    sheetStream.close();
+                } catch (IOException e) {
+                    log.warn("关闭工作表流失败", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取工作簿是否使用1904日期系统
+     */
+    private boolean isDate1904() throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
+        final boolean[] date1904 = { false };
+        try (InputStream workbookStream = xssfReader.getWorkbookData()) {
+            XMLReader workbookParser = SAXHelper.newXMLReader();
+            workbookParser.setContentHandler(new DefaultHandler() {
+
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    if ("workbookPr".equals(localName)) {
+                        String value = attributes.getValue("date1904");
+                        date1904[0] = "1".equals(value) || "true".equals(value);
+                    }
+                }
+            });
+            workbookParser.parse(new InputSource(workbookStream));
+        }
+        return date1904[0];
+    }
+
+    public int getStartRowIndex() {
+        return startRowIndex;
+    }
+
+    /**
+     * 设置从第几行开始导入,行索引从0开始,默认1跳过标题行.
+     * 
+     * @param startRowIndex
+     *            开始sheet行索引
+     */
+    public void setStartRowIndex(int startRowIndex) {
+        this.startRowIndex = startRowIndex;
+    }
+
+    /**
+     * 设置是否允许重复数据,数据重复使用对象equals和hashCode比较,不允许重复时需要保留已导入的对象,大文件可使用布隆过滤模式的DuplicateChecker
+     * 
+     * @param allowDuplicate
+     *            true=允许
+     */
+    public void setAllowDuplicate(boolean allowDuplicate) {
+        this.allowDuplicate = allowDuplicate;
+    }
+
+    /**
+     * 设置重复数据检查方式,设置后忽略allowDuplicate总是检查重复.
+     * 布隆过滤模式在所有行处理完成后再解析一次工作表确认,发现重复时抛出异常,此时各行已交给rowConsumer处理
+     * 
+     * @param duplicateChecker
+     *            DuplicateChecker,其类型须与导入的类型一致
+     */
+    public void setDuplicateChecker(DuplicateChecker<?> duplicateChecker) {
+        this.duplicateChecker = duplicateChecker;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> DuplicateChecker<T> getDuplicateChecker() {
+        if (duplicateChecker != null) {
+            duplicateChecker.reset();
+            return (DuplicateChecker<T>) duplicateChecker;
+        }
+        return allowDuplicate ? null : DuplicateChecker.exact();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (pkg != null) {
+            pkg.revert();
+        }
+    }
+
+}
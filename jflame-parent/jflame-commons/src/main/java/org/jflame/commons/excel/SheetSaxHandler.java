@@ -0,0 +1,162 @@
+package org.jflame.commons.excel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * xlsx工作表SAX解析处理器,逐行读取单元格值,不构建工作表对象.
+ * <p>
+ * 单元格值类型与{@link ExcelConvertUtils#getCellValue}一致:bool,double,date,string,空单元格为空字符串,
+ * 缺失的单元格为null.公式单元格取缓存的计算结果
+ * 
+ * @author zyc
+ */
+final class SheetSaxHandler extends DefaultHandler {
+
+    private final SharedStrings sharedStrings;
+    private final StylesTable styles;
+    private final boolean date1904;
+    private final int startRowIndex;
+    private final ObjIntConsumer<Object[]> rowConsumer;
+    /**
+     * 样式索引是否为日期格式
+     */
+    private final Map<Integer,Boolean> dateStyles = new HashMap<>();
+
+    private final List<Object> rowValues = new ArrayList<>();
+    private final StringBuilder valueText = new StringBuilder(64);
+    private int rowIndex = -1;
+    private int cellIndex;
+    private String cellType;
+    private String cellStyle;
+    private boolean hasValue;
+    private boolean inValue;
+
+    /**
+     * 构造函数
+     * 
+     * @param sharedStrings 共享字符串表
+     * @param styles 样式表
+     * @param date1904 工作簿是否使用1904日期系统
+     * @param startRowIndex 开始行索引,之前的行不解析单元格
+     * @param rowConsumer 行处理,参数为按列索引存放的单元格值和行索引
+     */
+    SheetSaxHandler(SharedStrings sharedStrings, StylesTable styles, boolean date1904, int startRowIndex,
+            ObjIntConsumer<Object[]> rowConsumer) {
+        this.sharedStrings = sharedStrings;
+        this.styles = styles;
+        this.date1904 = date1904;
+        this.startRowIndex = startRowIndex;
+        this.rowConsumer = rowConsumer;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        switch (localName) {
+            case "row":
+                String rowRef = attributes.getValue("r");
+                rowIndex = rowRef == null ? rowIndex + 1 : Integer.parseInt(rowRef) - 1;
+                cellIndex = -1;
+                rowValues.clear();
+                break;
+            case "c":
+                String cellRef = attributes.getValue("r");
+                cellIndex = cellRef == null ? cellIndex + 1 : new CellReference(cellRef).getCol();
+                cellType = attributes.getValue("t");
+                cellStyle = attributes.getValue("s");
+                hasValue = false;
+                valueText.setLength(0);
+                break;
+            case "v":
+                hasValue = inValue = true;
+                break;
+            case "t":
+                // 行内字符串<is><t>
+                if ("inlineStr".equals(cellType)) {
+                    hasValue = inValue = true;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        if (inValue) {
+            valueText.append(ch, start, length);
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        switch (localName) {
+            case "v":
+            case "t":
+                inValue = false;
+                break;
+            case "c":
+                if (rowIndex >= startRowIndex) {
+                    while (rowValues.size() <= cellIndex) {
+                        rowValues.add(null);
+                    }
+                    rowValues.set(cellIndex, getCellValue());
+                }
+                break;
+            case "row":
+                if (rowIndex >= startRowIndex) {
+                    rowConsumer.accept(rowValues.toArray(), rowIndex);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private Object getCellValue() {
+        if (!hasValue) {
+            return StringUtils.EMPTY;
+        }
+        String text = valueText.toString();
+        if (cellType == null || "n".equals(cellType)) {
+            double numericValue = Double.parseDouble(text);
+            if (isDateStyle() && DateUtil.isValidExcelDate(numericValue)) {
+                return DateUtil.getJavaDate(numericValue, date1904);
+            }
+            return numericValue;
+        }
+        switch (cellType) {
+            case "b":
+                return "1".equals(text);
+            case "s":
+                return sharedStrings.getItemAt(Integer.parseInt(text))
+                        .getString();
+            default:
+                // inlineStr,str(公式字符串结果),e(错误)
+                return text;
+        }
+    }
+
+    private boolean isDateStyle() {
+        if (cellStyle == null) {
+            return false;
+        }
+        return dateStyles.computeIfAbsent(Integer.valueOf(cellStyle), styleIndex -> {
+            XSSFCellStyle style = styles.getStyleAt(styleIndex);
+            return style != null && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+        });
+    }
+
+}
@@ -1,5 +1,7 @@
 package org.jflame.commons.excel.handler;
 
+import java.util.Arrays;
+
 import org.apache.poi.ss.usermodel.Row;
 
 import org.jflame.commons.excel.ExcelConvertUtils;
@@ -22,4 +24,16 @@ public class ArrayRowReader implements IExcelRowReader<Object[]> {
         return newObjs;
     }
 
+    /**
+     * 与{@link #extractRow(Row)}一致,从第一个存在的单元格开始
+     */
+    @Override
+    public Object[] extractRow(Object[] cellValues, int rowIndex) {
+        firstIndex = 0;
+        while (firstIndex < cellValues.length && cellValues[firstIndex] == null) {
+            firstIndex++;
+        }
+        return Arrays.copyOfRange(cellValues, firstIndex, cellValues.length);
+    }
+
 }
@@ -1,12 +1,13 @@
 package org.jflame.commons.excel.handler;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.List;
+import java.util.function.Supplier;
 
 import org.jflame.commons.excel.ExcelAccessException;
 import org.jflame.commons.excel.ExcelColumnProperty;
 import org.jflame.commons.excel.ExcelConvertUtils;
 import org.jflame.commons.exception.ConvertException;
+import org.jflame.commons.reflect.PropertyAccessors;
 
 import org.apache.poi.ss.usermodel.Row;
 
@@ -19,6 +20,7 @@ public class EntityRowReader<T> implements IExcelRowReader<T> {
 
     private List<ExcelColumnProperty> columnPropertys = null;
     private Class<T> entityClazz;
+    private Supplier<T> instantiator;
     private int propertySize;
     private Object currentValue;
     private ExcelColumnProperty currentProperty;
@@ -35,14 +37,19 @@ public class EntityRowReader<T> implements IExcelRowReader<T> {
         this.columnPropertys = columnPropertys;
         this.entityClazz = dataClass;
         propertySize = columnPropertys.size();
+        try {
+            instantiator = PropertyAccessors.constructor(dataClass);
+        } catch (IllegalArgumentException e) {
+            throw new ExcelAccessException("failed to new instance for " + entityClazz, e);
+        }
     }
 
     @Override
     public T extractRow(Row excelSheetRow) {
         T newObj = null;
         try {
-            newObj = entityClazz.newInstance();
-        } catch (InstantiationException | IllegalAccessException e) {
+            newObj = instantiator.get();
+        } catch (IllegalStateException e) {
             throw new ExcelAccessException("failed to new instance for " + entityClazz, e);
         }
 
@@ -56,19 +63,49 @@ public class EntityRowReader<T> implements IExcelRowReader<T> {
                 currentValue = ExcelConvertUtils.extractValueFromCell(currentProperty,
                         excelSheetRow.getCell(cellIndex));
                 if (currentValue != null) {
-                    currentProperty.getPropertyDescriptor()
-                            .getWriteMethod()
-                            .invoke(newObj, currentValue);
+                    currentProperty.setValue(newObj, currentValue);
                 }
             }
         } catch (ConvertException e) {
             String errMsg = String.format("第%d行,'%s'值转换失败", excelSheetRow.getRowNum(), currentProperty.getName());
             throw new ExcelAccessException(errMsg, e);
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+        } catch (Exception e) {
             String errMsg = String.format("第%d行,'%s'赋值失败", excelSheetRow.getRowNum(), currentProperty.getName());
             throw new ExcelAccessException(errMsg, e);
         }
         return newObj;
     }
 
+    @Override
+    public T extractRow(Object[] cellValues, int rowIndex) {
+        T newObj = null;
+        try {
+            newObj = instantiator.get();
+        } catch (IllegalStateException e) {
+            throw new ExcelAccessException("failed to new instance for " + entityClazz, e);
+        }
+
+        currentValue = null;
+        int cellSize = Math.min(propertySize, cellValues.length);
+        try {
+            for (int cellIndex = 0; cellIndex < cellSize; cellIndex++) {
+                if (cellValues[cellIndex] == null) {
+                    continue;
+                }
+                currentProperty = columnPropertys.get(cellIndex);
+                currentValue = ExcelConvertUtils.convertCellValue(currentProperty, cellValues[cellIndex]);
+                if (currentValue != null) {
+                    currentProperty.setValue(newObj, currentValue);
+                }
+            }
+        } catch (ConvertException e) {
+            String errMsg = String.format("第%d行,'%s'值转换失败", rowIndex, currentProperty.getName());
+            throw new ExcelAccessException(errMsg, e);
+        } catch (Exception e) {
+            String errMsg = String.format("第%d行,'%s'赋值失败", rowIndex, currentProperty.getName());
+            throw new ExcelAccessException(errMsg, e);
+        }
+        return newObj;
+    }
+
 }
@@ -1,6 +1,5 @@
 package org.jflame.commons.excel.handler;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 
 import org.jflame.commons.excel.ExcelAccessException;
@@ -46,9 +45,7 @@ public class EntityRowWriter<T> implements IExcelRowWriter<T> {
                 currentCell = excelSheetRow.createCell(cellIndex);
                 currentProperty = columnPropertys.get(cellIndex);
 
-                currentValue = currentProperty.getPropertyDescriptor()
-                        .getReadMethod()
-                        .invoke(rowData);
+                currentValue = currentProperty.getValue(rowData);
                 if (currentValue == null || StringUtils.EMPTY.equals(currentValue)) {
                     // currentCell.setCellType(CellType.BLANK);
                     continue;
@@ -64,7 +61,9 @@ public class EntityRowWriter<T> implements IExcelRowWriter<T> {
                     currentCell.setCellValue(stringValue);
                 }
             }
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+        } catch (ExcelAccessException e) {
+            throw e;
+        } catch (Exception e) {
             throw new ExcelAccessException(e);
         }
 
@@ -12,4 +12,13 @@ public interface IExcelRowReader<T> {
      * @return 对象数据
      */
     public T extractRow(Row excelSheetRow);
+
+    /**
+     * 已读取的单元格值转对象数据类型,用于流式读取
+     * 
+     * @param cellValues 按列索引存放的单元格值,缺失的单元格为null,值类型见ExcelConvertUtils.getCellValue
+     * @param rowIndex excel行索引
+     * @return 对象数据
+     */
+    public T extractRow(Object[] cellValues, int rowIndex);
 }
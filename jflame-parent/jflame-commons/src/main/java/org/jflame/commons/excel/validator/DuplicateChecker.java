@@ -0,0 +1,209 @@
+package org.jflame.commons.excel.validator;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 导入数据的重复检查,由keyExtractor取得每行数据的键判断是否重复.键须正确实现equals和hashCode,多个属性组合可返回Arrays.asList(...).
+ * <ul>
+ * <li>精确模式:HashMap记录每个键首次出现的行号,发现重复即可报告;</li>
+ * <li>布隆过滤模式:适用于大文件,第一遍只将键加入布隆过滤器,过滤器判断可能已存在的键才保存.全部读取后需按原顺序再遍历一次调用
+ * {@link #confirm(Object, int)},只对疑似的键精确比较,一次报告所有重复行.内存占用为过滤器位数组加疑似的键.</li>
+ * </ul>
+ * 每次导入前调用{@link #reset()},非线程安全
+ *
+ * @author zyc
+ */
+public class DuplicateChecker<T> {
+
+    private final Function<? super T,?> keyExtractor;
+    private final int expectedRows;
+    private final double fpp;
+    // 精确模式为所有键,布隆过滤模式为确认阶段的疑似键
+    private Map<Object,Integer> firstLines = new HashMap<>();
+    private BloomFilter bloomFilter;
+    private Set<Object> candidateKeys;
+    private Map<Integer,Integer> duplicateLines = new LinkedHashMap<>();
+
+    private DuplicateChecker(Function<? super T,?> keyExtractor, int expectedRows, double fpp) {
+        if (keyExtractor == null) {
+            throw new IllegalArgumentException("keyExtractor not be null");
+        }
+        this.keyExtractor = keyExtractor;
+        this.expectedRows = expectedRows;
+        this.fpp = fpp;
+        reset();
+    }
+
+    /**
+     * 精确模式,以对象本身为键,需重写equals和hashCode
+     *
+     * @return DuplicateChecker
+     */
+    public static <T> DuplicateChecker<T> exact() {
+        return exact(Function.identity());
+    }
+
+    /**
+     * 精确模式
+     *
+     * @param keyExtractor 取得行数据键的函数
+     * @return DuplicateChecker
+     */
+    public static <T> DuplicateChecker<T> exact(Function<? super T,?> keyExtractor) {
+        return new DuplicateChecker<>(keyExtractor, 0, 0);
+    }
+
+    /**
+     * 布隆过滤模式
+     *
+     * @param keyExtractor 取得行数据键的函数
+     * @param expectedRows 预计行数,超出后误判率上升,只影响需确认的键数量不影响结果
+     * @param fpp 误判率,如0.01
+     * @return DuplicateChecker
+     */
+    public static <T> DuplicateChecker<T> bloom(Function<? super T,?> keyExtractor, int expectedRows, double fpp) {
+        if (expectedRows <= 0 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("expectedRows must be greater than 0 and fpp must be in (0,1)");
+        }
+        return new DuplicateChecker<>(keyExtractor, expectedRows, fpp);
+    }
+
+    /**
+     * 清除已记录的数据,开始新的导入
+     */
+    public void reset() {
+        firstLines = new HashMap<>();
+        duplicateLines = new LinkedHashMap<>();
+        if (!isExact()) {
+            bloomFilter = new BloomFilter(expectedRows, fpp);
+            candidateKeys = new HashSet<>();
+        }
+    }
+
+    /**
+     * 是否精确模式
+     */
+    public boolean isExact() {
+        return expectedRows == 0;
+    }
+
+    /**
+     * 检查一行数据.精确模式返回与之重复的首次出现行号;布隆过滤模式只记录疑似的键,总是返回-1
+     *
+     * @param rowData 行数据
+     * @param lineNumber 行号
+     * @return 首次出现的行号,不重复返回-1
+     */
+    public int check(T rowData, int lineNumber) {
+        Object key = keyExtractor.apply(rowData);
+        if (isExact()) {
+            Integer firstLine = firstLines.putIfAbsent(key, lineNumber);
+            if (firstLine != null) {
+                duplicateLines.put(lineNumber, firstLine);
+                return firstLine;
+            }
+        } else if (!bloomFilter.put(key)) {
+            candidateKeys.add(key);
+        }
+        return -1;
+    }
+
+    /**
+     * 是否需要按原顺序再遍历一次数据调用{@link #confirm(Object, int)}
+     */
+    public boolean needConfirm() {
+        return !isExact() && !candidateKeys.isEmpty();
+    }
+
+    /**
+     * 布隆过滤模式的确认阶段,按第一遍的顺序传入每行数据
+     *
+     * @param rowData 行数据
+     * @param lineNumber 行号
+     */
+    public void confirm(T rowData, int lineNumber) {
+        Object key = keyExtractor.apply(rowData);
+        if (candidateKeys.contains(key)) {
+            Integer firstLine = firstLines.putIfAbsent(key, lineNumber);
+            if (firstLine != null) {
+                duplicateLines.put(lineNumber, firstLine);
+            }
+        }
+    }
+
+    /**
+     * 返回已发现的重复行号及与之重复的首次出现行号
+     *
+     * @return Map&lt;重复行号,首次出现行号&gt;
+     */
+    public Map<Integer,Integer> getDuplicateLines() {
+        return duplicateLines;
+    }
+
+    /**
+     * 有重复数据时抛出异常
+     *
+     * @throws DuplicateDataException
+     */
+    public void throwIfDuplicated() throws DuplicateDataException {
+        if (!duplicateLines.isEmpty()) {
+            throw new DuplicateDataException(new LinkedHashMap<>(duplicateLines));
+        }
+    }
+
+    /**
+     * 布隆过滤器,使用两个哈希值组合出k个位置
+     */
+    private static final class BloomFilter {
+
+        private final long[] bits;
+        private final long bitSize;
+        private final int hashCount;
+
+        BloomFilter(int expectedRows, double fpp) {
+            long m = (long) (-expectedRows * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            m = Math.max(64, m);
+            bits = new long[(int) ((m + 63) >>> 6)];
+            bitSize = (long) bits.length << 6;
+            hashCount = Math.max(1, (int) Math.round((double) m / expectedRows * Math.log(2)));
+        }
+
+        /**
+         * 加入键
+         *
+         * @return 键之前一定不存在返回true,可能已存在返回false
+         */
+        boolean put(Object key) {
+            long hash = mix(key == null ? 0 : key.hashCode());
+            int hash1 = (int) hash;
+            int hash2 = (int) (hash >>> 32);
+            boolean changed = false;
+            for (int i = 1; i <= hashCount; i++) {
+                int combined = hash1 + i * hash2;
+                long index = (combined & Integer.MAX_VALUE) % bitSize;
+                long mask = 1L << index;
+                int word = (int) (index >>> 6);
+                if ((bits[word] & mask) == 0) {
+                    bits[word] |= mask;
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package org.jflame.commons.excel.validator;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.jflame.commons.excel.ExcelAccessException;
+
+/**
+ * 导入数据重复异常
+ *
+ * @author zyc
+ */
+public class DuplicateDataException extends ExcelAccessException {
+
+    private static final long serialVersionUID = 2816034329744181536L;
+    /**
+     * 异常信息中最多列出的重复行数
+     */
+    private static final int MAX_MESSAGE_LINES = 10;
+
+    private final Map<Integer,Integer> duplicateLines;
+
+    /**
+     * 构造函数.
+     *
+     * @param duplicateLines 重复的行号及与之重复的首次出现行号,按行号顺序
+     */
+    public DuplicateDataException(Map<Integer,Integer> duplicateLines) {
+        super(buildErrMsg(duplicateLines));
+        this.duplicateLines = Collections.unmodifiableMap(duplicateLines);
+    }
+
+    /**
+     * 返回重复的行号及与之重复的首次出现行号
+     *
+     * @return Map&lt;重复行号,首次出现行号&gt;
+     */
+    public Map<Integer,Integer> getDuplicateLines() {
+        return duplicateLines;
+    }
+
+    private static String buildErrMsg(Map<Integer,Integer> duplicateLines) {
+        StringBuilder err = new StringBuilder("重复数据 ");
+        int i = 0;
+        for (Map.Entry<Integer,Integer> entry : duplicateLines.entrySet()) {
+            if (i++ == MAX_MESSAGE_LINES) {
+                err.append("等")
+                        .append(duplicateLines.size())
+                        .append("行");
+                break;
+            }
+            err.append('第')
+                    .append(entry.getKey())
+                    .append("行(与第")
+                    .append(entry.getValue())
+                    .append("行重复),");
+        }
+        return err.toString();
+    }
+}
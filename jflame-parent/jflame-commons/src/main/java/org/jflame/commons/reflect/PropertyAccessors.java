@@ -0,0 +1,163 @@
+package org.jflame.commons.reflect;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.ClassUtils;
+
+/**
+ * 使用LambdaMetafactory将getter,setter和无参构造函数编译为函数接口,调用开销接近直接调用,用于需要逐行读写属性的场景.
+ * <p>
+ * 类或方法非public,或相关类型对本类的类加载器不可见时,退回到反射调用.生成getter,setter的代价较高,调用方应缓存返回的函数
+ *
+ * @author zyc
+ */
+public final class PropertyAccessors {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private PropertyAccessors() {
+    }
+
+    /**
+     * 生成属性读取函数
+     *
+     * @param readMethod getter方法
+     * @return 参数为bean,返回属性值的函数
+     */
+    @SuppressWarnings("unchecked")
+    public static Function<Object,Object> getter(final Method readMethod) {
+        Class<?> beanClass = readMethod.getDeclaringClass();
+        if (isCompilable(readMethod, beanClass, readMethod.getReturnType())) {
+            try {
+                MethodHandle handle = LOOKUP.unreflect(readMethod);
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply", MethodType.methodType(Function.class),
+                        MethodType.methodType(Object.class, Object.class), handle,
+                        MethodType.methodType(ClassUtils.primitiveToWrapper(readMethod.getReturnType()), beanClass));
+                return (Function<Object,Object>) site.getTarget()
+                        .invokeExact();
+            } catch (Throwable e) {
+                // 退回反射
+            }
+        }
+        return bean -> invoke(readMethod, bean);
+    }
+
+    /**
+     * 生成属性设置函数.基本类型属性设置null值将抛出异常
+     *
+     * @param writeMethod setter方法
+     * @return 参数为bean和属性值的函数
+     */
+    @SuppressWarnings("unchecked")
+    public static BiConsumer<Object,Object> setter(final Method writeMethod) {
+        Class<?> beanClass = writeMethod.getDeclaringClass();
+        Class<?> paramClass = writeMethod.getParameterTypes()[0];
+        if (isCompilable(writeMethod, beanClass, paramClass)) {
+            try {
+                MethodHandle handle = LOOKUP.unreflect(writeMethod);
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+                        MethodType.methodType(BiConsumer.class),
+                        MethodType.methodType(void.class, Object.class, Object.class), handle,
+                        MethodType.methodType(void.class, beanClass, ClassUtils.primitiveToWrapper(paramClass)));
+                return (BiConsumer<Object,Object>) site.getTarget()
+                        .invokeExact();
+            } catch (Throwable e) {
+                // 退回反射
+            }
+        }
+        return (bean, value) -> invoke(writeMethod, bean, value);
+    }
+
+    /**
+     * 返回调用无参构造函数创建实例的函数,按类型缓存
+     *
+     * @param clazz 类型
+     * @return Supplier
+     * @throws IllegalArgumentException 类型没有无参构造函数
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Supplier<T> constructor(final Class<T> clazz) {
+        return (Supplier<T>) CONSTRUCTORS.get(clazz);
+    }
+
+    private static final ClassValue<Supplier<?>> CONSTRUCTORS = new ClassValue<Supplier<?>>() {
+
+        @Override
+        protected Supplier<?> computeValue(Class<?> clazz) {
+            final Constructor<?> ctor;
+            try {
+                ctor = clazz.getDeclaredConstructor();
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("failed to new instance for " + clazz, e);
+            }
+            if (Modifier.isPublic(ctor.getModifiers()) && !Modifier.isAbstract(clazz.getModifiers())
+                    && isCompilable(null, clazz)) {
+                try {
+                    MethodHandle handle = LOOKUP.unreflectConstructor(ctor);
+                    CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get",
+                            MethodType.methodType(Supplier.class), MethodType.methodType(Object.class), handle,
+                            MethodType.methodType(clazz));
+                    return (Supplier<?>) site.getTarget()
+                            .invokeExact();
+                } catch (Throwable e) {
+                    // 退回反射
+                }
+            }
+            return () -> {
+                try {
+                    return ctor.newInstance();
+                } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+                    throw new IllegalStateException("failed to new instance for " + clazz, e);
+                }
+            };
+        }
+    };
+
+    /**
+     * 方法及所在类为public,且涉及的类型对本类加载器可见
+     */
+    private static boolean isCompilable(Method method, Class<?>... types) {
+        if (method != null && !Modifier.isPublic(method.getModifiers())) {
+            return false;
+        }
+        for (Class<?> type : types) {
+            if (type.isPrimitive()) {
+                continue;
+            }
+            if (!Modifier.isPublic(type.getModifiers())) {
+                return false;
+            }
+            try {
+                if (Class.forName(type.getName(), false, PropertyAccessors.class.getClassLoader()) != type) {
+                    return false;
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object invoke(Method method, Object bean, Object... args) {
+        try {
+            return method.invoke(bean, args);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            Throwable target = e.getTargetException();
+            throw target instanceof RuntimeException ? (RuntimeException) target : new IllegalStateException(target);
+        }
+    }
+
+}
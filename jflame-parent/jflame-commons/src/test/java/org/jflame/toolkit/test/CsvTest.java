@@ -1,21 +1,40 @@
 package org.jflame.toolkit.test;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.jflame.commons.csv.CsvAccessException;
+import org.jflame.commons.csv.CsvReader;
 import org.jflame.commons.csv.CsvWriter;
+import org.jflame.commons.excel.validator.DuplicateChecker;
+import org.jflame.commons.excel.validator.DuplicateDataException;
+import org.jflame.commons.excel.validator.IExcelValidator;
+import org.jflame.commons.reflect.BeanHelper;
+import org.jflame.commons.reflect.PropertyAccessors;
 import org.jflame.commons.util.MathHelper;
 import org.jflame.toolkit.test.entity.Cat;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
 public class CsvTest {
 
     @Test
@@ -43,4 +62,143 @@ public class CsvTest {
         System.out.println("耗时:" + t);
     }
 
+    /**
+     * 实体写入csv后读回,检查属性值
+     */
+    @Test
+    public void testReadEntity() throws IOException {
+        final int max = 20000;
+        List<Cat> pets = new ArrayList<>(max);
+        for (int i = 0; i < max; i++) {
+            Cat p = new Cat();
+            p.setName("猫咪名" + i);
+            p.setStreak(i % 2 == 0 ? "灰白相间" : "纯白");
+            p.setWeight(i + 20);
+            pets.add(p);
+        }
+        Path csvFile = Files.createTempFile("cat", ".csv");
+        CsvWriter.writeCsv(csvFile.toString(), pets);
+
+        IExcelValidator<Cat> noopValidator = (entity, rowIndex) -> {
+        };
+        List<Cat> results;
+        try (CsvReader reader = new CsvReader(csvFile.toString())) {
+            results = reader.readEntityData(Cat.class, noopValidator);
+        }
+        Files.delete(csvFile);
+        assertEquals(max, results.size());
+        for (int i = 0; i < max; i++) {
+            assertEquals(pets.get(i)
+                    .getName(),
+                    results.get(i)
+                            .getName());
+            assertEquals(pets.get(i)
+                    .getWeight(),
+                    results.get(i)
+                            .getWeight(),
+                    0);
+        }
+
+        // 读取实体时使用的预编译setter
+        Method writeMethod = BeanHelper.getPropertyDescriptor(Cat.class, "name")
+                .getWriteMethod();
+        BiConsumer<Object,Object> setter = PropertyAccessors.setter(writeMethod);
+        Cat cat = new Cat();
+        setter.accept(cat, "cat");
+        assertEquals("cat", cat.getName());
+    }
+
+    @Test
+    public void testDuplicateCheck() throws IOException {
+        final int max = 10000;
+        List<Cat> pets = new ArrayList<>(max);
+        for (int i = 0; i < max; i++) {
+            Cat p = new Cat();
+            // 第5000行起每1000行重复一次第1行
+            p.setName("猫咪名" + (i >= 5000 && i % 1000 == 0 ? 0 : i));
+            pets.add(p);
+        }
+        Path csvFile = Files.createTempFile("cat", ".csv");
+        CsvWriter.writeCsv(csvFile.toString(), pets);
+        IExcelValidator<Cat> noopValidator = (entity, rowIndex) -> {
+        };
+        Map<Integer,Integer> expected = new LinkedHashMap<>();
+        // 标题行为第1行
+        for (int line = 5002; line <= max + 1; line += 1000) {
+            expected.put(line, 2);
+        }
+
+        try (CsvReader reader = new CsvReader(csvFile.toString())) {
+            reader.setDuplicateChecker(DuplicateChecker.exact(Cat::getName));
+            reader.readEntityData(Cat.class, noopValidator);
+            fail("duplicate not found");
+        } catch (DuplicateDataException e) {
+            assertEquals(Collections.singletonMap(5002, 2), e.getDuplicateLines());
+        }
+        try (CsvReader reader = new CsvReader(csvFile.toString())) {
+            reader.setDuplicateChecker(DuplicateChecker.bloom(Cat::getName, max, 0.01));
+            reader.readEntityData(Cat.class, noopValidator);
+            fail("duplicate not found");
+        } catch (DuplicateDataException e) {
+            assertEquals(expected, e.getDuplicateLines());
+        } finally {
+            Files.delete(csvFile);
+        }
+    }
+
+
+    @Test
+    public void testParallelStream() throws IOException {
+        StringBuilder csv = new StringBuilder("name,remark\r\n");
+        for (int i = 0; i < 5000; i++) {
+            csv.append("猫咪名")
+                    .append(i)
+                    .append(i % 3 == 0 ? ",\"多行,\r\n\"\"备注\"\"\"\r\n" : ",备注\r\n");
+        }
+        Path csvFile = Files.createTempFile("cat", ".csv");
+        Files.write(csvFile, csv.toString()
+                .getBytes(StandardCharsets.UTF_8));
+        try {
+            List<String[]> expected;
+            try (CsvReader reader = new CsvReader(csvFile.toString())) {
+                reader.readHeaders();
+                expected = reader.stream()
+                        .collect(Collectors.toList());
+            }
+            assertEquals(5000, expected.size());
+            assertEquals("多行,\r\n\"备注\"", expected.get(0)[1]);
+            List<String[]> actual;
+            try (CsvReader reader = new CsvReader(csvFile.toString());
+                    Stream<String[]> records = reader.parallelStream(true, true, 4096)) {
+                actual = records.collect(Collectors.toList());
+                assertEquals("remark", reader.getHeaders()[1]);
+            }
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertArrayEquals(expected.get(i), actual.get(i));
+            }
+
+            List<Cat> pets = new ArrayList<>();
+            for (int i = 0; i < 3000; i++) {
+                Cat p = new Cat();
+                p.setName("猫咪名" + i);
+                p.setWeight(i % 10 + 20);
+                p.setHasCert(i % 3 == 0);
+                p.setCreateDate(LocalDateTime.now());
+                pets.add(p);
+            }
+            CsvWriter.writeCsv(csvFile.toString(), pets);
+            try (CsvReader reader = new CsvReader(csvFile.toString());
+                    Stream<Cat> cats = reader.parallelEntityStream(Cat.class, (entity, rowIndex) -> {
+                    }, true)) {
+                List<Cat> results = cats.collect(Collectors.toList());
+                assertEquals(pets.size(), results.size());
+                assertEquals("猫咪名2999", results.get(2999)
+                        .getName());
+            }
+        } finally {
+            Files.delete(csvFile);
+        }
+    }
+
 }
@@ -1,19 +1,31 @@
 package org.jflame.toolkit.test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.jflame.commons.excel.ExcelAccessException;
 import org.jflame.commons.excel.ExcelCreator;
 import org.jflame.commons.excel.ExcelImportor;
+import org.jflame.commons.excel.ExcelStreamImportor;
 import org.jflame.commons.excel.validator.ExcelValidationException;
+import org.jflame.commons.excel.validator.IExcelValidator;
 import org.jflame.commons.util.MathHelper;
 import org.jflame.toolkit.test.entity.Cat;
 
@@ -121,6 +133,156 @@ public class ExcelTest extends TestCase {
         }
     }
 
+    /**
+     * 流式导入与普通导入结果一致
+     * 
+     * @throws IOException
+     */
+    @org.junit.Test
+    public void testStreamImport() throws IOException {
+        File f = File.createTempFile("cat", ".xlsx");
+        List<Cat> pets = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Cat p = new Cat();
+            p.setAge(i);
+            p.setBirthday(new Date());
+            p.setMoney(MathHelper.multiplyDecimal(i, 2.3f, 2));
+            p.setName("猫咪名" + i);
+            p.setStreak(i % 2 == 0 ? "灰白相间" : "纯白");
+            p.setWeight(i + 20);
+            p.setHasCert(i % 3 == 0);
+            p.setCreateDate(LocalDateTime.now());
+            pets.add(p);
+        }
+        try (ExcelCreator creator = new ExcelCreator(); FileOutputStream out = new FileOutputStream(f)) {
+            creator.fillEntityData(pets);
+            creator.write(out);
+        }
+
+        IExcelValidator<Cat> noopValidator = (entity, rowIndex) -> {
+        };
+        List<String> expected = new ArrayList<>();
+        try (ExcelImportor xlsImport = new ExcelImportor(f)) {
+            for (Cat pet : xlsImport.importSheet(Cat.class, noopValidator)) {
+                expected.add(pet.toString());
+            }
+        }
+        List<String> actual = new ArrayList<>();
+        List<Integer> batchSizes = new ArrayList<>();
+        try (ExcelStreamImportor xlsImport = new ExcelStreamImportor(f)) {
+            int count = xlsImport.importSheet(0, Cat.class, noopValidator, 300, batch -> {
+                batchSizes.add(batch.size());
+                for (Cat pet : batch) {
+                    actual.add(pet.toString());
+                }
+            });
+            assertEquals(pets.size(), count);
+        }
+        assertEquals(expected, actual);
+        assertEquals(Arrays.asList(300, 300, 300, 100), batchSizes);
+        f.delete();
+    }
+
+    /**
+     * 预取分批导出,超过行数拆分sheet;并行导出多个文件打包zip
+     * 
+     * @throws IOException
+     */
+    @org.junit.Test
+    public void testPrefetchBatchExport() throws IOException {
+        final int row = 100,max = 1050;
+        IntFunction<List<Cat>> fetcher = page -> {
+            List<Cat> pets = new ArrayList<>(row);
+            for (int i = (page - 1) * row; i < Math.min(page * row, max); i++) {
+                Cat p = new Cat();
+                p.setAge(i);
+                p.setName("猫咪名" + i);
+                pets.add(p);
+            }
+            return pets;
+        };
+        File f = File.createTempFile("cat", ".xlsx");
+        try (ExcelCreator creator = new ExcelCreator(); FileOutputStream out = new FileOutputStream(f)) {
+            creator.setMaxRowsPerSheet(501);
+            creator.batchFillEntityData(null, max, row, fetcher, 2);
+            assertEquals(3, creator.getWorkbook()
+                    .getNumberOfSheets());
+            creator.write(out);
+        }
+        IExcelValidator<Cat> noopValidator = (entity, rowIndex) -> {
+        };
+        List<String> names = new ArrayList<>();
+        try (ExcelStreamImportor xlsImport = new ExcelStreamImportor(f)) {
+            for (int i = 0; i < 3; i++) {
+                xlsImport.importSheet(i, Cat.class, noopValidator, pet -> names.add(pet.getName()));
+            }
+        }
+        assertEquals(max, names.size());
+        for (int i = 0; i < max; i++) {
+            assertEquals("猫咪名" + i, names.get(i));
+        }
+        f.delete();
+
+        ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+        ExcelCreator.exportZip(null, max, row, 300, fetcher, 3, "cat", zipBytes);
+        List<String> entryNames = new ArrayList<>();
+        try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(zipBytes.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zipIn.getNextEntry()) != null) {
+                entryNames.add(entry.getName());
+            }
+        }
+        assertEquals(Arrays.asList("cat_1.xlsx", "cat_2.xlsx", "cat_3.xlsx", "cat_4.xlsx"), entryNames);
+    }
+
+    /**
+     * 并行导出失败时等待其他任务结束并删除临时文件
+     * 
+     * @throws IOException
+     */
+    @org.junit.Test
+    public void testExportZipCleanup() throws IOException {
+        final int row = 100;
+        Path tmpDir = Paths.get(System.getProperty("java.io.tmpdir"));
+        IntFunction<List<Cat>> fetcher = page -> {
+            if (page == 1) {
+                throw new IllegalStateException("fetch failed");
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                // 取消后继续完成写入
+            }
+            List<Cat> pets = new ArrayList<>(row);
+            for (int i = 0; i < row; i++) {
+                Cat p = new Cat();
+                p.setName("猫咪名" + i);
+                pets.add(p);
+            }
+            return pets;
+        };
+        long before = countTmpExcel(tmpDir);
+        try {
+            ExcelCreator.exportZip(null, 1200, row, 300, fetcher, 4, "cat", new ByteArrayOutputStream());
+            fail("应抛出导出异常");
+        } catch (ExcelAccessException e) {
+            assertEquals("fetch failed", e.getCause()
+                    .getMessage());
+        }
+        assertEquals(before, countTmpExcel(tmpDir));
+    }
+
+    private long countTmpExcel(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> {
+                String name = p.getFileName()
+                        .toString();
+                return name.startsWith("excel") && name.endsWith(".xlsx");
+            })
+                    .count();
+        }
+    }
+
     /**
      * 实体类导出到文件流
      * 
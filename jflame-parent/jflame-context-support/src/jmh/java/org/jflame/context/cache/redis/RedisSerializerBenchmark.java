@@ -0,0 +1,91 @@
+package org.jflame.context.cache.redis;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import org.jflame.test.Pet;
+
+/**
+ * redis值序列化器对比:json,二进制,二进制+deflate压缩的序列化/反序列化吞吐量.
+ * <p>
+ * 运行: mvn -P benchmark -pl jflame-context-support test-compile exec:java -Dexec.args="RedisSerializerBenchmark"
+ *
+ * @author zyc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisSerializerBenchmark {
+
+    @Param({ "json","binary","binary+deflate" })
+    private String serializerName;
+
+    private RedisSerializer<Object> serializer;
+    private ArrayList<Pet> pets;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        pets = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Pet pet = new Pet("pet-" + i, i % 20, i % 2 == 0 ? "black" : "white", new Date(),
+                    new BigDecimal("300." + i));
+            pet.setWeight(i * 1.5);
+            pets.add(pet);
+        }
+        if ("json".equals(serializerName)) {
+            serializer = new GenericJackson2JsonRedisSerializer();
+        } else {
+            BinaryRedisSerializer binary = new BinaryRedisSerializer();
+            binary.addAllowedClasses("org.jflame.test.*");
+            if ("binary".equals(serializerName)) {
+                binary.setCompressor(null);
+            }
+            serializer = binary;
+        }
+        bytes = serializer.serialize(pets);
+    }
+
+    /**
+     * 序列化结果字节数,随吞吐量一起输出
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+
+        public long payloadBytes;
+    }
+
+    @Benchmark
+    public byte[] serialize(PayloadSize size) {
+        byte[] result = serializer.serialize(pets);
+        size.payloadBytes = result.length;
+        return result;
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(bytes);
+    }
+
+}
@@ -0,0 +1,289 @@
+package org.jflame.context.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * 进程内有界缓存,按容量(LRU)和存活时间淘汰.
+ * <p>
+ * 内部分段加锁,每段为一个按访问顺序排列的LinkedHashMap,超出段容量时淘汰最久未访问的条目.不缓存null值.
+ * <p>
+ * 每个键按哈希对应一个失效版本号,{@link #invalidate(Object)}时递增.从外部加载数据时先取版本号,加载后以
+ * {@link #putIfStamp(Object, Object, long)}放入,版本号比较与放入在段锁内完成,加载期间发生的失效不会被覆盖.
+ *
+ * @author zyc
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public class LocalCache<K,V> {
+
+    private static final int SEGMENT_COUNT = 16;
+    /**
+     * 失效版本号数量,低位与段序号一致,同一版本号的键在同一段内
+     */
+    private static final int STAMP_COUNT = 1024;
+
+    private final Segment<K,V>[] segments;
+    private final long ttlMillis;
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_COUNT);
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    private static final class CacheEntry<V> {
+
+        final V value;
+        final long expireAt;
+
+        CacheEntry(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Segment<K,V> extends LinkedHashMap<K,CacheEntry<V>> {
+
+        private final int capacity;
+        private final LongAdder evictionCount;
+
+        Segment(int capacity, LongAdder evictionCount) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictionCount = evictionCount;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K,CacheEntry<V>> eldest) {
+            if (size() > capacity) {
+                evictionCount.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @param maxSize 最大条目数
+     * @param ttlMillis 条目存活时间,单位毫秒.小于等于0表示不按时间淘汰
+     */
+    @SuppressWarnings("unchecked")
+    public LocalCache(int maxSize, long ttlMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be greater than 0");
+        }
+        this.ttlMillis = ttlMillis;
+        int segmentCapacity = Math.max(1, (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        segments = (Segment<K,V>[]) new Segment<?,?>[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment<>(segmentCapacity, evictionCount);
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private Segment<K,V> segmentFor(Object key) {
+        return segments[hash(key) & (SEGMENT_COUNT - 1)];
+    }
+
+    /**
+     * 获取缓存值,不存在或已过期返回null
+     *
+     * @param key
+     * @return
+     */
+    public V get(K key) {
+        V value = peek(key);
+        if (value == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        return value;
+    }
+
+    /**
+     * 获取缓存值但不计入命中统计,用于值为容器时由调用方按容器内的元素统计
+     *
+     * @param key
+     * @return 不存在或已过期返回null
+     * @see #recordHits(int)
+     * @see #recordMisses(int)
+     */
+    public V peek(K key) {
+        Segment<K,V> segment = segmentFor(key);
+        CacheEntry<V> entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+            if (entry != null && isExpired(entry)) {
+                segment.remove(key);
+                entry = null;
+            }
+        }
+        return entry == null ? null : entry.value;
+    }
+
+    public void recordHits(int count) {
+        hitCount.add(count);
+    }
+
+    public void recordMisses(int count) {
+        missCount.add(count);
+    }
+
+    /**
+     * 设置缓存值,value为null时删除
+     *
+     * @param key
+     * @param value
+     */
+    public void put(K key, V value) {
+        if (value == null) {
+            remove(key);
+            return;
+        }
+        Segment<K,V> segment = segmentFor(key);
+        CacheEntry<V> entry = newEntry(value);
+        synchronized (segment) {
+            segment.put(key, entry);
+        }
+    }
+
+    public void remove(K key) {
+        Segment<K,V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * 返回键当前的失效版本号
+     *
+     * @param key
+     * @return
+     */
+    public long stamp(K key) {
+        return stamps.get(hash(key) & (STAMP_COUNT - 1));
+    }
+
+    /**
+     * 键的失效版本号仍为stamp时放入值
+     *
+     * @param key
+     * @param value 值,为null时不放入
+     * @param stamp 加载数据前取得的版本号
+     * @return 是否放入
+     */
+    public boolean putIfStamp(K key, V value, long stamp) {
+        if (value == null) {
+            return false;
+        }
+        int h = hash(key);
+        Segment<K,V> segment = segments[h & (SEGMENT_COUNT - 1)];
+        CacheEntry<V> entry = newEntry(value);
+        synchronized (segment) {
+            if (stamps.get(h & (STAMP_COUNT - 1)) != stamp) {
+                return false;
+            }
+            segment.put(key, entry);
+        }
+        return true;
+    }
+
+    /**
+     * 键的失效版本号仍为stamp时,以原值(不存在或已过期为null)计算新值.函数在段锁内执行,返回原对象时不改变过期时间,返回null时删除
+     *
+     * @param key
+     * @param stamp 加载数据前取得的版本号
+     * @param remapping 计算新值的函数
+     * @return 是否执行了计算
+     */
+    public boolean computeIfStamp(K key, long stamp, BiFunction<? super K,? super V,? extends V> remapping) {
+        int h = hash(key);
+        Segment<K,V> segment = segments[h & (SEGMENT_COUNT - 1)];
+        synchronized (segment) {
+            if (stamps.get(h & (STAMP_COUNT - 1)) != stamp) {
+                return false;
+            }
+            CacheEntry<V> oldEntry = segment.get(key);
+            if (oldEntry != null && isExpired(oldEntry)) {
+                oldEntry = null;
+            }
+            V newValue = remapping.apply(key, oldEntry == null ? null : oldEntry.value);
+            if (newValue == null) {
+                segment.remove(key);
+            } else if (oldEntry == null || oldEntry.value != newValue) {
+                segment.put(key, newEntry(newValue));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 删除条目并递增键的失效版本号,使版本号变化前开始的加载结果不再放入
+     *
+     * @param key
+     */
+    public void invalidate(K key) {
+        int h = hash(key);
+        Segment<K,V> segment = segments[h & (SEGMENT_COUNT - 1)];
+        synchronized (segment) {
+            stamps.incrementAndGet(h & (STAMP_COUNT - 1));
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * 清空并递增所有失效版本号
+     */
+    public void clear() {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            synchronized (segments[i]) {
+                for (int j = i; j < STAMP_COUNT; j += SEGMENT_COUNT) {
+                    stamps.incrementAndGet(j);
+                }
+                segments[i].clear();
+            }
+        }
+    }
+
+    /**
+     * 当前条目数,包含已过期但还未清除的条目
+     *
+     * @return
+     */
+    public long size() {
+        long size = 0;
+        for (Segment<K,V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 获取缓存统计信息
+     *
+     * @return CacheStats
+     */
+    public CacheStats getStats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), size());
+    }
+
+    private CacheEntry<V> newEntry(V value) {
+        return new CacheEntry<>(value, ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE);
+    }
+
+    private boolean isExpired(CacheEntry<V> entry) {
+        return entry.expireAt != Long.MAX_VALUE && System.currentTimeMillis() >= entry.expireAt;
+    }
+
+}
@@ -0,0 +1,76 @@
+package org.jflame.context.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * 同一key的并发加载合并.同一时刻同一key只有一个线程执行加载,其他线程等待并共享其结果(包括异常).
+ * <p>
+ * 注:加载方法内不能再以相同key调用本对象,否则会死锁.
+ *
+ * @author zyc
+ * @param <K> 键类型
+ * @param <V> 结果类型
+ */
+public class SingleFlight<K,V> {
+
+    private final ConcurrentMap<K,CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * 执行加载,如果同一key已有加载进行中则等待其结果
+     *
+     * @param key 加载key
+     * @param loader 加载方法
+     * @return 加载结果
+     */
+    public V execute(K key, Supplier<? extends V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = calls.putIfAbsent(key, call);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    /**
+     * 判断key是否有加载进行中
+     *
+     * @param key
+     * @return
+     */
+    public boolean isInFlight(K key) {
+        return calls.containsKey(key);
+    }
+
+    private V await(CompletableFuture<V> inFlight) {
+        try {
+            return inFlight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+            throw new IllegalStateException("interrupted while waiting for in-flight load", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+}
@@ -0,0 +1,422 @@
+package org.jflame.context.cache.redis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * 带头部字节的二进制值序列化器,可替代默认的GenericJackson2JsonRedisSerializer.
+ * <p>
+ * 数据格式为:1字节头部 + 内容.头部高4位固定为0xB(UTF-8中不可能出现在首字节,可与旧的JSON数据区分),
+ * 低2位为内容编码(0:二进制,1:JSON),第3,4位为压缩方式(0:不压缩,1:Deflate).
+ * <ul>
+ * <li>可序列化(Serializable)且涉及的类都在白名单内的对象使用二进制编码,否则使用JSON编码.二进制编码默认为
+ * {@link AllowlistJdkSerializer},反序列化时拒绝白名单外的类,业务类需通过{@link #addAllowedClasses(String...)}加入白名单;</li>
+ * <li>编码后超过压缩阈值的内容进行压缩,可通过{@link #setCompressor(Compressor)}替换为LZ4等压缩实现,解压后大小有上限;</li>
+ * <li>数字不加头部,仍按JSON格式写入,以支持incr等命令;</li>
+ * <li>读取没有头部的数据时按旧的JSON格式反序列化,新旧数据可在切换期间共存.</li>
+ * </ul>
+ * 使用: {@code springCacheClient.setValueSerializer(new BinaryRedisSerializer());}
+ *
+ * @author zyc
+ */
+public class BinaryRedisSerializer implements RedisSerializer<Object> {
+
+    static final int MAGIC = 0xB0;
+    static final int MAGIC_MASK = 0xF0;
+    static final int CODEC_BINARY = 0;
+    static final int CODEC_JSON = 1;
+    static final int CODEC_MASK = 0x03;
+    static final int COMPRESS_NONE = 0;
+    static final int COMPRESS_SHIFT = 2;
+    static final int COMPRESS_MASK = 0x0C;
+
+    private static final byte[] EMPTY_ARRAY = new byte[0];
+
+    /**
+     * 压缩实现.解压的是从redis读取的数据,实现应限制解压后的大小
+     */
+    public interface Compressor {
+
+        /**
+         * 压缩方式标识,写入头部,取值1-3
+         *
+         * @return
+         */
+        int id();
+
+        byte[] compress(byte[] data);
+
+        byte[] decompress(byte[] data);
+    }
+
+    /**
+     * Deflate压缩,标识为1
+     */
+    public static class DeflateCompressor implements Compressor {
+
+        /**
+         * 默认解压后最大字节数,32M
+         */
+        public static final int DEFAULT_MAX_DECOMPRESSED_BYTES = 32 * 1024 * 1024;
+
+        private final int level;
+        private final int maxDecompressedBytes;
+
+        public DeflateCompressor() {
+            this(Deflater.BEST_SPEED);
+        }
+
+        /**
+         * @param level 压缩级别0-9
+         */
+        public DeflateCompressor(int level) {
+            this(level, DEFAULT_MAX_DECOMPRESSED_BYTES);
+        }
+
+        /**
+         * @param level 压缩级别0-9
+         * @param maxDecompressedBytes 解压后最大字节数,超过时抛出异常
+         */
+        public DeflateCompressor(int level, int maxDecompressedBytes) {
+            if (maxDecompressedBytes <= 0) {
+                throw new IllegalArgumentException("maxDecompressedBytes must be greater than 0");
+            }
+            this.level = level;
+            this.maxDecompressedBytes = maxDecompressedBytes;
+        }
+
+        @Override
+        public int id() {
+            return 1;
+        }
+
+        @Override
+        public byte[] compress(byte[] data) {
+            Deflater deflater = new Deflater(level);
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+                byte[] buf = new byte[4096];
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buf);
+                    out.write(buf, 0, n);
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public byte[] decompress(byte[] data) {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data);
+                ByteArrayOutputStream out = new ByteArrayOutputStream(
+                        (int) Math.min(maxDecompressedBytes, data.length * 3L));
+                byte[] buf = new byte[4096];
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(buf);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new SerializationException("Corrupted deflate data");
+                    }
+                    if (out.size() + n > maxDecompressedBytes) {
+                        throw new SerializationException(
+                                "Decompressed data exceeds the limit of " + maxDecompressedBytes + " bytes");
+                    }
+                    out.write(buf, 0, n);
+                }
+                return out.toByteArray();
+            } catch (DataFormatException e) {
+                throw new SerializationException("Cannot decompress deflate data", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * 带类白名单的JDK序列化.
+     * <p>
+     * 反序列化时只加载白名单内的类,拒绝其他类和动态代理,防止从redis读到的数据触发反序列化攻击;序列化时遇到白名单外的类抛出
+     * {@link ClassNotAllowedException},BinaryRedisSerializer据此改用JSON编码.
+     * <p>
+     * 白名单项为包名或类名,包名以".*"结尾时包含子包.默认允许java.lang,java.util,java.util.concurrent,java.math,java.time,
+     * java.sql包(不含子包)中的类及基本类型数组
+     */
+    public static class AllowlistJdkSerializer implements RedisSerializer<Object> {
+
+        private static final String[] DEFAULT_ALLOWED = { "java.lang","java.util","java.util.concurrent","java.math",
+                "java.time","java.sql" };
+
+        private final Set<String> allowedNames = ConcurrentHashMap.newKeySet();
+        private final List<String> allowedPrefixes = new CopyOnWriteArrayList<>();
+
+        /**
+         * @param allowedClasses 在默认白名单之外允许的包名或类名
+         */
+        public AllowlistJdkSerializer(String... allowedClasses) {
+            addAllowedClasses(DEFAULT_ALLOWED);
+            addAllowedClasses(allowedClasses);
+        }
+
+        /**
+         * 加入白名单
+         *
+         * @param allowedClasses 包名或类名,包名以".*"结尾时包含子包
+         */
+        public void addAllowedClasses(String... allowedClasses) {
+            if (allowedClasses == null) {
+                return;
+            }
+            for (String name : allowedClasses) {
+                if (name.endsWith(".*")) {
+                    allowedPrefixes.add(name.substring(0, name.length() - 1));
+                } else {
+                    allowedNames.add(name);
+                }
+            }
+        }
+
+        /**
+         * 类是否在白名单内.数组按元素类型判断
+         *
+         * @param className 类名,数组为Class.getName()格式
+         * @return
+         */
+        public boolean isAllowed(String className) {
+            String name = className;
+            if (name.startsWith("[")) {
+                int i = name.lastIndexOf('[') + 1;
+                if (name.charAt(i) != 'L') {
+                    return true;// 基本类型数组
+                }
+                name = name.substring(i + 1, name.length() - 1);
+            }
+            if (allowedNames.contains(name)) {
+                return true;
+            }
+            int dot = name.lastIndexOf('.');
+            if (dot > 0 && allowedNames.contains(name.substring(0, dot))) {
+                return true;
+            }
+            for (String prefix : allowedPrefixes) {
+                if (name.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public byte[] serialize(Object value) throws SerializationException {
+            if (value == null) {
+                return EMPTY_ARRAY;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            try (ObjectOutputStream oos = new ObjectOutputStream(out) {
+
+                @Override
+                protected void annotateClass(Class<?> cl) throws IOException {
+                    if (!isAllowed(cl.getName())) {
+                        throw new NotAllowedClassIOException(cl.getName());
+                    }
+                }
+
+                @Override
+                protected void annotateProxyClass(Class<?> cl) throws IOException {
+                    throw new NotAllowedClassIOException(cl.getName());
+                }
+            }) {
+                oos.writeObject(value);
+            } catch (NotAllowedClassIOException e) {
+                throw new ClassNotAllowedException(e.getMessage());
+            } catch (IOException e) {
+                throw new SerializationException("Cannot serialize", e);
+            }
+            return out.toByteArray();
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) throws SerializationException {
+            if (bytes == null || bytes.length == 0) {
+                return null;
+            }
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+
+                @Override
+                protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                    if (!isAllowed(desc.getName())) {
+                        throw new InvalidClassException(desc.getName(), "class is not allowed to deserialize");
+                    }
+                    return super.resolveClass(desc);
+                }
+
+                @Override
+                protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+                    throw new InvalidClassException("proxy class is not allowed to deserialize");
+                }
+            }) {
+                return ois.readObject();
+            } catch (IOException | ClassNotFoundException e) {
+                throw new SerializationException("Cannot deserialize", e);
+            }
+        }
+    }
+
+    /**
+     * 序列化时遇到白名单外的类
+     */
+    @SuppressWarnings("serial")
+    public static class ClassNotAllowedException extends SerializationException {
+
+        public ClassNotAllowedException(String className) {
+            super("class is not allowed to serialize: " + className);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class NotAllowedClassIOException extends IOException {
+
+        NotAllowedClassIOException(String className) {
+            super(className);
+        }
+    }
+
+    private RedisSerializer<Object> binarySerializer;
+    private RedisSerializer<Object> jsonSerializer;
+    private Compressor compressor = new DeflateCompressor();
+    private int compressThreshold = 1024;
+
+    public BinaryRedisSerializer() {
+        this(new AllowlistJdkSerializer(), new GenericJackson2JsonRedisSerializer());
+    }
+
+    /**
+     * @param binarySerializer 可序列化对象使用的二进制序列化器,序列化时抛出{@link ClassNotAllowedException}的对象改用JSON编码.
+     *            注意该序列化器需自行防范反序列化攻击
+     * @param jsonSerializer 不可序列化对象及旧数据使用的JSON序列化器
+     */
+    public BinaryRedisSerializer(RedisSerializer<Object> binarySerializer, RedisSerializer<Object> jsonSerializer) {
+        this.binarySerializer = binarySerializer;
+        this.jsonSerializer = jsonSerializer;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return EMPTY_ARRAY;
+        }
+        if (value instanceof Number) {
+            return jsonSerializer.serialize(value);// 数字保持原格式,以支持incr等命令
+        }
+        int codec = CODEC_JSON;
+        byte[] body = null;
+        if (value instanceof Serializable) {
+            try {
+                body = binarySerializer.serialize(value);
+                codec = CODEC_BINARY;
+            } catch (ClassNotAllowedException e) {
+                // 白名单外的类改用JSON编码
+            }
+        }
+        if (body == null) {
+            body = jsonSerializer.serialize(value);
+        }
+        int compress = COMPRESS_NONE;
+        if (compressor != null && compressThreshold >= 0 && body.length > compressThreshold) {
+            byte[] compressed = compressor.compress(body);
+            if (compressed.length < body.length) {
+                body = compressed;
+                compress = compressor.id();
+            }
+        }
+        byte[] result = new byte[body.length + 1];
+        result[0] = (byte) (MAGIC | (compress << COMPRESS_SHIFT) | codec);
+        System.arraycopy(body, 0, result, 1, body.length);
+        return result;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        int header = bytes[0] & 0xFF;
+        if ((header & MAGIC_MASK) != MAGIC) {
+            return jsonSerializer.deserialize(bytes);// 旧格式数据
+        }
+        byte[] body = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 1, body, 0, body.length);
+        int compress = (header & COMPRESS_MASK) >>> COMPRESS_SHIFT;
+        if (compress != COMPRESS_NONE) {
+            if (compressor == null || compressor.id() != compress) {
+                throw new SerializationException("Unsupported compression type " + compress);
+            }
+            body = compressor.decompress(body);
+        }
+        int codec = header & CODEC_MASK;
+        if (codec == CODEC_BINARY) {
+            return binarySerializer.deserialize(body);
+        } else if (codec == CODEC_JSON) {
+            return jsonSerializer.deserialize(body);
+        }
+        throw new SerializationException("Unsupported codec type " + codec);
+    }
+
+    /**
+     * 将包名或类名加入二进制编码的白名单,只适用于默认的{@link AllowlistJdkSerializer}
+     *
+     * @param allowedClasses 包名或类名,包名以".*"结尾时包含子包
+     */
+    public void addAllowedClasses(String... allowedClasses) {
+        if (!(binarySerializer instanceof AllowlistJdkSerializer)) {
+            throw new IllegalStateException("binary serializer is not AllowlistJdkSerializer");
+        }
+        ((AllowlistJdkSerializer) binarySerializer).addAllowedClasses(allowedClasses);
+    }
+
+    public int getCompressThreshold() {
+        return compressThreshold;
+    }
+
+    /**
+     * 设置压缩阈值,编码后字节数超过该值才压缩,默认1024.小于0不压缩
+     *
+     * @param compressThreshold
+     */
+    public void setCompressThreshold(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
+    /**
+     * 设置压缩实现,null表示不压缩.注意已写入的压缩数据需要相同标识的压缩实现才能读取
+     *
+     * @param compressor
+     */
+    public void setCompressor(Compressor compressor) {
+        if (compressor != null && (compressor.id() < 1 || compressor.id() > 3)) {
+            throw new IllegalArgumentException("compressor id must be in [1,3]");
+        }
+        this.compressor = compressor;
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.jflame.context.cache.redis;
+
+/**
+ * 缓存未命中时加载数据的选项,用于防止缓存击穿.
+ * <ul>
+ * <li>进程内同一key的并发加载总是合并为一次;</li>
+ * <li>distributedLock:跨节点加载互斥,只有获得redis锁的节点执行加载,其他节点等待缓存写入;</li>
+ * <li>earlyRefreshBeta:概率提前刷新(XFetch),缓存快过期时按概率在后台提前重新加载,值越大越早刷新,0为不提前刷新.</li>
+ * </ul>
+ * 示例: {@code redisClient.get("key", 300, () -> load(), CacheLoadOptions.create().distributedLock(true).earlyRefreshBeta(1));}
+ *
+ * @author zyc
+ */
+public class CacheLoadOptions {
+
+    static final CacheLoadOptions DEFAULT = new CacheLoadOptions();
+
+    private boolean distributedLock = false;
+    private int lockExpireSeconds = 10;
+    private long lockWaitMillis = 3000;
+    private double earlyRefreshBeta = 0;
+
+    public static CacheLoadOptions create() {
+        return new CacheLoadOptions();
+    }
+
+    /**
+     * 是否启用跨节点加载互斥
+     *
+     * @param distributedLock
+     * @return
+     */
+    public CacheLoadOptions distributedLock(boolean distributedLock) {
+        this.distributedLock = distributedLock;
+        return this;
+    }
+
+    /**
+     * 加载锁过期时间,单位秒,应大于加载数据的耗时.默认10秒
+     *
+     * @param lockExpireSeconds
+     * @return
+     */
+    public CacheLoadOptions lockExpireSeconds(int lockExpireSeconds) {
+        if (lockExpireSeconds <= 0) {
+            throw new IllegalArgumentException("lockExpireSeconds must be greater than 0");
+        }
+        this.lockExpireSeconds = lockExpireSeconds;
+        return this;
+    }
+
+    /**
+     * 未获得加载锁时等待其他节点写入缓存的最长时间,单位毫秒,超时后自行加载.默认3000
+     *
+     * @param lockWaitMillis
+     * @return
+     */
+    public CacheLoadOptions lockWaitMillis(long lockWaitMillis) {
+        this.lockWaitMillis = lockWaitMillis;
+        return this;
+    }
+
+    /**
+     * 提前刷新系数,通常取1.0,大于1更早刷新,0不提前刷新.只对设置了过期时间的缓存有效
+     *
+     * @param earlyRefreshBeta
+     * @return
+     */
+    public CacheLoadOptions earlyRefreshBeta(double earlyRefreshBeta) {
+        if (earlyRefreshBeta < 0) {
+            throw new IllegalArgumentException("earlyRefreshBeta must not be negative");
+        }
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        return this;
+    }
+
+    public boolean isDistributedLock() {
+        return distributedLock;
+    }
+
+    public int getLockExpireSeconds() {
+        return lockExpireSeconds;
+    }
+
+    public long getLockWaitMillis() {
+        return lockWaitMillis;
+    }
+
+    public double getEarlyRefreshBeta() {
+        return earlyRefreshBeta;
+    }
+
+}
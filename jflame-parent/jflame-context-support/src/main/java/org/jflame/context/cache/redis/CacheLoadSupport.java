@@ -0,0 +1,268 @@
+package org.jflame.context.cache.redis;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.jflame.context.cache.LocalCache;
+import org.jflame.context.cache.SingleFlight;
+
+/**
+ * RedisClient缓存加载的防击穿实现:进程内加载合并,跨节点加载互斥,XFetch概率提前刷新.
+ * <p>
+ * 提前刷新所需的加载耗时和过期时间记录在本进程内,只有加载过该key的节点会提前刷新,不增加读取时的网络往返.
+ *
+ * @author zyc
+ */
+final class CacheLoadSupport {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheLoadSupport.class);
+
+    private static final String LOAD_LOCK_PREFIX = "jf_load_lock:";
+    private static final String HASH_LOAD_LOCK_PREFIX = "jf_hload_lock:";
+    private static final long LOCK_POLL_MILLIS = 50;
+    private static final String UNLOCK_LUASCRIPT = "if redis.call(\"get\",KEYS[1]) == ARGV[1] then "
+            + "return redis.call(\"del\",KEYS[1]) else return 0 end";
+
+    private static final SingleFlight<FlightKey,Object> FLIGHTS = new SingleFlight<>();
+    /**
+     * 提前刷新元数据:[加载耗时毫秒,过期时间点毫秒]
+     */
+    private static final LocalCache<FlightKey,long[]> REFRESH_META = new LocalCache<>(10000, 0);
+    private static final ConcurrentHashMap<FlightKey,Boolean> REFRESHING = new ConcurrentHashMap<>();
+    private static final ExecutorService REFRESH_EXECUTOR = Executors.newCachedThreadPool(new DaemonThreadFactory());
+
+    private CacheLoadSupport() {
+    }
+
+    /**
+     * 获取缓存,未命中时加载并写入缓存
+     *
+     * @param client RedisClient
+     * @param key 缓存key
+     * @param timeout 过期时间,单位秒,小于等于0不过期
+     * @param loader 加载方法
+     * @param options 加载选项
+     * @return
+     */
+    static <T> T get(final RedisClient client, final String key, final long timeout, final Supplier<T> loader,
+            final CacheLoadOptions options) {
+        final FlightKey flightKey = new FlightKey(client, key);
+        T value = client.get(key);
+        if (value != null) {
+            if (options.getEarlyRefreshBeta() > 0 && timeout > 0 && shouldRefreshEarly(flightKey, options)) {
+                refreshAsync(flightKey, () -> loadAndSet(client, flightKey, timeout, loader));
+            }
+            return value;
+        }
+        return load(client, flightKey, () -> client.get(key), () -> loadAndSet(client, flightKey, timeout, loader),
+                options);
+    }
+
+    /**
+     * 获取哈希集成员,未命中时加载并写入哈希集
+     *
+     * @param client RedisClient
+     * @param hkey 哈希集key
+     * @param fieldKey 成员key
+     * @param loader 加载方法
+     * @param options 加载选项
+     * @return
+     */
+    static <T> T hget(final RedisClient client, final String hkey, final String fieldKey, final Supplier<T> loader,
+            final CacheLoadOptions options) {
+        T value = client.hget(hkey, fieldKey);
+        if (value != null) {
+            return value;
+        }
+        FlightKey flightKey = new FlightKey(client, hkey, fieldKey);
+        return load(client, flightKey, () -> client.hget(hkey, fieldKey), () -> {
+            T t = loader.get();
+            if (t != null) {
+                client.hput(hkey, fieldKey, t);
+            }
+            return t;
+        }, options);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T load(RedisClient client, FlightKey flightKey, Supplier<T> reader, Supplier<T> loadAndSet,
+            CacheLoadOptions options) {
+        return (T) FLIGHTS.execute(flightKey, () -> {
+            // 等待期间可能已被其他线程或节点写入
+            T value = reader.get();
+            if (value != null) {
+                return value;
+            }
+            if (options.isDistributedLock()) {
+                return loadWithLock(client, flightKey.lockKey(), reader, loadAndSet, options);
+            }
+            return loadAndSet.get();
+        });
+    }
+
+    private static <T> T loadWithLock(RedisClient client, String lockKey, Supplier<T> reader,
+            Supplier<T> loadAndSet, CacheLoadOptions options) {
+        String lockValue = UUID.randomUUID()
+                .toString();
+        long deadline = System.currentTimeMillis() + options.getLockWaitMillis();
+        while (true) {
+            if (client.setIfAbsent(lockKey, lockValue, options.getLockExpireSeconds(), TimeUnit.SECONDS)) {
+                try {
+                    T value = reader.get();
+                    return value != null ? value : loadAndSet.get();
+                } finally {
+                    unlock(client, lockKey, lockValue);
+                }
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                logger.warn("等待加载锁超时,自行加载数据:{}", lockKey);
+                return loadAndSet.get();
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(LOCK_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                        .interrupt();
+                return loadAndSet.get();
+            }
+            T value = reader.get();
+            if (value != null) {
+                return value;
+            }
+        }
+    }
+
+    private static void unlock(RedisClient client, String lockKey, String lockValue) {
+        try {
+            client.runScript(UNLOCK_LUASCRIPT, Arrays.asList(lockKey), Collections.singletonList(lockValue),
+                    Long.class);
+        } catch (RuntimeException e) {
+            logger.error("释放加载锁失败:" + lockKey, e);
+        }
+    }
+
+    private static <T> T loadAndSet(RedisClient client, FlightKey flightKey, long timeout, Supplier<T> loader) {
+        long start = System.currentTimeMillis();
+        T value = loader.get();
+        if (value != null) {
+            if (timeout > 0) {
+                client.set(flightKey.name, value, timeout, TimeUnit.SECONDS);
+                long now = System.currentTimeMillis();
+                REFRESH_META.put(flightKey, new long[] { now - start,now + TimeUnit.SECONDS.toMillis(timeout) });
+            } else {
+                client.set(flightKey.name, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * XFetch: now - delta * beta * ln(rand) &gt;= expiry 时提前刷新
+     */
+    private static boolean shouldRefreshEarly(FlightKey flightKey, CacheLoadOptions options) {
+        long[] meta = REFRESH_META.get(flightKey);
+        if (meta == null) {
+            return false;
+        }
+        double rand = ThreadLocalRandom.current()
+                .nextDouble();
+        if (rand == 0) {
+            return false;
+        }
+        double gap = -meta[0] * options.getEarlyRefreshBeta() * Math.log(rand);
+        return System.currentTimeMillis() + gap >= meta[1];
+    }
+
+    private static void refreshAsync(FlightKey flightKey, Supplier<?> loadAndSet) {
+        if (REFRESHING.putIfAbsent(flightKey, Boolean.TRUE) != null) {
+            return;
+        }
+        try {
+            REFRESH_EXECUTOR.execute(() -> {
+                try {
+                    FLIGHTS.execute(flightKey, loadAndSet);
+                } catch (RuntimeException e) {
+                    logger.error("提前刷新缓存失败:" + flightKey.name, e);
+                } finally {
+                    REFRESHING.remove(flightKey);
+                }
+            });
+        } catch (RuntimeException e) {
+            REFRESHING.remove(flightKey);
+            logger.error("提交提前刷新任务失败:" + flightKey.name, e);
+        }
+    }
+
+    /**
+     * 加载key,区分不同RedisClient实例的同名key,以及普通key与哈希集成员
+     */
+    private static final class FlightKey {
+
+        private final RedisClient client;
+        private final String name;
+        private final String field;// 哈希集成员key,普通key为null
+
+        FlightKey(RedisClient client, String name) {
+            this(client, name, null);
+        }
+
+        FlightKey(RedisClient client, String name, String field) {
+            this.client = client;
+            this.name = name;
+            this.field = field;
+        }
+
+        /**
+         * 跨节点加载锁的key.普通key与哈希集成员使用不同前缀,哈希集key带长度,不同组合不会产生相同的锁
+         */
+        String lockKey() {
+            if (field == null) {
+                return LOAD_LOCK_PREFIX + name;
+            }
+            return HASH_LOAD_LOCK_PREFIX + name.length() + ':' + name + ':' + field;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(client) + name.hashCode()) + Objects.hashCode(field);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof FlightKey)) {
+                return false;
+            }
+            FlightKey other = (FlightKey) obj;
+            return client == other.client && name.equals(other.name) && Objects.equals(field, other.field);
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNum = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "cache-refresh-" + threadNum.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+}
@@ -0,0 +1,566 @@
+package org.jflame.context.cache.redis;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import org.jflame.commons.util.CollectionHelper;
+import org.jflame.context.cache.CacheStats;
+import org.jflame.context.cache.LocalCache;
+
+/**
+ * 带进程内近端缓存(L1)的RedisClient.
+ * <p>
+ * get,multiGet,hget,hmultiGet先查本地缓存,未命中再访问redis并将结果放入本地缓存.本地缓存按容量和存活时间淘汰,
+ * 通过本客户端修改或删除缓存时清除本地缓存,并通过redis发布订阅通知其他节点清除.哈希集在本地缓存中为一个条目,
+ * 按字段保存在内部map中,修改哈希集时整个条目失效.
+ * <p>
+ * 读取redis前取得key的失效版本号,读取后只在版本号未变化时放入本地缓存,读取期间发生的失效不会被旧值覆盖.
+ * <p>
+ * 适用于读多写少的热点数据,如配置,字典.注意:
+ * <ul>
+ * <li>本地缓存返回的是同一对象实例,调用方不应修改返回的对象;</li>
+ * <li>只有通过本客户端的写操作会触发失效通知,redis中自动过期或被其他程序修改的数据最多在本地存活ttl时间;</li>
+ * <li>可通过keyPrefixes限定只有指定前缀的key使用本地缓存.</li>
+ * <li>expire,persist和runScript会清除涉及key的本地缓存并通知其他节点,锁等频繁执行脚本的场景应设置keyPrefixes避免无用的失效通知.</li>
+ * </ul>
+ *
+ * @author zyc
+ */
+public class NearCacheClientImpl extends SpringCacheClientImpl {
+
+    private final Logger logger = LoggerFactory.getLogger(NearCacheClientImpl.class);
+
+    /**
+     * 本地缓存中哈希集条目的key前缀,与普通key区分
+     */
+    private static final char HASH_KEY_PREFIX = '\u0000';
+    private static final String VALUE_FLAG = "v:";
+    private static final String HASH_FLAG = "h:";
+
+    private final String nodeId = UUID.randomUUID()
+            .toString();
+
+    private int maxSize = 10000;
+    private long ttlMillis = 60000;
+    private String invalidationChannel = "jflame:nearcache:invalidate";
+    private List<String> keyPrefixes = Collections.emptyList();
+
+    private LocalCache<String,Object> localCache;
+    private final Consumer<String> invalidationListener = this::onInvalidation;
+
+    public NearCacheClientImpl(RedisConnectionFactory redisConnection) {
+        super(redisConnection);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        super.afterPropertiesSet();
+        localCache = new LocalCache<>(maxSize, ttlMillis);
+        subscribe(invalidationChannel, invalidationListener);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        unsubscribe(invalidationChannel, invalidationListener);
+        super.destroy();
+        if (localCache != null) {
+            localCache.clear();
+        }
+    }
+
+    @Override
+    public <T> T get(String key) {
+        if (!isNearCached(key)) {
+            return super.get(key);
+        }
+        @SuppressWarnings("unchecked")
+        T value = (T) localCache.get(key);
+        if (value == null) {
+            long stamp = localCache.stamp(key);
+            value = super.get(key);
+            localCache.putIfStamp(key, value, stamp);
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<T> multiGet(Collection<String> keys) {
+        if (CollectionHelper.isEmpty(keys)) {
+            return super.multiGet(keys);
+        }
+        List<String> keyList = new ArrayList<>(keys);
+        List<T> results = new ArrayList<>(keyList.size());
+        List<String> missKeys = new ArrayList<>();
+        List<Integer> missIndexes = new ArrayList<>();
+        for (int i = 0; i < keyList.size(); i++) {
+            String key = keyList.get(i);
+            T value = isNearCached(key) ? (T) localCache.get(key) : null;
+            if (value == null) {
+                missKeys.add(key);
+                missIndexes.add(i);
+            }
+            results.add(value);
+        }
+        if (!missKeys.isEmpty()) {
+            long[] stamps = new long[missKeys.size()];
+            for (int i = 0; i < stamps.length; i++) {
+                stamps[i] = localCache.stamp(missKeys.get(i));
+            }
+            List<T> remoteValues = super.multiGet(missKeys);
+            for (int i = 0; i < missKeys.size(); i++) {
+                T value = remoteValues == null ? null : remoteValues.get(i);
+                results.set(missIndexes.get(i), value);
+                if (isNearCached(missKeys.get(i))) {
+                    localCache.putIfStamp(missKeys.get(i), value, stamps[i]);
+                }
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public <T> T hget(String key, String fieldKey) {
+        if (!isNearCached(key)) {
+            return super.hget(key, fieldKey);
+        }
+        String localKey = hashLocalKey(key);
+        Map<String,Object> fields = localFields(localKey);
+        @SuppressWarnings("unchecked")
+        T value = fields == null ? null : (T) fields.get(fieldKey);
+        if (value == null) {
+            localCache.recordMisses(1);
+            long stamp = localCache.stamp(localKey);
+            value = super.hget(key, fieldKey);
+            putLocalFields(localKey, Collections.singletonList(fieldKey), Collections.singletonList(value), stamp);
+        } else {
+            localCache.recordHits(1);
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<T> hmultiGet(String key, Collection<String> fieldKeys) {
+        if (!isNearCached(key) || CollectionHelper.isEmpty(fieldKeys)) {
+            return super.hmultiGet(key, fieldKeys);
+        }
+        String localKey = hashLocalKey(key);
+        Map<String,Object> fields = localFields(localKey);
+        List<String> fieldList = new ArrayList<>(fieldKeys);
+        List<T> results = new ArrayList<>(fieldList.size());
+        List<String> missFields = new ArrayList<>();
+        List<Integer> missIndexes = new ArrayList<>();
+        for (int i = 0; i < fieldList.size(); i++) {
+            T value = fields == null ? null : (T) fields.get(fieldList.get(i));
+            if (value == null) {
+                missFields.add(fieldList.get(i));
+                missIndexes.add(i);
+            }
+            results.add(value);
+        }
+        localCache.recordHits(fieldList.size() - missFields.size());
+        localCache.recordMisses(missFields.size());
+        if (!missFields.isEmpty()) {
+            long stamp = localCache.stamp(localKey);
+            List<T> remoteValues = super.hmultiGet(key, missFields);
+            for (int i = 0; i < missFields.size(); i++) {
+                results.set(missIndexes.get(i), remoteValues == null ? null : remoteValues.get(i));
+            }
+            if (remoteValues != null) {
+                putLocalFields(localKey, missFields, remoteValues, stamp);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void set(String key, Object value) {
+        super.set(key, value);
+        invalidateValues(key);
+    }
+
+    @Override
+    public void set(String key, Object value, long timeout, TimeUnit timeUnit) {
+        super.set(key, value, timeout, timeUnit);
+        invalidateValues(key);
+    }
+
+    @Override
+    public <V> void multiSet(Map<String,V> pair) {
+        super.multiSet(pair);
+        if (pair != null) {
+            invalidateValues(pair.keySet());
+        }
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, Object value) {
+        boolean r = super.setIfAbsent(key, value);
+        if (r) {
+            invalidateValues(key);
+        }
+        return r;
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, Object value, long timeout, TimeUnit timeUnit) {
+        boolean r = super.setIfAbsent(key, value, timeout, timeUnit);
+        if (r) {
+            invalidateValues(key);
+        }
+        return r;
+    }
+
+    @Override
+    public <V> void multiSetIfAbsent(Map<String,V> pair) {
+        super.multiSetIfAbsent(pair);
+        if (pair != null) {
+            invalidateValues(pair.keySet());
+        }
+    }
+
+    @Override
+    public <T> T getAndSet(String key, T newValue) {
+        T oldValue = super.getAndSet(key, newValue);
+        invalidateValues(key);
+        return oldValue;
+    }
+
+    @Override
+    public boolean delete(String key) {
+        boolean r = super.delete(key);
+        invalidate(Arrays.asList(key), Arrays.asList(key));
+        return r;
+    }
+
+    @Override
+    public long delete(Set<String> keys) {
+        long r = super.delete(keys);
+        invalidate(keys, keys);
+        return r;
+    }
+
+    @Override
+    public boolean expire(String key, int seconds) {
+        boolean r = super.expire(key, seconds);
+        invalidateAll(Arrays.asList(key));
+        return r;
+    }
+
+    @Override
+    public boolean expire(String key, long timeout, TimeUnit timeUnit) {
+        boolean r = super.expire(key, timeout, timeUnit);
+        invalidateAll(Arrays.asList(key));
+        return r;
+    }
+
+    @Override
+    public boolean expireAt(String key, Date date) {
+        boolean r = super.expireAt(key, date);
+        invalidateAll(Arrays.asList(key));
+        return r;
+    }
+
+    @Override
+    public boolean persist(String key) {
+        boolean r = super.persist(key);
+        invalidateAll(Arrays.asList(key));
+        return r;
+    }
+
+    @Override
+    public Long incr(String key) {
+        Long r = super.incr(key);
+        invalidateValues(key);
+        return r;
+    }
+
+    @Override
+    public Long incr(String key, long incrValue) {
+        Long r = super.incr(key, incrValue);
+        invalidateValues(key);
+        return r;
+    }
+
+    @Override
+    public Double incrByFloat(String key, double incrValue) {
+        Double r = super.incrByFloat(key, incrValue);
+        invalidateValues(key);
+        return r;
+    }
+
+    @Override
+    public long hdelete(String key, String fieldKey) {
+        long r = super.hdelete(key, fieldKey);
+        invalidateHashes(key);
+        return r;
+    }
+
+    @Override
+    public void hput(String key, String fieldKey, Object value) {
+        super.hput(key, fieldKey, value);
+        invalidateHashes(key);
+    }
+
+    @Override
+    public void hput(String key, String fieldKey, Object value, int expireInSecond) {
+        super.hput(key, fieldKey, value, expireInSecond);
+        invalidateHashes(key);
+    }
+
+    @Override
+    public boolean hputIfAbsent(String key, String fieldKey, Object value) {
+        boolean r = super.hputIfAbsent(key, fieldKey, value);
+        if (r) {
+            invalidateHashes(key);
+        }
+        return r;
+    }
+
+    @Override
+    public void hputAll(String key, Map<String,?> map) {
+        super.hputAll(key, map);
+        invalidateHashes(key);
+    }
+
+    /**
+     * 执行脚本后清除keys的本地缓存,脚本可能修改任意类型的key,普通缓存和哈希集都清除
+     */
+    @Override
+    public <T> T runScript(String luaScript, List<String> keys, List<? extends Serializable> args,
+            Class<T> resultClazz) {
+        T r = super.runScript(luaScript, keys, args, resultClazz);
+        if (keys != null) {
+            invalidateAll(keys);
+        }
+        return r;
+    }
+
+    @Override
+    public RedisBatch batch() {
+        final RedisBatch target = super.batch();
+        return new RedisBatch() {
+
+            @Override
+            protected List<Object> doExecute(List<Command> commands) {
+                List<Object> results = target.doExecute(commands);
+                List<String> valueKeys = new ArrayList<>();
+                List<String> hashKeys = new ArrayList<>();
+                for (Command cmd : commands) {
+                    switch (cmd.getType()) {
+                        case SET:
+                        case SET_IF_ABSENT:
+                        case INCR:
+                            valueKeys.add(cmd.getKey());
+                            break;
+                        case HPUT:
+                            hashKeys.add(cmd.getKey());
+                            break;
+                        case DELETE:
+                            valueKeys.add(cmd.getKey());
+                            hashKeys.add(cmd.getKey());
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                invalidate(valueKeys, hashKeys);
+                return results;
+            }
+        };
+    }
+
+    /**
+     * 获取本地缓存统计信息
+     *
+     * @return CacheStats
+     */
+    public CacheStats getNearCacheStats() {
+        return localCache.getStats();
+    }
+
+    /**
+     * 清空本节点的本地缓存
+     */
+    public void clearNearCache() {
+        localCache.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String,Object> localFields(String localKey) {
+        return (Map<String,Object>) localCache.peek(localKey);
+    }
+
+    /**
+     * 哈希集失效版本号未变化时将字段值放入本地缓存,null值不放入
+     */
+    private void putLocalFields(String localKey, final List<String> fieldKeys, final List<?> values, long stamp) {
+        localCache.computeIfStamp(localKey, stamp, (k, old) -> {
+            @SuppressWarnings("unchecked")
+            Map<String,Object> fields = old == null ? new ConcurrentHashMap<>() : (Map<String,Object>) old;
+            for (int i = 0; i < fieldKeys.size(); i++) {
+                if (values.get(i) != null) {
+                    fields.put(fieldKeys.get(i), values.get(i));
+                }
+            }
+            return fields.isEmpty() ? null : fields;
+        });
+    }
+
+    private boolean isNearCached(String key) {
+        if (keyPrefixes.isEmpty()) {
+            return true;
+        }
+        for (String prefix : keyPrefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String hashLocalKey(String key) {
+        return HASH_KEY_PREFIX + key;
+    }
+
+    private void invalidateValues(String key) {
+        invalidate(Arrays.asList(key), Collections.<String> emptyList());
+    }
+
+    private void invalidateValues(Collection<String> keys) {
+        invalidate(keys, Collections.<String> emptyList());
+    }
+
+    private void invalidateAll(Collection<String> keys) {
+        invalidate(keys, keys);
+    }
+
+    private void invalidateHashes(String key) {
+        invalidate(Collections.<String> emptyList(), Arrays.asList(key));
+    }
+
+    /**
+     * 清除本地缓存并通知其他节点
+     *
+     * @param valueKeys 普通缓存key
+     * @param hashKeys 哈希集key
+     */
+    private void invalidate(Collection<String> valueKeys, Collection<String> hashKeys) {
+        StringBuilder msg = new StringBuilder(nodeId);
+        for (String key : valueKeys) {
+            if (isNearCached(key)) {
+                msg.append('\n')
+                        .append(VALUE_FLAG)
+                        .append(key);
+            }
+        }
+        for (String key : hashKeys) {
+            if (isNearCached(key)) {
+                msg.append('\n')
+                        .append(HASH_FLAG)
+                        .append(key);
+            }
+        }
+        if (msg.length() == nodeId.length()) {
+            return;
+        }
+        String message = msg.toString();
+        evictLocal(message);
+        try {
+            publish(invalidationChannel, message);
+        } catch (RuntimeException e) {
+            logger.error("发布近端缓存失效消息失败", e);
+        }
+    }
+
+    private void evictLocal(String message) {
+        String[] lines = message.split("\n");
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            if (line.startsWith(VALUE_FLAG)) {
+                localCache.invalidate(line.substring(VALUE_FLAG.length()));
+            } else if (line.startsWith(HASH_FLAG)) {
+                localCache.invalidate(hashLocalKey(line.substring(HASH_FLAG.length())));
+            }
+        }
+    }
+
+    private void onInvalidation(String msg) {
+        if (msg == null || msg.startsWith(nodeId + '\n')) {
+            return;// 本节点发出的消息已处理
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("收到近端缓存失效消息:{}", msg);
+        }
+        evictLocal(msg);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 设置本地缓存最大条目数,默认10000
+     *
+     * @param maxSize
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * 设置本地缓存存活时间,单位毫秒,默认60秒
+     *
+     * @param ttlMillis
+     */
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public String getInvalidationChannel() {
+        return invalidationChannel;
+    }
+
+    /**
+     * 设置失效通知频道,默认jflame:nearcache:invalidate.使用同一redis的各节点需一致
+     *
+     * @param invalidationChannel
+     */
+    public void setInvalidationChannel(String invalidationChannel) {
+        this.invalidationChannel = invalidationChannel;
+    }
+
+    public List<String> getKeyPrefixes() {
+        return keyPrefixes;
+    }
+
+    /**
+     * 设置使用本地缓存的key前缀,不设置时所有key都使用本地缓存
+     *
+     * @param keyPrefixes
+     */
+    public void setKeyPrefixes(List<String> keyPrefixes) {
+        this.keyPrefixes = keyPrefixes == null ? Collections.<String> emptyList() : keyPrefixes;
+    }
+
+}
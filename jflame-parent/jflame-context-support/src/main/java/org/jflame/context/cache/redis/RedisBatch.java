@@ -0,0 +1,311 @@
+package org.jflame.context.cache.redis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * redis批量操作.先将多个不同类型的命令加入队列,再调用{@link #execute()}通过一次管道(pipeline)发送,减少网络往返.
+ * <p>
+ * 每个命令返回一个{@link Response},批量执行后通过其获取该命令的结果.示例:
+ *
+ * <pre>
+ * {@code
+ * RedisBatch batch = redisClient.batch();
+ * batch.set("k1", v1, 60, TimeUnit.SECONDS);
+ * Response<Long> counter = batch.incr("counter", 1);
+ * batch.delete("k2");
+ * batch.execute();
+ * counter.get();
+ * }
+ * </pre>
+ *
+ * 注:管道不是事务,命令不保证原子执行.
+ *
+ * @author zyc
+ */
+public abstract class RedisBatch {
+
+    /**
+     * 命令类型
+     */
+    public enum CommandType {
+        SET, SET_IF_ABSENT, GET, HPUT, INCR, EXPIRE, DELETE
+    }
+
+    /**
+     * 队列中的一个命令
+     */
+    public static final class Command {
+
+        private final CommandType type;
+        private final String key;
+        private final String field;
+        private final Object value;
+        private final long amount;
+        private final TimeUnit timeUnit;
+        private final Response<?> response;
+
+        Command(CommandType type, String key, String field, Object value, long amount, TimeUnit timeUnit,
+                Response<?> response) {
+            this.type = type;
+            this.key = key;
+            this.field = field;
+            this.value = value;
+            this.amount = amount;
+            this.timeUnit = timeUnit;
+            this.response = response;
+        }
+
+        public CommandType getType() {
+            return type;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * 哈希集条目key,HPUT命令有效
+         */
+        public String getField() {
+            return field;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * INCR的增量或SET,SET_IF_ABSENT,HPUT,EXPIRE的过期时间,小于等于0表示不设置过期时间
+         */
+        public long getAmount() {
+            return amount;
+        }
+
+        public TimeUnit getTimeUnit() {
+            return timeUnit;
+        }
+
+        Response<?> getResponse() {
+            return response;
+        }
+    }
+
+    /**
+     * 批量命令的结果,只有批量执行后才能获取
+     *
+     * @param <T> 结果类型
+     */
+    public static final class Response<T> {
+
+        private T result;
+        private boolean done = false;
+
+        void set(T result) {
+            this.result = result;
+            this.done = true;
+        }
+
+        /**
+         * 获取命令结果
+         *
+         * @return
+         * @throws IllegalStateException 批量命令还未执行
+         */
+        public T get() {
+            if (!done) {
+                throw new IllegalStateException("batch has not been executed");
+            }
+            return result;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+    }
+
+    private final List<Command> commands = new ArrayList<>();
+    private boolean executed = false;
+
+    /**
+     * 设置缓存
+     *
+     * @param key
+     * @param value
+     * @return
+     */
+    public Response<Boolean> set(String key, Object value) {
+        return set(key, value, 0, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 设置缓存和缓存时间
+     *
+     * @param key
+     * @param value
+     * @param timeout 缓存时间
+     * @param timeUnit 时间单位
+     * @return
+     */
+    public Response<Boolean> set(String key, Object value, long timeout, TimeUnit timeUnit) {
+        return add(CommandType.SET, key, null, value, timeout, timeUnit);
+    }
+
+    /**
+     * key不存在时设置缓存和缓存时间
+     *
+     * @param key
+     * @param value
+     * @param timeout 缓存时间,小于等于0不过期
+     * @param timeUnit 时间单位
+     * @return 设置成功返回true,key已存在返回false
+     */
+    public Response<Boolean> setIfAbsent(String key, Object value, long timeout, TimeUnit timeUnit) {
+        return add(CommandType.SET_IF_ABSENT, key, null, value, timeout, timeUnit);
+    }
+
+    /**
+     * 获取缓存
+     *
+     * @param key
+     * @return 缓存值,不存在为null
+     */
+    public <T> Response<T> get(String key) {
+        return add(CommandType.GET, key, null, null, 0, null);
+    }
+
+    /**
+     * 新增项到哈希集中
+     *
+     * @param key 哈希集key
+     * @param fieldKey 条目key
+     * @param value 条目值
+     * @return 新增的条目返回true,覆盖已有条目返回false
+     */
+    public Response<Boolean> hput(String key, String fieldKey, Object value) {
+        return add(CommandType.HPUT, key, fieldKey, value, 0, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 新增项到哈希集中,同时设置该哈希集的过期时间
+     *
+     * @param key 哈希集key
+     * @param fieldKey 条目key
+     * @param value 条目值
+     * @param expireInSecond 过期时间,单位秒
+     * @return 新增的条目返回true,覆盖已有条目返回false
+     */
+    public Response<Boolean> hput(String key, String fieldKey, Object value, int expireInSecond) {
+        return add(CommandType.HPUT, key, fieldKey, value, expireInSecond, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 值增加指定大小
+     *
+     * @param key
+     * @param incrValue 增量
+     * @return 增加后的值
+     */
+    public Response<Long> incr(String key, long incrValue) {
+        return add(CommandType.INCR, key, null, null, incrValue, null);
+    }
+
+    /**
+     * 设置过期时间
+     *
+     * @param key
+     * @param timeout
+     * @param timeUnit
+     * @return
+     */
+    public Response<Boolean> expire(String key, long timeout, TimeUnit timeUnit) {
+        return add(CommandType.EXPIRE, key, null, null, timeout, timeUnit);
+    }
+
+    /**
+     * 删除缓存
+     *
+     * @param key
+     * @return 删除的数量
+     */
+    public Response<Long> delete(String key) {
+        return add(CommandType.DELETE, key, null, null, 0, null);
+    }
+
+    private <T> Response<T> add(CommandType type, String key, String field, Object value, long amount,
+            TimeUnit timeUnit) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must not be null");
+        }
+        if (executed) {
+            throw new IllegalStateException("batch has already been executed");
+        }
+        Response<T> response = new Response<>();
+        commands.add(new Command(type, key, field, value, amount, timeUnit, response));
+        return response;
+    }
+
+    /**
+     * 队列中的命令数
+     *
+     * @return
+     */
+    public int size() {
+        return commands.size();
+    }
+
+    /**
+     * 通过一次管道执行所有队列中的命令,并填充各命令结果.每个批量对象只能执行一次
+     *
+     * @throws RedisAccessException
+     */
+    public void execute() {
+        if (executed) {
+            throw new IllegalStateException("batch has already been executed");
+        }
+        executed = true;
+        if (commands.isEmpty()) {
+            return;
+        }
+        List<Object> results = doExecute(Collections.unmodifiableList(commands));
+        if (results == null || results.size() != commands.size()) {
+            throw new RedisAccessException("pipeline result size mismatch, expected " + commands.size() + " but was "
+                    + (results == null ? 0 : results.size()));
+        }
+        for (int i = 0; i < commands.size(); i++) {
+            setResponse(commands.get(i), results.get(i));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setResponse(Command cmd, Object result) {
+        Object typedResult = result;
+        switch (cmd.getType()) {
+            case INCR:
+            case DELETE:
+                if (result instanceof Number) {
+                    typedResult = ((Number) result).longValue();
+                }
+                break;
+            case GET:
+                break;
+            default:
+                if (result instanceof Number) {
+                    typedResult = ((Number) result).longValue() > 0;
+                }
+                break;
+        }
+        ((Response<Object>) cmd.getResponse()).set(typedResult);
+    }
+
+    /**
+     * 在一次管道中执行命令,返回结果与命令一一对应
+     *
+     * @param commands 命令
+     * @return 各命令的结果
+     */
+    protected abstract List<Object> doExecute(List<Command> commands);
+
+}
@@ -2,11 +2,14 @@ package org.jflame.context.cache.redis;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -23,24 +26,20 @@ public interface RedisClient {
 
     /**
      * 先从缓存获取数据,如果不存在则调用Supplier获取数据并缓存,缓存的数据未设置过期时间.
+     * <p>
+     * 进程内同一key的并发未命中只调用一次Supplier,其他线程共享其结果.
      * 
      * @param key 缓存key
      * @param querySupplier Supplier
      * @return
      */
     default public <T> T get(String key, Supplier<T> querySupplier) {
-        T t = get(key);
-        if (t == null) {
-            t = querySupplier.get();
-            if (t != null) {
-                set(key, t);
-            }
-        }
-        return t;
+        return get(key, -1, querySupplier, CacheLoadOptions.DEFAULT);
     }
 
     /**
      * 先从缓存获取数据,如果不存在则调用Supplier获取数据并缓存,可指定缓存过期时间.<br>
+     * 进程内同一key的并发未命中只调用一次Supplier,其他线程共享其结果.<br>
      * 示例:{@code get("userkey",100,()->{return getUserById(1);)}
      * 
      * @param key 缓存key
@@ -49,14 +48,86 @@ public interface RedisClient {
      * @return
      */
     default public <T> T get(String key, long timeout, Supplier<T> querySupplier) {
-        T t = get(key);
-        if (t == null) {
-            t = querySupplier.get();
-            if (t != null) {
-                set(key, t, timeout, TimeUnit.SECONDS);
+        return get(key, timeout, querySupplier, CacheLoadOptions.DEFAULT);
+    }
+
+    /**
+     * 先从缓存获取数据,如果不存在则调用Supplier获取数据并缓存,可指定防击穿选项:跨节点加载互斥,XFetch概率提前刷新.<br>
+     * 示例:{@code get("userkey", 300, () -> getUserById(1), CacheLoadOptions.create().distributedLock(true).earlyRefreshBeta(1))}
+     * 
+     * @param key 缓存key
+     * @param timeout 过期时间,单位秒,小于等于0不过期
+     * @param querySupplier Supplier
+     * @param options 加载选项
+     * @return
+     * @see CacheLoadOptions
+     */
+    default public <T> T get(String key, long timeout, Supplier<T> querySupplier, CacheLoadOptions options) {
+        return CacheLoadSupport.get(this, key, timeout, querySupplier, options);
+    }
+
+    /**
+     * 批量获取缓存,未命中的key统一调用loader加载并写入缓存,缓存的数据未设置过期时间.
+     * <p>
+     * 命中的数据通过一次MGET获取,未命中的key只调用一次loader,加载结果通过一次管道写入.示例:<br>
+     * {@code Map<String,User> users = getOrLoad(keys, missKeys -> userService.findByKeys(missKeys));}
+     * 
+     * @param keys 缓存key集合
+     * @param loader 加载未命中数据的方法,参数为未命中的key,返回key与数据的map
+     * @return key与数据的map,按参数keys顺序,不包含加载后仍不存在的key
+     */
+    default <T> Map<String,T> getOrLoad(Collection<String> keys,
+            Function<Collection<String>,Map<String,T>> loader) {
+        return getOrLoad(keys, -1, loader);
+    }
+
+    /**
+     * 批量获取缓存,未命中的key统一调用loader加载并写入缓存,可指定缓存过期时间.
+     * 
+     * @param keys 缓存key集合
+     * @param timeout 过期时间,单位秒.小于等于0不设置过期时间
+     * @param loader 加载未命中数据的方法,参数为未命中的key,返回key与数据的map
+     * @return key与数据的map,按参数keys顺序,不包含加载后仍不存在的key
+     * @see #getOrLoad(Collection, Function)
+     */
+    default <T> Map<String,T> getOrLoad(Collection<String> keys, long timeout,
+            Function<Collection<String>,Map<String,T>> loader) {
+        Map<String,T> resultMap = new LinkedHashMap<>();
+        if (CollectionHelper.isEmpty(keys)) {
+            return resultMap;
+        }
+        List<String> keyList = new ArrayList<>(keys);
+        List<T> values = multiGet(keyList);
+        List<String> missKeys = new ArrayList<>();
+        for (int i = 0; i < keyList.size(); i++) {
+            T v = values == null ? null : values.get(i);
+            if (v == null) {
+                missKeys.add(keyList.get(i));
             }
+            resultMap.put(keyList.get(i), v);
         }
-        return t;
+        Map<String,T> loadedMap = null;
+        if (!missKeys.isEmpty()) {
+            loadedMap = loader.apply(missKeys);
+            if (MapHelper.isNotEmpty(loadedMap)) {
+                RedisBatch batch = batch();
+                for (Map.Entry<String,T> kv : loadedMap.entrySet()) {
+                    if (kv.getValue() != null) {
+                        batch.set(kv.getKey(), kv.getValue(), timeout, TimeUnit.SECONDS);
+                    }
+                }
+                batch.execute();
+            }
+        }
+        for (String k : missKeys) {
+            T v = loadedMap == null ? null : loadedMap.get(k);
+            if (v == null) {
+                resultMap.remove(k);
+            } else {
+                resultMap.put(k, v);
+            }
+        }
+        return resultMap;
     }
 
     /**
@@ -75,7 +146,7 @@ public interface RedisClient {
     }
 
     /**
-     * 查询哈希集成员,如果不存在执行查询操作querySupplier
+     * 查询哈希集成员,如果不存在执行查询操作querySupplier并将结果存入哈希集.进程内同一成员的并发未命中只调用一次Supplier
      * 
      * @param hkey
      * @param fieldKey
@@ -83,11 +154,20 @@ public interface RedisClient {
      * @return
      */
     default public <T> T hget(String hkey, String fieldKey, Supplier<T> querySupplier) {
-        T t = hget(hkey, fieldKey);
-        if (t == null) {
-            t = querySupplier.get();
-        }
-        return t;
+        return hget(hkey, fieldKey, querySupplier, CacheLoadOptions.DEFAULT);
+    }
+
+    /**
+     * 查询哈希集成员,如果不存在执行查询操作querySupplier并将结果存入哈希集,可指定跨节点加载互斥
+     * 
+     * @param hkey
+     * @param fieldKey
+     * @param querySupplier Supplier
+     * @param options 加载选项,提前刷新选项对哈希集无效
+     * @return
+     */
+    default public <T> T hget(String hkey, String fieldKey, Supplier<T> querySupplier, CacheLoadOptions options) {
+        return CacheLoadSupport.hget(this, hkey, fieldKey, querySupplier, options);
     }
 
     /**
@@ -823,6 +903,29 @@ public interface RedisClient {
 
     void publish(String channel, String message);
 
+    /**
+     * 订阅频道.同一客户端的所有订阅共享一个订阅连接
+     * 
+     * @param channel 频道
+     * @param listener 消息处理,参数为消息内容
+     */
+    void subscribe(String channel, Consumer<String> listener);
+
+    /**
+     * 取消订阅
+     * 
+     * @param channel 频道
+     * @param listener 订阅时的消息处理对象
+     */
+    void unsubscribe(String channel, Consumer<String> listener);
+
+    /**
+     * 创建一个批量操作,加入的命令在执行时通过一次管道发送
+     * 
+     * @return RedisBatch
+     */
+    RedisBatch batch();
+
     public byte[] rawKey(String key);
 
     public byte[] rawValue(Object value);
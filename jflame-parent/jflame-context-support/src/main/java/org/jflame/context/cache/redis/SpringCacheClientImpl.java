@@ -1,6 +1,7 @@
 package org.jflame.context.cache.redis;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -8,13 +9,19 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
 import org.springframework.data.redis.core.BoundHashOperations;
 import org.springframework.data.redis.core.BoundListOperations;
 import org.springframework.data.redis.core.BoundSetOperations;
@@ -24,6 +31,9 @@ import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -42,6 +52,8 @@ public class SpringCacheClientImpl implements RedisClient {
     private RedisTemplate<String,Object> redisTemplate;
     private RedisSerializer<Object> valueSerializer;
     private StringRedisSerializer keySerializer = new StringRedisSerializer();
+    private volatile RedisMessageListenerContainer listenerContainer;
+    private final ConcurrentMap<Consumer<String>,MessageListener> subscribers = new ConcurrentHashMap<>();
 
     public SpringCacheClientImpl(RedisConnectionFactory redisConnection) {
         redisTemplate = new RedisTemplate<>();
@@ -54,6 +66,10 @@ public class SpringCacheClientImpl implements RedisClient {
         this.valueSerializer = valueSerializer;
     }
 
+    protected RedisTemplate<String,Object> getRedisTemplate() {
+        return redisTemplate;
+    }
+
     @PostConstruct
     public void afterPropertiesSet() throws Exception {
         if (this.valueSerializer == null) {
@@ -837,6 +853,86 @@ public class SpringCacheClientImpl implements RedisClient {
         return redisTemplate.executePipelined(action);
     }
 
+    @Override
+    public RedisBatch batch() {
+        return new RedisBatch() {
+
+            @Override
+            protected List<Object> doExecute(List<Command> commands) {
+                return executeBatch(commands);
+            }
+        };
+    }
+
+    private List<Object> executeBatch(final List<RedisBatch.Command> commands) {
+        List<Object> pipelinedResults;
+        try {
+            pipelinedResults = redisTemplate.executePipelined(new RedisCallback<Object>() {
+
+                @Override
+                public Object doInRedis(RedisConnection connection) throws DataAccessException {
+                    for (RedisBatch.Command cmd : commands) {
+                        byte[] keyBytes = rawKey(cmd.getKey());
+                        switch (cmd.getType()) {
+                            case SET:
+                                if (cmd.getAmount() > 0) {
+                                    connection.set(keyBytes, rawValue(cmd.getValue()),
+                                            Expiration.from(cmd.getAmount(), cmd.getTimeUnit()), SetOption.upsert());
+                                } else {
+                                    connection.set(keyBytes, rawValue(cmd.getValue()));
+                                }
+                                break;
+                            case SET_IF_ABSENT:
+                                connection.set(keyBytes, rawValue(cmd.getValue()),
+                                        cmd.getAmount() > 0 ? Expiration.from(cmd.getAmount(), cmd.getTimeUnit())
+                                                : Expiration.persistent(),
+                                        SetOption.ifAbsent());
+                                break;
+                            case GET:
+                                connection.get(keyBytes);
+                                break;
+                            case HPUT:
+                                connection.hSet(keyBytes, rawKey(cmd.getField()), rawValue(cmd.getValue()));
+                                if (cmd.getAmount() > 0) {
+                                    connection.expire(keyBytes, cmd.getTimeUnit()
+                                            .toSeconds(cmd.getAmount()));
+                                }
+                                break;
+                            case INCR:
+                                connection.incrBy(keyBytes, cmd.getAmount());
+                                break;
+                            case EXPIRE:
+                                connection.pExpire(keyBytes, cmd.getTimeUnit()
+                                        .toMillis(cmd.getAmount()));
+                                break;
+                            case DELETE:
+                                connection.del(keyBytes);
+                                break;
+                            default:
+                                throw new IllegalArgumentException("unsupported batch command " + cmd.getType());
+                        }
+                    }
+                    return null;
+                }
+            });
+        } catch (DataAccessException e) {
+            throw new RedisAccessException(e);
+        }
+        // 带过期时间的hput发送了两条命令,只保留hset的结果
+        List<Object> results = new ArrayList<>(commands.size());
+        int i = 0;
+        for (RedisBatch.Command cmd : commands) {
+            if (i >= pipelinedResults.size()) {
+                break;
+            }
+            results.add(pipelinedResults.get(i++));
+            if (cmd.getType() == RedisBatch.CommandType.HPUT && cmd.getAmount() > 0) {
+                i++;
+            }
+        }
+        return results;
+    }
+
     /*  @Override
     public <T> T runScript(final String luaScript, List<String> keys, List<? extends Serializable> args,
             Class<T> resultClazz, RedisSerializer<T> resultSerializer) {
@@ -890,6 +986,52 @@ public class SpringCacheClientImpl implements RedisClient {
         redisTemplate.convertAndSend(channel, message);
     }
 
+    @Override
+    public void subscribe(String channel, Consumer<String> listener) {
+        MessageListener messageListener = subscribers.computeIfAbsent(listener, l -> (message, pattern) -> {
+            Object body = valueSerializer.deserialize(message.getBody());
+            l.accept(body == null ? null : body.toString());
+        });
+        try {
+            getListenerContainer().addMessageListener(messageListener, new ChannelTopic(channel));
+        } catch (DataAccessException e) {
+            throw new RedisAccessException(e);
+        }
+    }
+
+    @Override
+    public void unsubscribe(String channel, Consumer<String> listener) {
+        MessageListener messageListener = subscribers.get(listener);
+        if (messageListener != null && listenerContainer != null) {
+            listenerContainer.removeMessageListener(messageListener, new ChannelTopic(channel));
+        }
+    }
+
+    /**
+     * 首次订阅时创建订阅容器,所有订阅共用一个连接
+     */
+    private RedisMessageListenerContainer getListenerContainer() {
+        if (listenerContainer == null) {
+            synchronized (this) {
+                if (listenerContainer == null) {
+                    RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+                    container.setConnectionFactory(redisTemplate.getConnectionFactory());
+                    container.afterPropertiesSet();
+                    container.start();
+                    listenerContainer = container;
+                }
+            }
+        }
+        return listenerContainer;
+    }
+
+    @PreDestroy
+    public void destroy() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+    }
+
     private BoundSetOperations<String,Object> getSetOpt(String key) {
         return redisTemplate.boundSetOps(key);
     }
@@ -6,8 +6,13 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedHashMap;
@@ -20,13 +25,20 @@ import org.apache.commons.lang3.ArrayUtils;
 import com.aliyun.oss.ClientConfiguration;
 import com.aliyun.oss.ClientException;
 import com.aliyun.oss.OSSClient;
+import com.aliyun.oss.OSSErrorCode;
 import com.aliyun.oss.OSSException;
+import com.aliyun.oss.model.AbortMultipartUploadRequest;
+import com.aliyun.oss.model.CompleteMultipartUploadRequest;
 import com.aliyun.oss.model.DeleteObjectsRequest;
 import com.aliyun.oss.model.DeleteObjectsResult;
+import com.aliyun.oss.model.GetObjectRequest;
+import com.aliyun.oss.model.InitiateMultipartUploadRequest;
 import com.aliyun.oss.model.MatchMode;
 import com.aliyun.oss.model.OSSObject;
 import com.aliyun.oss.model.ObjectMetadata;
+import com.aliyun.oss.model.PartETag;
 import com.aliyun.oss.model.PolicyConditions;
+import com.aliyun.oss.model.UploadPartRequest;
 
 import org.jflame.commons.exception.BusinessException;
 import org.jflame.commons.key.IDHelper;
@@ -43,9 +55,10 @@ import org.jflame.context.filemanager.FileManagerFactory.FileManagerMode;
  * 
  * @author yucan.zhang
  */
-public class AliOssFileManager extends BaseFileManager {
+public class AliOssFileManager extends BaseChunkFileManager {
 
     private final static String ossRootDomain = "aliyuncs.com";
+    private final static int MAX_PART_COUNT = 10000;
     private String ossEndpoint;
     private String ossAccessId;
     private String ossAccessSecret;
@@ -106,6 +119,72 @@ public class AliOssFileManager extends BaseFileManager {
         return save(new ByteArrayInputStream(fileBytes), saveDir, extension, fileMeta);
     }
 
+    /**
+     * 使用oss分片上传接口,uploadId和分片ETag记录在断点中
+     */
+    @Override
+    protected void initChunkUpload(ChunkUploadCheckpoint checkpoint, String saveDir, String extension,
+            Map<String,String> fileMeta) throws IOException {
+        if (checkpoint.getPartCount() > MAX_PART_COUNT) {
+            throw new IllegalArgumentException("分片数不能超过" + MAX_PART_COUNT + ",请增大分片大小");
+        }
+        String newName = createNewFileName(saveDir, extension);
+        InitiateMultipartUploadRequest request = new InitiateMultipartUploadRequest(currentBucket, newName);
+        if (MapHelper.isNotEmpty(fileMeta)) {
+            ObjectMetadata meta = new ObjectMetadata();
+            meta.setUserMetadata(fileMeta);
+            request.setObjectMetadata(meta);
+        }
+        try {
+            checkpoint.setUploadId(ossClient.initiateMultipartUpload(request)
+                    .getUploadId());
+            checkpoint.setFileName(newName);
+        } catch (OSSException | ClientException e) {
+            throw new BusinessException("alioss分片上传初始化失败", e);
+        }
+    }
+
+    @Override
+    protected String uploadChunk(ChunkUploadCheckpoint checkpoint, File file, int partNumber, long offset, long size)
+            throws IOException {
+        try (FileChannel src = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            src.position(offset);
+            UploadPartRequest request = new UploadPartRequest(currentBucket, checkpoint.getFileName(),
+                    checkpoint.getUploadId(), partNumber, Channels.newInputStream(src), size);
+            return ossClient.uploadPart(request)
+                    .getPartETag()
+                    .getETag();
+        } catch (OSSException | ClientException e) {
+            throw new BusinessException("上传分片到alioss失败,分片:" + partNumber, e);
+        }
+    }
+
+    @Override
+    protected String completeChunkUpload(ChunkUploadCheckpoint checkpoint) throws IOException {
+        List<PartETag> partETags = new ArrayList<>();
+        for (Map.Entry<Integer,String> part : checkpoint.getCompletedParts()
+                .entrySet()) {
+            partETags.add(new PartETag(part.getKey(), part.getValue()));
+        }
+        try {
+            ossClient.completeMultipartUpload(new CompleteMultipartUploadRequest(currentBucket,
+                    checkpoint.getFileName(), checkpoint.getUploadId(), partETags));
+        } catch (OSSException | ClientException e) {
+            throw new BusinessException("alioss分片合并失败", e);
+        }
+        return checkpoint.getFileName();
+    }
+
+    @Override
+    protected void abortChunkUpload(ChunkUploadCheckpoint checkpoint) {
+        try {
+            ossClient.abortMultipartUpload(new AbortMultipartUploadRequest(currentBucket, checkpoint.getFileName(),
+                    checkpoint.getUploadId()));
+        } catch (OSSException | ClientException e) {
+            logger.warn("取消alioss分片上传失败" + checkpoint.getFileName(), e);
+        }
+    }
+
     @Override
     public byte[] readBytes(String filePath) throws IOException {
         InputStream contentStream = null;
@@ -147,6 +226,75 @@ public class AliOssFileManager extends BaseFileManager {
         }
     }
 
+    @Override
+    public InputStream openStream(String filePath) throws IOException {
+        return getObjectContent(filePath, 0, -1);
+    }
+
+    /**
+     * 指定区间时使用Range请求只下载需要的部分,边读边写入目标通道
+     */
+    @Override
+    public long transferTo(String filePath, WritableByteChannel target, long offset, long length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        try (InputStream contentStream = getObjectContent(filePath, offset, length)) {
+            return IOHelper.copy(contentStream, Channels.newOutputStream(target));
+        }
+    }
+
+    @Override
+    public long getFileSize(String filePath) throws IOException {
+        return getObjectMetadata(filePath).getContentLength();
+    }
+
+    @Override
+    public FileStat getFileStat(String filePath) throws IOException {
+        ObjectMetadata meta = getObjectMetadata(filePath);
+        return new FileStat(meta.getContentLength(), meta.getLastModified() == null ? 0 : meta.getLastModified()
+                .getTime());
+    }
+
+    private ObjectMetadata getObjectMetadata(String filePath) throws IOException {
+        Optional<String> bucket = extractBucketName(filePath);
+        String key = getFileId(filePath);
+        try {
+            return ossClient.getObjectMetadata(bucket.isPresent() ? bucket.get() : currentBucket, key);
+        } catch (OSSException e) {
+            if (OSSErrorCode.NO_SUCH_KEY.equals(e.getErrorCode())) {
+                throw new FileNotFoundException("文件不存在" + filePath);
+            }
+            throw new BusinessException(e);
+        } catch (ClientException e) {
+            throw new BusinessException(e);
+        }
+    }
+
+    private InputStream getObjectContent(String filePath, long offset, long length) throws IOException {
+        Optional<String> bucket = extractBucketName(filePath);
+        String key = getFileId(filePath);
+        GetObjectRequest request = new GetObjectRequest(bucket.isPresent() ? bucket.get() : currentBucket, key);
+        if (offset > 0 || length > 0) {
+            request.setRange(offset, length > 0 ? offset + length - 1 : -1);
+        }
+        try {
+            InputStream contentStream = ossClient.getObject(request)
+                    .getObjectContent();
+            if (contentStream == null) {
+                throw new FileNotFoundException("文件不存在" + filePath);
+            }
+            return contentStream;
+        } catch (OSSException e) {
+            if (OSSErrorCode.NO_SUCH_KEY.equals(e.getErrorCode())) {
+                throw new FileNotFoundException("文件不存在" + filePath);
+            }
+            throw new BusinessException(e);
+        } catch (ClientException e) {
+            throw new BusinessException(e);
+        }
+    }
+
     @Override
     public int delete(String... filePaths) throws IOException {
         Optional<String> bucket = extractBucketName(filePaths[0]);
@@ -0,0 +1,193 @@
+package org.jflame.context.filemanager;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jflame.commons.util.file.FileHelper;
+
+/**
+ * 支持分片上传的文件管理,子类实现分片上传的开始,上传分片,合并和放弃
+ * 
+ * @author zyc
+ */
+public abstract class BaseChunkFileManager extends BaseFileManager {
+
+    /**
+     * 分片上传.各分片由线程池并发上传,每个任务只记录分片位置,上传时从文件读取,不预先读入内存.
+     * 任一分片失败时取消未开始的分片;未设置断点文件时放弃本次上传,否则保留断点供下次续传.
+     */
+    @Override
+    public String saveInChunks(File file, String saveDir, ChunkUploadConfig config) throws IOException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException("文件不存在" + file);
+        }
+        final long partSize = config.getPartSize();
+        final long fileSize = file.length();
+        if (fileSize <= partSize) {
+            return save(file, saveDir, config.getFileMeta());
+        }
+        final Path checkpointFile = config.getCheckpointFile() == null ? null : Paths.get(config.getCheckpointFile());
+        ChunkUploadCheckpoint checkpoint = null;
+        if (checkpointFile != null) {
+            checkpoint = ChunkUploadCheckpoint.load(checkpointFile);
+            if (checkpoint != null && !checkpoint.isSameUpload(file, partSize)) {
+                logger.warn("断点文件与上传文件不匹配,重新上传:{}", checkpointFile);
+                checkpoint = null;
+            } else if (checkpoint != null) {
+                logger.info("从断点继续上传{},已完成分片数{}", file, checkpoint.getCompletedParts()
+                        .size());
+            }
+        }
+        if (checkpoint == null) {
+            checkpoint = new ChunkUploadCheckpoint(file, partSize);
+            initChunkUpload(checkpoint, saveDir, FileHelper.getExtension(file.getName(), true), config.getFileMeta());
+            if (checkpointFile != null) {
+                checkpoint.save(checkpointFile);
+            }
+        }
+
+        final ChunkUploadCheckpoint uploadCheckpoint = checkpoint;
+        int partCount = checkpoint.getPartCount();
+        ExecutorService executor = config.getExecutor();
+        boolean isOwnExecutor = executor == null;
+        if (isOwnExecutor) {
+            executor = Executors.newFixedThreadPool(Math.min(config.getConcurrency(), partCount));
+        }
+        List<Future<Void>> futures = new ArrayList<>(partCount);
+        boolean success = false;
+        try {
+            for (int i = 1; i <= partCount; i++) {
+                if (checkpoint.isPartCompleted(i)) {
+                    continue;
+                }
+                final int partNumber = i;
+                futures.add(executor.submit(() -> {
+                    long offset = (partNumber - 1) * partSize;
+                    String partTag = uploadChunk(uploadCheckpoint, file, partNumber, offset,
+                            Math.min(partSize, fileSize - offset));
+                    uploadCheckpoint.partCompleted(partNumber, partTag);
+                    if (checkpointFile != null) {
+                        uploadCheckpoint.appendPart(checkpointFile, partNumber);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+            if (checkpoint.getCompletedParts()
+                    .size() != partCount) {
+                throw new IOException("分片未全部上传:" + file);
+            }
+            String fileName = completeChunkUpload(checkpoint);
+            success = true;
+            if (checkpointFile != null) {
+                Files.deleteIfExists(checkpointFile);
+            }
+            return fileName;
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+            throw new InterruptedIOException("分片上传被中断:" + file);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("分片上传失败:" + file, cause);
+        } finally {
+            if (!success) {
+                cancelAndWait(futures);
+                if (checkpointFile == null) {
+                    abortChunkUpload(checkpoint);
+                }
+            }
+            if (isOwnExecutor) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * 取消未开始的分片,并等待正在上传的分片结束
+     */
+    private void cancelAndWait(List<Future<Void>> futures) {
+        boolean interrupted = false;
+        for (Future<Void> future : futures) {
+            future.cancel(false);
+        }
+        for (Future<Void> future : futures) {
+            if (future.isCancelled()) {
+                continue;
+            }
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                // 已处理第一个失败,忽略其他
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread()
+                    .interrupt();
+        }
+    }
+
+    /**
+     * 开始分片上传,设置断点记录的上传标识和最终文件名
+     * 
+     * @param checkpoint 断点记录
+     * @param saveDir 保存目录
+     * @param extension 文件扩展名
+     * @param fileMeta 文件元数据
+     * @throws IOException
+     */
+    protected abstract void initChunkUpload(ChunkUploadCheckpoint checkpoint, String saveDir, String extension,
+            Map<String,String> fileMeta) throws IOException;
+
+    /**
+     * 上传一个分片,会被多个线程并发调用
+     * 
+     * @param checkpoint 断点记录
+     * @param file 上传的文件
+     * @param partNumber 分片序号,从1开始
+     * @param offset 分片在文件中的起始位置
+     * @param size 分片字节数
+     * @return 分片标识,合并时使用
+     * @throws IOException
+     */
+    protected abstract String uploadChunk(ChunkUploadCheckpoint checkpoint, File file, int partNumber, long offset,
+            long size) throws IOException;
+
+    /**
+     * 合并已上传的分片
+     * 
+     * @param checkpoint 断点记录
+     * @return 返回生成的文件名
+     * @throws IOException
+     */
+    protected abstract String completeChunkUpload(ChunkUploadCheckpoint checkpoint) throws IOException;
+
+    /**
+     * 放弃分片上传,清理已上传的分片
+     * 
+     * @param checkpoint 断点记录
+     */
+    protected abstract void abortChunkUpload(ChunkUploadCheckpoint checkpoint);
+}
@@ -1,5 +1,8 @@
 package org.jflame.context.filemanager;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.net.URI;
 
 import org.apache.commons.lang3.StringUtils;
@@ -47,4 +50,15 @@ public abstract class BaseFileManager implements IFileManager {
         }
         return filePath;
     }
+
+    /**
+     * 不支持分片上传的文件服务整体上传,支持分片上传的子类继承{@link BaseChunkFileManager}
+     */
+    @Override
+    public String saveInChunks(File file, String saveDir, ChunkUploadConfig config) throws IOException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException("文件不存在" + file);
+        }
+        return save(file, saveDir, config.getFileMeta());
+    }
 }
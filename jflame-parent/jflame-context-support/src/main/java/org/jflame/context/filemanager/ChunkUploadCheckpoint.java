@@ -0,0 +1,218 @@
+package org.jflame.context.filemanager;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分片上传断点记录,保存上传标识和已完成的分片.
+ * <p>
+ * 断点文件为追加写的日志:开始上传时写入文件头(源文件信息和上传标识),先写临时文件再替换;之后每完成一个分片追加一条分片记录.
+ * 进程异常退出时最后一条记录可能不完整,读取时忽略
+ * 
+ * @author yucan.zhang
+ */
+public class ChunkUploadCheckpoint {
+
+    private static final int MAGIC = 0x4A464350;// "JFCP"
+
+    private final String sourcePath;
+    private final long sourceSize;
+    private final long sourceLastModified;
+    private final long partSize;
+    private String uploadId;
+    private String fileName;
+    /**
+     * 已完成的分片,key为分片序号(从1开始),value为文件服务返回的分片标识
+     */
+    private final Map<Integer,String> completedParts = new ConcurrentHashMap<>();
+
+    public ChunkUploadCheckpoint(File source, long partSize) {
+        this(source.getAbsolutePath(), source.length(), source.lastModified(), partSize);
+    }
+
+    private ChunkUploadCheckpoint(String sourcePath, long sourceSize, long sourceLastModified, long partSize) {
+        if (partSize <= 0) {
+            throw new IllegalArgumentException("partSize must be greater than 0");
+        }
+        this.sourcePath = sourcePath;
+        this.sourceSize = sourceSize;
+        this.sourceLastModified = sourceLastModified;
+        this.partSize = partSize;
+    }
+
+    /**
+     * 断点是否属于同一文件的同一配置的上传,文件修改后不能续传
+     * 
+     * @param source 上传的文件
+     * @param partSize 分片大小
+     * @return
+     */
+    public boolean isSameUpload(File source, long partSize) {
+        return sourcePath.equals(source.getAbsolutePath()) && sourceSize == source.length()
+                && sourceLastModified == source.lastModified() && this.partSize == partSize && uploadId != null;
+    }
+
+    /**
+     * 分片总数
+     */
+    public int getPartCount() {
+        return (int) ((sourceSize + partSize - 1) / partSize);
+    }
+
+    public boolean isPartCompleted(int partNumber) {
+        return completedParts.containsKey(partNumber);
+    }
+
+    public void partCompleted(int partNumber, String partTag) {
+        completedParts.put(partNumber, partTag);
+    }
+
+    /**
+     * 已完成的分片,按分片序号升序
+     */
+    public Map<Integer,String> getCompletedParts() {
+        return new TreeMap<>(completedParts);
+    }
+
+    /**
+     * 写入断点文件头和已完成的分片,覆盖已有的断点文件
+     * 
+     * @param checkpointFile 断点文件
+     * @throws IOException
+     */
+    public synchronized void save(Path checkpointFile) throws IOException {
+        Path parent = checkpointFile.toAbsolutePath()
+                .getParent();
+        Files.createDirectories(parent);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeUTF(sourcePath);
+            out.writeLong(sourceSize);
+            out.writeLong(sourceLastModified);
+            out.writeLong(partSize);
+            out.writeUTF(uploadId == null ? "" : uploadId);
+            out.writeUTF(fileName == null ? "" : fileName);
+            for (Map.Entry<Integer,String> part : getCompletedParts().entrySet()) {
+                writePart(out, part.getKey(), part.getValue());
+            }
+        }
+        Path tmpFile = Files.createTempFile(parent, checkpointFile.getFileName()
+                .toString(), ".tmp");
+        try {
+            Files.write(tmpFile, bytes.toByteArray());
+            Files.move(tmpFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    /**
+     * 向断点文件追加一个已完成分片的记录,断点文件需已由{@link #save(Path)}创建
+     * 
+     * @param checkpointFile 断点文件
+     * @param partNumber 分片序号
+     * @throws IOException
+     */
+    public synchronized void appendPart(Path checkpointFile, int partNumber) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writePart(out, partNumber, completedParts.get(partNumber));
+        }
+        Files.write(checkpointFile, bytes.toByteArray(), StandardOpenOption.APPEND);
+    }
+
+    private static void writePart(DataOutputStream out, int partNumber, String partTag) throws IOException {
+        out.writeInt(partNumber);
+        out.writeUTF(partTag == null ? "" : partTag);
+    }
+
+    /**
+     * 读取断点文件,忽略末尾不完整的分片记录
+     * 
+     * @param checkpointFile 断点文件
+     * @return 断点文件不存在或文件头已损坏返回null
+     */
+    public static ChunkUploadCheckpoint load(Path checkpointFile) {
+        if (!Files.exists(checkpointFile)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpointFile)))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            ChunkUploadCheckpoint checkpoint = new ChunkUploadCheckpoint(in.readUTF(), in.readLong(), in.readLong(),
+                    in.readLong());
+            checkpoint.uploadId = emptyToNull(in.readUTF());
+            checkpoint.fileName = emptyToNull(in.readUTF());
+            while (true) {
+                int partNumber;
+                String partTag;
+                try {
+                    partNumber = in.readInt();
+                    partTag = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (partNumber < 1 || partNumber > checkpoint.getPartCount()) {
+                    break;
+                }
+                checkpoint.completedParts.put(partNumber, partTag);
+            }
+            return checkpoint;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String emptyToNull(String str) {
+        return str.isEmpty() ? null : str;
+    }
+
+    public String getSourcePath() {
+        return sourcePath;
+    }
+
+    public long getSourceSize() {
+        return sourceSize;
+    }
+
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * 文件服务的上传标识
+     */
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    /**
+     * 上传完成后的文件名
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.jflame.context.filemanager;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 分片上传配置
+ * 
+ * @author yucan.zhang
+ */
+public class ChunkUploadConfig {
+
+    /**
+     * 默认分片大小5M
+     */
+    public static final long DEFAULT_PART_SIZE = 5 * 1024 * 1024;
+
+    private long partSize = DEFAULT_PART_SIZE;
+    private int concurrency = 4;
+    private String checkpointFile;
+    private ExecutorService executor;
+    private Map<String,String> fileMeta;
+
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * 设置分片大小,默认5M.阿里oss要求除最后一片外不小于100K,且分片数不超过10000
+     * 
+     * @param partSize 分片字节数
+     */
+    public void setPartSize(long partSize) {
+        if (partSize <= 0) {
+            throw new IllegalArgumentException("分片大小必须大于0");
+        }
+        this.partSize = partSize;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * 设置同时上传的分片数,默认4.指定了executor时由executor决定
+     * 
+     * @param concurrency
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("并发数必须大于0");
+        }
+        this.concurrency = concurrency;
+    }
+
+    public String getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * 设置断点记录文件路径.上传失败后使用同一路径再次上传同一文件时,跳过已完成的分片;为null时不支持断点续传
+     * 
+     * @param checkpointFile
+     */
+    public void setCheckpointFile(String checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * 设置上传分片使用的线程池,不设置时每次上传创建大小为concurrency的线程池,上传结束后关闭
+     * 
+     * @param executor
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public Map<String,String> getFileMeta() {
+        return fileMeta;
+    }
+
+    /**
+     * 设置文件元数据,只适用于可保存元数据的文件服务
+     * 
+     * @param fileMeta
+     */
+    public void setFileMeta(Map<String,String> fileMeta) {
+        this.fileMeta = fileMeta;
+    }
+
+}
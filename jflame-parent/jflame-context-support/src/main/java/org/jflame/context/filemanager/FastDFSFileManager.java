@@ -5,8 +5,12 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -16,6 +20,9 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.csource.common.MyException;
 import org.csource.common.NameValuePair;
 import org.csource.fastdfs.ClientGlobal;
+import org.csource.fastdfs.DownloadCallback;
+import org.csource.fastdfs.FileInfo;
+import org.csource.fastdfs.ProtoCommon;
 import org.csource.fastdfs.StorageClient1;
 import org.csource.fastdfs.StorageServer;
 import org.csource.fastdfs.TrackerClient;
@@ -113,6 +120,85 @@ public class FastDFSFileManager extends BaseFileManager {
         throw new FileNotFoundException("文件不存在" + filePath);
     }
 
+    /**
+     * fastdfs客户端只支持回调方式下载,先下载到临时文件,返回的流关闭时删除临时文件
+     */
+    @Override
+    public InputStream openStream(String filePath) throws IOException {
+        String ext = FileHelper.getExtension(filePath, true);
+        Path tmpPath = Files.createTempFile(IDHelper.millisAndRandomNo(3), ext);
+        boolean success = false;
+        try (FileChannel tmpChannel = FileChannel.open(tmpPath, StandardOpenOption.WRITE)) {
+            transferTo(filePath, tmpChannel, 0, -1);
+            success = true;
+        } finally {
+            if (!success) {
+                Files.deleteIfExists(tmpPath);
+            }
+        }
+        return Files.newInputStream(tmpPath, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * 下载回调中将收到的数据块直接写入目标通道
+     */
+    @Override
+    public long transferTo(String filePath, WritableByteChannel target, long offset, long length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        ChannelDownloadCallback callback = new ChannelDownloadCallback(target);
+        int result;
+        try {
+            initConnect();
+            // fastdfs下载字节数为0表示到文件末尾
+            result = storageClient.download_file1(getFileId(filePath), offset, length < 0 ? 0 : length, callback);
+        } catch (MyException e) {
+            throw new BusinessException(e);
+        }
+        if (callback.error != null) {
+            close();// 中断下载后连接中可能有未读数据,不再复用
+            throw callback.error;
+        }
+        if (result == ProtoCommon.ERR_NO_ENOENT) {
+            throw new FileNotFoundException("文件不存在" + filePath);
+        }
+        if (result != 0) {
+            throw new IOException("fastdfs下载文件失败,错误码:" + result + ",文件:" + filePath);
+        }
+        return callback.written;
+    }
+
+    @Override
+    public long getFileSize(String filePath) throws IOException {
+        return getFileInfo(filePath).getFileSize();
+    }
+
+    /**
+     * fastdfs文件不可修改,最后修改时间取文件创建时间
+     */
+    @Override
+    public FileStat getFileStat(String filePath) throws IOException {
+        FileInfo fileInfo = getFileInfo(filePath);
+        return new FileStat(fileInfo.getFileSize(), fileInfo.getCreateTimestamp() == null ? 0
+                : fileInfo.getCreateTimestamp()
+                        .getTime());
+    }
+
+    private FileInfo getFileInfo(String filePath) throws IOException {
+        FileInfo fileInfo;
+        try {
+            initConnect();
+            fileInfo = storageClient.get_file_info1(getFileId(filePath));
+        } catch (MyException e) {
+            throw new BusinessException(e);
+        }
+        if (fileInfo == null) {
+            throw new FileNotFoundException("文件不存在" + filePath);
+        }
+        return fileInfo;
+    }
+
     @Override
     public int delete(String... filePaths) throws IOException {
         return delete(null, filePaths);
@@ -199,4 +285,30 @@ public class FastDFSFileManager extends BaseFileManager {
         }
         return metaList;
     }
+
+    private static class ChannelDownloadCallback implements DownloadCallback {
+
+        private final WritableByteChannel target;
+        private long written;
+        private IOException error;
+
+        ChannelDownloadCallback(WritableByteChannel target) {
+            this.target = target;
+        }
+
+        @Override
+        public int recv(long fileSize, byte[] data, int bytes) {
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(data, 0, bytes);
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                written += bytes;
+                return 0;
+            } catch (IOException e) {
+                error = e;
+                return ProtoCommon.ERR_NO_EIO;
+            }
+        }
+    }
 }
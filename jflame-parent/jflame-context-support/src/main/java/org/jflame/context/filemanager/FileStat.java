@@ -0,0 +1,32 @@
+package org.jflame.context.filemanager;
+
+/**
+ * 文件属性
+ * 
+ * @author yucan.zhang
+ */
+public class FileStat {
+
+    private final long size;
+    private final long lastModified;
+
+    public FileStat(long size, long lastModified) {
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * 文件字节数
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * 最后修改时间毫秒数,未知时为0
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+}
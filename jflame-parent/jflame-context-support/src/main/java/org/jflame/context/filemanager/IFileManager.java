@@ -4,6 +4,7 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
 import java.util.Map;
 
 import org.jflame.context.filemanager.FileManagerFactory.FileManagerMode;
@@ -51,6 +52,18 @@ public interface IFileManager extends Closeable {
      */
     String save(byte[] fileBytes, String saveDir, String extension, Map<String,String> fileMeta) throws IOException;
 
+    /**
+     * 分片上传文件.文件按分片大小拆分后并发上传,全部完成后合并为一个文件.
+     * 设置了断点文件时,失败后再次调用可跳过已完成的分片;文件不超过一个分片或文件服务不支持分片上传时直接整体保存
+     * 
+     * @param file 要保存的文件File
+     * @param saveDir 保存目录,相对于文件服务根目录,可为null.
+     * @param config 分片上传配置
+     * @return 返回生成的文件名
+     * @throws IOException
+     */
+    String saveInChunks(File file, String saveDir, ChunkUploadConfig config) throws IOException;
+
     /**
      * 读取文件,返回文件 的字节数组byte[]
      * 
@@ -69,6 +82,45 @@ public interface IFileManager extends Closeable {
      */
     File read(String filePath) throws IOException;;
 
+    /**
+     * 打开文件输入流,不将文件整体读入内存.调用方负责关闭
+     *
+     * @param filePath 文件路径
+     * @return 文件输入流
+     * @throws IOException 文件不存在或读取出错
+     */
+    InputStream openStream(String filePath) throws IOException;
+
+    /**
+     * 将文件指定区间的内容直接写入目标通道,不将文件整体读入内存.不关闭目标通道
+     *
+     * @param filePath 文件路径
+     * @param target 目标通道
+     * @param offset 起始位置
+     * @param length 写入的字节数,小于0表示到文件末尾
+     * @return 实际写入的字节数
+     * @throws IOException 文件不存在或读写出错
+     */
+    long transferTo(String filePath, WritableByteChannel target, long offset, long length) throws IOException;
+
+    /**
+     * 返回文件大小
+     *
+     * @param filePath 文件路径
+     * @return 文件字节数
+     * @throws IOException 文件不存在或读取出错
+     */
+    long getFileSize(String filePath) throws IOException;
+
+    /**
+     * 返回文件大小和最后修改时间
+     *
+     * @param filePath 文件路径
+     * @return FileStat
+     * @throws IOException 文件不存在或读取出错
+     */
+    FileStat getFileStat(String filePath) throws IOException;
+
     /**
      * 删除文件
      * 
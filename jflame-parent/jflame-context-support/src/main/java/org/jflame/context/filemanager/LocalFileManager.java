@@ -1,14 +1,21 @@
 package org.jflame.context.filemanager;
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Map;
 
 import org.jflame.commons.util.UrlHelper;
@@ -20,7 +27,9 @@ import org.jflame.context.filemanager.FileManagerFactory.FileManagerMode;
  * 
  * @author yucan.zhang
  */
-public class LocalFileManager extends BaseFileManager {
+public class LocalFileManager extends BaseChunkFileManager {
+
+    private static final String CHUNK_TMP_SUFFIX = ".part";
 
     private String serverUrl;
     private String basePath;
@@ -65,36 +74,111 @@ public class LocalFileManager extends BaseFileManager {
         return save(new ByteArrayInputStream(fileBytes), saveDir, extension, fileMeta);
     }
 
+    /**
+     * 分片先写入同目录下预分配大小的临时文件,各分片按位置写入,合并时重命名为最终文件
+     */
     @Override
-    public byte[] readBytes(String filePath) throws IOException {
-        Path downFile = null;
-        if (!UrlHelper.isAbsoluteUri(filePath)) {
-            downFile = Paths.get(basePath, filePath);
-        } else {
-            downFile = Paths.get(filePath);
+    protected void initChunkUpload(ChunkUploadCheckpoint checkpoint, String saveDir, String extension,
+            Map<String,String> fileMeta) throws IOException {
+        String newName = createNewFileName(extension);
+        Path finalPath = saveDir == null ? Paths.get(basePath, newName) : Paths.get(basePath, saveDir, newName);
+        Path tmpPath = finalPath.resolveSibling(newName + CHUNK_TMP_SUFFIX);
+        Files.createDirectories(finalPath.getParent());
+        try (RandomAccessFile tmpFile = new RandomAccessFile(tmpPath.toFile(), "rw")) {
+            // 按位置写入不能超过文件当前大小
+            tmpFile.setLength(checkpoint.getSourceSize());
         }
-        if (Files.exists(downFile)) {
-            return Files.readAllBytes(downFile);
-        } else {
-            throw new FileNotFoundException("文件不存在" + downFile);
+        checkpoint.setUploadId(tmpPath.toString());
+        checkpoint.setFileName(finalPath.toString());
+    }
+
+    @Override
+    protected String uploadChunk(ChunkUploadCheckpoint checkpoint, File file, int partNumber, long offset, long size)
+            throws IOException {
+        try (FileChannel src = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                FileChannel dest = FileChannel.open(Paths.get(checkpoint.getUploadId()), StandardOpenOption.WRITE)) {
+            src.position(offset);
+            long written = 0;
+            while (written < size) {
+                long n = dest.transferFrom(src, offset + written, size - written);
+                if (n <= 0) {
+                    throw new EOFException("读取分片" + partNumber + "时文件已结束:" + file);
+                }
+                written += n;
+            }
         }
+        return String.valueOf(size);
     }
 
     @Override
-    public File read(String filePath) throws IOException {
-        Path downFile = null;
-        if (!UrlHelper.isAbsoluteUri(filePath)) {
-            downFile = Paths.get(basePath, filePath);
-        } else {
-            downFile = Paths.get(filePath);
+    protected String completeChunkUpload(ChunkUploadCheckpoint checkpoint) throws IOException {
+        Path finalPath = Files.move(Paths.get(checkpoint.getUploadId()), Paths.get(checkpoint.getFileName()), StandardCopyOption.ATOMIC_MOVE);
+        if (logger.isDebugEnabled()) {
+            logger.debug("保存分片上传文件到:{}", finalPath);
         }
-        if (Files.exists(downFile)) {
-            return downFile.toFile();
-        } else {
-            throw new FileNotFoundException("文件不存在" + downFile);
+        return FileHelper.separatorsToUnix(Paths.get(basePath)
+                .relativize(finalPath)
+                .toString());
+    }
+
+    @Override
+    protected void abortChunkUpload(ChunkUploadCheckpoint checkpoint) {
+        try {
+            Files.deleteIfExists(Paths.get(checkpoint.getUploadId()));
+        } catch (IOException e) {
+            logger.warn("删除分片上传临时文件失败" + checkpoint.getUploadId(), e);
+        }
+    }
+
+    @Override
+    public byte[] readBytes(String filePath) throws IOException {
+        return Files.readAllBytes(resolveExistFile(filePath));
+    }
+
+    @Override
+    public File read(String filePath) throws IOException {
+        return resolveExistFile(filePath).toFile();
+    }
+
+    @Override
+    public InputStream openStream(String filePath) throws IOException {
+        return Files.newInputStream(resolveExistFile(filePath));
+    }
+
+    /**
+     * 使用FileChannel.transferTo写入目标通道,目标为文件或socket通道时可由操作系统直接传输
+     */
+    @Override
+    public long transferTo(String filePath, WritableByteChannel target, long offset, long length) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(resolveExistFile(filePath), StandardOpenOption.READ)) {
+            long end = fileChannel.size();
+            if (length >= 0) {
+                end = Math.min(end, offset + length);
+            }
+            long position = offset;
+            while (position < end) {
+                long n = fileChannel.transferTo(position, end - position, target);
+                if (n <= 0) {
+                    break;
+                }
+                position += n;
+            }
+            return Math.max(position - offset, 0);
         }
     }
 
+    @Override
+    public long getFileSize(String filePath) throws IOException {
+        return Files.size(resolveExistFile(filePath));
+    }
+
+    @Override
+    public FileStat getFileStat(String filePath) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(resolveExistFile(filePath), BasicFileAttributes.class);
+        return new FileStat(attrs.size(), attrs.lastModifiedTime()
+                .toMillis());
+    }
+
     @Override
     public int delete(String... filePaths) throws IOException {
         return delete(null, filePaths);
@@ -135,4 +219,20 @@ public class LocalFileManager extends BaseFileManager {
     public FileManagerMode getFileManagerMode() {
         return FileManagerMode.local;
     }
+
+    /**
+     * 相对路径拼接根目录,文件不存在抛出FileNotFoundException
+     */
+    private Path resolveExistFile(String filePath) throws FileNotFoundException {
+        Path file = null;
+        if (!UrlHelper.isAbsoluteUri(filePath)) {
+            file = Paths.get(basePath, filePath);
+        } else {
+            file = Paths.get(filePath);
+        }
+        if (!Files.exists(file)) {
+            throw new FileNotFoundException("文件不存在" + file);
+        }
+        return file;
+    }
 }
@@ -1,8 +1,16 @@
 package org.jflame.context.job;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.jflame.commons.net.IPAddressHelper;
+import org.jflame.context.env.WorkerIdAssigner;
 import org.jflame.context.lock.DistributedLock;
 
 /**
@@ -16,6 +24,11 @@ import org.jflame.context.lock.DistributedLock;
  * <li>锁的过期时间应小于任务执行周期</li>
  * <li>此方案较为粗糙,适用于任务周期较大,且任务重复执行影响不大的情况</li>
  * </ol>
+ * <strong>分片模式:</strong>设置shardCount大于1后任务分为shardCount个分片,各节点每次执行时登记自己并获取存活节点列表,
+ * 按排序后的位置认领分片(分片序号 % 节点数 == 节点位置),每个分片使用独立的分布式锁,获取锁后执行{@link #doExecute(int, int)}.
+ * 节点加入或离开后下次执行即按新的节点列表重新分配.节点列表短暂不一致时分片锁保证同一分片不会并发执行,但个别分片可能本周期未执行.
+ * 分片成功执行后在释放锁前记录本周期的开始时间,其他节点获取分片锁后发现该分片在lockTimeout内已执行过则跳过,防止同一周期重复执行.
+ * 节点标识默认为主机ip+进程名,设置{@link WorkerIdAssigner}后使用其分配的workerId.
  */
 public abstract class AbstractJobWithDistribtedLock {
 
@@ -24,6 +37,9 @@ public abstract class AbstractJobWithDistribtedLock {
     private int lockWaitTime = 100;// 获取锁等待时间
     protected String jobName;
     private boolean oneNodeMode = false;// 一个任务周期内只允许一个任务运行
+    private int shardCount = 1;// 分片数,大于1为分片模式
+    private WorkerIdAssigner workerIdAssigner;
+    private String nodeId;
 
     /**
      * 构造函数
@@ -40,6 +56,10 @@ public abstract class AbstractJobWithDistribtedLock {
      * 运行任务
      */
     public void execute() {
+        if (shardCount > 1) {
+            executeShards();
+            return;
+        }
         boolean isLock = false;
         boolean isImmediatelyUnLock = !oneNodeMode;
         if (logger.isDebugEnabled()) {
@@ -49,7 +69,7 @@ public abstract class AbstractJobWithDistribtedLock {
                 .getName() + jobName;
         DistributedLock lock = getLock(lockName);
         try {
-            isLock = lock.lock(getLockTimeout());
+            isLock = lock.lock(getLockWaitTime());
             if (isLock) {
                 doExecute();
             } else {
@@ -70,6 +90,136 @@ public abstract class AbstractJobWithDistribtedLock {
         }
     }
 
+    /**
+     * 分片模式运行任务,依次执行当前节点认领的分片,一个分片异常不影响其他分片
+     */
+    private void executeShards() {
+        long cycleStart = System.currentTimeMillis();
+        String lockName = getClass().getPackage()
+                .getName() + jobName;
+        List<Integer> shards = assignShards(lockName);
+        if (logger.isDebugEnabled()) {
+            logger.debug("任务 {}开始,分配分片:{}", jobName, shards);
+        }
+        RuntimeException firstError = null;
+        for (Integer shardIndex : shards) {
+            boolean isLock = false;
+            boolean isImmediatelyUnLock = !oneNodeMode;
+            String shardLockName = lockName + "_shard" + shardIndex;
+            DistributedLock lock = getLock(shardLockName);
+            try {
+                isLock = lock.lock(getLockWaitTime());
+                if (isLock) {
+                    if (isExecutedInCycle(shardLockName, cycleStart)) {
+                        logger.debug("任务 {} 分片{}本周期已执行,跳过", lockName, shardIndex);
+                    } else {
+                        doExecute(shardIndex, shardCount);
+                        writeShardFence(shardLockName, cycleStart);
+                    }
+                } else {
+                    logger.warn("任务 {} 分片{}获取锁失败未能执行", lockName, shardIndex);
+                }
+            } catch (RuntimeException e) {
+                logger.error("任务执行中异常" + jobName + ",分片" + shardIndex, e);
+                isImmediatelyUnLock = true;
+                if (firstError == null) {
+                    firstError = e;
+                }
+            } finally {
+                if (isImmediatelyUnLock && isLock) {
+                    try {
+                        lock.unlock();
+                    } catch (Exception e) {
+                        logger.error("任务 {}分片{}释放锁失败", jobName, shardIndex);
+                    }
+                }
+            }
+        }
+        if (firstError != null) {
+            throw firstError;
+        }
+    }
+
+    /**
+     * 分片是否已在本周期执行过,即最近一次成功执行的周期开始时间与本周期开始时间相差小于lockTimeout
+     * 
+     * @param shardLockName 分片锁名
+     * @param cycleStart 本周期开始时间
+     * @return
+     */
+    private boolean isExecutedInCycle(String shardLockName, long cycleStart) {
+        Long lastCycleStart = readShardFence(shardLockName);
+        return lastCycleStart != null && cycleStart - lastCycleStart < TimeUnit.SECONDS.toMillis(lockTimeout);
+    }
+
+    /**
+     * 读取分片最近一次成功执行的周期开始时间,在持有分片锁时调用.默认没有共享存储,返回null
+     * 
+     * @param shardLockName 分片锁名
+     * @return 未执行过返回null
+     */
+    protected Long readShardFence(String shardLockName) {
+        return null;
+    }
+
+    /**
+     * 分片成功执行后记录本周期开始时间,在释放分片锁前调用,记录保留lockTimeout即可
+     * 
+     * @param shardLockName 分片锁名
+     * @param cycleStart 本周期开始时间
+     */
+    protected void writeShardFence(String shardLockName, long cycleStart) {
+    }
+
+    /**
+     * 按存活节点计算当前节点认领的分片
+     * 
+     * @param lockName 任务锁名
+     * @return
+     */
+    List<Integer> assignShards(String lockName) {
+        String myNodeId = getNodeId();
+        List<String> nodes = new ArrayList<>(registerAndGetLiveNodes(lockName, myNodeId));
+        if (!nodes.contains(myNodeId)) {
+            nodes.add(myNodeId);
+        }
+        Collections.sort(nodes);
+        int nodeIndex = nodes.indexOf(myNodeId);
+        List<Integer> shards = new ArrayList<>();
+        for (int i = nodeIndex; i < shardCount; i += nodes.size()) {
+            shards.add(i);
+        }
+        return shards;
+    }
+
+    /**
+     * 分片模式下登记当前节点,并返回所有存活节点的标识.默认只返回当前节点,即当前节点认领所有分片,由分片锁互斥
+     * 
+     * @param lockName 任务锁名
+     * @param myNodeId 当前节点标识
+     * @return
+     */
+    protected List<String> registerAndGetLiveNodes(String lockName, String myNodeId) {
+        return Collections.singletonList(myNodeId);
+    }
+
+    /**
+     * 当前节点标识
+     * 
+     * @return
+     */
+    public String getNodeId() {
+        if (nodeId == null) {
+            if (workerIdAssigner != null) {
+                nodeId = String.valueOf(workerIdAssigner.getWorkerId());
+            } else {
+                nodeId = IPAddressHelper.getHostIP() + '_' + ManagementFactory.getRuntimeMXBean()
+                        .getName();
+            }
+        }
+        return nodeId;
+    }
+
     /**
      * 获取一个分布式锁
      * 
@@ -83,6 +233,18 @@ public abstract class AbstractJobWithDistribtedLock {
      */
     public abstract void doExecute();
 
+    /**
+     * 分片模式下执行一个分片的业务,分片模式的任务需重写该方法.未重写时由分片0执行{@link #doExecute()},其他分片不执行
+     * 
+     * @param shardIndex 分片序号,从0开始
+     * @param shardCount 分片总数
+     */
+    public void doExecute(int shardIndex, int shardCount) {
+        if (shardIndex == 0) {
+            doExecute();
+        }
+    }
+
     public void setLockTimeout(int lockTimeout) {
         this.lockTimeout = lockTimeout;
     }
@@ -107,4 +269,24 @@ public abstract class AbstractJobWithDistribtedLock {
         this.oneNodeMode = oneNodeMode;
     }
 
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * 设置分片数,大于1开启分片模式
+     * 
+     * @param shardCount
+     */
+    public void setShardCount(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be greater than 0");
+        }
+        this.shardCount = shardCount;
+    }
+
+    public void setWorkerIdAssigner(WorkerIdAssigner workerIdAssigner) {
+        this.workerIdAssigner = workerIdAssigner;
+    }
+
 }
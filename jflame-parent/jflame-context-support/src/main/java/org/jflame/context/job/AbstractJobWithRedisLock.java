@@ -1,25 +1,69 @@
 package org.jflame.context.job;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import org.jflame.context.cache.redis.RedisClient;
 import org.jflame.context.lock.DistributedLock;
 import org.jflame.context.lock.RedisLock;
 
 /**
- * 简易任务基于redis分布式锁的实现
+ * 简易任务基于redis分布式锁的实现.
+ * <p>
+ * 分片模式下存活节点登记在有序集合"jf_job_nodes:任务锁名"中,分值为最近一次执行时间,超过shardNodeExpire未执行的节点视为已离开.
+ * 分片执行记录保存在"jf_job_fence:分片锁名"中
  * 
  * @author yucan.zhang
  */
 public abstract class AbstractJobWithRedisLock extends AbstractJobWithDistribtedLock {
 
+    private static final String NODE_KEY_PREFIX = "jf_job_nodes:";
+    private static final String FENCE_KEY_PREFIX = "jf_job_fence:";
+    private static String REGISTER_NODE_LUASCRIPT;
+
+    static {
+        StringBuilder sb = new StringBuilder();
+        sb.append("redis.call('zadd',KEYS[1],ARGV[2],ARGV[1]) ");
+        sb.append("redis.call('zremrangebyscore',KEYS[1],'-inf',ARGV[3]) ");
+        sb.append("redis.call('pexpire',KEYS[1],ARGV[4]) ");
+        sb.append("return redis.call('zrange',KEYS[1],0,-1)");
+        REGISTER_NODE_LUASCRIPT = sb.toString();
+    }
+
     private RedisClient redisClient;
+    private int shardNodeExpire = 300;// 分片模式节点登记过期时间,单位秒
 
     public AbstractJobWithRedisLock(String jobName, int lockTimeout) {
         super(jobName, lockTimeout);
     }
 
+    /**
+     * 获取redis锁.非oneNodeMode时开启看门狗,任务执行期间锁自动续期;oneNodeMode依赖锁过期,不续期
+     */
     @Override
     public DistributedLock getLock(String lockName) {
-        return new RedisLock(getRedisClient(), lockName, getLockTimeout());
+        return new RedisLock(getRedisClient(), lockName, getLockTimeout(), !isOneNodeMode());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected List<String> registerAndGetLiveNodes(String lockName, String myNodeId) {
+        long now = System.currentTimeMillis();
+        long expireMillis = TimeUnit.SECONDS.toMillis(shardNodeExpire);
+        return getRedisClient().runScript(REGISTER_NODE_LUASCRIPT, Arrays.asList(NODE_KEY_PREFIX + lockName),
+                Arrays.asList(myNodeId, now, now - expireMillis, expireMillis), List.class);
+    }
+
+    @Override
+    protected Long readShardFence(String shardLockName) {
+        Number lastCycleStart = getRedisClient().get(FENCE_KEY_PREFIX + shardLockName);
+        return lastCycleStart == null ? null : lastCycleStart.longValue();
+    }
+
+    @Override
+    protected void writeShardFence(String shardLockName, long cycleStart) {
+        getRedisClient().set(FENCE_KEY_PREFIX + shardLockName, cycleStart, getLockTimeout(), TimeUnit.SECONDS);
     }
 
     protected RedisClient getRedisClient() {
@@ -30,4 +74,17 @@ public abstract class AbstractJobWithRedisLock extends AbstractJobWithDistribted
         this.redisClient = redisClient;
     }
 
+    public int getShardNodeExpire() {
+        return shardNodeExpire;
+    }
+
+    /**
+     * 设置分片模式节点登记过期时间,单位秒,应大于任务执行周期.默认300
+     * 
+     * @param shardNodeExpire
+     */
+    public void setShardNodeExpire(int shardNodeExpire) {
+        this.shardNodeExpire = shardNodeExpire;
+    }
+
 }
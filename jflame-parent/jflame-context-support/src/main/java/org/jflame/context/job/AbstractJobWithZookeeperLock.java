@@ -0,0 +1,71 @@
+package org.jflame.context.job;
+
+import java.util.List;
+
+import org.jflame.commons.model.Chars;
+import org.jflame.context.lock.DistributedLock;
+import org.jflame.context.lock.ZookeeperLock;
+import org.jflame.context.zookeeper.ZookeeperClient;
+
+/**
+ * 简易任务基于zookeeper分布式锁的实现.
+ * <p>
+ * 分片模式下存活节点登记为"/jf_job_nodes/任务锁名"下的临时节点,节点会话断开后自动移除,下次执行即重新分配分片.
+ * 分片执行记录保存在持久节点"/jf_job_fence/分片锁名"中
+ * 
+ * @author yucan.zhang
+ */
+public abstract class AbstractJobWithZookeeperLock extends AbstractJobWithDistribtedLock {
+
+    private static final String NODE_ROOT_PATH = "/jf_job_nodes";
+    private static final String FENCE_ROOT_PATH = "/jf_job_fence";
+
+    private ZookeeperClient zkClient;
+
+    public AbstractJobWithZookeeperLock(String jobName, int lockTimeout) {
+        super(jobName, lockTimeout);
+    }
+
+    @Override
+    public DistributedLock getLock(String lockName) {
+        return new ZookeeperLock(getZkClient(), lockName, getLockTimeout());
+    }
+
+    @Override
+    protected List<String> registerAndGetLiveNodes(String lockName, String myNodeId) {
+        String jobPath = NODE_ROOT_PATH + Chars.SLASH + lockName;
+        if (!zkClient.isExist(jobPath)) {
+            zkClient.createPersistent(jobPath, false);
+        }
+        String nodePath = jobPath + Chars.SLASH + myNodeId;
+        if (!zkClient.isExist(nodePath)) {
+            zkClient.createEphemeral(nodePath, false);
+        }
+        return zkClient.getChildren(jobPath);
+    }
+
+    @Override
+    protected Long readShardFence(String shardLockName) {
+        String fencePath = FENCE_ROOT_PATH + Chars.SLASH + shardLockName;
+        return zkClient.isExist(fencePath) ? zkClient.readData(fencePath) : null;
+    }
+
+    @Override
+    protected void writeShardFence(String shardLockName, long cycleStart) {
+        String fencePath = FENCE_ROOT_PATH + Chars.SLASH + shardLockName;
+        if (zkClient.isExist(fencePath)) {
+            zkClient.writeDate(fencePath, cycleStart);
+        } else {
+            zkClient.createPersistent(fencePath, cycleStart, false);
+        }
+    }
+
+    protected ZookeeperClient getZkClient() {
+        return zkClient;
+    }
+
+    public void setZkClient(ZookeeperClient zkClient) {
+        this.zkClient = zkClient;
+    }
+
+}
@@ -0,0 +1,381 @@
+package org.jflame.context.lock;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.jflame.context.cache.redis.RedisAccessException;
+import org.jflame.context.cache.redis.RedisClient;
+
+/**
+ * 基于redis lua脚本的分布式锁基类,实现可重入持有计数,看门狗续期和基于释放通知的等待.
+ * <p>
+ * 子类提供获取,释放,续期脚本,脚本参数约定:
+ * <ul>
+ * <li>获取:KEYS[1]锁名,ARGV[1]线程标识,ARGV[2]过期毫秒数.成功返回nil,否则返回锁剩余过期时间;</li>
+ * <li>释放:KEYS[1]锁名,KEYS[2]释放通知频道,ARGV[1]线程标识,ARGV[2]过期毫秒数,ARGV[3]锁名.未持有返回nil,
+ * 锁可被他人获取时应向KEYS[2]发布ARGV[3];</li>
+ * <li>续期:KEYS[1]锁名,ARGV[1]线程标识,ARGV[2]过期毫秒数.成功返回1.</li>
+ * </ul>
+ * 获取和续期脚本的参数由{@link #scriptArgs(String)}生成,子类可追加参数.
+ *
+ * @author yucan.zhang
+ */
+abstract class AbstractRedisLock implements DistributedLock {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractRedisLock.class);
+
+    static final String JVM_ID = UUID.randomUUID()
+            .toString();
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "redis-lock-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+    /**
+     * 本进程持有的锁,key为锁名+线程标识
+     */
+    private static final ConcurrentMap<String,LockHolder> HOLDERS = new ConcurrentHashMap<>();
+    /**
+     * 锁释放通知频道
+     */
+    static final String RELEASE_CHANNEL = LOCK_KEY_PREFIX + ":release";
+    /**
+     * 本进程正在等待的锁,key为锁名
+     */
+    private static final ConcurrentMap<String,LockWaiters> WAITERS = new ConcurrentHashMap<>();
+    /**
+     * 已订阅释放通知的RedisClient
+     */
+    private static final ConcurrentMap<RedisClient,Consumer<String>> SUBSCRIBED_CLIENTS = new ConcurrentHashMap<>();
+    /**
+     * 订阅不可用时的重试间隔,毫秒
+     */
+    static final long FALLBACK_RETRY_MILLIS = 100;
+
+    RedisClient redisClient;
+
+    String lockKey;// 锁的键名
+    int lockExpire;// 锁超时时间,单位秒
+    private boolean watchdogEnabled = false;
+
+    /**
+     * 本进程内一个线程对一个锁的持有状态
+     */
+    private static final class LockHolder {
+
+        int holdCount;
+        ScheduledFuture<?> renewTask;
+    }
+
+    /**
+     * 本进程内等待同一个锁的线程
+     */
+    private static final class LockWaiters {
+
+        int waiterCount;
+        long releaseVersion;
+    }
+
+    AbstractRedisLock(String lockKey, int expireInSecond) {
+        this.lockKey = lockKey;
+        this.lockExpire = expireInSecond;
+        if (lockExpire <= 0) {
+            throw new IllegalArgumentException("锁的过期时间必须大于0");
+        }
+    }
+
+    abstract String acquireScript();
+
+    abstract String releaseScript();
+
+    abstract String renewScript();
+
+    /**
+     * 获取锁,当前线程已持有该锁时重入次数加1并立即返回true.
+     * <p>
+     * 锁被其他线程持有时等待释放通知,收到通知或到达锁的剩余过期时间后重试.
+     *
+     * @param waitTime 获取锁等待时间，单位毫秒
+     * @return 获取锁返回 true,超时未获取返回false
+     */
+    @Override
+    public boolean lock(long waitTime) {
+        if (waitTime < 1) {
+            throw new IllegalArgumentException();
+        }
+        long deadline = System.currentTimeMillis() + waitTime;
+        Long ttl = tryAcquire();
+        if (ttl == null) {
+            return true;
+        }
+        boolean subscribed = subscribeRelease();
+        LockWaiters waiters = addWaiter();
+        try {
+            while (true) {
+                long version;
+                synchronized (waiters) {
+                    version = waiters.releaseVersion;
+                }
+                ttl = tryAcquire();
+                if (ttl == null) {
+                    return true;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                long waitMillis = Math.min(ttl > 0 ? ttl : FALLBACK_RETRY_MILLIS, remaining);
+                if (!subscribed) {
+                    waitMillis = Math.min(waitMillis, FALLBACK_RETRY_MILLIS);
+                }
+                synchronized (waiters) {
+                    // 重试期间已有释放通知则不再等待
+                    if (waiters.releaseVersion == version) {
+                        waiters.wait(waitMillis);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+            return false;
+        } finally {
+            removeWaiter(waiters);
+        }
+    }
+
+    /**
+     * 尝试获取一次锁
+     *
+     * @return 获取成功返回null,否则返回锁剩余过期时间(毫秒),-1表示未知
+     */
+    Long tryAcquire() {
+        Long ttl;
+        try {
+            ttl = redisClient.runScript(acquireScript(), Arrays.asList(lockKey), scriptArgs(), Long.class);
+        } catch (RedisAccessException e) {
+            logger.error("获取redis锁异常:" + lockKey, e);
+            return -1L;
+        }
+        if (ttl != null) {
+            return ttl;
+        }
+        LockHolder holder = HOLDERS.computeIfAbsent(holderKey(), k -> new LockHolder());
+        holder.holdCount++;
+        if (holder.holdCount == 1 && watchdogEnabled) {
+            scheduleRenewal(holder);
+        }
+        return null;
+    }
+
+    /**
+     * 确保当前RedisClient已订阅锁释放通知,每个RedisClient只订阅一次
+     *
+     * @return 订阅成功返回true
+     */
+    private boolean subscribeRelease() {
+        if (SUBSCRIBED_CLIENTS.containsKey(redisClient)) {
+            return true;
+        }
+        Consumer<String> listener = AbstractRedisLock::onRelease;
+        if (SUBSCRIBED_CLIENTS.putIfAbsent(redisClient, listener) != null) {
+            return true;
+        }
+        try {
+            redisClient.subscribe(RELEASE_CHANNEL, listener);
+            return true;
+        } catch (RuntimeException e) {
+            SUBSCRIBED_CLIENTS.remove(redisClient, listener);
+            logger.warn("订阅redis锁释放通知失败,改为定时重试", e);
+            return false;
+        }
+    }
+
+    private static void onRelease(String releasedLockKey) {
+        if (releasedLockKey == null) {
+            return;
+        }
+        LockWaiters waiters = WAITERS.get(releasedLockKey);
+        if (waiters != null) {
+            synchronized (waiters) {
+                waiters.releaseVersion++;
+                waiters.notifyAll();
+            }
+        }
+    }
+
+    private LockWaiters addWaiter() {
+        while (true) {
+            LockWaiters waiters = WAITERS.computeIfAbsent(lockKey, k -> new LockWaiters());
+            synchronized (waiters) {
+                // 已被移除的对象不再使用
+                if (WAITERS.get(lockKey) == waiters) {
+                    waiters.waiterCount++;
+                    return waiters;
+                }
+            }
+        }
+    }
+
+    private void removeWaiter(LockWaiters waiters) {
+        synchronized (waiters) {
+            waiters.waiterCount--;
+            if (waiters.waiterCount == 0) {
+                WAITERS.remove(lockKey, waiters);
+            }
+        }
+    }
+
+    /**
+     * 释放锁,重入次数减到0时删除锁
+     */
+    @Override
+    public void unlock() {
+        String holderKey = holderKey();
+        LockHolder holder = HOLDERS.get(holderKey);
+        if (holder == null) {
+            return;
+        }
+        holder.holdCount--;
+        if (holder.holdCount <= 0) {
+            HOLDERS.remove(holderKey);
+            if (holder.renewTask != null) {
+                holder.renewTask.cancel(false);
+            }
+        }
+        Long result = redisClient.runScript(releaseScript(), Arrays.asList(lockKey, RELEASE_CHANNEL),
+                Arrays.asList(currentToken(), TimeUnit.SECONDS.toMillis(lockExpire), lockKey), Long.class);
+        if (result == null) {
+            logger.warn("释放redis锁时锁已不属于当前线程,可能已过期:{}", lockKey);
+        }
+    }
+
+    /**
+     * 停止当前线程持有锁的自动续期,但不释放锁,锁将在过期时间后自动释放
+     */
+    public void stopRenewal() {
+        LockHolder holder = HOLDERS.remove(holderKey());
+        if (holder != null && holder.renewTask != null) {
+            holder.renewTask.cancel(false);
+        }
+    }
+
+    private void scheduleRenewal(LockHolder holder) {
+        final String holderKey = holderKey();
+        holder.renewTask = scheduleRenewal(currentToken(), () -> {
+            LockHolder h = HOLDERS.get(holderKey);
+            if (h != null && h.renewTask != null) {
+                h.renewTask.cancel(false);
+            }
+        });
+    }
+
+    /**
+     * 每隔lockExpire/3以续期脚本延长token持有的锁
+     *
+     * @param token 持有者标识
+     * @param onLost 锁已不存在时的回调,应取消续期任务
+     * @return 续期任务
+     */
+    ScheduledFuture<?> scheduleRenewal(final String token, final Runnable onLost) {
+        final String renewScript = renewScript();
+        long period = Math.max(TimeUnit.SECONDS.toMillis(lockExpire) / 3, 100);
+        return WATCHDOG.scheduleAtFixedRate(() -> {
+            try {
+                Long renewed = redisClient.runScript(renewScript, Arrays.asList(lockKey), scriptArgs(token),
+                        Long.class);
+                if (renewed == null || renewed == 0) {
+                    logger.warn("redis锁续期失败,锁已不存在:{}", lockKey);
+                    onLost.run();
+                }
+            } catch (RuntimeException e) {
+                logger.error("redis锁续期异常:" + lockKey, e);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    List<Serializable> scriptArgs() {
+        return scriptArgs(currentToken());
+    }
+
+    /**
+     * 获取和续期脚本的参数,每次执行脚本时生成
+     *
+     * @param token 持有者标识
+     * @return
+     */
+    List<Serializable> scriptArgs(String token) {
+        return Arrays.asList(token, TimeUnit.SECONDS.toMillis(lockExpire));
+    }
+
+    String currentToken() {
+        return JVM_ID + ':' + Thread.currentThread()
+                .getId();
+    }
+
+    /**
+     * 本进程内持有状态的key,同一redis键上有多种锁时子类需区分
+     *
+     * @return
+     */
+    String holderKey() {
+        return lockKey + '#' + currentToken();
+    }
+
+    public int getLockExpire() {
+        return lockExpire;
+    }
+
+    public String getLockKey() {
+        return lockKey;
+    }
+
+    /**
+     * 当前线程是否持有该锁
+     *
+     * @return
+     */
+    public boolean isLocked() {
+        return HOLDERS.containsKey(holderKey());
+    }
+
+    /**
+     * 当前线程对该锁的重入次数,未持有返回0
+     *
+     * @return
+     */
+    public int getHoldCount() {
+        LockHolder holder = HOLDERS.get(holderKey());
+        return holder == null ? 0 : holder.holdCount;
+    }
+
+    public boolean isWatchdogEnabled() {
+        return watchdogEnabled;
+    }
+
+    /**
+     * 设置是否开启看门狗自动续期,需在获取锁之前设置
+     *
+     * @param watchdogEnabled
+     */
+    public void setWatchdogEnabled(boolean watchdogEnabled) {
+        this.watchdogEnabled = watchdogEnabled;
+    }
+
+    public void setRedisClient(RedisClient redisClient) {
+        this.redisClient = redisClient;
+    }
+
+}
@@ -0,0 +1,24 @@
+package org.jflame.context.lock;
+
+/**
+ * 分布式读写锁.读锁可被多个线程同时持有,写锁与其他读锁,写锁互斥
+ * 
+ * @author yucan.zhang
+ */
+public interface DistributedReadWriteLock {
+
+    /**
+     * 读锁
+     * 
+     * @return
+     */
+    DistributedLock readLock();
+
+    /**
+     * 写锁
+     * 
+     * @return
+     */
+    DistributedLock writeLock();
+
+}
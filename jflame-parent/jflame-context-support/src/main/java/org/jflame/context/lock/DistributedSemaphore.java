@@ -0,0 +1,17 @@
+package org.jflame.context.lock;
+
+/**
+ * 分布式信号量.lock获取一个许可,unlock释放当前线程最近获取的一个许可,同时最多permits个许可被持有
+ * 
+ * @author yucan.zhang
+ */
+public interface DistributedSemaphore extends DistributedLock {
+
+    /**
+     * 许可总数
+     * 
+     * @return
+     */
+    int getPermits();
+
+}
@@ -1,54 +1,70 @@
 package org.jflame.context.lock;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.UUID;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-
-import org.jflame.context.cache.redis.RedisAccessException;
 import org.jflame.context.cache.redis.RedisClient;
 
 /**
- * 基于redis的分布式锁(不可重入)实现
- * 
+ * 基于redis的分布式锁(可重入)实现.
+ * <p>
+ * 锁存储为哈希集,成员为持有线程标识,值为重入次数,同一线程可重复获取,释放次数与获取次数相同时才删除锁.<br>
+ * 开启看门狗(watchdog)后,持有锁期间后台每隔过期时间的1/3自动续期,进程退出后锁按过期时间自动释放,
+ * 因此过期时间可设置得较短,不必大于方法执行时间.
+ * <p>
+ * 等待锁时不轮询,释放锁的脚本会在锁删除时发布通知,等待线程收到通知后立即重试.本进程所有等待线程共享一个订阅连接,
+ * 未收到通知时最多等待至锁的剩余过期时间后重试.
+ * <p>
+ * 锁对象可在多个线程间共享,持有状态按线程区分.
+ *
  * @author yucan.zhang
  */
-public class RedisLock implements DistributedLock {
-
-    private RedisClient redisClient;
+public class RedisLock extends AbstractRedisLock {
 
-    private volatile boolean locked = false;
+    private static String LOCK_LUASCRIPT;
     private static String UNLOCK_LUASCRIPT;
-
-    private String lockKey;// 锁的键名
-    private String lockValue;
-    private int lockExpire;// 锁超时时间,单位秒
+    private static String RENEW_LUASCRIPT;
 
     static {
+        // 获取成功返回nil,否则返回锁剩余时间
         StringBuilder sb = new StringBuilder();
-        sb.append("if redis.call(\"get\",KEYS[1]) == ARGV[1] ");
-        sb.append("then ");
-        sb.append("  return redis.call(\"del\",KEYS[1]) ");
-        sb.append("else");
+        sb.append("if redis.call('exists',KEYS[1]) == 0 ");
+        sb.append("  or (redis.call('type',KEYS[1]).ok == 'hash' and redis.call('hexists',KEYS[1],ARGV[1]) == 1) then ");
+        sb.append("  redis.call('hincrby',KEYS[1],ARGV[1],1) ");
+        sb.append("  redis.call('pexpire',KEYS[1],ARGV[2]) ");
+        sb.append("  return nil ");
+        sb.append("end ");
+        sb.append("return redis.call('pttl',KEYS[1])");
+        LOCK_LUASCRIPT = sb.toString();
+
+        // 未持有锁返回nil,重入次数未减到0返回0,删除锁返回1
+        sb = new StringBuilder();
+        sb.append("if redis.call('type',KEYS[1]).ok ~= 'hash' or redis.call('hexists',KEYS[1],ARGV[1]) == 0 then ");
+        sb.append("  return nil ");
+        sb.append("end ");
+        sb.append("local counter = redis.call('hincrby',KEYS[1],ARGV[1],-1) ");
+        sb.append("if counter > 0 then ");
+        sb.append("  redis.call('pexpire',KEYS[1],ARGV[2]) ");
         sb.append("  return 0 ");
-        sb.append("end");
+        sb.append("end ");
+        sb.append("redis.call('del',KEYS[1]) ");
+        sb.append("redis.call('publish',KEYS[2],ARGV[3]) ");
+        sb.append("return 1");
         UNLOCK_LUASCRIPT = sb.toString();
+
+        sb = new StringBuilder();
+        sb.append("if redis.call('type',KEYS[1]).ok == 'hash' and redis.call('hexists',KEYS[1],ARGV[1]) == 1 then ");
+        sb.append("  redis.call('pexpire',KEYS[1],ARGV[2]) ");
+        sb.append("  return 1 ");
+        sb.append("end ");
+        sb.append("return 0");
+        RENEW_LUASCRIPT = sb.toString();
     }
 
     public RedisLock(String lockName, int expireInSecond) {
-        setLockKey(lockName);
-        this.lockExpire = expireInSecond;
-        if (lockExpire <= 0) {
-            throw new IllegalArgumentException("锁的过期时间必须大于0");
-        }
+        super(LOCK_KEY_PREFIX + ':' + lockName, expireInSecond);
     }
 
     /**
      * 构造函数
-     * 
+     *
      * @param _redisClient RedisClient
      * @param lockName 锁名,最终锁名"jf_dis_lock:lockName"
      * @param expireInSecond 锁超时时间,单位秒
@@ -58,90 +74,36 @@ public class RedisLock implements DistributedLock {
         this.redisClient = _redisClient;
     }
 
-    void setLockKey(String lockName) {
-        this.lockKey = LOCK_KEY_PREFIX + ':' + lockName;
-    }
-
-    /**
-     * 获取新锁. 执行过程:<br>
-     * 1.通过setnx尝试设置某个key的值,成功(当前没有这个锁)则返回,成功获得锁 <br>
-     * 2.锁已经存在则获取锁的到期时间,和当前时间比较,超时的话,则设置新的值
-     * 
-     * @param waitTime 获取锁等待时间，单位毫秒
-     * @return 获取锁返回 true,已经锁定过或加锁失败返回false
-     */
-    public synchronized boolean lock(long waitTime) {
-        if (waitTime < 1) {
-            throw new IllegalArgumentException();
-        }
-        lockValue = UUID.randomUUID()
-                .toString();
-        long startTime = System.currentTimeMillis();
-        long spanTime = 0;
-        Lock localLock = new ReentrantLock();
-        try {
-            localLock.lock();
-            do {
-                if (setNX(lockKey, lockValue)) {
-                    locked = true; // 上锁成功结束请求
-                    return true;
-                }
-                if (spanTime > 10) {
-                    try {
-                        // 随机延迟
-                        TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current()
-                                .nextLong(spanTime));
-                    } catch (InterruptedException e) {
-                        // e.printStackTrace();
-                    }
-                }
-                spanTime = System.currentTimeMillis() - startTime;
-            } while (spanTime < waitTime);
-        } finally {
-            localLock.unlock();
-        }
-        return false;
-    }
-
     /**
-     * 释放锁
+     * 构造函数
+     *
+     * @param _redisClient RedisClient
+     * @param lockName 锁名,最终锁名"jf_dis_lock:lockName"
+     * @param expireInSecond 锁超时时间,单位秒.开启看门狗时为每次续期的时长
+     * @param watchdogEnabled 是否开启看门狗自动续期
      */
-    public void unlock() {
-        if (locked) {
-            List<String> keys = Arrays.asList(lockKey);
-            List<String> values = Arrays.asList(lockValue);
-            Long result = redisClient.runScript(UNLOCK_LUASCRIPT, keys, values, Long.class);
-            locked = result == 0;
-        }
+    public RedisLock(RedisClient _redisClient, String lockName, int expireInSecond, boolean watchdogEnabled) {
+        this(_redisClient, lockName, expireInSecond);
+        setWatchdogEnabled(watchdogEnabled);
     }
 
-    private boolean setNX(final String key, final String value) {
-        try {
-            return redisClient.setIfAbsent(key, value, (long) getLockExpire(), TimeUnit.SECONDS);
-        } catch (RedisAccessException e) {
-            e.printStackTrace();
-            return false;
-        }
-    }
-
-    public int getLockExpire() {
-        return lockExpire;
+    void setLockKey(String lockName) {
+        this.lockKey = LOCK_KEY_PREFIX + ':' + lockName;
     }
 
-    public String getLockKey() {
-        return lockKey;
+    @Override
+    String acquireScript() {
+        return LOCK_LUASCRIPT;
     }
 
-    public boolean isLocked() {
-        return locked;
+    @Override
+    String releaseScript() {
+        return UNLOCK_LUASCRIPT;
     }
 
-    /* public String getLockValue() {
-        return lockValue;
-    }*/
-
-    public void setRedisClient(RedisClient redisClient) {
-        this.redisClient = redisClient;
+    @Override
+    String renewScript() {
+        return RENEW_LUASCRIPT;
     }
 
 }
@@ -0,0 +1,260 @@
+package org.jflame.context.lock;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jflame.context.cache.redis.RedisClient;
+
+/**
+ * 基于redis的分布式读写锁(可重入)实现.
+ * <p>
+ * 锁存储为哈希集"jf_dis_lock:rw:lockName",成员mode为当前模式(read/write),读锁持有者成员为"r:线程标识",
+ * 写锁持有者成员为"w:线程标识",值为重入次数.每个读锁持有者另有成员"rt:线程标识"记录各自的过期时间点,获取锁时先清除已过期的读锁.
+ * <ul>
+ * <li>读锁:无锁或读模式时可获取,持有写锁的线程也可再获取读锁(锁降级);</li>
+ * <li>写锁:无锁时可获取,持有写锁的线程可重入.持有读锁时获取写锁(锁升级)将一直等待直到超时;</li>
+ * <li>写锁释放后仍有本线程的读锁时切换为读模式.</li>
+ * </ul>
+ * 锁是非公平的,读锁持续被获取时写锁可能一直等待,但其他读锁的获取不会延长已有读锁的过期时间.
+ * 过期时间点取自各节点本地时钟,节点间时钟偏差应远小于过期时间.等待,续期方式同{@link RedisLock}
+ *
+ * @author yucan.zhang
+ */
+public class RedisReadWriteLock implements DistributedReadWriteLock {
+
+    private static String READ_LOCK_LUASCRIPT;
+    private static String READ_UNLOCK_LUASCRIPT;
+    private static String READ_RENEW_LUASCRIPT;
+    private static String WRITE_LOCK_LUASCRIPT;
+    private static String WRITE_UNLOCK_LUASCRIPT;
+    private static String WRITE_RENEW_LUASCRIPT;
+
+    static {
+        // 清除已过期的读锁持有者,earliest为未过期读锁中最早的过期时间点.只剩mode时删除锁
+        StringBuilder sb = new StringBuilder();
+        sb.append("local now = tonumber(ARGV[3]) ");
+        sb.append("local lease = tonumber(ARGV[2]) ");
+        sb.append("local earliest = nil ");
+        sb.append("local fields = redis.call('hgetall',KEYS[1]) ");
+        sb.append("for i = 1,#fields,2 do ");
+        sb.append("  if string.sub(fields[i],1,3) == 'rt:' then ");
+        sb.append("    local expireAt = tonumber(fields[i + 1]) ");
+        sb.append("    if expireAt <= now then ");
+        sb.append("      redis.call('hdel',KEYS[1],fields[i],'r:'..string.sub(fields[i],4)) ");
+        sb.append("    elseif earliest == nil or expireAt < earliest then ");
+        sb.append("      earliest = expireAt ");
+        sb.append("    end ");
+        sb.append("  end ");
+        sb.append("end ");
+        sb.append("if #fields > 0 and redis.call('hlen',KEYS[1]) <= 1 then ");
+        sb.append("  redis.call('del',KEYS[1]) ");
+        sb.append("end ");
+        final String pruneReaders = sb.toString();
+
+        // 获取成功返回nil,否则返回锁剩余时间
+        sb = new StringBuilder(pruneReaders);
+        sb.append("local mode = redis.call('hget',KEYS[1],'mode') ");
+        sb.append("if mode == false or mode == 'read' or redis.call('hexists',KEYS[1],'w:'..ARGV[1]) == 1 then ");
+        sb.append("  if mode == false then ");
+        sb.append("    redis.call('hset',KEYS[1],'mode','read') ");
+        sb.append("  end ");
+        sb.append("  redis.call('hincrby',KEYS[1],'r:'..ARGV[1],1) ");
+        sb.append("  redis.call('hset',KEYS[1],'rt:'..ARGV[1],now + lease) ");
+        sb.append("  if redis.call('pttl',KEYS[1]) < lease then ");
+        sb.append("    redis.call('pexpire',KEYS[1],lease) ");
+        sb.append("  end ");
+        sb.append("  return nil ");
+        sb.append("end ");
+        sb.append("return redis.call('pttl',KEYS[1])");
+        READ_LOCK_LUASCRIPT = sb.toString();
+
+        // 未持有锁返回nil,锁未删除返回0,删除锁返回1
+        sb = new StringBuilder();
+        sb.append("local field = 'r:'..ARGV[1] ");
+        sb.append("if redis.call('hexists',KEYS[1],field) == 0 then ");
+        sb.append("  return nil ");
+        sb.append("end ");
+        sb.append("if redis.call('hincrby',KEYS[1],field,-1) > 0 then ");
+        sb.append("  return 0 ");
+        sb.append("end ");
+        sb.append("redis.call('hdel',KEYS[1],field,'rt:'..ARGV[1]) ");
+        sb.append("if redis.call('hlen',KEYS[1]) <= 1 then ");
+        sb.append("  redis.call('del',KEYS[1]) ");
+        sb.append("  redis.call('publish',KEYS[2],ARGV[3]) ");
+        sb.append("  return 1 ");
+        sb.append("end ");
+        sb.append("return 0");
+        READ_UNLOCK_LUASCRIPT = sb.toString();
+
+        // 只延后当前读锁的过期时间点
+        sb = new StringBuilder();
+        sb.append("local lease = tonumber(ARGV[2]) ");
+        sb.append("if redis.call('hexists',KEYS[1],'r:'..ARGV[1]) == 1 then ");
+        sb.append("  redis.call('hset',KEYS[1],'rt:'..ARGV[1],tonumber(ARGV[3]) + lease) ");
+        sb.append("  if redis.call('pttl',KEYS[1]) < lease then ");
+        sb.append("    redis.call('pexpire',KEYS[1],lease) ");
+        sb.append("  end ");
+        sb.append("  return 1 ");
+        sb.append("end ");
+        sb.append("return 0");
+        READ_RENEW_LUASCRIPT = sb.toString();
+
+        // 读模式时返回最早过期读锁的剩余时间
+        sb = new StringBuilder(pruneReaders);
+        sb.append("local mode = redis.call('hget',KEYS[1],'mode') ");
+        sb.append("if mode == false then ");
+        sb.append("  redis.call('hset',KEYS[1],'mode','write') ");
+        sb.append("  redis.call('hset',KEYS[1],'w:'..ARGV[1],1) ");
+        sb.append("  redis.call('pexpire',KEYS[1],lease) ");
+        sb.append("  return nil ");
+        sb.append("end ");
+        sb.append("if mode == 'write' and redis.call('hexists',KEYS[1],'w:'..ARGV[1]) == 1 then ");
+        sb.append("  redis.call('hincrby',KEYS[1],'w:'..ARGV[1],1) ");
+        sb.append("  redis.call('pexpire',KEYS[1],lease) ");
+        sb.append("  return nil ");
+        sb.append("end ");
+        sb.append("if mode == 'read' and earliest ~= nil then ");
+        sb.append("  return math.max(earliest - now,1) ");
+        sb.append("end ");
+        sb.append("return redis.call('pttl',KEYS[1])");
+        WRITE_LOCK_LUASCRIPT = sb.toString();
+
+        // 写锁释放后读锁即可获取,总是发布通知
+        sb = new StringBuilder();
+        sb.append("local field = 'w:'..ARGV[1] ");
+        sb.append("if redis.call('hexists',KEYS[1],field) == 0 then ");
+        sb.append("  return nil ");
+        sb.append("end ");
+        sb.append("if redis.call('hincrby',KEYS[1],field,-1) > 0 then ");
+        sb.append("  redis.call('pexpire',KEYS[1],ARGV[2]) ");
+        sb.append("  return 0 ");
+        sb.append("end ");
+        sb.append("redis.call('hdel',KEYS[1],field) ");
+        sb.append("if redis.call('hlen',KEYS[1]) <= 1 then ");
+        sb.append("  redis.call('del',KEYS[1]) ");
+        sb.append("else ");
+        sb.append("  redis.call('hset',KEYS[1],'mode','read') ");
+        sb.append("end ");
+        sb.append("redis.call('publish',KEYS[2],ARGV[3]) ");
+        sb.append("return 1");
+        WRITE_UNLOCK_LUASCRIPT = sb.toString();
+
+        sb = new StringBuilder();
+        sb.append("if redis.call('hexists',KEYS[1],'w:'..ARGV[1]) == 1 then ");
+        sb.append("  redis.call('pexpire',KEYS[1],ARGV[2]) ");
+        sb.append("  return 1 ");
+        sb.append("end ");
+        sb.append("return 0");
+        WRITE_RENEW_LUASCRIPT = sb.toString();
+    }
+
+    private final ReadLock readLock;
+    private final WriteLock writeLock;
+
+    /**
+     * 构造函数
+     *
+     * @param _redisClient RedisClient
+     * @param lockName 锁名,最终锁名"jf_dis_lock:rw:lockName"
+     * @param expireInSecond 锁超时时间,单位秒.开启看门狗时为每次续期的时长
+     * @param watchdogEnabled 是否开启看门狗自动续期
+     */
+    public RedisReadWriteLock(RedisClient _redisClient, String lockName, int expireInSecond,
+            boolean watchdogEnabled) {
+        String lockKey = DistributedLock.LOCK_KEY_PREFIX + ":rw:" + lockName;
+        readLock = new ReadLock(lockKey, expireInSecond);
+        writeLock = new WriteLock(lockKey, expireInSecond);
+        readLock.setRedisClient(_redisClient);
+        writeLock.setRedisClient(_redisClient);
+        readLock.setWatchdogEnabled(watchdogEnabled);
+        writeLock.setWatchdogEnabled(watchdogEnabled);
+    }
+
+    public RedisReadWriteLock(RedisClient _redisClient, String lockName, int expireInSecond) {
+        this(_redisClient, lockName, expireInSecond, false);
+    }
+
+    @Override
+    public DistributedLock readLock() {
+        return readLock;
+    }
+
+    @Override
+    public DistributedLock writeLock() {
+        return writeLock;
+    }
+
+    /**
+     * 脚本参数:线程标识,过期毫秒数,当前时间毫秒数
+     */
+    static List<Serializable> nowArgs(String token, int expireInSecond) {
+        return Arrays.asList(token, TimeUnit.SECONDS.toMillis(expireInSecond), System.currentTimeMillis());
+    }
+
+    static final class ReadLock extends AbstractRedisLock {
+
+        ReadLock(String lockKey, int expireInSecond) {
+            super(lockKey, expireInSecond);
+        }
+
+        @Override
+        String acquireScript() {
+            return READ_LOCK_LUASCRIPT;
+        }
+
+        @Override
+        String releaseScript() {
+            return READ_UNLOCK_LUASCRIPT;
+        }
+
+        @Override
+        String renewScript() {
+            return READ_RENEW_LUASCRIPT;
+        }
+
+        @Override
+        String holderKey() {
+            return lockKey + "#r:" + currentToken();
+        }
+
+        @Override
+        List<Serializable> scriptArgs(String token) {
+            return nowArgs(token, lockExpire);
+        }
+    }
+
+    static final class WriteLock extends AbstractRedisLock {
+
+        WriteLock(String lockKey, int expireInSecond) {
+            super(lockKey, expireInSecond);
+        }
+
+        @Override
+        String acquireScript() {
+            return WRITE_LOCK_LUASCRIPT;
+        }
+
+        @Override
+        String releaseScript() {
+            return WRITE_UNLOCK_LUASCRIPT;
+        }
+
+        @Override
+        String renewScript() {
+            return WRITE_RENEW_LUASCRIPT;
+        }
+
+        @Override
+        String holderKey() {
+            return lockKey + "#w:" + currentToken();
+        }
+
+        @Override
+        List<Serializable> scriptArgs(String token) {
+            return nowArgs(token, lockExpire);
+        }
+    }
+
+}
@@ -0,0 +1,230 @@
+package org.jflame.context.lock;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.jflame.context.cache.redis.RedisAccessException;
+import org.jflame.context.cache.redis.RedisClient;
+
+/**
+ * 基于redis的分布式信号量实现.
+ * <p>
+ * 许可存储为有序集合"jf_dis_lock:sem:lockName",成员为许可标识,分值为许可过期时间点.获取许可时先清除已过期的许可,
+ * 未过期许可数小于许可总数时获取成功,否则等待最早过期的许可或释放通知.许可在过期时间后自动失效,防止进程退出后许可无法归还.
+ * <p>
+ * 过期时间点取自各节点本地时钟,节点间时钟偏差应远小于过期时间.同一线程可多次获取,每次占用一个许可.
+ * 开启看门狗时每个许可单独续期,续期时将许可的过期时间点延后
+ *
+ * @author yucan.zhang
+ */
+public class RedisSemaphore extends AbstractRedisLock implements DistributedSemaphore {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisSemaphore.class);
+
+    private static String ACQUIRE_LUASCRIPT;
+    private static String RELEASE_LUASCRIPT;
+    private static String RENEW_LUASCRIPT;
+
+    private static final AtomicLong PERMIT_SEQ = new AtomicLong();
+
+    static {
+        // 获取成功返回nil,否则返回最早过期许可的剩余时间
+        StringBuilder sb = new StringBuilder();
+        sb.append("local now = tonumber(ARGV[3]) ");
+        sb.append("local lease = tonumber(ARGV[2]) ");
+        sb.append("redis.call('zremrangebyscore',KEYS[1],'-inf',now) ");
+        sb.append("if redis.call('zcard',KEYS[1]) < tonumber(ARGV[4]) then ");
+        sb.append("  redis.call('zadd',KEYS[1],now + lease,ARGV[1]) ");
+        sb.append("  if redis.call('pttl',KEYS[1]) < lease then ");
+        sb.append("    redis.call('pexpire',KEYS[1],lease) ");
+        sb.append("  end ");
+        sb.append("  return nil ");
+        sb.append("end ");
+        sb.append("local first = redis.call('zrange',KEYS[1],0,0,'withscores') ");
+        sb.append("return math.max(tonumber(first[2]) - now,1)");
+        ACQUIRE_LUASCRIPT = sb.toString();
+
+        // 许可不存在(已过期)返回nil
+        sb = new StringBuilder();
+        sb.append("if redis.call('zrem',KEYS[1],ARGV[1]) == 1 then ");
+        sb.append("  redis.call('publish',KEYS[2],ARGV[2]) ");
+        sb.append("  return 1 ");
+        sb.append("end ");
+        sb.append("return nil");
+        RELEASE_LUASCRIPT = sb.toString();
+
+        // 许可未过期时延后过期时间点并返回1,否则返回0
+        sb = new StringBuilder();
+        sb.append("local now = tonumber(ARGV[3]) ");
+        sb.append("local lease = tonumber(ARGV[2]) ");
+        sb.append("local score = redis.call('zscore',KEYS[1],ARGV[1]) ");
+        sb.append("if score == false then ");
+        sb.append("  return 0 ");
+        sb.append("end ");
+        sb.append("if tonumber(score) <= now then ");
+        sb.append("  redis.call('zrem',KEYS[1],ARGV[1]) ");
+        sb.append("  return 0 ");
+        sb.append("end ");
+        sb.append("redis.call('zadd',KEYS[1],now + lease,ARGV[1]) ");
+        sb.append("if redis.call('pttl',KEYS[1]) < lease then ");
+        sb.append("  redis.call('pexpire',KEYS[1],lease) ");
+        sb.append("end ");
+        sb.append("return 1");
+        RENEW_LUASCRIPT = sb.toString();
+    }
+
+    private final int permits;
+    /**
+     * 各线程持有的许可标识,key为线程id
+     */
+    private final ConcurrentMap<Long,Deque<String>> heldPermits = new ConcurrentHashMap<>();
+    /**
+     * 许可的续期任务,key为许可标识
+     */
+    private final ConcurrentMap<String,ScheduledFuture<?>> renewTasks = new ConcurrentHashMap<>();
+
+    /**
+     * 构造函数
+     *
+     * @param _redisClient RedisClient
+     * @param lockName 信号量名,最终键名"jf_dis_lock:sem:lockName"
+     * @param permits 许可总数
+     * @param expireInSecond 许可过期时间,单位秒.开启看门狗时为每次续期的时长
+     * @param watchdogEnabled 是否开启看门狗自动续期
+     */
+    public RedisSemaphore(RedisClient _redisClient, String lockName, int permits, int expireInSecond,
+            boolean watchdogEnabled) {
+        super(LOCK_KEY_PREFIX + ":sem:" + lockName, expireInSecond);
+        if (permits <= 0) {
+            throw new IllegalArgumentException("许可总数必须大于0");
+        }
+        this.permits = permits;
+        setRedisClient(_redisClient);
+        setWatchdogEnabled(watchdogEnabled);
+    }
+
+    public RedisSemaphore(RedisClient _redisClient, String lockName, int permits, int expireInSecond) {
+        this(_redisClient, lockName, permits, expireInSecond, false);
+    }
+
+    @Override
+    Long tryAcquire() {
+        String permitId = currentToken() + ':' + PERMIT_SEQ.incrementAndGet();
+        Long ttl;
+        try {
+            ttl = redisClient.runScript(ACQUIRE_LUASCRIPT, Arrays.asList(lockKey),
+                    Arrays.asList(permitId, TimeUnit.SECONDS.toMillis(lockExpire), System.currentTimeMillis(), permits),
+                    Long.class);
+        } catch (RedisAccessException e) {
+            logger.error("获取redis信号量异常:" + lockKey, e);
+            return -1L;
+        }
+        if (ttl != null) {
+            return ttl;
+        }
+        heldPermits.computeIfAbsent(Thread.currentThread()
+                .getId(), k -> new ArrayDeque<>())
+                .push(permitId);
+        if (isWatchdogEnabled()) {
+            renewTasks.put(permitId, scheduleRenewal(permitId, () -> cancelRenewal(permitId)));
+        }
+        return null;
+    }
+
+    private void cancelRenewal(String permitId) {
+        ScheduledFuture<?> task = renewTasks.remove(permitId);
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * 释放当前线程最近获取的一个许可
+     */
+    @Override
+    public void unlock() {
+        Long threadId = Thread.currentThread()
+                .getId();
+        Deque<String> held = heldPermits.get(threadId);
+        if (held == null) {
+            return;
+        }
+        String permitId = held.pop();
+        if (held.isEmpty()) {
+            heldPermits.remove(threadId);
+        }
+        cancelRenewal(permitId);
+        Long result = redisClient.runScript(RELEASE_LUASCRIPT, Arrays.asList(lockKey, RELEASE_CHANNEL),
+                Arrays.asList(permitId, lockKey), Long.class);
+        if (result == null) {
+            logger.warn("释放redis信号量时许可已过期:{}", lockKey);
+        }
+    }
+
+    @Override
+    String acquireScript() {
+        return ACQUIRE_LUASCRIPT;
+    }
+
+    @Override
+    String releaseScript() {
+        return RELEASE_LUASCRIPT;
+    }
+
+    @Override
+    String renewScript() {
+        return RENEW_LUASCRIPT;
+    }
+
+    @Override
+    List<Serializable> scriptArgs(String permitId) {
+        return Arrays.asList(permitId, TimeUnit.SECONDS.toMillis(lockExpire), System.currentTimeMillis());
+    }
+
+    /**
+     * 停止当前线程所持许可的自动续期,但不释放许可,许可将在过期时间后自动失效
+     */
+    @Override
+    public void stopRenewal() {
+        Deque<String> held = heldPermits.get(Thread.currentThread()
+                .getId());
+        if (held != null) {
+            for (String permitId : held) {
+                cancelRenewal(permitId);
+            }
+        }
+    }
+
+    @Override
+    public boolean isLocked() {
+        return heldPermits.containsKey(Thread.currentThread()
+                .getId());
+    }
+
+    /**
+     * 当前线程持有的许可数
+     */
+    @Override
+    public int getHoldCount() {
+        Deque<String> held = heldPermits.get(Thread.currentThread()
+                .getId());
+        return held == null ? 0 : held.size();
+    }
+
+    @Override
+    public int getPermits() {
+        return permits;
+    }
+
+}
@@ -0,0 +1,195 @@
+package org.jflame.context.lock;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+
+import org.jflame.commons.model.Chars;
+import org.jflame.context.zookeeper.ChildNodeListener;
+import org.jflame.context.zookeeper.NodeDataListener;
+import org.jflame.context.zookeeper.ZookeeperClient;
+
+/**
+ * 基于zookeeper临时序列节点的锁,供zkclient客户端实现读写锁,信号量使用.
+ * <p>
+ * 获取时在锁路径下创建临时序列节点,按序号排序同一锁路径下的节点后由{@link Strategy}判断是否获取成功,
+ * 未成功时监听返回的节点删除事件或子节点变化后重新判断.超时未获取删除创建的节点.不可重入,同一线程每次获取都创建新节点
+ *
+ * @author yucan.zhang
+ */
+final class ZkSequenceNodeLock implements DistributedLock {
+
+    /**
+     * 序列节点的序号长度
+     */
+    private static final int SEQ_LENGTH = 10;
+    /**
+     * 策略返回该值表示监听锁路径的子节点变化
+     */
+    static final String WATCH_CHILDREN = "*";
+
+    /**
+     * 获取判断策略
+     */
+    interface Strategy {
+
+        /**
+         * 判断是否获取成功
+         *
+         * @param children 按序号排序的节点名
+         * @param myIndex 当前节点的位置
+         * @return 获取成功返回null,否则返回需要监听删除事件的节点名,或{@link ZkSequenceNodeLock#WATCH_CHILDREN}
+         */
+        String check(List<String> children, int myIndex);
+    }
+
+    private final ZookeeperClient zkclient;
+    private final String lockPath;
+    private final String nodePrefix;
+    private final String[] lockNodePrefixes;
+    private final Strategy strategy;
+    private final Serializable nodeData;
+    /**
+     * 各线程创建的节点路径,key为线程id
+     */
+    private final ConcurrentMap<Long,Deque<String>> heldNodes = new ConcurrentHashMap<>();
+
+    /**
+     * @param zkclient ZookeeperClient
+     * @param lockPath 锁路径
+     * @param nodePrefix 本锁创建的节点名前缀
+     * @param lockNodePrefixes 参与排序的节点名前缀
+     * @param strategy 获取判断策略
+     * @param nodeData 节点数据
+     */
+    ZkSequenceNodeLock(ZookeeperClient zkclient, String lockPath, String nodePrefix, String[] lockNodePrefixes,
+            Strategy strategy, Serializable nodeData) {
+        this.zkclient = zkclient;
+        this.lockPath = lockPath;
+        this.nodePrefix = nodePrefix;
+        this.lockNodePrefixes = lockNodePrefixes;
+        this.strategy = strategy;
+        this.nodeData = nodeData;
+    }
+
+    @Override
+    public boolean lock(long waitTime) {
+        long deadline = System.currentTimeMillis() + waitTime;
+        String node = zkclient.createEphemeral(lockPath + Chars.SLASH + nodePrefix, nodeData, true);
+        String nodeName = StringUtils.substringAfterLast(node, "/");
+        boolean locked = false;
+        try {
+            while (true) {
+                List<String> children = sortedChildren(zkclient.getChildren(lockPath));
+                int myIndex = children.indexOf(nodeName);
+                if (myIndex < 0) {
+                    throw new IllegalStateException("锁节点已不存在,会话可能已过期:" + node);
+                }
+                String watchNode = strategy.check(children, myIndex);
+                if (watchNode == null) {
+                    locked = true;
+                    heldNodes.computeIfAbsent(Thread.currentThread()
+                            .getId(), k -> new ArrayDeque<>())
+                            .push(node);
+                    return true;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                if (WATCH_CHILDREN.equals(watchNode)) {
+                    awaitChildrenChange(children, remaining);
+                } else {
+                    awaitDeleted(lockPath + Chars.SLASH + watchNode, remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+            return false;
+        } finally {
+            if (!locked) {
+                zkclient.delete(node, false);
+            }
+        }
+    }
+
+    private void awaitDeleted(String watchPath, long timeout) throws InterruptedException {
+        final CountDownLatch watchLatch = new CountDownLatch(1);
+        NodeDataListener dataListener = new NodeDataListener() {
+
+            @Override
+            public void dataDeleted(String path) throws Exception {
+                watchLatch.countDown();
+            }
+
+            @Override
+            public void dataChange(String path, Object data) throws Exception {
+            }
+        };
+        zkclient.registerDataListener(watchPath, dataListener);
+        try {
+            // 注册监听前节点可能已删除
+            if (zkclient.isExist(watchPath)) {
+                watchLatch.await(timeout, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            zkclient.unregisterDataListener(watchPath, dataListener);
+        }
+    }
+
+    private void awaitChildrenChange(List<String> children, long timeout) throws InterruptedException {
+        final CountDownLatch watchLatch = new CountDownLatch(1);
+        ChildNodeListener childListener = (path, currentChildren) -> watchLatch.countDown();
+        List<String> current = zkclient.registerChildListener(lockPath, childListener);
+        try {
+            // 注册监听前子节点可能已变化
+            if (current != null && children.equals(sortedChildren(current))) {
+                watchLatch.await(timeout, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            zkclient.unregisterChildListener(lockPath, childListener);
+        }
+    }
+
+    private List<String> sortedChildren(List<String> children) {
+        List<String> lockNodes = new ArrayList<>();
+        if (children != null) {
+            for (String child : children) {
+                if (StringUtils.startsWithAny(child, lockNodePrefixes) && child.length() > SEQ_LENGTH) {
+                    lockNodes.add(child);
+                }
+            }
+        }
+        lockNodes.sort((o1, o2) -> o1.substring(o1.length() - SEQ_LENGTH)
+                .compareTo(o2.substring(o2.length() - SEQ_LENGTH)));
+        return lockNodes;
+    }
+
+    /**
+     * 删除当前线程最近创建的节点
+     */
+    @Override
+    public void unlock() {
+        Long threadId = Thread.currentThread()
+                .getId();
+        Deque<String> held = heldNodes.get(threadId);
+        if (held == null) {
+            return;
+        }
+        String node = held.pop();
+        if (held.isEmpty()) {
+            heldNodes.remove(threadId);
+        }
+        zkclient.delete(node, false);
+    }
+
+}
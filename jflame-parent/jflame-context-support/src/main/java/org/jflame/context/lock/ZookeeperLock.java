@@ -1,11 +1,13 @@
 package org.jflame.context.lock;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang3.StringUtils;
@@ -13,6 +15,8 @@ import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.recipes.locks.InterProcessLock;
 import org.apache.curator.framework.recipes.locks.InterProcessSemaphoreMutex;
 import org.apache.zookeeper.common.PathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.jflame.commons.model.Chars;
 import org.jflame.commons.util.CollectionHelper;
@@ -24,54 +28,206 @@ import org.jflame.context.zookeeper.curator.CuratorZookeeperClient;
 import org.jflame.context.zookeeper.zkclient.ZkclientZookeeperClient;
 
 /**
- * 基于zookeeper分布式锁(不可重入)实现
- * 
+ * 基于zookeeper分布式锁实现.
+ * <p>
+ * 同一进程内同一锁名的线程先在本地排队(公平锁),只有获得本地锁的线程到zookeeper竞争,每个进程最多创建一个锁节点.
+ * 释放时如果本地还有等待线程,不删除锁节点直接交给下一个本地线程,连续交接{@value #MAX_LOCAL_HANDOFFS}次后释放锁节点,
+ * 避免其他进程一直无法获取.本进程内可重入
+ *
  * @author yucan.zhang
  */
 public class ZookeeperLock implements DistributedLock {
 
+    private static final Logger logger = LoggerFactory.getLogger(ZookeeperLock.class);
+
+    /**
+     * 连续在本地交接锁的最大次数
+     */
+    static final int MAX_LOCAL_HANDOFFS = 8;
+    /**
+     * 本进程各锁的本地状态,无线程使用时移除
+     */
+    private static final ConcurrentMap<LocalLockKey,LocalLockState> LOCAL_STATES = new ConcurrentHashMap<>();
+
     private final String SEQ_NODE_NAME_PRE = "mylock-";
     private String lockPath;// 锁的路径
     private int lockExpiryTime;// 锁超时时间,单位秒
-    private final DistributedLock internalLock;
+    private final ZookeeperClient zkClient;
+    private final LocalLockKey localKey;
 
     public ZookeeperLock(ZookeeperClient _zkClient, String _lockName, int expireInSecond) {
         if (_zkClient == null) {
             throw new IllegalArgumentException("zkClient is not be null and connected");
         }
+        if (!(_zkClient instanceof CuratorZookeeperClient) && !(_zkClient instanceof ZkclientZookeeperClient)) {
+            throw new IllegalArgumentException(_zkClient.getClass() + " 未实现分布式锁");
+        }
+        zkClient = _zkClient;
         lockExpiryTime = expireInSecond;
         this.lockPath = UrlHelper.mergeUrl(Chars.SLASH + LOCK_KEY_PREFIX, _lockName);
         PathUtils.validatePath(this.lockPath);
-        if (_zkClient instanceof CuratorZookeeperClient) {
-            internalLock = new CuratorLockImpl(((CuratorZookeeperClient) _zkClient).getClient());
-        } else if (_zkClient instanceof ZkclientZookeeperClient) {
-            internalLock = new ZkclientLockImpl(_zkClient);
-        } else {
-            throw new IllegalArgumentException(_zkClient.getClass() + " 未实现分布式锁");
+        localKey = new LocalLockKey(zkClient, lockPath);
+    }
+
+    private DistributedLock createInternalLock() {
+        if (zkClient instanceof CuratorZookeeperClient) {
+            return new CuratorLockImpl(((CuratorZookeeperClient) zkClient).getClient());
         }
+        return new ZkclientLockImpl(zkClient);
     }
 
     @Override
     public boolean lock(long waitTime) {
-        Lock localLock = new ReentrantLock();
+        long deadline = System.currentTimeMillis() + waitTime;
+        LocalLockState state = retainState();
+        boolean locked = false;
         try {
-            localLock.lock();
-            return internalLock.lock(waitTime);
+            if (!state.localLock.tryLock(waitTime, TimeUnit.MILLISECONDS)) {
+                releaseOrphan(state);
+                return false;
+            }
+            try {
+                if (state.zkHeld) {
+                    // 本地交接或重入
+                    locked = true;
+                    return true;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining > 0 && state.zkLock.lock(remaining)) {
+                    state.zkHeld = true;
+                    state.handoffs = 0;
+                    locked = true;
+                }
+                return locked;
+            } finally {
+                if (!locked) {
+                    state.localLock.unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+            releaseOrphan(state);
+            return false;
         } finally {
-            localLock.unlock();
+            if (!locked) {
+                releaseState(state);
+            }
         }
     }
 
     @Override
     public void unlock() {
-        internalLock.unlock();
+        LocalLockState state = LOCAL_STATES.get(localKey);
+        if (state == null || !state.localLock.isHeldByCurrentThread()) {
+            return;
+        }
+        try {
+            if (state.localLock.getHoldCount() == 1) {
+                if (state.localLock.hasQueuedThreads() && state.handoffs < MAX_LOCAL_HANDOFFS) {
+                    state.handoffs++;// 保留锁节点交给本地等待线程
+                } else {
+                    releaseZkLock(state);
+                }
+            }
+        } finally {
+            state.localLock.unlock();
+            releaseState(state);
+        }
+    }
+
+    /**
+     * 等待超时的线程检查是否有交接后无人使用的锁节点
+     */
+    private void releaseOrphan(LocalLockState state) {
+        if (state.localLock.tryLock()) {
+            try {
+                if (state.zkHeld && !state.localLock.hasQueuedThreads()) {
+                    releaseZkLock(state);
+                }
+            } finally {
+                state.localLock.unlock();
+            }
+        }
+    }
+
+    private void releaseZkLock(LocalLockState state) {
+        state.zkHeld = false;
+        state.handoffs = 0;
+        state.zkLock.unlock();
+    }
+
+    private LocalLockState retainState() {
+        return LOCAL_STATES.compute(localKey, (k, v) -> {
+            LocalLockState state = v == null ? new LocalLockState(createInternalLock()) : v;
+            state.refCount++;
+            return state;
+        });
+    }
+
+    private void releaseState(LocalLockState state) {
+        LOCAL_STATES.computeIfPresent(localKey, (k, v) -> {
+            if (v != state) {
+                return v;
+            }
+            return --v.refCount == 0 ? null : v;
+        });
+    }
+
+    /**
+     * 本进程内一个锁的状态
+     */
+    private static final class LocalLockState {
+
+        final ReentrantLock localLock = new ReentrantLock(true);
+        final DistributedLock zkLock;
+        int refCount;// 获取中和持有中的线程数,在LOCAL_STATES.compute中修改
+        boolean zkHeld;// 本进程是否持有锁节点,持有localLock时修改
+        int handoffs;// 连续本地交接次数
+
+        LocalLockState(DistributedLock zkLock) {
+            this.zkLock = zkLock;
+        }
     }
 
+    /**
+     * 区分不同ZookeeperClient实例的同名锁
+     */
+    private static final class LocalLockKey {
+
+        private final ZookeeperClient client;
+        private final String lockPath;
+
+        LocalLockKey(ZookeeperClient client, String lockPath) {
+            this.client = client;
+            this.lockPath = lockPath;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(client) + lockPath.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof LocalLockKey)) {
+                return false;
+            }
+            LocalLockKey other = (LocalLockKey) obj;
+            return client == other.client && lockPath.equals(other.lockPath);
+        }
+    }
+
+    /**
+     * zkclient实现.只在创建节点后读取一次子节点列表,序号更小的节点只会减少不会增加,
+     * 之后依次监听前面的节点删除,不再重复读取子节点
+     */
     class ZkclientLockImpl implements DistributedLock {
 
         private String currentLockNode;// 生成的临时序列节点路径
-        private String currentLockNodeName;
-        private String watchNode = null;// 监听的前一节点
 
         private ZookeeperClient zkclient;
 
@@ -82,64 +238,79 @@ public class ZookeeperLock implements DistributedLock {
         @Override
         public boolean lock(long waitTime) {
             boolean locked = false;
-            long startMillisTime = System.currentTimeMillis();
+            long deadline = System.currentTimeMillis() + waitTime;
             final String slash = "/";
-            currentLockNode = zkclient.createEphemeral(lockPath + slash + SEQ_NODE_NAME_PRE, lockExpiryTime, true);
-            currentLockNodeName = StringUtils.substringAfterLast(currentLockNode, slash);
-
-            if (checkLock()) {
+            String lockNode = zkclient.createEphemeral(lockPath + slash + SEQ_NODE_NAME_PRE, lockExpiryTime, true);
+            String lockNodeName = StringUtils.substringAfterLast(lockNode, slash);
+            try {
+                List<String> aheadNodes = getAheadNodes(lockNodeName);
+                while (!aheadNodes.isEmpty()) {
+                    long overWaitTime = deadline - System.currentTimeMillis();
+                    if (overWaitTime <= 0) {
+                        return false;
+                    }
+                    // 监听前一个节点删除事件
+                    String watchNode = lockPath + Chars.SLASH + aheadNodes.get(aheadNodes.size() - 1);
+                    if (!awaitDeleted(watchNode, overWaitTime)) {
+                        return false;
+                    }
+                    aheadNodes.remove(aheadNodes.size() - 1);
+                }
                 locked = true;
-            } else {
-                // 监听前一个节点删除事件
-                final CountDownLatch watchLatch = new CountDownLatch(1);
-                NodeDataListener dataListener = new NodeDataListener() {
+                currentLockNode = lockNode;
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                        .interrupt();
+                return false;
+            } finally {
+                if (!locked) {
+                    zkclient.delete(lockNode, false);
+                }
+            }
+        }
 
-                    @Override
-                    public void dataDeleted(String path) throws Exception {
-                        watchLatch.countDown();
-                    }
+        private boolean awaitDeleted(String watchNode, long waitTime) throws InterruptedException {
+            final CountDownLatch watchLatch = new CountDownLatch(1);
+            NodeDataListener dataListener = new NodeDataListener() {
 
-                    @Override
-                    public void dataChange(String path, Object data) throws Exception {
-                    }
-                };
-                try {
-                    long overWaitTime = waitTime - (System.currentTimeMillis() - startMillisTime);
-                    if (overWaitTime > 0) {
-                        zkclient.registerDataListener(watchNode, dataListener);
-                        if (watchLatch.await(overWaitTime, TimeUnit.MILLISECONDS)) {// watchLatch.await返回true表示执行了前面节点的删除事件
-                            locked = checkLock();
-                        }
-                    }
-                } catch (Exception e) {
-                    locked = false;
-                } finally {
-                    zkclient.unregisterDataListener(watchNode, dataListener);
+                @Override
+                public void dataDeleted(String path) throws Exception {
+                    watchLatch.countDown();
+                }
+
+                @Override
+                public void dataChange(String path, Object data) throws Exception {
                 }
+            };
+            zkclient.registerDataListener(watchNode, dataListener);
+            try {
+                // 注册监听前节点可能已删除
+                return !zkclient.isExist(watchNode) || watchLatch.await(waitTime, TimeUnit.MILLISECONDS);
+            } finally {
+                zkclient.unregisterDataListener(watchNode, dataListener);
             }
-            return locked;
         }
 
         @Override
         public void unlock() {
             if (currentLockNode != null) {
                 zkclient.delete(currentLockNode, false);
+                currentLockNode = null;
             }
         }
 
-        private boolean checkLock() {
-            List<String> lockChilrens = zkclient.getChildren(lockPath);
+        /**
+         * 序号小于当前节点的锁节点,按序号升序
+         */
+        private List<String> getAheadNodes(String lockNodeName) {
+            List<String> lockChilrens = new ArrayList<>(zkclient.getChildren(lockPath));
             sortChildren(lockChilrens);
-            int myIndex = lockChilrens.indexOf(currentLockNodeName);
-            if (myIndex == 0) {
-                return true;
-            } else {
-                // 监听前一个节点删除事件
-                if (watchNode == null) {
-                    watchNode = lockPath + Chars.SLASH + lockChilrens.get(myIndex - 1);
-                }
-                return false;
+            int myIndex = lockChilrens.indexOf(lockNodeName);
+            if (myIndex < 0) {
+                throw new IllegalStateException("锁节点已不存在:" + lockNodeName);
             }
+            return new ArrayList<>(lockChilrens.subList(0, myIndex));
         }
 
         private void sortChildren(List<String> lockChilrens) {
@@ -171,9 +342,9 @@ public class ZookeeperLock implements DistributedLock {
         @Override
         public boolean lock(long waitTime) {
             try {
-                return lock.acquire(waitTime, TimeUnit.SECONDS);
+                return lock.acquire(waitTime, TimeUnit.MILLISECONDS);
             } catch (Exception e) {
-                e.printStackTrace();
+                logger.error("获取zookeeper锁异常:" + lockPath, e);
                 return false;
             }
         }
@@ -184,7 +355,7 @@ public class ZookeeperLock implements DistributedLock {
                 try {
                     lock.release();
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    logger.error("释放zookeeper锁异常:" + lockPath, e);
                 }
             }
         }
@@ -0,0 +1,117 @@
+package org.jflame.context.lock;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.framework.recipes.locks.InterProcessMutex;
+import org.apache.curator.framework.recipes.locks.InterProcessReadWriteLock;
+import org.apache.zookeeper.common.PathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.jflame.commons.model.Chars;
+import org.jflame.commons.util.UrlHelper;
+import org.jflame.context.zookeeper.ZookeeperClient;
+import org.jflame.context.zookeeper.curator.CuratorZookeeperClient;
+import org.jflame.context.zookeeper.zkclient.ZkclientZookeeperClient;
+
+/**
+ * 基于zookeeper的分布式读写锁实现.
+ * <p>
+ * 在锁路径下创建"read-","write-"临时序列节点:读锁在前面没有写节点时获取成功,否则监听前面最近的写节点;
+ * 写锁在自己是最小节点时获取成功,否则监听前一个节点.按创建顺序获取,写锁不会被后来的读锁饿死.<br>
+ * curator客户端使用InterProcessReadWriteLock(可重入),zkclient客户端不可重入
+ * 
+ * @author yucan.zhang
+ */
+public class ZookeeperReadWriteLock implements DistributedReadWriteLock {
+
+    private static final String READ_NODE_PREFIX = "read-";
+    private static final String WRITE_NODE_PREFIX = "write-";
+
+    private final DistributedLock readLock;
+    private final DistributedLock writeLock;
+
+    /**
+     * 构造函数
+     * 
+     * @param _zkClient ZookeeperClient
+     * @param _lockName 锁名,锁路径为"/jf_dis_lock/rw/lockName"
+     * @param expireInSecond 锁超时时间,单位秒,zkclient客户端写入节点数据
+     */
+    public ZookeeperReadWriteLock(ZookeeperClient _zkClient, String _lockName, int expireInSecond) {
+        if (_zkClient == null) {
+            throw new IllegalArgumentException("zkClient is not be null and connected");
+        }
+        String lockPath = UrlHelper.mergeUrl(Chars.SLASH + DistributedLock.LOCK_KEY_PREFIX, "rw", _lockName);
+        PathUtils.validatePath(lockPath);
+        if (_zkClient instanceof CuratorZookeeperClient) {
+            InterProcessReadWriteLock rwLock = new InterProcessReadWriteLock(
+                    ((CuratorZookeeperClient) _zkClient).getClient(), lockPath);
+            readLock = new CuratorMutexLock(rwLock.readLock());
+            writeLock = new CuratorMutexLock(rwLock.writeLock());
+        } else if (_zkClient instanceof ZkclientZookeeperClient) {
+            String[] prefixes = { READ_NODE_PREFIX,WRITE_NODE_PREFIX };
+            readLock = new ZkSequenceNodeLock(_zkClient, lockPath, READ_NODE_PREFIX, prefixes,
+                    ZookeeperReadWriteLock::checkRead, expireInSecond);
+            writeLock = new ZkSequenceNodeLock(_zkClient, lockPath, WRITE_NODE_PREFIX, prefixes,
+                    ZookeeperReadWriteLock::checkWrite, expireInSecond);
+        } else {
+            throw new IllegalArgumentException(_zkClient.getClass() + " 未实现分布式读写锁");
+        }
+    }
+
+    @Override
+    public DistributedLock readLock() {
+        return readLock;
+    }
+
+    @Override
+    public DistributedLock writeLock() {
+        return writeLock;
+    }
+
+    private static String checkRead(List<String> children, int myIndex) {
+        for (int i = myIndex - 1; i >= 0; i--) {
+            if (children.get(i)
+                    .startsWith(WRITE_NODE_PREFIX)) {
+                return children.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static String checkWrite(List<String> children, int myIndex) {
+        return myIndex == 0 ? null : children.get(myIndex - 1);
+    }
+
+    static class CuratorMutexLock implements DistributedLock {
+
+        private final Logger logger = LoggerFactory.getLogger(CuratorMutexLock.class);
+        private final InterProcessMutex mutex;
+
+        CuratorMutexLock(InterProcessMutex mutex) {
+            this.mutex = mutex;
+        }
+
+        @Override
+        public boolean lock(long waitTime) {
+            try {
+                return mutex.acquire(waitTime, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                logger.error("获取zookeeper锁异常", e);
+                return false;
+            }
+        }
+
+        @Override
+        public void unlock() {
+            try {
+                mutex.release();
+            } catch (Exception e) {
+                logger.error("释放zookeeper锁异常", e);
+            }
+        }
+    }
+
+}
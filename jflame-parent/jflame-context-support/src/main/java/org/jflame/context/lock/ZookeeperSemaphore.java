@@ -0,0 +1,129 @@
+package org.jflame.context.lock;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.framework.recipes.locks.InterProcessSemaphoreV2;
+import org.apache.curator.framework.recipes.locks.Lease;
+import org.apache.zookeeper.common.PathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.jflame.commons.model.Chars;
+import org.jflame.commons.util.UrlHelper;
+import org.jflame.context.zookeeper.ZookeeperClient;
+import org.jflame.context.zookeeper.curator.CuratorZookeeperClient;
+import org.jflame.context.zookeeper.zkclient.ZkclientZookeeperClient;
+
+/**
+ * 基于zookeeper的分布式信号量实现.
+ * <p>
+ * 在锁路径下创建"permit-"临时序列节点,节点序号排在前permits位时获取成功,否则监听子节点变化.进程退出后节点随会话删除,许可自动归还.<br>
+ * curator客户端使用InterProcessSemaphoreV2
+ * 
+ * @author yucan.zhang
+ */
+public class ZookeeperSemaphore implements DistributedSemaphore {
+
+    private static final String PERMIT_NODE_PREFIX = "permit-";
+
+    private final int permits;
+    private final DistributedLock internalLock;
+
+    /**
+     * 构造函数
+     * 
+     * @param _zkClient ZookeeperClient
+     * @param _lockName 信号量名,路径为"/jf_dis_lock/sem/lockName"
+     * @param permits 许可总数,同一信号量各节点应使用相同的值
+     * @param expireInSecond 锁超时时间,单位秒,zkclient客户端写入节点数据
+     */
+    public ZookeeperSemaphore(ZookeeperClient _zkClient, String _lockName, int permits, int expireInSecond) {
+        if (_zkClient == null) {
+            throw new IllegalArgumentException("zkClient is not be null and connected");
+        }
+        if (permits <= 0) {
+            throw new IllegalArgumentException("许可总数必须大于0");
+        }
+        this.permits = permits;
+        String lockPath = UrlHelper.mergeUrl(Chars.SLASH + LOCK_KEY_PREFIX, "sem", _lockName);
+        PathUtils.validatePath(lockPath);
+        if (_zkClient instanceof CuratorZookeeperClient) {
+            internalLock = new CuratorSemaphoreImpl(
+                    new InterProcessSemaphoreV2(((CuratorZookeeperClient) _zkClient).getClient(), lockPath, permits));
+        } else if (_zkClient instanceof ZkclientZookeeperClient) {
+            internalLock = new ZkSequenceNodeLock(_zkClient, lockPath, PERMIT_NODE_PREFIX,
+                    new String[] { PERMIT_NODE_PREFIX },
+                    (children, myIndex) -> myIndex < permits ? null : ZkSequenceNodeLock.WATCH_CHILDREN,
+                    expireInSecond);
+        } else {
+            throw new IllegalArgumentException(_zkClient.getClass() + " 未实现分布式信号量");
+        }
+    }
+
+    @Override
+    public boolean lock(long waitTime) {
+        return internalLock.lock(waitTime);
+    }
+
+    @Override
+    public void unlock() {
+        internalLock.unlock();
+    }
+
+    @Override
+    public int getPermits() {
+        return permits;
+    }
+
+    static class CuratorSemaphoreImpl implements DistributedLock {
+
+        private final Logger logger = LoggerFactory.getLogger(CuratorSemaphoreImpl.class);
+        private final InterProcessSemaphoreV2 semaphore;
+        /**
+         * 各线程持有的许可,key为线程id
+         */
+        private final ConcurrentMap<Long,Deque<Lease>> leases = new ConcurrentHashMap<>();
+
+        CuratorSemaphoreImpl(InterProcessSemaphoreV2 semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        @Override
+        public boolean lock(long waitTime) {
+            Lease lease;
+            try {
+                lease = semaphore.acquire(waitTime, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                logger.error("获取zookeeper信号量异常", e);
+                return false;
+            }
+            if (lease == null) {
+                return false;
+            }
+            leases.computeIfAbsent(Thread.currentThread()
+                    .getId(), k -> new ArrayDeque<>())
+                    .push(lease);
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            Long threadId = Thread.currentThread()
+                    .getId();
+            Deque<Lease> held = leases.get(threadId);
+            if (held == null) {
+                return;
+            }
+            Lease lease = held.pop();
+            if (held.isEmpty()) {
+                leases.remove(threadId);
+            }
+            semaphore.returnLease(lease);
+        }
+    }
+
+}
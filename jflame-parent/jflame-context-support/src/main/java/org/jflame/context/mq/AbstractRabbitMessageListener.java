@@ -4,6 +4,10 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
@@ -14,18 +18,35 @@ import org.springframework.amqp.core.MessageProperties;
 import com.rabbitmq.client.Channel;
 
 import org.jflame.commons.util.StringHelper;
+import org.jflame.context.cache.LocalCache;
+import org.jflame.context.cache.redis.RedisBatch;
+import org.jflame.context.cache.redis.RedisBatch.Response;
 import org.jflame.context.cache.redis.RedisClient;
 
 /**
  * 实现重复消息判断的消息接收监听器父类.
  * <p>
- * 通过缓存消息id,判断消息是否重复.
+ * 通过缓存消息id,判断消息是否重复:
+ * <ul>
+ * <li>处理前以SET NX原子认领消息id,值为处理中状态,认领失败即为重复消息.处理中状态在processingExpire秒后过期,防止消费者异常退出后消息无法再处理;</li>
+ * <li>处理成功或丢弃后改为已完成状态,保留doneExpire秒;需要重试时删除认领,重新投递的消息可再次处理;</li>
+ * <li>已完成的消息id同时记录在本地LRU缓存中,重复投递的消息不必访问redis;</li>
+ * <li>批量模式{@link #onMessageBatch(List, Channel)}每批消息只用一次管道认领,一次管道标记完成,成功的消息通过multiple=true一次确认.</li>
+ * </ul>
+ * 收到正在被其他消费者处理的重复消息时默认拒绝且不重新入队,队列应配置死信交换机(x-dead-letter-exchange)转入设置了x-message-ttl的延迟队列,
+ * 延迟队列过期后再转回原队列,避免立即重新入队造成的重复投递循环,原消费者异常退出时消息也不会丢失.
  * 
  * @author yucan.zhang
  */
 public abstract class AbstractRabbitMessageListener {
 
     protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+    static final String STATE_PROCESSING = "processing";
+    static final String STATE_DONE = "done";
+    private static final String CLAIM_LUASCRIPT = "if redis.call('set',KEYS[1],ARGV[1],'NX','PX',ARGV[2]) then "
+            + "return nil end return redis.call('get',KEYS[1])";
+
     /**
      * 字符编码
      */
@@ -36,11 +57,25 @@ public abstract class AbstractRabbitMessageListener {
     protected String cacheKeyPrefix;
 
     protected RedisClient redisClient;
+    /**
+     * 处理中状态过期时间,单位秒
+     */
+    private int processingExpire = 300;
+    /**
+     * 已完成状态过期时间,单位秒
+     */
+    private int doneExpire = (int) TimeUnit.DAYS.toSeconds(1);
+    /**
+     * 本地已完成消息id缓存
+     */
+    private LocalCache<String,Boolean> doneCache;
+    private int localCacheSize = 10000;
 
     public AbstractRabbitMessageListener(RedisClient redisClient) {
         this.redisClient = redisClient;
         cacheKeyPrefix = getClass().getPackage()
                 .getName();
+        setLocalCacheSize(localCacheSize);
     }
 
     public enum MqAction {
@@ -55,16 +90,114 @@ public abstract class AbstractRabbitMessageListener {
         String cacheKey = null;
         if (StringHelper.isNotEmpty(msgId)) {
             cacheKey = cacheKeyPrefix + msgId;
-            if (redisClient.exists(cacheKey)) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("重复的消息:{}", msgId);
-                }
-                replyMq(cacheKey, message, channel, MqAction.REJECT);
+            Object state = isDoneLocally(cacheKey) ? STATE_DONE : claim(cacheKey);
+            if (state != null) {
+                replyDuplicate(msgId, state, message, channel);
                 return;
             }
         }
+        MqAction reply = handle(message);
+        if (cacheKey != null) {
+            complete(cacheKey, reply);
+        }
+        replyMq(message, channel, reply);
+    }
+
+    /**
+     * 批量处理同一信道收到的消息.重复判断和完成标记各使用一次redis管道,处理成功的消息最后以multiple=true一次确认,
+     * 因此调用方应保证该信道上序号更小的消息都已应答
+     * 
+     * @param messages 同一信道收到的消息,按投递顺序
+     * @param channel 信道
+     * @throws Exception
+     */
+    public void onMessageBatch(List<Message> messages, Channel channel) throws Exception {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        int size = messages.size();
+        String[] cacheKeys = new String[size];
+        Object[] duplicateStates = new Object[size];
+        List<Response<Boolean>> claimed = new ArrayList<>(size);
+        List<Response<Object>> states = new ArrayList<>(size);
+
+        RedisBatch claimBatch = redisClient.batch();
+        for (int i = 0; i < size; i++) {
+            String msgId = messages.get(i)
+                    .getMessageProperties()
+                    .getMessageId();
+            Response<Boolean> claimResponse = null;
+            Response<Object> stateResponse = null;
+            if (StringHelper.isNotEmpty(msgId)) {
+                cacheKeys[i] = cacheKeyPrefix + msgId;
+                if (isDoneLocally(cacheKeys[i])) {
+                    duplicateStates[i] = STATE_DONE;
+                } else {
+                    claimResponse = claimBatch.setIfAbsent(cacheKeys[i], STATE_PROCESSING, processingExpire,
+                            TimeUnit.SECONDS);
+                    stateResponse = claimBatch.get(cacheKeys[i]);
+                }
+            }
+            claimed.add(claimResponse);
+            states.add(stateResponse);
+        }
+        claimBatch.execute();
+
+        MqAction[] replies = new MqAction[size];
+        RedisBatch completeBatch = redisClient.batch();
+        for (int i = 0; i < size; i++) {
+            Response<Boolean> claimResponse = claimed.get(i);
+            if (claimResponse != null && !Boolean.TRUE.equals(claimResponse.get())) {
+                Object state = states.get(i)
+                        .get();
+                duplicateStates[i] = state == null ? STATE_PROCESSING : state;// 认领后被删除,按处理中重试
+            }
+            if (duplicateStates[i] != null) {
+                continue;
+            }
+            replies[i] = handle(messages.get(i));
+            if (cacheKeys[i] != null) {
+                if (replies[i] == MqAction.RETRY) {
+                    completeBatch.delete(cacheKeys[i]);
+                } else {
+                    completeBatch.set(cacheKeys[i], STATE_DONE, doneExpire, TimeUnit.SECONDS);
+                }
+            }
+        }
+        completeBatch.execute();
+
+        long lastAckTag = -1;
+        for (int i = 0; i < size; i++) {
+            Message message = messages.get(i);
+            if (duplicateStates[i] != null) {
+                replyDuplicate(message.getMessageProperties()
+                        .getMessageId(), duplicateStates[i], message, channel);
+            } else if (replies[i] == MqAction.RETRY || replies[i] == MqAction.REJECT) {
+                if (cacheKeys[i] != null && replies[i] == MqAction.REJECT) {
+                    markDoneLocally(cacheKeys[i]);
+                }
+                replyMq(message, channel, replies[i]);
+            } else {
+                if (cacheKeys[i] != null) {
+                    markDoneLocally(cacheKeys[i]);
+                }
+                lastAckTag = Math.max(lastAckTag, message.getMessageProperties()
+                        .getDeliveryTag());
+            }
+        }
+        if (lastAckTag >= 0) {
+            channel.basicAck(lastAckTag, true);
+        }
+    }
+
+    /**
+     * 处理一条消息,返回应答行为
+     */
+    private MqAction handle(Message message) {
         MqAction reply = null;
         String msgText = null;
+        String msgId = message.getMessageProperties()
+                .getMessageId();
         try {
             msgText = new String(message.getBody(), charset);
             if (logger.isDebugEnabled()) {
@@ -75,31 +208,82 @@ public abstract class AbstractRabbitMessageListener {
             logger.error("消息处理异常,消息:{},ex:{}", msgText, e);
             reply = exceptionHandle(e);
         }
-        replyMq(cacheKey, message, channel, reply);
+        return reply == null ? MqAction.ACCEPT : reply;
+    }
+
+    /**
+     * 认领消息
+     * 
+     * @param cacheKey
+     * @return 认领成功返回null,否则返回已有状态.旧版本以Integer值1作为已处理标记,因此以Object返回
+     */
+    private Object claim(String cacheKey) {
+        return redisClient.runScript(CLAIM_LUASCRIPT, Collections.singletonList(cacheKey),
+                Arrays.asList(STATE_PROCESSING, TimeUnit.SECONDS.toMillis(processingExpire)), Object.class);
     }
 
-    private void replyMq(String cacheKey, Message message, Channel channel, MqAction reply) throws IOException {
+    /**
+     * 标记消息处理结果,需要重试的删除认领,其他标记为已完成
+     */
+    private void complete(String cacheKey, MqAction reply) {
+        if (reply == MqAction.RETRY) {
+            redisClient.delete(cacheKey);
+        } else {
+            redisClient.set(cacheKey, STATE_DONE, doneExpire, TimeUnit.SECONDS);
+            markDoneLocally(cacheKey);
+        }
+    }
+
+    /**
+     * 应答重复消息,处理中以外的状态(包括旧版本的标记值)都视为已完成
+     */
+    private void replyDuplicate(String msgId, Object state, Message message, Channel channel) throws IOException {
+        if (logger.isDebugEnabled()) {
+            logger.debug("重复的消息:{},状态:{}", msgId, state);
+        }
+        if (STATE_PROCESSING.equals(state)) {
+            replyMq(message, channel, processingDuplicateAction());
+        } else {
+            replyMq(message, channel, MqAction.REJECT);
+        }
+    }
+
+    private void replyMq(Message message, Channel channel, MqAction reply) throws IOException {
         long deliveryTag = message.getMessageProperties()
                 .getDeliveryTag();
         switch (reply) {
-            case ACCEPT:
-                channel.basicAck(deliveryTag, false);
-                redisClient.set(cacheKey, 1, 1, TimeUnit.DAYS);
-                break;
             case RETRY:
                 channel.basicNack(deliveryTag, false, true);// 重新入队
-                redisClient.set(cacheKey, 1, 1, TimeUnit.DAYS);
                 break;
             case REJECT:
                 channel.basicReject(deliveryTag, false);// 丢弃
                 break;
             default:
                 channel.basicAck(deliveryTag, false);
-                redisClient.set(cacheKey, 1, 1, TimeUnit.DAYS);
                 break;
         }
     }
 
+    private boolean isDoneLocally(String cacheKey) {
+        return doneCache != null && doneCache.get(cacheKey) != null;
+    }
+
+    private void markDoneLocally(String cacheKey) {
+        if (doneCache != null) {
+            doneCache.put(cacheKey, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * 收到正在被其他消费者处理的重复消息时的应答行为,默认拒绝且不重新入队,由队列的死信配置延迟后重新投递.
+     * 队列未配置死信时消息将被丢弃,此时可返回RETRY立即重新入队
+     * 
+     * @return
+     */
+    protected MqAction processingDuplicateAction() {
+        return MqAction.REJECT;
+    }
+
     public void setCharset(Charset charset) {
         this.charset = charset;
     }
@@ -108,6 +292,44 @@ public abstract class AbstractRabbitMessageListener {
         return charset;
     }
 
+    public int getProcessingExpire() {
+        return processingExpire;
+    }
+
+    /**
+     * 设置处理中状态过期时间,单位秒,应大于消息处理时间.默认300
+     * 
+     * @param processingExpire
+     */
+    public void setProcessingExpire(int processingExpire) {
+        this.processingExpire = processingExpire;
+    }
+
+    public int getDoneExpire() {
+        return doneExpire;
+    }
+
+    /**
+     * 设置已完成状态过期时间,单位秒,即消息去重的时间范围.默认1天
+     * 
+     * @param doneExpire
+     */
+    public void setDoneExpire(int doneExpire) {
+        this.doneExpire = doneExpire;
+        setLocalCacheSize(localCacheSize);
+    }
+
+    /**
+     * 设置本地已完成消息id缓存的最大数量,0不使用本地缓存.默认10000
+     * 
+     * @param localCacheSize
+     */
+    public void setLocalCacheSize(int localCacheSize) {
+        this.localCacheSize = localCacheSize;
+        doneCache = localCacheSize > 0 ? new LocalCache<>(localCacheSize, TimeUnit.SECONDS.toMillis(doneExpire))
+                : null;
+    }
+
     /**
      * 根据异常类型确定应答本条消息的行为
      * 
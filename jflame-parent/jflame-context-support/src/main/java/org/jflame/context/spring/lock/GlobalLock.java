@@ -32,6 +32,27 @@ public @interface GlobalLock {
      */
     int waitTime();
 
+    /**
+     * 持有锁期间是否自动续期(看门狗),只对redis锁有效.开启后lockTime为每次续期的时长,可小于方法执行时间.默认不开启,锁在lockTime后过期
+     * 
+     * @return
+     */
+    boolean autoRenew() default false;
+
+    /**
+     * 锁模式,默认为排它锁
+     * 
+     * @return
+     */
+    LockMode mode() default LockMode.exclusive;
+
+    /**
+     * 信号量许可总数,mode为semaphore时有效,同一锁名应使用相同的值
+     * 
+     * @return
+     */
+    int permits() default 1;
+
     /**
      * 分布式锁类型
      * 
@@ -41,4 +62,28 @@ public @interface GlobalLock {
         zk,
         redis
     }
+
+    /**
+     * 锁模式
+     * 
+     * @author yucan.zhang
+     */
+    public enum LockMode {
+        /**
+         * 排它锁
+         */
+        exclusive,
+        /**
+         * 读写锁的读锁,可与其他读锁同时持有
+         */
+        read,
+        /**
+         * 读写锁的写锁
+         */
+        write,
+        /**
+         * 信号量,最多permits个方法调用同时执行
+         */
+        semaphore
+    }
 }
@@ -1,14 +1,26 @@
 package org.jflame.context.spring.lock;
 
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.core.LocalVariableTableParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
 import org.springframework.core.annotation.Order;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.stereotype.Component;
@@ -19,8 +31,13 @@ import org.jflame.commons.util.StringHelper;
 import org.jflame.context.cache.redis.RedisClient;
 import org.jflame.context.lock.DistributedLock;
 import org.jflame.context.lock.RedisLock;
+import org.jflame.context.lock.RedisReadWriteLock;
+import org.jflame.context.lock.RedisSemaphore;
 import org.jflame.context.lock.ZookeeperLock;
+import org.jflame.context.lock.ZookeeperReadWriteLock;
+import org.jflame.context.lock.ZookeeperSemaphore;
 import org.jflame.context.spring.SpringContextHolder;
+import org.jflame.context.spring.lock.GlobalLock.LockMode;
 import org.jflame.context.spring.lock.GlobalLock.LockType;
 import org.jflame.context.zookeeper.ZookeeperClient;
 
@@ -28,6 +45,8 @@ import org.jflame.context.zookeeper.ZookeeperClient;
  * 分布式锁切面.基于spring aop实现,方法执行自动开启分布式锁
  * <p>
  * 注:如果是AOP事务,应该执行于本地数据库事务之前
+ * <p>
+ * 锁名表达式按方法缓存并以MIXED模式编译执行.获取锁的等待时间,持有时间及失败次数按注解锁名统计,见{@link #getLockStats()}
  * 
  * @author yucan.zhang
  */
@@ -36,57 +55,197 @@ import org.jflame.context.zookeeper.ZookeeperClient;
 @Order(-1000)
 public class GlobalLockAspect {
 
+    private static final ExpressionParser PARSER = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, GlobalLockAspect.class.getClassLoader()));
+    private static final ParameterNameDiscoverer DISCOVERER = new LocalVariableTableParameterNameDiscoverer();
+
+    /**
+     * 方法的参数名和解析后的锁名表达式
+     */
+    private final ConcurrentMap<Method,LockNameResolver> resolvers = new ConcurrentHashMap<>();
+    /**
+     * 按注解锁名统计的耗时和次数
+     */
+    private final ConcurrentMap<String,LockMetrics> metrics = new ConcurrentHashMap<>();
+
     @Around("@annotation(lockAnnotatation)")
     public Object lockAround(ProceedingJoinPoint joinPoint, GlobalLock lockAnnotatation) throws Throwable {
         Object returnObj = null;
         if (StringHelper.isEmpty(lockAnnotatation.lockName())) {
             throw new IllegalArgumentException("GlobalLock lockName not be empty");
         }
-        Object[] args = joinPoint.getArgs();
-        ExpressionParser parser = new SpelExpressionParser();
-        LocalVariableTableParameterNameDiscoverer discoverer = new LocalVariableTableParameterNameDiscoverer();
-        EvaluationContext context = new StandardEvaluationContext();
-
         MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        String[] params = discoverer.getParameterNames(signature.getMethod());
-        String lockKey = null;
-        if (ArrayHelper.isNotEmpty(params)) {
-            for (int len = 0; len < params.length; len++) {
-                context.setVariable(params[len], args[len]);
-            }
-            Expression expression = parser.parseExpression(lockAnnotatation.lockName());
-            lockKey = expression.getValue(context, String.class);
-        } else {
-            lockKey = lockAnnotatation.lockName();
-        }
+        LockNameResolver resolver = resolvers.computeIfAbsent(signature.getMethod(),
+                m -> new LockNameResolver(m, lockAnnotatation.lockName()));
+        String lockKey = resolver.resolve(joinPoint.getArgs());
+        LockMetrics lockMetrics = metrics.computeIfAbsent(lockAnnotatation.lockName(), LockMetrics::new);
+
         DistributedLock lock = null;
         boolean isLocked = false;
+        long startTime = System.nanoTime();
+        long lockedTime = 0;
         try {
-            lock = createLock(lockAnnotatation.lockType(), lockKey, lockAnnotatation.lockTime());
+            lock = createLock(lockAnnotatation, lockKey);
             isLocked = lock.lock(lockAnnotatation.waitTime());
+            lockedTime = System.nanoTime();
             if (isLocked) {
+                lockMetrics.acquired(lockedTime - startTime);
                 returnObj = joinPoint.proceed();
             } else {
+                lockMetrics.failed(lockedTime - startTime);
                 throw new BusinessException(String.format("获取分布式锁失败,方法:%s,锁名:%s", signature.getName(), lockKey));
             }
+        } catch (RuntimeException e) {
+            if (lockedTime == 0) {
+                lockMetrics.failed(System.nanoTime() - startTime);
+            }
+            throw e;
         } finally {
             if (lock != null && isLocked) {
                 lock.unlock();
+                lockMetrics.released(System.nanoTime() - lockedTime);
             }
         }
 
         return returnObj;
     }
 
-    DistributedLock createLock(LockType lockType, String lockKey, Integer lockTime) {
+    /**
+     * 获取各锁的统计信息,key为注解的锁名
+     * 
+     * @return
+     */
+    public Map<String,GlobalLockStats> getLockStats() {
+        Map<String,GlobalLockStats> stats = new TreeMap<>();
+        for (LockMetrics m : metrics.values()) {
+            stats.put(m.lockName, m.snapshot());
+        }
+        return stats;
+    }
+
+    /**
+     * 获取指定锁的统计信息
+     * 
+     * @param lockName 注解的锁名
+     * @return 没有统计信息返回null
+     */
+    public GlobalLockStats getLockStats(String lockName) {
+        LockMetrics m = metrics.get(lockName);
+        return m == null ? null : m.snapshot();
+    }
+
+    /**
+     * 清除统计信息
+     */
+    public void resetLockStats() {
+        metrics.clear();
+    }
+
+    DistributedLock createLock(GlobalLock lockAnnotatation, String lockKey) {
+        LockType lockType = lockAnnotatation.lockType();
+        LockMode mode = lockAnnotatation.mode();
+        int lockTime = lockAnnotatation.lockTime();
         if (lockType == LockType.redis) {
             RedisClient redisClient = SpringContextHolder.getBean(RedisClient.class);
-            return new RedisLock(redisClient, lockKey, lockTime);
+            boolean autoRenew = lockAnnotatation.autoRenew();
+            switch (mode) {
+                case read:
+                    return new RedisReadWriteLock(redisClient, lockKey, lockTime, autoRenew).readLock();
+                case write:
+                    return new RedisReadWriteLock(redisClient, lockKey, lockTime, autoRenew).writeLock();
+                case semaphore:
+                    return new RedisSemaphore(redisClient, lockKey, lockAnnotatation.permits(), lockTime,
+                            autoRenew);
+                default:
+                    return new RedisLock(redisClient, lockKey, lockTime, autoRenew);
+            }
         } else if (lockType == LockType.zk) {
             ZookeeperClient zkClient = SpringContextHolder.getBean(ZookeeperClient.class);
-            return new ZookeeperLock(zkClient, lockKey, lockTime);
+            switch (mode) {
+                case read:
+                    return new ZookeeperReadWriteLock(zkClient, lockKey, lockTime).readLock();
+                case write:
+                    return new ZookeeperReadWriteLock(zkClient, lockKey, lockTime).writeLock();
+                case semaphore:
+                    return new ZookeeperSemaphore(zkClient, lockKey, lockAnnotatation.permits(), lockTime);
+                default:
+                    return new ZookeeperLock(zkClient, lockKey, lockTime);
+            }
         }
         throw new IllegalStateException(lockType + " not be supported");
     }
 
+    /**
+     * 锁名解析,参数名和表达式在方法第一次调用时解析后缓存
+     */
+    private static final class LockNameResolver {
+
+        private final String[] params;
+        private final Expression expression;
+        private final String lockName;
+
+        LockNameResolver(Method method, String lockName) {
+            this.params = DISCOVERER.getParameterNames(method);
+            this.lockName = lockName;
+            this.expression = ArrayHelper.isNotEmpty(params) ? PARSER.parseExpression(lockName) : null;
+        }
+
+        String resolve(Object[] args) {
+            if (expression == null) {
+                return lockName;
+            }
+            EvaluationContext context = new StandardEvaluationContext();
+            for (int len = 0; len < params.length; len++) {
+                context.setVariable(params[len], args[len]);
+            }
+            return expression.getValue(context, String.class);
+        }
+    }
+
+    /**
+     * 单个锁名的统计
+     */
+    private static final class LockMetrics {
+
+        private final String lockName;
+        private final LongAdder acquiredCount = new LongAdder();
+        private final LongAdder failedCount = new LongAdder();
+        private final LongAdder totalWaitNanos = new LongAdder();
+        private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder totalHoldNanos = new LongAdder();
+        private final LongAccumulator maxHoldNanos = new LongAccumulator(Math::max, 0);
+
+        LockMetrics(String lockName) {
+            this.lockName = lockName;
+        }
+
+        void acquired(long waitNanos) {
+            acquiredCount.increment();
+            waited(waitNanos);
+        }
+
+        void failed(long waitNanos) {
+            failedCount.increment();
+            waited(waitNanos);
+        }
+
+        private void waited(long waitNanos) {
+            totalWaitNanos.add(waitNanos);
+            maxWaitNanos.accumulate(waitNanos);
+        }
+
+        void released(long holdNanos) {
+            totalHoldNanos.add(holdNanos);
+            maxHoldNanos.accumulate(holdNanos);
+        }
+
+        GlobalLockStats snapshot() {
+            return new GlobalLockStats(lockName, acquiredCount.sum(), failedCount.sum(),
+                    TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum()),
+                    TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()),
+                    TimeUnit.NANOSECONDS.toMillis(totalHoldNanos.sum()),
+                    TimeUnit.NANOSECONDS.toMillis(maxHoldNanos.get()));
+        }
+    }
+
 }
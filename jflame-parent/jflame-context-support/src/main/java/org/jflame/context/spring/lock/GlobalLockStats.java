@@ -0,0 +1,100 @@
+package org.jflame.context.spring.lock;
+
+/**
+ * 分布式锁切面统计信息快照,按注解的锁名(lockName)统计
+ *
+ * @author yucan.zhang
+ */
+public class GlobalLockStats {
+
+    private final String lockName;
+    private final long acquiredCount;
+    private final long failedCount;
+    private final long totalWaitMillis;
+    private final long maxWaitMillis;
+    private final long totalHoldMillis;
+    private final long maxHoldMillis;
+
+    public GlobalLockStats(String lockName, long acquiredCount, long failedCount, long totalWaitMillis,
+            long maxWaitMillis, long totalHoldMillis, long maxHoldMillis) {
+        this.lockName = lockName;
+        this.acquiredCount = acquiredCount;
+        this.failedCount = failedCount;
+        this.totalWaitMillis = totalWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.totalHoldMillis = totalHoldMillis;
+        this.maxHoldMillis = maxHoldMillis;
+    }
+
+    /**
+     * 注解的锁名
+     */
+    public String getLockName() {
+        return lockName;
+    }
+
+    /**
+     * 获取锁成功次数
+     */
+    public long getAcquiredCount() {
+        return acquiredCount;
+    }
+
+    /**
+     * 获取锁失败(超时或异常)次数
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * 获取锁的总等待时间,包含失败的等待,单位毫秒
+     */
+    public long getTotalWaitMillis() {
+        return totalWaitMillis;
+    }
+
+    /**
+     * 获取锁的最大等待时间,单位毫秒
+     */
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * 平均等待时间,单位毫秒
+     */
+    public double getAvgWaitMillis() {
+        long count = acquiredCount + failedCount;
+        return count == 0 ? 0 : (double) totalWaitMillis / count;
+    }
+
+    /**
+     * 持有锁的总时间,单位毫秒
+     */
+    public long getTotalHoldMillis() {
+        return totalHoldMillis;
+    }
+
+    /**
+     * 持有锁的最大时间,单位毫秒
+     */
+    public long getMaxHoldMillis() {
+        return maxHoldMillis;
+    }
+
+    /**
+     * 平均持有时间,单位毫秒
+     */
+    public double getAvgHoldMillis() {
+        return acquiredCount == 0 ? 0 : (double) totalHoldMillis / acquiredCount;
+    }
+
+    @Override
+    public String toString() {
+        return "GlobalLockStats [lockName=" + lockName + ", acquiredCount=" + acquiredCount + ", failedCount="
+                + failedCount + ", avgWaitMillis=" + getAvgWaitMillis() + ", maxWaitMillis=" + maxWaitMillis
+                + ", avgHoldMillis=" + getAvgHoldMillis() + ", maxHoldMillis=" + maxHoldMillis + "]";
+    }
+
+}
@@ -0,0 +1,104 @@
+package org.jflame.context.cache.redis;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.jflame.test.Pet;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * BinaryRedisSerializer测试:旧格式兼容,白名单和解压上限
+ */
+public class BinaryRedisSerializerTest {
+
+    private final GenericJackson2JsonRedisSerializer legacy = new GenericJackson2JsonRedisSerializer();
+
+    @Test
+    public void testLegacyAndMixedPayload() {
+        BinaryRedisSerializer serializer = new BinaryRedisSerializer();
+        Pet pet = new Pet("cat", 2, "white", null, new BigDecimal("9.5"));
+
+        // 旧数据:不带头的JSON
+        byte[] oldPet = legacy.serialize(pet);
+        byte[] oldNumber = legacy.serialize(42);
+        // 新数据:白名单内走二进制,业务类未加白名单走JSON
+        List<String> list = new ArrayList<>(Arrays.asList("a", "b"));
+        byte[] newList = serializer.serialize(list);
+        byte[] newPet = serializer.serialize(pet);
+        byte[] newNumber = serializer.serialize(7L);
+
+        Assert.assertEquals(BinaryRedisSerializer.MAGIC, newList[0] & BinaryRedisSerializer.MAGIC_MASK);
+        Assert.assertEquals(BinaryRedisSerializer.MAGIC, newPet[0] & BinaryRedisSerializer.MAGIC_MASK);
+        Assert.assertArrayEquals("数字保持不带头的格式", legacy.serialize(7L), newNumber);
+
+        assertPet(pet, (Pet) serializer.deserialize(oldPet));
+        Assert.assertEquals(42, ((Number) serializer.deserialize(oldNumber)).intValue());
+        Assert.assertEquals(list, serializer.deserialize(newList));
+        assertPet(pet, (Pet) serializer.deserialize(newPet));
+        Assert.assertEquals(7L, ((Number) serializer.deserialize(newNumber)).longValue());
+    }
+
+    @Test
+    public void testAllowedClassesUseBinary() {
+        BinaryRedisSerializer serializer = new BinaryRedisSerializer();
+        serializer.addAllowedClasses("org.jflame.test.*");
+        Pet pet = new Pet("dog", 3, "black", null, new BigDecimal("1"));
+        byte[] bytes = serializer.serialize(pet);
+        Assert.assertEquals(BinaryRedisSerializer.MAGIC | BinaryRedisSerializer.CODEC_BINARY, bytes[0] & 0xFF);
+        assertPet(pet, (Pet) serializer.deserialize(bytes));
+    }
+
+    @Test
+    public void testRejectNotAllowedClass() {
+        // 以不受限的JDK序列化伪造二进制数据
+        byte[] body = new JdkSerializationRedisSerializer().serialize(new Pet("evil"));
+        byte[] bytes = new byte[body.length + 1];
+        bytes[0] = (byte) (BinaryRedisSerializer.MAGIC | BinaryRedisSerializer.CODEC_BINARY);
+        System.arraycopy(body, 0, bytes, 1, body.length);
+        try {
+            new BinaryRedisSerializer().deserialize(bytes);
+            Assert.fail("白名单外的类不应被反序列化");
+        } catch (SerializationException e) {
+            Assert.assertTrue(e.getCause() instanceof java.io.InvalidClassException);
+        }
+    }
+
+    @Test
+    public void testCompressAndLimit() {
+        BinaryRedisSerializer serializer = new BinaryRedisSerializer();
+        Map<String,String> big = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            big.put("key" + i, "value value value " + i);
+        }
+        byte[] bytes = serializer.serialize(big);
+        Assert.assertNotEquals(0, bytes[0] & 0x0C);
+        Assert.assertEquals(big, serializer.deserialize(bytes));
+
+        // 解压后超过上限
+        serializer.setCompressor(new BinaryRedisSerializer.DeflateCompressor(Deflater.BEST_SPEED, 1024));
+        try {
+            serializer.deserialize(bytes);
+            Assert.fail("超过解压上限应抛出异常");
+        } catch (SerializationException e) {
+            Assert.assertTrue(e.getMessage()
+                    .contains("exceeds"));
+        }
+    }
+
+    private void assertPet(Pet expected, Pet actual) {
+        Assert.assertEquals(expected.getName(), actual.getName());
+        Assert.assertEquals(expected.getAge(), actual.getAge());
+        Assert.assertEquals(expected.getSkin(), actual.getSkin());
+        Assert.assertEquals(0, expected.getMoney()
+                .compareTo(actual.getMoney()));
+    }
+}
@@ -0,0 +1,146 @@
+package org.jflame.context.cache.redis;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * CacheLoadSupport测试,以内存map模拟redis
+ */
+public class CacheLoadSupportTest {
+
+    private final Map<String,Object> store = new ConcurrentHashMap<>();
+
+    private RedisClient memoryClient() {
+        return (RedisClient) Proxy.newProxyInstance(RedisClient.class.getClassLoader(),
+                new Class<?>[] { RedisClient.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "get":
+                            return store.get(args[0]);
+                        case "set":
+                            store.put((String) args[0], args[1]);
+                            return null;
+                        case "setIfAbsent":
+                            return store.putIfAbsent((String) args[0], args[1]) == null;
+                        case "hget":
+                            return store.get(args[0] + "#" + args[1]);
+                        case "hput":
+                            store.put(args[0] + "#" + args[1], args[2]);
+                            return null;
+                        case "runScript":
+                            store.remove(((List<?>) args[1]).get(0));
+                            return 1L;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        RedisClient client = memoryClient();
+        AtomicInteger loadCount = new AtomicInteger();
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return CacheLoadSupport.get(client, "flight", 60, () -> {
+                    loadCount.incrementAndGet();
+                    sleep(200);
+                    return "loaded";
+                }, CacheLoadOptions.create()
+                        .distributedLock(true));
+            }));
+        }
+        start.countDown();
+        for (Future<String> f : results) {
+            Assert.assertEquals("loaded", f.get(5, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+        Assert.assertEquals(1, loadCount.get());
+        Assert.assertFalse("加载锁应已释放", store.containsKey("jf_load_lock:flight"));
+    }
+
+    @Test
+    public void testHashFieldNotSharedWithKey() throws Exception {
+        RedisClient client = memoryClient();
+        CountDownLatch bothLoading = new CountDownLatch(2);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        Future<String> plain = pool.submit(() -> CacheLoadSupport.get(client, "user:1", 60, () -> {
+            bothLoading.countDown();
+            await(bothLoading);
+            return "plain";
+        }, CacheLoadOptions.DEFAULT));
+        Future<Integer> field = pool.submit(() -> CacheLoadSupport.hget(client, "user", "1", () -> {
+            bothLoading.countDown();
+            await(bothLoading);
+            return 1;
+        }, CacheLoadOptions.DEFAULT));
+        Assert.assertEquals("plain", plain.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Integer.valueOf(1), field.get(5, TimeUnit.SECONDS));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testEarlyRefresh() throws Exception {
+        RedisClient client = memoryClient();
+        AtomicInteger loadCount = new AtomicInteger();
+        CacheLoadOptions options = CacheLoadOptions.create()
+                .earlyRefreshBeta(1e9);
+        Assert.assertEquals("v1", CacheLoadSupport.get(client, "xfetch", 60, () -> {
+            sleep(10);
+            return "v" + loadCount.incrementAndGet();
+        }, options));
+        // 命中缓存时返回旧值,后台提前刷新
+        Assert.assertEquals("v1", CacheLoadSupport.get(client, "xfetch", 60, () -> {
+            sleep(10);
+            return "v" + loadCount.incrementAndGet();
+        }, options));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!"v2".equals(store.get("xfetch")) && System.currentTimeMillis() < deadline) {
+            sleep(10);
+        }
+        Assert.assertEquals("v2", store.get("xfetch"));
+
+        // 不开启提前刷新时不重新加载
+        Assert.assertEquals("v2", CacheLoadSupport.get(client, "xfetch", 60, () -> "v" + loadCount.incrementAndGet(),
+                CacheLoadOptions.DEFAULT));
+        sleep(100);
+        Assert.assertEquals(2, loadCount.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
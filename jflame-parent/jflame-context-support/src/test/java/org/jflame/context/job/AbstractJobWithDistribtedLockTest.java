@@ -0,0 +1,116 @@
+package org.jflame.context.job;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.jflame.context.lock.DistributedLock;
+
+/**
+ * 分片任务测试,以内存map模拟分布式锁和分片执行记录
+ */
+public class AbstractJobWithDistribtedLockTest {
+
+    private final Set<String> locks = ConcurrentHashMap.newKeySet();
+    private final Map<String,Long> fences = new ConcurrentHashMap<>();
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+
+    class MemoryJob extends AbstractJobWithDistribtedLock {
+
+        private final String node;
+        private final List<String> liveNodes;
+
+        MemoryJob(String node, String... liveNodes) {
+            super("shard-job", 60);
+            this.node = node;
+            this.liveNodes = Arrays.asList(liveNodes);
+            setShardCount(4);
+        }
+
+        @Override
+        public DistributedLock getLock(String lockName) {
+            return new DistributedLock() {
+
+                @Override
+                public boolean lock(long waitTime) {
+                    return locks.add(lockName);
+                }
+
+                @Override
+                public void unlock() {
+                    locks.remove(lockName);
+                }
+            };
+        }
+
+        @Override
+        protected List<String> registerAndGetLiveNodes(String lockName, String myNodeId) {
+            return liveNodes;
+        }
+
+        @Override
+        public String getNodeId() {
+            return node;
+        }
+
+        @Override
+        protected Long readShardFence(String shardLockName) {
+            return fences.get(shardLockName);
+        }
+
+        @Override
+        protected void writeShardFence(String shardLockName, long cycleStart) {
+            fences.put(shardLockName, cycleStart);
+        }
+
+        @Override
+        public void doExecute() {
+            executed.add(node);
+        }
+    }
+
+    class ShardedMemoryJob extends MemoryJob {
+
+        ShardedMemoryJob(String node, String... liveNodes) {
+            super(node, liveNodes);
+        }
+
+        @Override
+        public void doExecute(int shardIndex, int shardCount) {
+            executed.add(getNodeId() + ':' + shardIndex);
+        }
+    }
+
+    @Test
+    public void testShardRunsOncePerCycle() {
+        // 节点b加入时a尚未感知,a认领全部分片;b按两个节点认领分片1,3,已执行的分片不再执行
+        new ShardedMemoryJob("a", "a").execute();
+        new ShardedMemoryJob("b", "a", "b").execute();
+        Assert.assertEquals(Arrays.asList("a:0", "a:1", "a:2", "a:3"), executed);
+        Assert.assertTrue(locks.isEmpty());
+    }
+
+    @Test
+    public void testShardRerunsAfterFenceExpired() {
+        new ShardedMemoryJob("a", "a").execute();
+        for (String shard : fences.keySet()) {
+            fences.put(shard, fences.get(shard) - 60_000);// 上一周期
+        }
+        new ShardedMemoryJob("b", "a", "b").execute();
+        Assert.assertEquals(Arrays.asList("a:0", "a:1", "a:2", "a:3", "b:1", "b:3"), executed);
+    }
+
+    @Test
+    public void testNotShardedJobRunsInShardZero() {
+        new MemoryJob("a", "a").execute();
+        Assert.assertEquals(Arrays.asList("a"), executed);
+    }
+
+}
@@ -0,0 +1,185 @@
+package org.jflame.context.mq;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import com.rabbitmq.client.Channel;
+
+import org.jflame.context.cache.redis.RedisBatch;
+import org.jflame.context.cache.redis.RedisClient;
+
+/**
+ * 重复消息判断测试:认领,完成标记和应答,以内存map模拟redis
+ */
+public class AbstractRabbitMessageListenerTest {
+
+    private static final String PREFIX = AbstractRabbitMessageListenerTest.class.getPackage()
+            .getName();
+
+    private final Map<String,Object> store = new ConcurrentHashMap<>();
+    private final List<String> replies = new ArrayList<>();
+    private final List<String> handled = new ArrayList<>();
+
+    private RedisClient memoryClient() {
+        return (RedisClient) Proxy.newProxyInstance(RedisClient.class.getClassLoader(),
+                new Class<?>[] { RedisClient.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "runScript":
+                            // 认领脚本:不存在时写入处理中状态,否则返回已有状态
+                            String key = ((List<?>) args[1]).get(0)
+                                    .toString();
+                            return store.putIfAbsent(key, ((List<?>) args[2]).get(0));
+                        case "set":
+                            store.put((String) args[0], args[1]);
+                            return null;
+                        case "delete":
+                            return store.remove(args[0]) != null;
+                        case "batch":
+                            return memoryBatch();
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private RedisBatch memoryBatch() {
+        return new RedisBatch() {
+
+            @Override
+            protected List<Object> doExecute(List<Command> commands) {
+                List<Object> results = new ArrayList<>();
+                for (Command cmd : commands) {
+                    switch (cmd.getType()) {
+                        case SET_IF_ABSENT:
+                            results.add(store.putIfAbsent(cmd.getKey(), cmd.getValue()) == null);
+                            break;
+                        case GET:
+                            results.add(store.get(cmd.getKey()));
+                            break;
+                        case SET:
+                            store.put(cmd.getKey(), cmd.getValue());
+                            results.add(true);
+                            break;
+                        case DELETE:
+                            results.add(store.remove(cmd.getKey()) == null ? 0L : 1L);
+                            break;
+                        default:
+                            throw new UnsupportedOperationException(cmd.getType()
+                                    .name());
+                    }
+                }
+                return results;
+            }
+        };
+    }
+
+    private Channel recordingChannel() {
+        return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[] { Channel.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "basicAck":
+                            replies.add("ack:" + args[0] + (Boolean.TRUE.equals(args[1]) ? ":multiple" : ""));
+                            return null;
+                        case "basicNack":
+                            replies.add("nack:" + args[0] + (Boolean.TRUE.equals(args[2]) ? ":requeue" : ""));
+                            return null;
+                        case "basicReject":
+                            replies.add("reject:" + args[0] + (Boolean.TRUE.equals(args[1]) ? ":requeue" : ""));
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private AbstractRabbitMessageListener listener(AbstractRabbitMessageListener.MqAction action) {
+        AbstractRabbitMessageListener listener = new AbstractRabbitMessageListener(memoryClient()) {
+
+            @Override
+            public MqAction handleMessage(String message, String messageId, MessageProperties messageProperties) {
+                handled.add(message);
+                return action;
+            }
+        };
+        listener.setLocalCacheSize(0);
+        return listener;
+    }
+
+    private Message message(String msgId, String body, long deliveryTag) {
+        MessageProperties props = new MessageProperties();
+        props.setMessageId(msgId);
+        props.setDeliveryTag(deliveryTag);
+        return new Message(body.getBytes(StandardCharsets.UTF_8), props);
+    }
+
+    @Test
+    public void testClaimAndDone() throws Exception {
+        AbstractRabbitMessageListener listener = listener(AbstractRabbitMessageListener.MqAction.ACCEPT);
+        listener.onMessage(message("m1", "hello", 1), recordingChannel());
+        Assert.assertEquals(AbstractRabbitMessageListener.STATE_DONE, store.get(PREFIX + "m1"));
+        // 已完成的消息再次投递时丢弃,不再处理
+        listener.onMessage(message("m1", "hello", 2), recordingChannel());
+        Assert.assertEquals(Arrays.asList("hello"), handled);
+        Assert.assertEquals(Arrays.asList("ack:1", "reject:2"), replies);
+    }
+
+    @Test
+    public void testProcessingDuplicateRejected() throws Exception {
+        store.put(PREFIX + "m2", AbstractRabbitMessageListener.STATE_PROCESSING);
+        listener(AbstractRabbitMessageListener.MqAction.ACCEPT).onMessage(message("m2", "hello", 1),
+                recordingChannel());
+        Assert.assertTrue(handled.isEmpty());
+        Assert.assertEquals("处理中的重复消息默认拒绝且不重新入队", Arrays.asList("reject:1"), replies);
+        Assert.assertEquals(AbstractRabbitMessageListener.STATE_PROCESSING, store.get(PREFIX + "m2"));
+    }
+
+    @Test
+    public void testLegacyMarkerTreatedAsDone() throws Exception {
+        // 旧版本以Integer值1标记已处理
+        store.put(PREFIX + "old1", 1);
+        store.put(PREFIX + "old2", 1);
+        AbstractRabbitMessageListener listener = listener(AbstractRabbitMessageListener.MqAction.ACCEPT);
+        listener.onMessage(message("old1", "hello", 1), recordingChannel());
+        listener.onMessageBatch(Arrays.asList(message("old2", "hello", 2)), recordingChannel());
+        Assert.assertTrue(handled.isEmpty());
+        Assert.assertEquals(Arrays.asList("reject:1", "reject:2"), replies);
+    }
+
+    @Test
+    public void testRetryReleasesClaim() throws Exception {
+        listener(AbstractRabbitMessageListener.MqAction.RETRY).onMessage(message("m3", "hello", 1),
+                recordingChannel());
+        Assert.assertFalse("需要重试的消息应删除认领", store.containsKey(PREFIX + "m3"));
+        listener(AbstractRabbitMessageListener.MqAction.ACCEPT).onMessage(message("m3", "hello", 2),
+                recordingChannel());
+        Assert.assertEquals(Arrays.asList("hello", "hello"), handled);
+        Assert.assertEquals(Arrays.asList("nack:1:requeue", "ack:2"), replies);
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        store.put(PREFIX + "done", AbstractRabbitMessageListener.STATE_DONE);
+        List<Message> messages = Arrays.asList(message("b1", "one", 1), message("done", "two", 2),
+                message(null, "three", 3), message("b1", "four", 4));
+        listener(AbstractRabbitMessageListener.MqAction.ACCEPT).onMessageBatch(messages, recordingChannel());
+        Assert.assertEquals(Arrays.asList("one", "three"), handled);
+        Assert.assertEquals(AbstractRabbitMessageListener.STATE_DONE, store.get(PREFIX + "b1"));
+        // 重复消息逐条应答,成功的消息最后一次确认
+        Assert.assertEquals(Arrays.asList("reject:2", "reject:4", "ack:3:multiple"), replies);
+    }
+
+}
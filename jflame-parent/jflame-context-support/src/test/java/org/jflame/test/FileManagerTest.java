@@ -2,10 +2,22 @@ package org.jflame.test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.junit.Assert;
 import org.junit.Test;
 
+import org.jflame.context.filemanager.ChunkUploadCheckpoint;
+import org.jflame.context.filemanager.ChunkUploadConfig;
 import org.jflame.context.filemanager.FastDFSFileManager;
+import org.jflame.context.filemanager.LocalFileManager;
 
 public class FileManagerTest {
 
@@ -17,4 +29,64 @@ public class FileManagerTest {
         fdfs.close();
     }
 
+    @Test
+    public void testLocalChunkUpload() throws IOException {
+        Path baseDir = Files.createTempDirectory("jf_fm");
+        Path source = baseDir.resolve("source.bin");
+        byte[] content = new byte[1024 * 1024 + 123];
+        new Random().nextBytes(content);
+        Files.write(source, content);
+        Files.createDirectories(baseDir.resolve("upload"));
+
+        LocalFileManager fileManager = new LocalFileManager(baseDir.toString(), null);
+        ChunkUploadConfig config = new ChunkUploadConfig();
+        config.setPartSize(64 * 1024);
+        config.setCheckpointFile(baseDir.resolve("upload.cp")
+                .toString());
+
+        // 线程池队列满时拒绝,模拟上传中断,保留断点
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(3));
+        config.setExecutor(executor);
+        try {
+            fileManager.saveInChunks(source.toFile(), "upload", config);
+            Assert.fail();
+        } catch (RejectedExecutionException e) {
+            Assert.assertTrue(Files.exists(baseDir.resolve("upload.cp")));
+        } finally {
+            executor.shutdown();
+        }
+
+        config.setExecutor(null);
+        String fileName = fileManager.saveInChunks(source.toFile(), "upload", config);
+        Assert.assertArrayEquals(content, fileManager.readBytes(fileName));
+        Assert.assertFalse(Files.exists(baseDir.resolve("upload.cp")));
+        fileManager.close();
+    }
+
+    @Test
+    public void testCheckpointAppend() throws IOException {
+        Path baseDir = Files.createTempDirectory("jf_cp");
+        Path source = Files.write(baseDir.resolve("source.bin"), new byte[1000]);
+        Path cpFile = baseDir.resolve("upload.cp");
+        ChunkUploadCheckpoint checkpoint = new ChunkUploadCheckpoint(source.toFile(), 100);
+        checkpoint.setUploadId("upload-1");
+        checkpoint.save(cpFile);
+        long headerSize = Files.size(cpFile);
+        checkpoint.partCompleted(1, "tag1");
+        checkpoint.appendPart(cpFile, 1);
+        long recordSize = Files.size(cpFile) - headerSize;
+        checkpoint.partCompleted(3, "tag3");
+        checkpoint.appendPart(cpFile, 3);
+        // 每个分片只追加一条记录
+        Assert.assertEquals(headerSize + 2 * recordSize, Files.size(cpFile));
+
+        // 模拟写入分片记录时进程退出,末尾记录不完整
+        Files.write(cpFile, new byte[] { 0,0 }, StandardOpenOption.APPEND);
+        ChunkUploadCheckpoint loaded = ChunkUploadCheckpoint.load(cpFile);
+        Assert.assertTrue(loaded.isSameUpload(source.toFile(), 100));
+        Assert.assertEquals("upload-1", loaded.getUploadId());
+        Assert.assertEquals(checkpoint.getCompletedParts(), loaded.getCompletedParts());
+    }
+
 }
@@ -5,15 +5,19 @@ import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
@@ -22,9 +26,14 @@ import com.alibaba.fastjson.JSONObject;
 
 import org.jflame.commons.util.DateHelper;
 import org.jflame.commons.util.file.FileHelper;
+import org.jflame.context.cache.redis.RedisBatch;
+import org.jflame.context.cache.redis.RedisBatch.Response;
 import org.jflame.context.cache.redis.RedisClient;
 import org.jflame.context.cache.redis.SpringCacheClientImpl;
+import org.jflame.context.lock.DistributedLock;
 import org.jflame.context.lock.RedisLock;
+import org.jflame.context.lock.RedisReadWriteLock;
+import org.jflame.context.lock.RedisSemaphore;
 
 public class RedisTest {
 
@@ -209,6 +218,47 @@ public class RedisTest {
         System.out.println(x);
     }
 
+    @Test
+    public void testBatch() {
+        client.delete(new HashSet<>(Arrays.asList("batchcounter", "batchhash", "batchpet1", "batchpet2")));
+        RedisBatch batch = client.batch();
+        Response<Boolean> setted = batch.set("batchkey1", pet, 60, TimeUnit.SECONDS);
+        Response<Pet> cachedPet = batch.get("batchkey1");
+        batch.hput("batchhash", "f1", "v1", 60);
+        Response<Long> counter = batch.incr("batchcounter", 5);
+        Response<Long> counter2 = batch.incr("batchcounter", 2);
+        batch.expire("batchcounter", 60, TimeUnit.SECONDS);
+        Response<Long> deleted = batch.delete("batchkey1");
+        Assert.assertFalse(counter.isDone());
+        batch.execute();
+        Assert.assertTrue(setted.get());
+        Assert.assertEquals(pet.getName(), cachedPet.get()
+                .getName());
+        Assert.assertEquals(Long.valueOf(5), counter.get());
+        Assert.assertEquals(Long.valueOf(7), counter2.get());
+        Assert.assertEquals(Long.valueOf(1), deleted.get());
+        Assert.assertEquals("v1", client.hget("batchhash", "f1"));
+        Assert.assertFalse(client.exists("batchkey1"));
+
+        client.set("batchpet1", new Pet("cachedpet1"), 60, TimeUnit.SECONDS);
+        List<String> missed = new ArrayList<>();
+        Map<String,Pet> pets = client.getOrLoad(Arrays.asList("batchpet1", "batchpet2"), 60, missKeys -> {
+            missed.addAll(missKeys);
+            Map<String,Pet> loaded = new HashMap<>();
+            for (String k : missKeys) {
+                loaded.put(k, new Pet(k));
+            }
+            return loaded;
+        });
+        Assert.assertEquals(Arrays.asList("batchpet2"), missed);
+        Assert.assertEquals("cachedpet1", pets.get("batchpet1")
+                .getName());
+        Assert.assertEquals("batchpet2", pets.get("batchpet2")
+                .getName());
+        Assert.assertEquals("batchpet2", client.<Pet> get("batchpet2")
+                .getName());
+    }
+
     @Test
     public void testLock() {
         final int threadCount = 10;
@@ -246,6 +296,91 @@ public class RedisTest {
         }
     }
 
+    @Test
+    public void testReadWriteLock() {
+        RedisReadWriteLock rwLock = new RedisReadWriteLock(client, "test-redis-rwlock", 10);
+        DistributedLock readLock = rwLock.readLock();
+        DistributedLock writeLock = rwLock.writeLock();
+        Assert.assertTrue(writeLock.lock(100));
+        Assert.assertTrue(readLock.lock(100));// 锁降级
+        writeLock.unlock();
+        AtomicBoolean readerLocked = new AtomicBoolean();
+        AtomicBoolean writerLocked = new AtomicBoolean(true);
+        Thread reader = new Thread(() -> {
+            readerLocked.set(readLock.lock(200));
+            // 两个读锁都持有时写锁被阻塞
+            Thread writer = new Thread(() -> writerLocked.set(writeLock.lock(300)));
+            writer.start();
+            join(writer);
+            readLock.unlock();
+        });
+        reader.start();
+        join(reader);
+        Assert.assertTrue("其他线程应能同时获取读锁", readerLocked.get());
+        Assert.assertFalse("持有读锁时写锁应被阻塞", writerLocked.get());
+        readLock.unlock();
+        Assert.assertTrue(writeLock.lock(100));
+        writeLock.unlock();
+    }
+
+    @Test
+    public void testReadLockExpire() {
+        RedisReadWriteLock rwLock = new RedisReadWriteLock(client, "test-redis-rwlock-expire", 1);
+        RedisReadWriteLock longLock = new RedisReadWriteLock(client, "test-redis-rwlock-expire", 10);
+        AtomicBoolean readerLocked = new AtomicBoolean();
+        Thread reader = new Thread(() -> readerLocked.set(rwLock.readLock()
+                .lock(100)));// 不释放,1秒后过期
+        reader.start();
+        join(reader);
+        Assert.assertTrue(readerLocked.get());
+        AtomicBoolean longReaderLocked = new AtomicBoolean();
+        Thread longReader = new Thread(() -> longReaderLocked.set(longLock.readLock()
+                .lock(100)));// 不释放,10秒后过期
+        longReader.start();
+        join(longReader);
+        Assert.assertTrue(longReaderLocked.get());
+        // 其他读锁的获取不延长已过期的读锁,写锁等待长读锁过期后获取
+        DistributedLock writeLock = longLock.writeLock();
+        Assert.assertFalse(writeLock.lock(2000));
+        Assert.assertTrue(writeLock.lock(10000));
+        writeLock.unlock();
+    }
+
+    private void join(Thread t) {
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void testSemaphore() {
+        RedisSemaphore semaphore = new RedisSemaphore(client, "test-redis-semaphore", 2, 10);
+        Assert.assertTrue(semaphore.lock(100));
+        Assert.assertTrue(semaphore.lock(100));
+        Assert.assertFalse(semaphore.lock(100));
+        semaphore.unlock();
+        Assert.assertTrue(semaphore.lock(100));
+        semaphore.unlock();
+        semaphore.unlock();
+    }
+
+    @Test
+    public void testSemaphoreRenew() throws InterruptedException {
+        RedisSemaphore semaphore = new RedisSemaphore(client, "test-redis-semaphore-renew", 1, 1, true);
+        Assert.assertTrue(semaphore.lock(100));
+        Thread.sleep(2500);// 超过许可过期时间,看门狗续期后许可仍被占用
+        AtomicBoolean otherLocked = new AtomicBoolean(true);
+        Thread other = new Thread(() -> otherLocked.set(semaphore.lock(100)));
+        other.start();
+        join(other);
+        Assert.assertFalse(otherLocked.get());
+        semaphore.unlock();
+        Assert.assertTrue(semaphore.lock(100));
+        semaphore.unlock();
+    }
+
     @Test
     public void testLua() {
         // client.zsadd("zsetdemo", "xxyy", 3d);
@@ -4,13 +4,18 @@ import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang3.RandomUtils;
 import org.apache.zookeeper.data.Stat;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import org.jflame.context.lock.DistributedLock;
 import org.jflame.context.lock.ZookeeperLock;
+import org.jflame.context.lock.ZookeeperReadWriteLock;
+import org.jflame.context.lock.ZookeeperSemaphore;
 import org.jflame.context.zookeeper.ChildNodeListener;
 import org.jflame.context.zookeeper.NodeDataListener;
 import org.jflame.context.zookeeper.ZookeeperClient;
@@ -183,4 +188,46 @@ public class ZookeeperTest {
         }
     }
 
+    @Test
+    public void testReadWriteLock() throws InterruptedException {
+        ZookeeperReadWriteLock rwLock = new ZookeeperReadWriteLock(client, "test-zk-rwlock", 10);
+        DistributedLock readLock = rwLock.readLock();
+        DistributedLock writeLock = rwLock.writeLock();
+        Assert.assertTrue(readLock.lock(1000));
+        AtomicBoolean readerLocked = new AtomicBoolean();
+        AtomicBoolean writerLocked = new AtomicBoolean(true);
+        Thread reader = new Thread(() -> {
+            readerLocked.set(readLock.lock(1000));
+            // 两个读锁都持有时写锁被阻塞
+            Thread writer = new Thread(() -> writerLocked.set(writeLock.lock(500)));
+            writer.start();
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                        .interrupt();
+            }
+            readLock.unlock();
+        });
+        reader.start();
+        reader.join();
+        Assert.assertTrue("其他线程应能同时获取读锁", readerLocked.get());
+        Assert.assertFalse("持有读锁时写锁应被阻塞", writerLocked.get());
+        readLock.unlock();
+        Assert.assertTrue(writeLock.lock(1000));
+        writeLock.unlock();
+    }
+
+    @Test
+    public void testSemaphore() {
+        ZookeeperSemaphore semaphore = new ZookeeperSemaphore(client, "test-zk-semaphore", 2, 10);
+        Assert.assertTrue(semaphore.lock(1000));
+        Assert.assertTrue(semaphore.lock(1000));
+        Assert.assertFalse(semaphore.lock(500));
+        semaphore.unlock();
+        Assert.assertTrue(semaphore.lock(1000));
+        semaphore.unlock();
+        semaphore.unlock();
+    }
+
 }
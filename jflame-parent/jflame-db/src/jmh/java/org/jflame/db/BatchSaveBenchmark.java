@@ -0,0 +1,136 @@
+package org.jflame.db;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import org.jflame.db.annotations.Id;
+import org.jflame.db.annotations.Table;
+import org.jflame.db.id.IdType;
+
+/**
+ * 自增主键实体保存对比:逐条save,batchSave(jdbc批处理并读回主键),使用h2内存数据库.
+ * <p>
+ * 运行: mvn -P benchmark -pl jflame-db test-compile exec:java -Dexec.args="BatchSaveBenchmark"
+ *
+ * @author zyc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchSaveBenchmark {
+
+    @Param({ "100","1000" })
+    private int rows;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcDaoHelper dao;
+
+    @Table(name = "bench_order")
+    public static class BenchOrder {
+
+        private Long id;
+        private String name;
+        private BigDecimal amount;
+
+        @Id(idType = IdType.IDENTITY)
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1", "sa", "", true);
+        dao = new JdbcDaoHelper();
+        dao.setDataSource(dataSource);
+        dao.setDialect(Dialect.MySql);
+        dao.setBatchSize(100);
+        dao.getJdbcOperation()
+                .execute("create table bench_order(id bigint generated by default as identity primary key,"
+                        + "name varchar(50),amount decimal(12,2))");
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() {
+        dao.getJdbcOperation()
+                .execute("truncate table bench_order");
+    }
+
+    @TearDown
+    public void tearDown() {
+        dao.getJdbcOperation()
+                .execute("drop table bench_order");
+        dataSource.destroy();
+    }
+
+    private List<BenchOrder> newOrders() {
+        List<BenchOrder> orders = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            BenchOrder order = new BenchOrder();
+            order.setName("order-" + i);
+            order.setAmount(new BigDecimal(i));
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    /**
+     * 逐条插入并取回主键,即批处理前的实现
+     */
+    @Benchmark
+    public List<BenchOrder> perRowSave() {
+        List<BenchOrder> orders = newOrders();
+        for (BenchOrder order : orders) {
+            dao.save(order);
+        }
+        return orders;
+    }
+
+    @Benchmark
+    public List<BenchOrder> batchSave() {
+        List<BenchOrder> orders = newOrders();
+        dao.batchSave(orders);
+        return orders;
+    }
+
+}
@@ -1,26 +1,25 @@
 package org.jflame.db;
 
-import java.beans.PropertyDescriptor;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 
+import org.jflame.db.metadata.ColumnMetaData;
 import org.jflame.db.metadata.IMetaDataProvider;
 import org.jflame.db.metadata.DefaultMetaDataProvider;
-import org.jflame.db.metadata.TableMetaData;
+import org.jflame.db.metadata.PropertyAccessor;
+import org.jflame.db.metadata.StatementPlan;
 import org.springframework.beans.BeanUtils;
-import org.springframework.beans.BeanWrapper;
-import org.springframework.beans.PropertyAccessorFactory;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.JdbcUtils;
 
 public class AnnonBeanPropertyRowMapper<T> implements RowMapper<T>
 {
     private Class<T> mappedClass;
-    private Map<String, PropertyDescriptor> mappedFields;
-    private TableMetaData metaData;
+    private Map<String, PropertyAccessor> mappedFields;
     private IMetaDataProvider metaDataProvider = new DefaultMetaDataProvider();
     
     
@@ -42,17 +41,15 @@ public class AnnonBeanPropertyRowMapper<T> implements RowMapper<T>
     {
         this.mappedClass = mappedClass;
         
-        metaData = metaDataProvider.extractTableMetaData(mappedClass);
-        this.mappedFields = new HashMap<String, PropertyDescriptor>();
-        PropertyDescriptor[] pds = BeanUtils.getPropertyDescriptors(mappedClass);
-        String tmpColumn;
-        for (PropertyDescriptor pd : pds)
+        StatementPlan plan = metaDataProvider.getStatementPlan(mappedClass);
+        this.mappedFields = new HashMap<String, PropertyAccessor>();
+        PropertyAccessor accessor;
+        for (Entry<String, ColumnMetaData> kv : plan.getMetaData().getColumnsMap().entrySet())
         {
-            if (pd.getWriteMethod() != null)
+            accessor = plan.getAccessor(kv.getKey());
+            if (accessor != null && accessor.isWritable())
             {
-                tmpColumn = metaData.getColumnName(pd.getName());
-                if (tmpColumn != null)
-                    this.mappedFields.put(tmpColumn, pd);
+                this.mappedFields.put(kv.getValue().getColumnName(), accessor);
             }
         }
     }
@@ -61,17 +58,20 @@ public class AnnonBeanPropertyRowMapper<T> implements RowMapper<T>
     public T mapRow(ResultSet rs, int rowNum) throws SQLException
     {
         T mappedObject = BeanUtils.instantiate(this.mappedClass);
-        BeanWrapper bw = PropertyAccessorFactory.forBeanPropertyAccess(mappedObject);
         ResultSetMetaData rsmd = rs.getMetaData();
         int columnCount = rsmd.getColumnCount();
         for (int index = 1; index <= columnCount; index++)
         {
             String column = JdbcUtils.lookupColumnName(rsmd, index);// 获取列名
-            PropertyDescriptor pd = this.mappedFields.get(column.toLowerCase());// 获取列对应的属性
-            if (pd != null)
+            PropertyAccessor accessor = this.mappedFields.get(column.toLowerCase());// 获取列对应的属性
+            if (accessor != null)
             {
-                Object value = JdbcUtils.getResultSetValue(rs, index, pd.getPropertyType());
-                bw.setPropertyValue(pd.getName(), value);
+                Object value = JdbcUtils.getResultSetValue(rs, index, accessor.getPropertyType());
+                // 基本类型属性遇sql null保持默认值
+                if (value != null || !accessor.getPropertyType().isPrimitive())
+                {
+                    accessor.setValue(mappedObject, value);
+                }
             }
         }
         return mappedObject;
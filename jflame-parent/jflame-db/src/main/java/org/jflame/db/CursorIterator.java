@@ -0,0 +1,113 @@
+package org.jflame.db;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+/**
+ * 基于游标的查询结果迭代器. 逐行从ResultSet读取并映射,不会将结果集全部加载到内存.
+ * <p>
+ * 迭代器持有数据库连接,使用完毕必须调用close()释放,遍历到末尾时会自动关闭. 建议使用try-with-resources:
+ * 
+ * <pre>
+ * try (CursorIterator&lt;User&gt; it = dao.iterate(sql, User.class)) {
+ *     while (it.hasNext()) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * 
+ * @author zyc
+ * @param <T> 元素类型
+ */
+public class CursorIterator<T> implements Iterator<T>, Closeable {
+
+    private final DataSource dataSource;
+    private final Connection con;
+    private final PreparedStatement ps;
+    private final ResultSet rs;
+    private final RowMapper<T> rowMapper;
+    private final SQLExceptionTranslator exceptionTranslator;
+    private final String sql;
+
+    private int rowNum = 0;
+    private Boolean nextFetched;// 是否已预读到下一行
+    private boolean closed = false;
+
+    CursorIterator(DataSource dataSource, Connection con, PreparedStatement ps, ResultSet rs, RowMapper<T> rowMapper,
+            SQLExceptionTranslator exceptionTranslator, String sql) {
+        this.dataSource = dataSource;
+        this.con = con;
+        this.ps = ps;
+        this.rs = rs;
+        this.rowMapper = rowMapper;
+        this.exceptionTranslator = exceptionTranslator;
+        this.sql = sql;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (nextFetched == null) {
+            try {
+                nextFetched = rs.next();
+            } catch (SQLException e) {
+                close();
+                throw exceptionTranslator.translate("CursorIterator", sql, e);
+            }
+            if (!nextFetched) {
+                close();
+            }
+        }
+        return nextFetched;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        nextFetched = null;
+        try {
+            return rowMapper.mapRow(rs, rowNum++);
+        } catch (SQLException e) {
+            close();
+            throw exceptionTranslator.translate("CursorIterator", sql, e);
+        } catch (RuntimeException | Error e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * 关闭结果集,语句并释放连接
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(ps);
+            DataSourceUtils.releaseConnection(con, dataSource);
+        }
+    }
+
+}
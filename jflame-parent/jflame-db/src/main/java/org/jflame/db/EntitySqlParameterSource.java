@@ -0,0 +1,50 @@
+package org.jflame.db;
+
+import org.jflame.db.metadata.PropertyAccessor;
+import org.jflame.db.metadata.StatementPlan;
+
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.core.namedparam.AbstractSqlParameterSource;
+
+/**
+ * 基于实体语句计划属性存取器的命名参数源,替代BeanPropertySqlParameterSource,不需要每次构建BeanWrapper
+ *
+ * @author zyc
+ */
+public class EntitySqlParameterSource extends AbstractSqlParameterSource {
+
+    private final Object entity;
+    private final StatementPlan plan;
+
+    public EntitySqlParameterSource(Object entity, StatementPlan plan) {
+        this.entity = entity;
+        this.plan = plan;
+    }
+
+    @Override
+    public boolean hasValue(String paramName) {
+        PropertyAccessor accessor = plan.getAccessor(paramName);
+        return accessor != null && accessor.isReadable();
+    }
+
+    @Override
+    public Object getValue(String paramName) throws IllegalArgumentException {
+        PropertyAccessor accessor = plan.getAccessor(paramName);
+        if (accessor == null || !accessor.isReadable()) {
+            throw new IllegalArgumentException("No value registered for key '" + paramName + "'");
+        }
+        return accessor.getValue(entity);
+    }
+
+    @Override
+    public int getSqlType(String paramName) {
+        int sqlType = super.getSqlType(paramName);
+        if (sqlType != TYPE_UNKNOWN) {
+            return sqlType;
+        }
+        PropertyAccessor accessor = plan.getAccessor(paramName);
+        return accessor == null ? TYPE_UNKNOWN
+                : StatementCreatorUtils.javaTypeToSqlParameterType(accessor.getPropertyType());
+    }
+
+}
@@ -113,6 +113,43 @@ public interface IBaseDao {
      */
     List<Map<String,Object>> queryNamedParamForMap(String namedParamSql, Map<String,Object> paramMap);
 
+    /**
+     * 流式查询,逐行映射为实体后交给回调处理,不在内存中保留整个结果集.适用于导出等大结果集场景
+     * 
+     * @param sql 参数化sql
+     * @param elementType 行数据类型,类型可以是基本数据类型的封装类
+     * @param rowHandler 行处理回调
+     * @param params 参数值数组
+     */
+    <T> void queryForEach(String sql, Class<T> elementType, RowHandler<T> rowHandler, Object... params);
+
+    /**
+     * 流式查询,每行以列名和列值组成的map交给回调处理
+     * 
+     * @param sql 参数化sql
+     * @param rowHandler 行处理回调
+     * @param params 参数值数组
+     */
+    void queryMapForEach(String sql, RowHandler<Map<String,Object>> rowHandler, Object... params);
+
+    /**
+     * 游标查询,返回逐行读取的迭代器.迭代器持有数据库连接,使用完毕必须关闭
+     * 
+     * @param sql 参数化sql
+     * @param elementType 元素类型,类型可以是基本数据类型的封装类
+     * @param params 参数值数组
+     * @return
+     */
+    <T> CursorIterator<T> iterate(String sql, Class<T> elementType, Object... params);
+
+    /**
+     * 游标方式查询所有数据,迭代器使用完毕必须关闭
+     * 
+     * @param elementType 查询实体类型
+     * @return
+     */
+    <T> CursorIterator<T> iterateAll(Class<T> elementType);
+
     /**
      * 执行单列查询,返回唯一行单列值.sql语句应限制结果集为单行
      * 
@@ -164,6 +201,16 @@ public interface IBaseDao {
     <T> void queryPageByNamedParam(PageBean pager, String namedParamSql, Class<T> dataTypeClass,
             Map<String,Object> paramMap);
 
+    /**
+     * 键集(seek)分页查询. 以上一页最后一行的排序键值作为条件查询下一页,不使用offset,查询后游标更新到本页最后一行
+     * 
+     * @param pager 键集分页参数
+     * @param sql 参数化sql语句,不含order by和分页
+     * @param dataTypeClass 数据元素类型.如果是map.class数据将是由列名和值组成的map
+     * @param params 查询参数
+     */
+    <T> void queryKeysetPage(KeysetPage<T> pager, String sql, Class<T> dataTypeClass, Object... params);
+
     /**
      * 保存一个实体对象.
      * <p>
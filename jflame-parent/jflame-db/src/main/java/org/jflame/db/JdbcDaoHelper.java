@@ -1,6 +1,10 @@
 package org.jflame.db;
 
 import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
@@ -19,19 +23,33 @@ import org.jflame.db.id.IdType;
 import org.jflame.db.id.factory.IdGeneratorFactory;
 import org.jflame.db.metadata.DefaultMetaDataProvider;
 import org.jflame.db.metadata.IMetaDataProvider;
+import org.jflame.db.metadata.PropertyAccessor;
+import org.jflame.db.metadata.StatementPlan;
+import org.jflame.db.metadata.StatementPlan.Operation;
 import org.jflame.db.metadata.TableMetaData;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
-import org.springframework.beans.BeanWrapper;
-import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
 import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcOperations;
-import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.TransactionTemplate;
@@ -52,9 +70,11 @@ public class JdbcDaoHelper implements DbEnvironment, IBaseDao {
     private final Logger logger = LoggerFactory.getLogger(JdbcDaoHelper.class);
 
     private NamedParameterJdbcTemplate jdbcTemplate;
+    private DataSource dataSource;
     private IMetaDataProvider metaDataProvider = new DefaultMetaDataProvider();
 
     private int batchSize = 30;// 批处理数量
+    private int fetchSize = 500;// 流式查询每次从数据库读取的行数
     private Dialect curDbType = Dialect.MySql;
     private PlatformTransactionManager transactionManager;
     private IdGeneratorFactory idGeneratorFactory=new IdGeneratorFactory();
@@ -68,8 +88,7 @@ public class JdbcDaoHelper implements DbEnvironment, IBaseDao {
      */
     @Override
     public <T> T getById(final Class<T> entityClazz, Object id) {
-        TableMetaData metaData = metaDataProvider.extractTableMetaData(entityClazz);
-        String sqlString = SimpleSqlBuilder.selectSimple(metaData, metaData.getKey().getColumnName(), null);
+        String sqlString = metaDataProvider.getStatementPlan(entityClazz).getSql(Operation.SELECT_BY_ID);
         return get(sqlString, entityClazz, id);
     }
 
@@ -213,6 +232,131 @@ public class JdbcDaoHelper implements DbEnvironment, IBaseDao {
         return jdbcTemplate.query(namedParamSql, new MapSqlParameterSource(paramMap), new ColumnMapRowMapper());
     }
 
+    /**
+     * 流式查询,逐行映射为实体后交给回调处理,不在内存中保留整个结果集.适用于导出等大结果集场景
+     * <p>
+     * 注:postgresql需在事务中(autocommit=false)执行,驱动才会按fetchSize分批读取
+     * 
+     * @param sql 参数化sql
+     * @param elementType 行数据类型,类型可以是基本数据类型的封装类
+     * @param rowHandler 行处理回调
+     * @param params 参数值数组
+     */
+    @Override
+    public <T> void queryForEach(final String sql, final Class<T> elementType, final RowHandler<T> rowHandler,
+            final Object... params) {
+        logger.debug(sql);
+        final RowMapper<T> rowMapper = rowMapperFor(elementType);
+        jdbcTemplate.getJdbcOperations().query(new StreamingStatementCreator(sql, params),
+                new RowCallbackHandler() {
+
+                    private int rowNum = 0;
+
+                    @Override
+                    public void processRow(ResultSet rs) throws SQLException {
+                        rowHandler.handle(rowMapper.mapRow(rs, rowNum++));
+                    }
+                });
+    }
+
+    /**
+     * 流式查询,每行以列名和列值组成的map交给回调处理
+     * 
+     * @param sql 参数化sql
+     * @param rowHandler 行处理回调
+     * @param params 参数值数组
+     */
+    @Override
+    @SuppressWarnings({ "unchecked","rawtypes" })
+    public void queryMapForEach(final String sql, final RowHandler<Map<String,Object>> rowHandler,
+            final Object... params) {
+        queryForEach(sql, (Class) Map.class, (RowHandler) rowHandler, params);
+    }
+
+    /**
+     * 游标查询,返回逐行读取的迭代器.迭代器持有数据库连接,使用完毕必须关闭
+     * 
+     * @param sql 参数化sql
+     * @param elementType 元素类型,类型可以是基本数据类型的封装类
+     * @param params 参数值数组
+     * @return
+     */
+    @Override
+    public <T> CursorIterator<T> iterate(final String sql, final Class<T> elementType, final Object... params) {
+        logger.debug(sql);
+        SQLExceptionTranslator exceptionTranslator = ((JdbcTemplate) jdbcTemplate.getJdbcOperations())
+                .getExceptionTranslator();
+        Connection con = DataSourceUtils.getConnection(dataSource);
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        CursorIterator<T> iterator = null;
+        try {
+            RowMapper<T> rowMapper = rowMapperFor(elementType);
+            ps = new StreamingStatementCreator(sql, params).createPreparedStatement(con);
+            rs = ps.executeQuery();
+            iterator = new CursorIterator<>(dataSource, con, ps, rs, rowMapper, exceptionTranslator, sql);
+            return iterator;
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("iterate", sql, e);
+        } finally {
+            // 未成功创建迭代器时(包括运行时异常)释放资源,否则由迭代器关闭
+            if (iterator == null) {
+                JdbcUtils.closeResultSet(rs);
+                JdbcUtils.closeStatement(ps);
+                DataSourceUtils.releaseConnection(con, dataSource);
+            }
+        }
+    }
+
+    /**
+     * 游标方式查询所有数据,迭代器使用完毕必须关闭
+     * 
+     * @param elementType 查询实体类型
+     * @return
+     */
+    @Override
+    public <T> CursorIterator<T> iterateAll(final Class<T> elementType) {
+        String sql = SimpleSqlBuilder.selectSql(metaDataProvider.extractTableMetaData(elementType), null, null);
+        return iterate(sql, elementType);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> RowMapper<T> rowMapperFor(Class<T> elementType) {
+        if (Map.class.equals(elementType)) {
+            return (RowMapper<T>) new ColumnMapRowMapper();
+        } else if (BeanUtils.isSimpleValueType(elementType)) {
+            return new SingleColumnRowMapper<>(elementType);
+        }
+        return AnnonBeanPropertyRowMapper.newInstance(elementType);
+    }
+
+    /**
+     * 流式查询语句创建. 只读单向游标并设置fetchSize,mysql驱动需fetchSize=Integer.MIN_VALUE才逐行读取
+     */
+    private class StreamingStatementCreator implements PreparedStatementCreator {
+
+        private final String sql;
+        private final Object[] params;
+
+        StreamingStatementCreator(String sql, Object[] params) {
+            this.sql = sql;
+            this.params = params;
+        }
+
+        @Override
+        public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            try {
+                ps.setFetchSize(curDbType == Dialect.MySql ? Integer.MIN_VALUE : fetchSize);
+                new ArgumentPreparedStatementSetter(params).setValues(ps);
+            } catch (SQLException e) {
+                JdbcUtils.closeStatement(ps);
+                throw e;
+            }
+            return ps;
+        }
+    }
+
     /**
      * 执行单列查询,返回唯一行单列值.sql语句应限制结果集为单行
      * 
@@ -320,6 +464,111 @@ public class JdbcDaoHelper implements DbEnvironment, IBaseDao {
         }
     }
 
+    /**
+     * 键集(seek)分页查询. 以上一页最后一行的排序键值作为条件查询下一页,不使用offset,查询后游标更新到本页最后一行.
+     * <p>
+     * 多查询一行用于判断是否有下一页;开启自动计数时总数只在首次查询
+     * 
+     * @param pager 键集分页参数
+     * @param sql 参数化sql语句,不含order by和分页
+     * @param dataTypeClass 数据元素类型.如果是map.class数据将是由列名和值组成的map
+     * @param params 查询参数
+     */
+    @Override
+    public <T> void queryKeysetPage(final KeysetPage<T> pager, String sql, final Class<T> dataTypeClass,
+            final Object... params) {
+        if (pager == null || sql == null)
+            throw new IllegalArgumentException();
+        String[] keyColumns = resolveKeyColumns(pager.getKeyColumns(), dataTypeClass);
+        Object[] lastKeys = pager.getLastKeys();
+        if (lastKeys != null) {
+            if (lastKeys.length != keyColumns.length) {
+                throw new IllegalArgumentException(
+                        "排序键值数量" + lastKeys.length + "与排序键列数量" + keyColumns.length + "不一致");
+            }
+            for (int i = 0; i < lastKeys.length; i++) {
+                // col>null不匹配任何行,排序键列不应允许null值
+                if (lastKeys[i] == null) {
+                    throw new IllegalArgumentException("排序键" + keyColumns[i] + "的值不能为null");
+                }
+            }
+        }
+        if (pager.isAutoCount() && pager.getMaxRowCount() < 0) {
+            Long count = querySingle(prepareCountSql(sql), Long.class, params);
+            pager.setMaxRowCount(count == null ? 0 : count);
+        }
+        String pageSql = SimpleSqlBuilder.keysetPageSql(sql, keyColumns, pager.getOrderType(), lastKeys != null,
+                pager.getPageSize() + 1, curDbType);
+        logger.debug(pageSql);
+        List<T> lst = jdbcTemplate.getJdbcOperations().query(pageSql, rowMapperFor(dataTypeClass),
+                SimpleSqlBuilder.keysetParams(params, lastKeys, curDbType));
+        boolean hasNextPage = lst.size() > pager.getPageSize();
+        if (hasNextPage) {
+            lst.remove(lst.size() - 1);
+        }
+        pager.setHasNextPage(hasNextPage);
+        pager.setPageData(lst);
+        if (!lst.isEmpty()) {
+            pager.setLastKeys(extractKeys(lst.get(lst.size() - 1), keyColumns, dataTypeClass));
+        }
+    }
+
+    /**
+     * 检查排序键列.实体类型的排序键须是实体映射的列,属性名转换为列名
+     */
+    private String[] resolveKeyColumns(String[] keyColumns, Class<?> dataTypeClass) {
+        if (keyColumns == null || keyColumns.length == 0) {
+            throw new IllegalArgumentException("键集分页必须指定排序键列");
+        }
+        if (Map.class.equals(dataTypeClass)) {
+            return keyColumns;
+        } else if (BeanUtils.isSimpleValueType(dataTypeClass)) {
+            if (keyColumns.length != 1) {
+                throw new IllegalArgumentException("单列查询只能有一个排序键列");
+            }
+            return keyColumns;
+        }
+        TableMetaData metaData = metaDataProvider.extractTableMetaData(dataTypeClass);
+        String[] columns = new String[keyColumns.length];
+        for (int i = 0; i < keyColumns.length; i++) {
+            if (keyColumns[i] != null && metaData.getPropertyName(keyColumns[i].toLowerCase()) != null) {
+                columns[i] = keyColumns[i];
+            } else {
+                columns[i] = keyColumns[i] == null ? null : metaData.getColumnName(keyColumns[i]);
+                if (columns[i] == null) {
+                    throw new IllegalArgumentException(
+                            "排序键" + keyColumns[i] + "不是" + dataTypeClass.getName() + "映射的列");
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * 从行数据中取出排序键值
+     */
+    private Object[] extractKeys(Object row, String[] keyColumns, Class<?> dataTypeClass) {
+        Object[] keys = new Object[keyColumns.length];
+        if (row instanceof Map) {
+            for (int i = 0; i < keyColumns.length; i++) {
+                keys[i] = ((Map<?,?>) row).get(keyColumns[i]);
+            }
+        } else if (BeanUtils.isSimpleValueType(dataTypeClass)) {
+            keys[0] = row;
+        } else {
+            StatementPlan plan = metaDataProvider.getStatementPlan(dataTypeClass);
+            for (int i = 0; i < keyColumns.length; i++) {
+                String propertyName = plan.getMetaData().getPropertyName(keyColumns[i].toLowerCase());
+                PropertyAccessor accessor = plan.getAccessor(propertyName == null ? keyColumns[i] : propertyName);
+                if (accessor == null) {
+                    throw new IllegalArgumentException("排序键列" + keyColumns[i] + "没有对应的属性");
+                }
+                keys[i] = accessor.getValue(row);
+            }
+        }
+        return keys;
+    }
+
     /**
      * 保存一个实体对象.
      * <p>
@@ -340,22 +589,21 @@ public class JdbcDaoHelper implements DbEnvironment, IBaseDao {
      */
     @Override
     public <T> void save(T entity, String[] excludePropertys) {
-        BeanWrapper beanWrapper = PropertyAccessorFactory.forBeanPropertyAccess(entity);
-        TableMetaData metaData = metaDataProvider.extractTableMetaData(beanWrapper);
+        StatementPlan plan = metaDataProvider.getStatementPlan(entity.getClass());
+        TableMetaData metaData = plan.getMetaData();
         Serializable newId=idGeneratorFactory.generate(this, metaData);
-        String sqlNamedParam = SimpleSqlBuilder.insertSql(metaData, excludePropertys);// 生成sql插入语句
+        String sqlNamedParam = plan.getSql(Operation.INSERT, excludePropertys);// 生成sql插入语句
         logger.debug(sqlNamedParam);
         if (IdGenerator.KEY_HOLDER.equals(newId)) {
             // 获取自增主键赋值
             KeyHolder keyHolder = new GeneratedKeyHolder();
-            int c = jdbcTemplate.update(sqlNamedParam, new BeanPropertySqlParameterSource(entity), keyHolder);
+            int c = jdbcTemplate.update(sqlNamedParam, new EntitySqlParameterSource(entity, plan), keyHolder);
             if (c > 0) {
-                beanWrapper.setPropertyValue(metaData.getKey().getPropertyName(),
-                        keyHolder.getKeys().values().iterator().next());
+                plan.getKeyAccessor().setValue(entity, keyHolder.getKeys().values().iterator().next());
             }
         } else {
-            beanWrapper.setPropertyValue(metaData.getKey().getPropertyName(),newId);
-            jdbcTemplate.update(sqlNamedParam, new BeanPropertySqlParameterSource(entity));
+            plan.getKeyAccessor().setValue(entity, newId);
+            jdbcTemplate.update(sqlNamedParam, new EntitySqlParameterSource(entity, plan));
         }
     }
 
@@ -373,11 +621,13 @@ public class JdbcDaoHelper implements DbEnvironment, IBaseDao {
             save(entities.get(0));
             return;
         }
-        TableMetaData metaData = metaDataProvider.extractTableMetaData(entities.get(0).getClass());
-        String sqlNamedParam = SimpleSqlBuilder.insertSql(metaData, null);// 生成sql插入语句
+        StatementPlan plan = metaDataProvider.getStatementPlan(entities.get(0).getClass());
+        TableMetaData metaData = plan.getMetaData();
+        String sqlNamedParam = plan.getSql(Operation.INSERT);// 生成sql插入语句
         logger.debug(sqlNamedParam);
+        PropertyAccessor keyAccessor = plan.getKeyAccessor();
         if (metaData.getKey().getIdType() != IdType.IDENTITY) {
-            BeanPropertySqlParameterSource[] sqlSources = new BeanPropertySqlParameterSource[size];
+            SqlParameterSource[] sqlSources = new SqlParameterSource[size];
             Serializable[] newIds=new Serializable[size];
             int i=0;
             //先生成批量id,再赋值
@@ -385,25 +635,84 @@ public class JdbcDaoHelper implements DbEnvironment, IBaseDao {
                 newIds[i]=idGeneratorFactory.generate(this, metaData);
             }
             T entity=null;
-            BeanWrapper beanWrapper;
             for (i = 0; i < size; i++) {
                 entity=entities.get(i);
-                beanWrapper = PropertyAccessorFactory.forBeanPropertyAccess(entity);
-                beanWrapper.setPropertyValue(metaData.getKey().getPropertyName(),newIds[i]);
-                sqlSources[i] = new BeanPropertySqlParameterSource(entities.get(i));
+                keyAccessor.setValue(entity, newIds[i]);
+                sqlSources[i] = new EntitySqlParameterSource(entity, plan);
             }
             jdbcTemplate.batchUpdate(sqlNamedParam, sqlSources);
-        } else {
+        } else if (curDbType == Dialect.SqlServer || curDbType == Dialect.Oracle) {
+            // sqlserver驱动批处理只能返回最后一个自增主键,oracle驱动批处理不返回主键,逐条插入
             KeyHolder keyHolder = new GeneratedKeyHolder();
-            BeanWrapper bw;
             for (T entity : entities) {
-                int c = jdbcTemplate.update(sqlNamedParam, new BeanPropertySqlParameterSource(entity), keyHolder);
+                int c = jdbcTemplate.update(sqlNamedParam, new EntitySqlParameterSource(entity, plan), keyHolder);
                 if (c > 0) {
-                    bw = PropertyAccessorFactory.forBeanPropertyAccess(entity);
-                    bw.setPropertyValue(metaData.getKey().getPropertyName(),
-                            keyHolder.getKeys().values().iterator().next());
+                    keyAccessor.setValue(entity, keyHolder.getKeys().values().iterator().next());
                 }
             }
+        } else {
+            batchSaveWithIdentity(entities, sqlNamedParam, plan);
+        }
+    }
+
+    /**
+     * 自增主键实体批量保存. 按batchSize分批以jdbc批处理提交,并按顺序读回生成的主键赋值给实体.
+     * <p>
+     * mysql需在连接url中设置rewriteBatchedStatements=true,驱动才会将批处理改写为多行values插入
+     * 
+     * @param entities 实体列表
+     * @param sqlNamedParam 命名参数insert语句
+     * @param plan 实体语句计划
+     */
+    private <T> void batchSaveWithIdentity(final List<T> entities, final String sqlNamedParam,
+            final StatementPlan plan) {
+        final ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sqlNamedParam);
+        final String[] keyColumns = { plan.getMetaData().getKey().getColumnName() };
+        final PropertyAccessor keyAccessor = plan.getKeyAccessor();
+        final int size = entities.size();
+        for (int from = 0; from < size; from += batchSize) {
+            final List<T> chunk = entities.subList(from, Math.min(from + batchSize, size));
+            final SqlParameterSource[] sqlSources = new SqlParameterSource[chunk.size()];
+            for (int i = 0; i < sqlSources.length; i++) {
+                sqlSources[i] = new EntitySqlParameterSource(chunk.get(i), plan);
+            }
+            final String sql = NamedParameterUtils.substituteNamedParameters(parsedSql, sqlSources[0]);
+            jdbcTemplate.getJdbcOperations().execute(new PreparedStatementCreator() {
+
+                @Override
+                public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+                    return con.prepareStatement(sql, keyColumns);
+                }
+            }, new PreparedStatementCallback<Object>() {
+
+                @Override
+                public Object doInPreparedStatement(PreparedStatement ps) throws SQLException {
+                    for (SqlParameterSource sqlSource : sqlSources) {
+                        new ArgumentPreparedStatementSetter(NamedParameterUtils.buildValueArray(parsedSql, sqlSource,
+                                null)).setValues(ps);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    List<Object> newIds = new ArrayList<>(chunk.size());
+                    ResultSet keys = ps.getGeneratedKeys();
+                    try {
+                        while (keys.next()) {
+                            newIds.add(keys.getObject(1));
+                        }
+                    } finally {
+                        JdbcUtils.closeResultSet(keys);
+                    }
+                    // 驱动返回的主键数与插入行数不一致时无法对应到实体
+                    if (newIds.size() != chunk.size()) {
+                        throw new InvalidDataAccessApiUsageException("批量插入返回的自增主键数" + newIds.size()
+                                + "与插入行数" + chunk.size() + "不一致,请检查驱动是否支持批处理返回主键");
+                    }
+                    for (int i = 0; i < newIds.size(); i++) {
+                        keyAccessor.setValue(chunk.get(i), newIds.get(i));
+                    }
+                    return null;
+                }
+            });
         }
     }
 
@@ -414,10 +723,10 @@ public class JdbcDaoHelper implements DbEnvironment, IBaseDao {
      */
     @Override
     public <T> int update(T entity) {
-        TableMetaData metaData = metaDataProvider.extractTableMetaData(entity.getClass());
-        String sqlNamedParam = SimpleSqlBuilder.updateSql(metaData, metaData.getKey().getPropertyName());
+        StatementPlan plan = metaDataProvider.getStatementPlan(entity.getClass());
+        String sqlNamedParam = plan.getSql(Operation.UPDATE);
         logger.debug(sqlNamedParam);
-        return jdbcTemplate.update(sqlNamedParam, new BeanPropertySqlParameterSource(entity));
+        return jdbcTemplate.update(sqlNamedParam, new EntitySqlParameterSource(entity, plan));
     }
 
     /**
@@ -430,11 +739,10 @@ public class JdbcDaoHelper implements DbEnvironment, IBaseDao {
     public <T> int update(T entity, String[] inculdeProperties) {
         if (inculdeProperties == null || inculdeProperties.length == 0)
             throw new IllegalArgumentException("参数inculdeProperties不能为空");
-        TableMetaData metaData = metaDataProvider.extractTableMetaData(entity.getClass());
-        String sqlNamedParam = SimpleSqlBuilder.updateSql(metaData, metaData.getKey().getPropertyName(),
-                inculdeProperties);
+        StatementPlan plan = metaDataProvider.getStatementPlan(entity.getClass());
+        String sqlNamedParam = plan.getSql(Operation.UPDATE_INCLUDE, inculdeProperties);
         logger.debug(sqlNamedParam);
-        return jdbcTemplate.update(sqlNamedParam, new BeanPropertySqlParameterSource(entity));
+        return jdbcTemplate.update(sqlNamedParam, new EntitySqlParameterSource(entity, plan));
     }
 
     /**
@@ -446,11 +754,10 @@ public class JdbcDaoHelper implements DbEnvironment, IBaseDao {
      */
     @Override
     public <T> int updateExcludeProps(T entity, String[] exculdeProperties) {
-        TableMetaData metaData = metaDataProvider.extractTableMetaData(entity.getClass());
-        String sqlNamedParam = SimpleSqlBuilder.updateWithExcludePropSql(metaData, metaData.getKey().getPropertyName(),
-                exculdeProperties);
+        StatementPlan plan = metaDataProvider.getStatementPlan(entity.getClass());
+        String sqlNamedParam = plan.getSql(Operation.UPDATE_EXCLUDE, exculdeProperties);
         logger.debug(sqlNamedParam);
-        return jdbcTemplate.update(sqlNamedParam, new BeanPropertySqlParameterSource(entity));
+        return jdbcTemplate.update(sqlNamedParam, new EntitySqlParameterSource(entity, plan));
     }
 
     /**
@@ -476,13 +783,13 @@ public class JdbcDaoHelper implements DbEnvironment, IBaseDao {
     public <T> int[] batchUpdate(List<T> entities) {
         if (CollectionHelper.isEmpty(entities))
             return new int[0];
-        TableMetaData metaData = metaDataProvider.extractTableMetaData(entities.get(0).getClass());
-        String sqlNamedParam = SimpleSqlBuilder.updateSql(metaData, metaData.getKey().getPropertyName());
+        StatementPlan plan = metaDataProvider.getStatementPlan(entities.get(0).getClass());
+        String sqlNamedParam = plan.getSql(Operation.UPDATE);
         int size = entities.size();
         logger.debug(sqlNamedParam + ",count:" + size);
-        BeanPropertySqlParameterSource[] sqlSources = new BeanPropertySqlParameterSource[size];
+        SqlParameterSource[] sqlSources = new SqlParameterSource[size];
         for (int i = 0; i < size; i++) {
-            sqlSources[i] = new BeanPropertySqlParameterSource(entities.get(i));
+            sqlSources[i] = new EntitySqlParameterSource(entities.get(i), plan);
         }
         return jdbcTemplate.batchUpdate(sqlNamedParam, sqlSources);
     }
@@ -523,8 +830,7 @@ public class JdbcDaoHelper implements DbEnvironment, IBaseDao {
      */
     @Override
     public <T,ID extends Serializable> int deleteById(final Class<T> entityClazz, ID id) {
-        TableMetaData metaData = metaDataProvider.extractTableMetaData(entityClazz);
-        String sqlNamedParam = SimpleSqlBuilder.deleteSql(metaData, metaData.getKey().getColumnName());
+        String sqlNamedParam = metaDataProvider.getStatementPlan(entityClazz).getSql(Operation.DELETE_BY_ID);
         return jdbcTemplate.getJdbcOperations().update(sqlNamedParam, id);
     }
 
@@ -571,6 +877,7 @@ public class JdbcDaoHelper implements DbEnvironment, IBaseDao {
 
     @Override
     public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
         this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
     }
 
@@ -598,6 +905,19 @@ public class JdbcDaoHelper implements DbEnvironment, IBaseDao {
         this.batchSize = batch_size;
     }
 
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * 设置流式查询每次从数据库读取的行数,mysql忽略此设置始终逐行读取
+     * 
+     * @param fetchSize
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
     /**
      * 返回NamedParameterJdbcTemplate
      * 
@@ -0,0 +1,143 @@
+package org.jflame.db;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jflame.commons.common.bean.PageBean.OrderEnum;
+
+/**
+ * 键集(seek)分页参数及结果. 以上一页最后一行的排序键值作为下一页的查询条件,替代offset分页,深度翻页时性能不随页码下降.
+ * <p>
+ * 使用说明:
+ * <ul>
+ * <li>排序键组合必须唯一,通常以主键列结尾</li>
+ * <li>查询sql不要包含order by,排序由键集分页生成;排序键需是查询结果中的列名</li>
+ * <li>首次查询后同一对象继续传入即查询下一页,总数只在首页查询一次并保留</li>
+ * </ul>
+ * 
+ * @author zyc
+ * @param <T> 数据类型
+ */
+public class KeysetPage<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String[] keyColumns;// 排序键列名
+    private OrderEnum orderType = OrderEnum.asc;
+    private int pageSize = 30;
+    private Object[] lastKeys;// 上一页最后一行的排序键值,null表示首页
+    private boolean isAutoCount = false;
+    private long maxRowCount = -1;// 总行数,-1表示未查询
+    private boolean hasNextPage = false;
+    private List<T> pageData;
+
+    public KeysetPage() {
+    }
+
+    public KeysetPage(int pageSize, String... keyColumns) {
+        this(pageSize, OrderEnum.asc, keyColumns);
+    }
+
+    public KeysetPage(int pageSize, OrderEnum orderType, String... keyColumns) {
+        setPageSize(pageSize);
+        this.orderType = orderType;
+        this.keyColumns = keyColumns;
+    }
+
+    public String[] getKeyColumns() {
+        return keyColumns;
+    }
+
+    public void setKeyColumns(String... keyColumns) {
+        this.keyColumns = keyColumns;
+    }
+
+    public OrderEnum getOrderType() {
+        return orderType;
+    }
+
+    public void setOrderType(OrderEnum orderType) {
+        this.orderType = orderType;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        if (pageSize >= 1) {
+            this.pageSize = pageSize;
+        }
+    }
+
+    /**
+     * 上一页最后一行的排序键值,即下一页的起始游标
+     * 
+     * @return
+     */
+    public Object[] getLastKeys() {
+        return lastKeys;
+    }
+
+    /**
+     * 设置起始游标,可用于客户端回传游标继续翻页.传null从首页开始
+     * 
+     * @param lastKeys 排序键值,顺序与keyColumns一致
+     */
+    public void setLastKeys(Object... lastKeys) {
+        this.lastKeys = lastKeys;
+    }
+
+    /**
+     * 是否首页
+     * 
+     * @return
+     */
+    public boolean isFirstPage() {
+        return lastKeys == null;
+    }
+
+    /**
+     * 是否自动查询总数,总数只查询一次
+     * 
+     * @return
+     */
+    public boolean isAutoCount() {
+        return isAutoCount;
+    }
+
+    public void setAutoCount(boolean isAutoCount) {
+        this.isAutoCount = isAutoCount;
+    }
+
+    /**
+     * 总行数,未查询返回-1
+     * 
+     * @return
+     */
+    public long getMaxRowCount() {
+        return maxRowCount;
+    }
+
+    public void setMaxRowCount(long maxRowCount) {
+        this.maxRowCount = maxRowCount;
+    }
+
+    public boolean hasNextPage() {
+        return hasNextPage;
+    }
+
+    public void setHasNextPage(boolean hasNextPage) {
+        this.hasNextPage = hasNextPage;
+    }
+
+    public List<T> getPageData() {
+        return pageData == null ? new ArrayList<T>(0) : pageData;
+    }
+
+    public void setPageData(List<T> pageData) {
+        this.pageData = pageData;
+    }
+
+}
@@ -0,0 +1,17 @@
+package org.jflame.db;
+
+/**
+ * 逐行处理查询结果的回调接口,用于流式处理大结果集
+ * 
+ * @author zyc
+ * @param <T> 行数据类型
+ */
+public interface RowHandler<T> {
+
+    /**
+     * 处理一行数据
+     * 
+     * @param row 行数据
+     */
+    public void handle(T row);
+}
@@ -3,9 +3,11 @@ package org.jflame.db;
 import java.text.MessageFormat;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.ArrayUtils;
 
+import org.jflame.commons.common.bean.PageBean.OrderEnum;
 import org.jflame.commons.util.StringHelper;
 import org.jflame.db.id.IdType;
 import org.jflame.db.metadata.ColumnMetaData;
@@ -27,6 +29,8 @@ public class SimpleSqlBuilder
     
     public enum DbType{Oracle,PostgreSQL,MySql,SqlServer}
     
+    private static final Pattern KEY_COLUMN_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    
     
     public static String selectSimple(TableMetaData metaData, String whereColumn,SingleOrder order){
         String selectSQL = MessageFormat.format(SQL_QERUY_BY_ACOLUMN, metaData.getTableName(),whereColumn);
@@ -214,4 +218,135 @@ public class SimpleSqlBuilder
         return pageSql;
     }
 
+    /**
+     * 生成键集(seek)分页语句. 原sql作为子查询,追加排序键条件、排序及行数限制.
+     * <p>
+     * mysql,postgresql使用行值比较(k1,k2)&gt;(?,?),oracle,sqlserver展开为k1&gt;? or (k1=? and k2&gt;?)形式
+     * 
+     * @param sql 原查询sql,不含order by
+     * @param keyColumns 排序键列名
+     * @param orderType 排序方向
+     * @param hasLastKeys 是否有上一页游标,首页为false
+     * @param limit 返回行数
+     * @param dbType 数据库类型
+     * @return
+     */
+    public static String keysetPageSql(String sql, String[] keyColumns, OrderEnum orderType, boolean hasLastKeys,
+            int limit, Dialect dbType)
+    {
+        if (keyColumns == null || keyColumns.length == 0)
+        {
+            throw new SQLbuildException("键集分页必须指定排序键列");
+        }
+        // 排序键列直接拼接到sql中,只允许简单列名
+        for (String keyColumn : keyColumns)
+        {
+            if (keyColumn == null || !KEY_COLUMN_PATTERN.matcher(keyColumn).matches())
+            {
+                throw new SQLbuildException("非法的排序键列名:" + keyColumn);
+            }
+        }
+        boolean isDesc = orderType == OrderEnum.desc;
+        StringBuilder strbuf = new StringBuilder(sql.length() + keyColumns.length * 20 + 60);
+        strbuf.append(dbType == Dialect.SqlServer ? "select top " + limit + " * from (" : "select * from (");
+        strbuf.append(sql).append(") keyset_t");
+        if (hasLastKeys)
+        {
+            String op = isDesc ? "<" : ">";
+            strbuf.append(" where ");
+            if (keyColumns.length == 1)
+            {
+                strbuf.append(keyColumns[0]).append(op).append('?');
+            }
+            else if (supportsRowValue(dbType))
+            {
+                strbuf.append('(').append(StringHelper.join(keyColumns)).append(')').append(op).append('(');
+                for (int i = 0; i < keyColumns.length; i++)
+                {
+                    strbuf.append(i == 0 ? "?" : ",?");
+                }
+                strbuf.append(')');
+            }
+            else
+            {
+                strbuf.append('(');
+                for (int i = 0; i < keyColumns.length; i++)
+                {
+                    if (i > 0)
+                    {
+                        strbuf.append(" or ");
+                    }
+                    strbuf.append('(');
+                    for (int j = 0; j < i; j++)
+                    {
+                        strbuf.append(keyColumns[j]).append("=? and ");
+                    }
+                    strbuf.append(keyColumns[i]).append(op).append("?)");
+                }
+                strbuf.append(')');
+            }
+        }
+        strbuf.append(" order by ");
+        for (int i = 0; i < keyColumns.length; i++)
+        {
+            if (i > 0)
+            {
+                strbuf.append(',');
+            }
+            strbuf.append(keyColumns[i]).append(isDesc ? " desc" : " asc");
+        }
+        switch (dbType)
+        {
+        case MySql:
+        case PostgreSQL:
+            strbuf.append(" limit ").append(limit);
+            break;
+        case Oracle:
+            strbuf.insert(0, "select * from (").append(") where rownum <= ").append(limit);
+            break;
+        default:
+            break;
+        }
+        return strbuf.toString();
+    }
+
+    /**
+     * 合并键集分页语句的参数值,与{@link #keysetPageSql}生成的占位符顺序一致
+     * 
+     * @param params 原sql参数值
+     * @param lastKeys 上一页最后一行的排序键值,首页为null
+     * @param dbType 数据库类型
+     * @return
+     */
+    public static Object[] keysetParams(Object[] params, Object[] lastKeys, Dialect dbType)
+    {
+        if (lastKeys == null || lastKeys.length == 0)
+        {
+            return params;
+        }
+        Object[] keyParams;
+        if (lastKeys.length == 1 || supportsRowValue(dbType))
+        {
+            keyParams = lastKeys;
+        }
+        else
+        {
+            keyParams = new Object[lastKeys.length * (lastKeys.length + 1) / 2];
+            int k = 0;
+            for (int i = 0; i < lastKeys.length; i++)
+            {
+                for (int j = 0; j <= i; j++)
+                {
+                    keyParams[k++] = lastKeys[j];
+                }
+            }
+        }
+        return ArrayUtils.addAll(params, keyParams);
+    }
+
+    private static boolean supportsRowValue(Dialect dbType)
+    {
+        return dbType == Dialect.MySql || dbType == Dialect.PostgreSQL;
+    }
+
 }
@@ -37,4 +37,11 @@ public @interface TableGenerator {
     public String pkColumnName() default "seq_name";
 
     public String valueColumnName() default "seq_value";
+
+    /**
+     * 号段预取比例,当前号段已使用比例超过该值时异步加载下一号段,如0.1.默认0不预取,号段用完时同步加载
+     * 
+     * @return
+     */
+    public double prefetchRatio() default 0;
 }
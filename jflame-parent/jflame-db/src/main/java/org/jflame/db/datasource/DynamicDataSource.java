@@ -1,19 +1,369 @@
 package org.jflame.db.datasource;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
- * 动态数据源切换
+ * 动态数据源切换.
+ * <p>
+ * 默认按{@link DynamicDataSourceHolder}显式指定的数据源名称路由.配置了从库(replicaKeys)时开启读写分离:
+ * <ul>
+ * <li>显式指定了数据源名称的按指定路由</li>
+ * <li>只读事务或标记为读请求(见{@link ReadWriteSplitAdvice})的操作路由到从库,其他操作路由到主库</li>
+ * <li>从库按轮询或最少活动连接选择,获取连接失败的从库被摘除ejectMillis毫秒,所有从库不可用时回退到主库</li>
+ * <li>未设置healthCheckMillis时只在获取连接失败时被动摘除,到期后由下一次请求重新尝试;设置后定时检测从库,
+ * 检测失败摘除,恢复后提前加回</li>
+ * </ul>
+ * 注:DataSourceTransactionManager在事务标记生效前获取连接,需按事务只读属性路由时应在外层包装LazyConnectionDataSourceProxy
  * 
  * @author zyc
  */
-public class DynamicDataSource extends AbstractRoutingDataSource
+public class DynamicDataSource extends AbstractRoutingDataSource implements DisposableBean
 {
-    
+    private final Logger logger = LoggerFactory.getLogger(DynamicDataSource.class);
+
+    /**
+     * 从库负载均衡方式
+     */
+    public enum LoadBalance
+    {
+        ROUND_ROBIN, LEAST_ACTIVE
+    }
+
+    private Map<Object, Object> targetDataSources;
+    private Object primaryKey;
+    private List<Object> replicaKeys;
+    private LoadBalance loadBalance = LoadBalance.ROUND_ROBIN;
+    private long ejectMillis = 30000;
+    private long healthCheckMillis = 0;
+    private int validationTimeout = 3;
+    private ScheduledExecutorService healthChecker;
+
+    private final Map<Object, DataSource> replicas = new LinkedHashMap<>();
+    private final ConcurrentMap<Object, AtomicInteger> activeCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Object, Long> ejectedUntil = new ConcurrentHashMap<>();
+    private final AtomicInteger roundRobinCounter = new AtomicInteger();
+
     @Override
     protected Object determineCurrentLookupKey()
     {
-        return DynamicDataSourceHolder.getDataSouce();
+        String key = DynamicDataSourceHolder.getDataSouce();
+        return key != null ? key : primaryKey;
+    }
+
+    @Override
+    public void setTargetDataSources(Map<Object, Object> targetDataSources)
+    {
+        super.setTargetDataSources(targetDataSources);
+        this.targetDataSources = targetDataSources;
+    }
+
+    @Override
+    public void afterPropertiesSet()
+    {
+        super.afterPropertiesSet();
+        replicas.clear();
+        if (replicaKeys != null)
+        {
+            for (Object key : replicaKeys)
+            {
+                Object ds = targetDataSources.get(key);
+                if (ds == null)
+                {
+                    throw new IllegalArgumentException("replica data source not found: " + key);
+                }
+                replicas.put(key, resolveSpecifiedDataSource(ds));
+                activeCounts.put(key, new AtomicInteger());
+            }
+        }
+        if (!replicas.isEmpty() && healthCheckMillis > 0 && healthChecker == null)
+        {
+            healthChecker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "replica-health-check");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            healthChecker.scheduleWithFixedDelay(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    checkReplicas();
+                }
+            }, healthCheckMillis, healthCheckMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void destroy()
+    {
+        if (healthChecker != null)
+        {
+            healthChecker.shutdownNow();
+            healthChecker = null;
+        }
+    }
+
+    /**
+     * 检测所有从库,不可用的摘除,已恢复的加回
+     */
+    private void checkReplicas()
+    {
+        for (Map.Entry<Object, DataSource> kv : replicas.entrySet())
+        {
+            Object key = kv.getKey();
+            String failure = null;
+            Connection con = null;
+            try
+            {
+                con = kv.getValue().getConnection();
+                if (!con.isValid(validationTimeout))
+                {
+                    failure = "connection is not valid";
+                }
+            }
+            catch (SQLException | RuntimeException e)
+            {
+                failure = e.getMessage();
+            }
+            finally
+            {
+                JdbcUtils.closeConnection(con);
+            }
+            if (failure == null)
+            {
+                if (ejectedUntil.remove(key) != null)
+                {
+                    logger.info("replica {} recovered", key);
+                }
+            }
+            else
+            {
+                logger.warn("replica {} health check failed, eject for {}ms: {}", key, ejectMillis, failure);
+                ejectedUntil.put(key, System.currentTimeMillis() + ejectMillis);
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException
+    {
+        return routeConnection(null, null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException
+    {
+        return routeConnection(username, password);
+    }
+
+    private Connection routeConnection(String username, String password) throws SQLException
+    {
+        if (!replicas.isEmpty() && DynamicDataSourceHolder.getDataSouce() == null && isReadRequest())
+        {
+            List<Object> candidates = availableReplicas();
+            while (!candidates.isEmpty())
+            {
+                Object key = chooseReplica(candidates);
+                try
+                {
+                    DataSource ds = replicas.get(key);
+                    Connection con = username == null ? ds.getConnection() : ds.getConnection(username, password);
+                    return trackActive(key, con);
+                }
+                catch (SQLException e)
+                {
+                    logger.warn("replica {} unavailable, eject for {}ms: {}", key, ejectMillis, e.getMessage());
+                    ejectedUntil.put(key, System.currentTimeMillis() + ejectMillis);
+                    candidates.remove(key);
+                }
+            }
+            logger.warn("no replica available, fallback to primary");
+        }
+        return username == null ? super.getConnection() : super.getConnection(username, password);
+    }
+
+    private boolean isReadRequest()
+    {
+        if (DynamicDataSourceHolder.isForcePrimary())
+        {
+            return false;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive())
+        {
+            return TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        }
+        return DynamicDataSourceHolder.isReadRequest();
+    }
+
+    private List<Object> availableReplicas()
+    {
+        List<Object> candidates = new ArrayList<>(replicas.size());
+        long now = System.currentTimeMillis();
+        for (Object key : replicas.keySet())
+        {
+            Long until = ejectedUntil.get(key);
+            if (until == null || until <= now)
+            {
+                if (until != null)
+                {
+                    ejectedUntil.remove(key, until);
+                }
+                candidates.add(key);
+            }
+        }
+        return candidates;
+    }
+
+    private Object chooseReplica(List<Object> candidates)
+    {
+        if (candidates.size() == 1)
+        {
+            return candidates.get(0);
+        }
+        if (loadBalance == LoadBalance.LEAST_ACTIVE)
+        {
+            Object chosen = null;
+            int least = Integer.MAX_VALUE;
+            int offset = (roundRobinCounter.getAndIncrement() & Integer.MAX_VALUE) % candidates.size();
+            // 从轮询位置开始比较,活动数相同时分散到不同从库
+            for (int i = 0; i < candidates.size(); i++)
+            {
+                Object key = candidates.get((offset + i) % candidates.size());
+                int active = activeCounts.get(key).get();
+                if (active < least)
+                {
+                    least = active;
+                    chosen = key;
+                }
+            }
+            return chosen;
+        }
+        return candidates.get((roundRobinCounter.getAndIncrement() & Integer.MAX_VALUE) % candidates.size());
+    }
+
+    /**
+     * 包装连接,统计从库活动连接数,连接关闭时减少
+     */
+    private Connection trackActive(Object key, final Connection con)
+    {
+        final AtomicInteger counter = activeCounts.get(key);
+        counter.incrementAndGet();
+        final AtomicBoolean closed = new AtomicBoolean(false);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+                    {
+                        // equals,hashCode按代理对象自身判断,spring按连接对象查找ConnectionHolder
+                        if ("equals".equals(method.getName()) && args != null && args.length == 1)
+                        {
+                            return proxy == args[0];
+                        }
+                        if ("hashCode".equals(method.getName()) && args == null)
+                        {
+                            return System.identityHashCode(proxy);
+                        }
+                        if ("close".equals(method.getName()) && closed.compareAndSet(false, true))
+                        {
+                            counter.decrementAndGet();
+                        }
+                        try
+                        {
+                            return method.invoke(con, args);
+                        }
+                        catch (InvocationTargetException e)
+                        {
+                            throw e.getTargetException();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * 主库数据源名称,未显式指定数据源时的写操作使用.未设置时使用defaultTargetDataSource
+     * 
+     * @param primaryKey
+     */
+    public void setPrimaryKey(Object primaryKey)
+    {
+        this.primaryKey = primaryKey;
+    }
+
+    /**
+     * 从库数据源名称,需包含在targetDataSources中
+     * 
+     * @param replicaKeys
+     */
+    public void setReplicaKeys(List<Object> replicaKeys)
+    {
+        this.replicaKeys = replicaKeys;
+    }
+
+    public void setLoadBalance(LoadBalance loadBalance)
+    {
+        this.loadBalance = loadBalance;
+    }
+
+    /**
+     * 从库获取连接失败后摘除的时长,毫秒
+     * 
+     * @param ejectMillis
+     */
+    public void setEjectMillis(long ejectMillis)
+    {
+        this.ejectMillis = ejectMillis;
+    }
+
+    /**
+     * 从库健康检测间隔,毫秒.大于0时定时获取连接并验证,检测失败摘除ejectMillis毫秒,检测成功的已摘除从库立即加回.默认0不检测
+     * 
+     * @param healthCheckMillis
+     */
+    public void setHealthCheckMillis(long healthCheckMillis)
+    {
+        this.healthCheckMillis = healthCheckMillis;
+    }
+
+    /**
+     * 健康检测时验证连接的超时时间,秒
+     * 
+     * @param validationTimeout
+     */
+    public void setValidationTimeout(int validationTimeout)
+    {
+        this.validationTimeout = validationTimeout;
     }
 
 }
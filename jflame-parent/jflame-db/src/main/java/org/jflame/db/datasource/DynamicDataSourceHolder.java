@@ -1,8 +1,15 @@
 package org.jflame.db.datasource;
 
+/**
+ * 数据源路由上下文.保存当前线程显式指定的数据源名称,以及读写分离路由使用的读请求和强制主库标记
+ * 
+ * @author zyc
+ */
 public class DynamicDataSourceHolder
 {
     public static final ThreadLocal<String> holder = new ThreadLocal<String>();
+    private static final ThreadLocal<Boolean> readHolder = new ThreadLocal<Boolean>();
+    private static final ThreadLocal<Boolean> primaryHolder = new ThreadLocal<Boolean>();
 
     public static void setDataSource(String name) {
         holder.set(name);
@@ -11,4 +18,47 @@ public class DynamicDataSourceHolder
     public static String getDataSouce() {
         return holder.get();
     }
+
+    /**
+     * 标记当前线程的操作是否为只读请求,只读请求可路由到从库
+     * 
+     * @param isRead
+     */
+    public static void setReadRequest(boolean isRead) {
+        if (isRead) {
+            readHolder.set(Boolean.TRUE);
+        } else {
+            readHolder.remove();
+        }
+    }
+
+    public static boolean isReadRequest() {
+        return readHolder.get() != null;
+    }
+
+    /**
+     * 强制当前线程使用主库,如事务中已有写操作时后续读操作仍走主库
+     * 
+     * @param forcePrimary
+     */
+    public static void setForcePrimary(boolean forcePrimary) {
+        if (forcePrimary) {
+            primaryHolder.set(Boolean.TRUE);
+        } else {
+            primaryHolder.remove();
+        }
+    }
+
+    public static boolean isForcePrimary() {
+        return primaryHolder.get() != null;
+    }
+
+    /**
+     * 清除当前线程所有路由标记
+     */
+    public static void clear() {
+        holder.remove();
+        readHolder.remove();
+        primaryHolder.remove();
+    }
 }
@@ -0,0 +1,66 @@
+package org.jflame.db.datasource;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 读写分离aop通知,一般织入IBaseDao.按方法名前缀判断读操作,读操作标记为读请求由{@link DynamicDataSource}路由到从库.
+ * <p>
+ * 事务中执行了写操作后,该事务内的后续读操作强制使用主库,事务结束后清除
+ * 
+ * @author zyc
+ */
+public class ReadWriteSplitAdvice implements MethodInterceptor
+{
+    private String[] readMethodPrefixes = { "get","query","find","select","count","iterate" };
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable
+    {
+        if (!StringUtils.startsWithAny(invocation.getMethod().getName(), readMethodPrefixes))
+        {
+            stickToPrimary();
+            return invocation.proceed();
+        }
+        boolean previous = DynamicDataSourceHolder.isReadRequest();
+        DynamicDataSourceHolder.setReadRequest(true);
+        try
+        {
+            return invocation.proceed();
+        }
+        finally
+        {
+            DynamicDataSourceHolder.setReadRequest(previous);
+        }
+    }
+
+    private void stickToPrimary()
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive() && !DynamicDataSourceHolder.isForcePrimary())
+        {
+            DynamicDataSourceHolder.setForcePrimary(true);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter()
+            {
+                @Override
+                public void afterCompletion(int status)
+                {
+                    DynamicDataSourceHolder.setForcePrimary(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * 设置读操作方法名前缀
+     * 
+     * @param readMethodPrefixes
+     */
+    public void setReadMethodPrefixes(String[] readMethodPrefixes)
+    {
+        this.readMethodPrefixes = readMethodPrefixes;
+    }
+
+}
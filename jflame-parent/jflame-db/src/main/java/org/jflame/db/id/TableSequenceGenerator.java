@@ -6,8 +6,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.jflame.commons.util.StringHelper;
 import org.jflame.db.DbEnvironment;
@@ -15,6 +15,7 @@ import org.jflame.db.annotations.TableGenerator;
 import org.jflame.db.id.enhanced.AccessCallback;
 import org.jflame.db.id.enhanced.Optimizer;
 import org.jflame.db.id.enhanced.PooledLoOptimizer;
+import org.jflame.db.id.enhanced.SegmentBufferOptimizer;
 import org.jflame.db.metadata.TableMetaData;
 
 import org.springframework.dao.DataAccessException;
@@ -26,7 +27,7 @@ import org.springframework.transaction.support.TransactionTemplate;
 
 public class TableSequenceGenerator implements IdGenerator {
 
-    private final static Map<String,Optimizer> seqValueHolderCache = new ConcurrentHashMap<>();
+    private final static ConcurrentMap<String,Optimizer> seqValueHolderCache = new ConcurrentHashMap<>();
 
     final String SQL_UPDATE = "update {tableName} set {valueColumnName} where {valueColumnName}=? and {pkColumnName}=?";
 
@@ -56,6 +57,7 @@ public class TableSequenceGenerator implements IdGenerator {
         String tableName;
         String pkColumnName;
         String valueColumnName;
+        double prefetchRatio;
 
         public SeqInfo(TableMetaData metaData) {
             Annotation[] idAnnots = metaData.getKey().getPropertyAnnotations();
@@ -74,6 +76,7 @@ public class TableSequenceGenerator implements IdGenerator {
             this.tableName = tableAnnot.tableName();
             this.pkColumnName = tableAnnot.pkColumnName();
             this.valueColumnName = tableAnnot.valueColumnName();
+            this.prefetchRatio = tableAnnot.prefetchRatio();
 
         }
     }
@@ -81,8 +84,16 @@ public class TableSequenceGenerator implements IdGenerator {
     final Optimizer getOptimizer(SeqInfo seqInfo, final TableMetaData metaData) {
         Optimizer optimizer = seqValueHolderCache.get(metaData.getTableName());
         if (optimizer == null) {
-            optimizer = new PooledLoOptimizer(metaData.getKey().getPropertyType(), seqInfo.increment);
-            seqValueHolderCache.put(metaData.getTableName(), optimizer);
+            if (seqInfo.prefetchRatio > 0) {
+                optimizer = new SegmentBufferOptimizer(metaData.getKey().getPropertyType(), seqInfo.increment,
+                        seqInfo.prefetchRatio);
+            } else {
+                optimizer = new PooledLoOptimizer(metaData.getKey().getPropertyType(), seqInfo.increment);
+            }
+            Optimizer existOptimizer = seqValueHolderCache.putIfAbsent(metaData.getTableName(), optimizer);
+            if (existOptimizer != null) {
+                optimizer = existOptimizer;
+            }
         }
         return optimizer;
     }
@@ -0,0 +1,250 @@
+package org.jflame.db.id.enhanced;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jflame.db.id.IdGenerationException;
+import org.jflame.db.id.IdGeneratorHelper;
+import org.jflame.db.id.IntegralDataTypeHolder;
+
+/**
+ * 双号段缓冲优化器. 当前号段内的id以原子操作分配,不加锁;当前号段使用量超过预取比例时在后台线程异步加载下一号段,
+ * 当前号段用完直接切换到已加载好的下一号段,稳定状态下id生成不会阻塞在数据库访问上.
+ * <p>
+ * 只有在预取未完成(如瞬时用量超过一个号段)或预取失败时,切换号段的线程才会等待或同步加载.
+ *
+ * @author zyc
+ */
+public class SegmentBufferOptimizer extends AbstractOptimizer {
+
+    private final Log log = LogFactory.getLog(SegmentBufferOptimizer.class);
+
+    private static final ExecutorService DEFAULT_LOADER = Executors.newCachedThreadPool(new ThreadFactory() {
+
+        private final AtomicInteger threadNum = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "segment-loader-" + threadNum.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    /**
+     * 一个号段,分配范围[start,max)
+     */
+    private static class Segment {
+
+        private final long start;
+        private final long max;
+        private final AtomicLong value;
+
+        Segment(long start, long max) {
+            this.start = start;
+            this.max = max;
+            this.value = new AtomicLong(start);
+        }
+    }
+
+    private static class SegmentBuffer {
+
+        private volatile Segment current;
+        private volatile Segment next;
+        private volatile IntegralDataTypeHolder lastSourceValue;
+        private final AtomicBoolean loading = new AtomicBoolean(false);
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition loaded = lock.newCondition();
+    }
+
+    private static final String NO_TENANT = "";
+
+    private final ConcurrentMap<String,SegmentBuffer> buffers = new ConcurrentHashMap<>();
+    private final long prefetchThreshold;// 当前号段已分配数量达到此值时预取下一号段
+    private final Executor loader;
+
+    /**
+     * 使用默认的预取比例0.1和默认后台加载线程池
+     *
+     * @param returnClass id类型
+     * @param incrementSize 号段大小
+     */
+    public SegmentBufferOptimizer(Class<?> returnClass, int incrementSize) {
+        this(returnClass, incrementSize, 0.1, DEFAULT_LOADER);
+    }
+
+    /**
+     * 使用默认后台加载线程池
+     *
+     * @param returnClass id类型
+     * @param incrementSize 号段大小
+     * @param prefetchRatio 预取比例(0,1],当前号段已使用比例超过该值时异步加载下一号段
+     */
+    public SegmentBufferOptimizer(Class<?> returnClass, int incrementSize, double prefetchRatio) {
+        this(returnClass, incrementSize, prefetchRatio, DEFAULT_LOADER);
+    }
+
+    /**
+     * @param returnClass id类型
+     * @param incrementSize 号段大小
+     * @param prefetchRatio 预取比例(0,1],当前号段已使用比例超过该值时异步加载下一号段
+     * @param loader 加载号段的执行器
+     */
+    public SegmentBufferOptimizer(Class<?> returnClass, int incrementSize, double prefetchRatio, Executor loader) {
+        super(returnClass, incrementSize);
+        if (incrementSize < 1) {
+            throw new IdGenerationException("increment size cannot be less than 1");
+        }
+        if (prefetchRatio <= 0 || prefetchRatio > 1) {
+            throw new IdGenerationException("prefetch ratio must be in (0,1]");
+        }
+        this.prefetchThreshold = Math.max(0, (long) (incrementSize * prefetchRatio) - 1);
+        this.loader = loader;
+        log.debug("incrementSize = " + incrementSize + ", prefetchRatio = " + prefetchRatio + ", returnClass = "
+                + returnClass.getName());
+    }
+
+    @Override
+    public Serializable generate(AccessCallback callback) {
+        final SegmentBuffer buffer = locateBuffer(callback.getTenantIdentifier());
+        while (true) {
+            Segment cur = buffer.current;
+            if (cur == null) {
+                cur = initBuffer(buffer, callback);
+            }
+            long v = cur.value.getAndIncrement();
+            if (v < cur.max) {
+                if (v - cur.start >= prefetchThreshold && buffer.next == null) {
+                    prefetch(buffer, callback);
+                }
+                return (Serializable) IdGeneratorHelper.getIntegralDataTypeHolder(returnClass)
+                        .initialize(v)
+                        .makeValue();
+            }
+            switchSegment(buffer, cur, callback);
+        }
+    }
+
+    private SegmentBuffer locateBuffer(String tenantIdentifier) {
+        String key = tenantIdentifier == null ? NO_TENANT : tenantIdentifier;
+        SegmentBuffer buffer = buffers.get(key);
+        if (buffer == null) {
+            buffer = new SegmentBuffer();
+            SegmentBuffer exist = buffers.putIfAbsent(key, buffer);
+            if (exist != null) {
+                buffer = exist;
+            }
+        }
+        return buffer;
+    }
+
+    private Segment initBuffer(SegmentBuffer buffer, AccessCallback callback) {
+        buffer.lock.lock();
+        try {
+            if (buffer.current == null) {
+                buffer.current = loadSegment(buffer, callback);
+            }
+            return buffer.current;
+        } finally {
+            buffer.lock.unlock();
+        }
+    }
+
+    /**
+     * 当前号段用完,切换到下一号段.预取进行中则等待其完成,没有可用号段时同步加载
+     */
+    private void switchSegment(SegmentBuffer buffer, Segment exhausted, AccessCallback callback) {
+        buffer.lock.lock();
+        try {
+            while (buffer.next == null && buffer.loading.get() && buffer.current == exhausted) {
+                buffer.loaded.awaitUninterruptibly();
+            }
+            if (buffer.current != exhausted) {
+                return;// 已被其他线程切换
+            }
+            if (buffer.next == null) {
+                log.warn("next segment not ready, load synchronously");
+                buffer.current = loadSegment(buffer, callback);
+            } else {
+                buffer.current = buffer.next;
+                buffer.next = null;
+            }
+        } finally {
+            buffer.lock.unlock();
+        }
+    }
+
+    private void prefetch(final SegmentBuffer buffer, final AccessCallback callback) {
+        if (!buffer.loading.compareAndSet(false, true)) {
+            return;
+        }
+        if (buffer.next != null) {
+            buffer.loading.set(false);
+            return;
+        }
+        try {
+            loader.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    Segment segment = null;
+                    try {
+                        segment = loadSegment(buffer, callback);
+                    } catch (RuntimeException e) {
+                        log.error("prefetch next segment failed", e);
+                    } finally {
+                        buffer.lock.lock();
+                        try {
+                            if (segment != null) {
+                                buffer.next = segment;
+                            }
+                            buffer.loading.set(false);
+                            buffer.loaded.signalAll();
+                        } finally {
+                            buffer.lock.unlock();
+                        }
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            buffer.loading.set(false);
+            log.error("submit segment prefetch failed", e);
+        }
+    }
+
+    private Segment loadSegment(SegmentBuffer buffer, AccessCallback callback) {
+        IntegralDataTypeHolder sourceValue = callback.getNextValue();
+        buffer.lastSourceValue = sourceValue;
+        long start = IdGeneratorHelper.extractLong(sourceValue);
+        long max = start + incrementSize;
+        // handle cases where initial-value is less that one
+        return new Segment(Math.max(start, 1), max);
+    }
+
+    @Override
+    public IntegralDataTypeHolder getLastSourceValue() {
+        SegmentBuffer buffer = buffers.get(NO_TENANT);
+        if (buffer == null) {
+            throw new IllegalStateException("Could not locate previous generation state for no-tenant");
+        }
+        return buffer.lastSourceValue;
+    }
+
+    @Override
+    public boolean applyIncrementSizeToSourceValues() {
+        return true;
+    }
+
+}
@@ -6,6 +6,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang3.ArrayUtils;
 
@@ -22,6 +23,7 @@ import org.springframework.beans.BeanWrapper;
 public class DefaultMetaDataProvider implements IMetaDataProvider {
 
     private static final Map<Class<?>,TableMetaData> metaDataCache = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>,StatementPlan> statementPlanCache = new ConcurrentHashMap<>();
 
     private IMetaNameConverter columnConvertor;
     private IMetaNameConverter tableConvertor;
@@ -61,6 +63,19 @@ public class DefaultMetaDataProvider implements IMetaDataProvider {
         return extractTableMetaData(entityClazz);
     }
 
+    @Override
+    public StatementPlan getStatementPlan(Class<?> entityClazz) {
+        StatementPlan plan = statementPlanCache.get(entityClazz);
+        if (plan == null) {
+            plan = new StatementPlan(entityClazz, extractTableMetaData(entityClazz));
+            StatementPlan existing = statementPlanCache.putIfAbsent(entityClazz, plan);
+            if (existing != null) {
+                plan = existing;
+            }
+        }
+        return plan;
+    }
+
     private void setColumMetaData(TableMetaData metaData, PropertyDescriptor[] pds) {
         Method readMethod;
         ColumnMetaData columnMetaData;
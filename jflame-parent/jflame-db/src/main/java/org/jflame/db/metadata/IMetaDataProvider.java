@@ -16,6 +16,14 @@ public interface IMetaDataProvider {
 
     public abstract TableMetaData extractTableMetaData(BeanWrapper beanWrapper);
 
+    /**
+     * 获取实体类的预编译语句计划,包含缓存的sql语句和属性存取器
+     * 
+     * @param entityClazz 实体类class对象
+     * @return
+     */
+    public abstract StatementPlan getStatementPlan(Class<?> entityClazz);
+
     /**
      * 设置属性名与列名转换类
      * 
@@ -0,0 +1,128 @@
+package org.jflame.db.metadata;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+import org.jflame.commons.exception.BeanAccessException;
+
+import org.springframework.core.convert.ConversionException;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.util.ClassUtils;
+
+/**
+ * 实体属性存取器. 基于MethodHandle预先绑定属性的get/set方法,替代每次操作都通过BeanWrapper反射读写属性
+ *
+ * @author zyc
+ */
+public final class PropertyAccessor {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final ConversionService conversionService = DefaultConversionService.getSharedInstance();
+
+    private final String propertyName;
+    private final Class<?> propertyType;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+
+    private PropertyAccessor(String propertyName, Class<?> propertyType, MethodHandle getter, MethodHandle setter) {
+        this.propertyName = propertyName;
+        this.propertyType = propertyType;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    /**
+     * 根据属性描述创建存取器
+     *
+     * @param pd 属性描述
+     * @return
+     */
+    public static PropertyAccessor forProperty(PropertyDescriptor pd) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            MethodHandle getter = null;
+            MethodHandle setter = null;
+            Method readMethod = pd.getReadMethod();
+            if (readMethod != null) {
+                readMethod.setAccessible(true);
+                getter = lookup.unreflect(readMethod).asType(GETTER_TYPE);
+            }
+            Method writeMethod = pd.getWriteMethod();
+            if (writeMethod != null) {
+                writeMethod.setAccessible(true);
+                setter = lookup.unreflect(writeMethod).asType(SETTER_TYPE);
+            }
+            return new PropertyAccessor(pd.getName(), pd.getPropertyType(), getter, setter);
+        } catch (IllegalAccessException e) {
+            throw new BeanAccessException("属性" + pd.getName() + "无法访问", e);
+        }
+    }
+
+    /**
+     * 读取属性值
+     *
+     * @param bean 实体对象
+     * @return
+     */
+    public Object getValue(Object bean) {
+        if (getter == null) {
+            throw new BeanAccessException("属性" + propertyName + "不可读");
+        }
+        try {
+            return (Object) getter.invokeExact(bean);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new BeanAccessException("读取属性" + propertyName + "失败", e);
+        }
+    }
+
+    /**
+     * 设置属性值. 值与属性类型不匹配时使用ConversionService转换,如数据库返回的BigInteger主键转为Long,字符串转为枚举
+     *
+     * @param bean 实体对象
+     * @param value 属性值
+     */
+    public void setValue(Object bean, Object value) {
+        if (setter == null) {
+            throw new BeanAccessException("属性" + propertyName + "不可写");
+        }
+        Object newValue = value;
+        if (newValue != null && !ClassUtils.isAssignableValue(propertyType, newValue)) {
+            try {
+                newValue = conversionService.convert(newValue, propertyType);
+            } catch (ConversionException e) {
+                throw new BeanAccessException("属性" + propertyName + "值类型转换失败", e);
+            }
+        }
+        try {
+            setter.invokeExact(bean, newValue);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new BeanAccessException("设置属性" + propertyName + "失败", e);
+        }
+    }
+
+    public boolean isReadable() {
+        return getter != null;
+    }
+
+    public boolean isWritable() {
+        return setter != null;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public Class<?> getPropertyType() {
+        return propertyType;
+    }
+
+}
@@ -0,0 +1,124 @@
+package org.jflame.db.metadata;
+
+import java.beans.PropertyDescriptor;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jflame.db.SimpleSqlBuilder;
+
+import org.springframework.beans.BeanUtils;
+
+/**
+ * 实体类的预编译语句计划. 按实体类缓存,包含各操作已生成的sql语句(按操作类型及属性集合区分)和属性存取器
+ *
+ * @author zyc
+ */
+public class StatementPlan {
+
+    /**
+     * 缓存sql的操作类型
+     */
+    public enum Operation {
+        INSERT, UPDATE, UPDATE_INCLUDE, UPDATE_EXCLUDE, SELECT_BY_ID, DELETE_BY_ID
+    }
+
+    private final TableMetaData metaData;
+    private final Map<String,PropertyAccessor> accessors;// 属性名->存取器
+    private final ConcurrentMap<String,String> sqlCache = new ConcurrentHashMap<>();
+
+    public StatementPlan(Class<?> entityClazz, TableMetaData metaData) {
+        this.metaData = metaData;
+        Map<String,PropertyAccessor> accessorMap = new HashMap<>();
+        for (PropertyDescriptor pd : BeanUtils.getPropertyDescriptors(entityClazz)) {
+            if (metaData.getColumnsMap().containsKey(pd.getName())) {
+                accessorMap.put(pd.getName(), PropertyAccessor.forProperty(pd));
+            }
+        }
+        this.accessors = Collections.unmodifiableMap(accessorMap);
+    }
+
+    /**
+     * 获取操作对应的sql语句,首次获取时生成并缓存
+     *
+     * @param operation 操作类型
+     * @param properties 操作涉及的属性名,INSERT,UPDATE_EXCLUDE为排除的属性,UPDATE_INCLUDE为要更新的属性,其他操作忽略
+     * @return
+     */
+    public String getSql(Operation operation, String[] properties) {
+        String cacheKey = cacheKey(operation, properties);
+        String sql = sqlCache.get(cacheKey);
+        if (sql == null) {
+            sql = buildSql(operation, properties);
+            String existSql = sqlCache.putIfAbsent(cacheKey, sql);
+            if (existSql != null) {
+                sql = existSql;
+            }
+        }
+        return sql;
+    }
+
+    public String getSql(Operation operation) {
+        return getSql(operation, null);
+    }
+
+    private String buildSql(Operation operation, String[] properties) {
+        String keyProperty = metaData.getKey().getPropertyName();
+        switch (operation) {
+            case INSERT:
+                return SimpleSqlBuilder.insertSql(metaData, properties);
+            case UPDATE:
+                return SimpleSqlBuilder.updateSql(metaData, keyProperty);
+            case UPDATE_INCLUDE:
+                return SimpleSqlBuilder.updateSql(metaData, keyProperty, properties);
+            case UPDATE_EXCLUDE:
+                return SimpleSqlBuilder.updateWithExcludePropSql(metaData, keyProperty, properties);
+            case SELECT_BY_ID:
+                return SimpleSqlBuilder.selectSimple(metaData, metaData.getKey().getColumnName(), null);
+            case DELETE_BY_ID:
+                return SimpleSqlBuilder.deleteSql(metaData, metaData.getKey().getColumnName());
+            default:
+                throw new IllegalArgumentException("不支持的操作类型" + operation);
+        }
+    }
+
+    private String cacheKey(Operation operation, String[] properties) {
+        if (properties == null || properties.length == 0) {
+            return operation.name();
+        }
+        String[] sortedProps = properties.clone();
+        Arrays.sort(sortedProps);
+        StringBuilder keyBuf = new StringBuilder(operation.name());
+        for (String p : sortedProps) {
+            keyBuf.append(':').append(p);
+        }
+        return keyBuf.toString();
+    }
+
+    /**
+     * 获取属性存取器,属性不存在返回null
+     *
+     * @param propertyName 属性名
+     * @return
+     */
+    public PropertyAccessor getAccessor(String propertyName) {
+        return accessors.get(propertyName);
+    }
+
+    /**
+     * 获取主键属性存取器
+     *
+     * @return
+     */
+    public PropertyAccessor getKeyAccessor() {
+        return accessors.get(metaData.getKey().getPropertyName());
+    }
+
+    public TableMetaData getMetaData() {
+        return metaData;
+    }
+
+}
@@ -0,0 +1,252 @@
+package org.jflame.web.servlet;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jflame.commons.config.ConfigKey;
+import org.jflame.commons.config.PropertiesConfigHolder;
+import org.jflame.commons.config.ServletParamConfig;
+import org.jflame.commons.util.StringHelper;
+import org.jflame.context.filemanager.FileStat;
+import org.jflame.context.filemanager.IFileManager;
+
+/**
+ * 文件输出servlet父类,支持协商缓存和断点续传.
+ * <ul>
+ * <li>输出ETag和Last-Modified,请求头If-None-Match或If-Modified-Since匹配时返回304;</li>
+ * <li>支持单个区间的Range请求,返回206.If-Range不匹配,区间格式错误或请求多个区间时输出整个文件,区间超出文件大小返回416;</li>
+ * <li>Cache-Control由参数file.cacheControl配置,如"max-age=86400",未配置不输出.</li>
+ * </ul>
+ * 子类重写init方法时需先调用super.init(config)
+ *
+ * @author yucan.zhang
+ */
+@SuppressWarnings("serial")
+public abstract class BaseFileServlet extends HttpServlet {
+
+    public final static ConfigKey<String> CFG_CACHE_CONTROL = new ConfigKey<>("file.cacheControl");
+
+    private static final String BYTES_UNIT = "bytes";
+    /**
+     * 区间不可满足
+     */
+    private static final long[] UNSATISFIABLE_RANGE = new long[0];
+
+    private String cacheControl;
+
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+        cacheControl = getConfParam(new ServletParamConfig(config), CFG_CACHE_CONTROL);
+    }
+
+    /**
+     * 取得配置参数,先从servlet配置获取没有再从配置文件获取
+     *
+     * @param servletParam
+     * @param name
+     * @return
+     */
+    String getConfParam(ServletParamConfig servletParam, ConfigKey<String> configKey) {
+        String paramValue = servletParam.getString(configKey);
+        if (paramValue == null) {
+            paramValue = PropertiesConfigHolder.getString(configKey);
+        }
+        return paramValue;
+    }
+
+    /**
+     * 输出文件内容.Content-Type等其他响应头由调用方预先设置
+     *
+     * @param request HttpServletRequest
+     * @param response HttpServletResponse
+     * @param fileManager 文件所在的文件管理
+     * @param filePath 文件路径
+     * @param fileStat 文件属性
+     * @throws IOException 读取文件或输出异常
+     */
+    protected void serveFile(HttpServletRequest request, HttpServletResponse response, IFileManager fileManager,
+            String filePath, FileStat fileStat) throws IOException {
+        long fileSize = fileStat.getSize();
+        long lastModified = fileStat.getLastModified();
+        String etag = generateETag(fileStat);
+
+        response.setHeader("ETag", etag);
+        if (lastModified > 0) {
+            response.setDateHeader("Last-Modified", lastModified);
+        }
+        response.setHeader("Accept-Ranges", BYTES_UNIT);
+        if (StringHelper.isNotEmpty(cacheControl)) {
+            response.setHeader("Cache-Control", cacheControl);
+        }
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long length = fileSize;
+        String rangeHeader = request.getHeader("Range");
+        if (rangeHeader != null && isIfRangeMatched(request, etag, lastModified)) {
+            long[] range = parseRange(rangeHeader, fileSize);
+            if (range == UNSATISFIABLE_RANGE) {
+                response.setHeader("Content-Range", BYTES_UNIT + " */" + fileSize);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (range != null) {
+                start = range[0];
+                length = range[1] - range[0] + 1;
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", BYTES_UNIT + ' ' + range[0] + '-' + range[1] + '/' + fileSize);
+            }
+        }
+        response.setHeader("Content-Length", String.valueOf(length));
+        if (length == 0 || "HEAD".equals(request.getMethod())) {
+            return;
+        }
+        ServletOutputStream output = response.getOutputStream();
+        fileManager.transferTo(filePath, Channels.newChannel(output), start, length);
+        output.flush();
+    }
+
+    /**
+     * 生成文件的ETag,默认由最后修改时间和文件大小组成
+     *
+     * @param fileStat 文件属性
+     * @return 带双引号的ETag
+     */
+    protected String generateETag(FileStat fileStat) {
+        return "\"" + Long.toHexString(fileStat.getLastModified()) + '-' + Long.toHexString(fileStat.getSize())
+                + '"';
+    }
+
+    /**
+     * 判断客户端缓存是否有效.有If-None-Match时忽略If-Modified-Since
+     */
+    boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return matchETag(ifNoneMatch, etag);
+        }
+        if (lastModified > 0) {
+            long ifModifiedSince = getDateHeader(request, "If-Modified-Since");
+            // http日期精确到秒
+            return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+        }
+        return false;
+    }
+
+    /**
+     * 判断If-Range条件,不满足时忽略Range输出整个文件.ETag须强匹配,日期须与最后修改时间一致
+     */
+    boolean isIfRangeMatched(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        long ifRangeDate = getDateHeader(request, "If-Range");
+        return lastModified > 0 && ifRangeDate >= 0 && lastModified / 1000 == ifRangeDate / 1000;
+    }
+
+    /**
+     * If-None-Match弱比较,忽略W/前缀
+     */
+    static boolean matchETag(String ifNoneMatch, String etag) {
+        String trimed = ifNoneMatch.trim();
+        if ("*".equals(trimed)) {
+            return true;
+        }
+        String opaqueTag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String tag : trimed.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析Range请求头,只支持单个区间
+     *
+     * @param rangeHeader Range请求头
+     * @param fileSize 文件大小
+     * @return 区间起止位置(包含结束位置);格式错误或多个区间返回null;区间不可满足返回{@link #UNSATISFIABLE_RANGE}
+     */
+    static long[] parseRange(String rangeHeader, long fileSize) {
+        String prefix = BYTES_UNIT + '=';
+        if (!rangeHeader.startsWith(prefix)) {
+            return null;
+        }
+        String spec = rangeHeader.substring(prefix.length())
+                .trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0 || spec.indexOf(',') >= 0) {
+            return null;
+        }
+        String first = spec.substring(0, dash)
+                .trim();
+        String last = spec.substring(dash + 1)
+                .trim();
+        long start;
+        long end;
+        try {
+            if (first.isEmpty()) {
+                // 后缀区间,最后n个字节
+                if (last.isEmpty()) {
+                    return null;
+                }
+                long suffixLength = Long.parseLong(last);
+                if (suffixLength < 0) {
+                    return null;
+                }
+                if (suffixLength == 0) {
+                    return UNSATISFIABLE_RANGE;
+                }
+                start = Math.max(fileSize - suffixLength, 0);
+                end = fileSize - 1;
+            } else {
+                start = Long.parseLong(first);
+                if (last.isEmpty()) {
+                    end = fileSize - 1;
+                } else {
+                    end = Long.parseLong(last);
+                    if (end < start) {
+                        return null;
+                    }
+                    end = Math.min(end, fileSize - 1);
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (start >= fileSize) {
+            return UNSATISFIABLE_RANGE;
+        }
+        return new long[] { start,end };
+    }
+
+    private long getDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+}
@@ -5,8 +5,6 @@ import java.io.IOException;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
-import javax.servlet.ServletOutputStream;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -16,43 +14,29 @@ import org.slf4j.LoggerFactory;
 
 import org.jflame.commons.codec.TranscodeHelper;
 import org.jflame.commons.config.ConfigKey;
-import org.jflame.commons.config.PropertiesConfigHolder;
 import org.jflame.commons.config.ServletParamConfig;
 import org.jflame.commons.util.ArrayHelper;
-import org.jflame.commons.util.IOHelper;
 import org.jflame.commons.util.StringHelper;
 import org.jflame.commons.util.UrlHelper;
 import org.jflame.commons.util.file.FileHelper;
 import org.jflame.context.filemanager.FileManagerFactory;
+import org.jflame.context.filemanager.FileStat;
+import org.jflame.context.filemanager.IFileManager;
 import org.jflame.web.WebUtils;
 
 /**
- * 文件下载servlet
+ * 文件下载servlet,支持断点续传和协商缓存
  */
 @SuppressWarnings("serial")
-public class DownloadServlet extends HttpServlet {
+public class DownloadServlet extends BaseFileServlet {
 
     private final Logger log = LoggerFactory.getLogger(DownloadServlet.class);
     private String[] allowDownFiles = { "zip","rar","xls","xlsx","doc","docx","ppt","pptx" };
     // private String savePath;
 
-    /**
-     * 取得配置参数,先从servlet配置获取没有再从配置文件获取
-     * 
-     * @param servletParam
-     * @param name
-     * @return
-     */
-    String getConfParam(ServletParamConfig servletParam, ConfigKey<String> configKey) {
-        String paramValue = servletParam.getString(configKey);
-        if (paramValue == null) {
-            paramValue = PropertiesConfigHolder.getString(configKey);
-        }
-        return paramValue;
-    }
-
     @Override
     public void init(ServletConfig config) throws ServletException {
+        super.init(config);
         ServletParamConfig servletParam = new ServletParamConfig(config);
         /*savePath = getConfParam(servletParam, BaseConfig.CFG_SAVE_PATH);
         if (StringHelper.isEmpty(savePath)) {
@@ -76,30 +60,24 @@ public class DownloadServlet extends HttpServlet {
             response.sendError(HttpServletResponse.SC_FORBIDDEN);
             return;
         }
-        ServletOutputStream output = null;
         try {
-            byte[] fileBytes;
+            IFileManager fileManager;
             if (UrlHelper.isURL(downFile)) {
-                fileBytes = FileManagerFactory.getCurrentManager()
-                        .readBytes(downFile);
+                fileManager = FileManagerFactory.getCurrentManager();
             } else {
-                fileBytes = FileManagerFactory.createLocalManager()
-                        .readBytes(downFile);
+                fileManager = FileManagerFactory.createLocalManager();
             }
+            FileStat fileStat = fileManager.getFileStat(downFile);
 
-            WebUtils.setFileDownloadHeader(response, FileHelper.getFilename(downFile), (long) fileBytes.length);
-            output = response.getOutputStream();
-            IOHelper.write(fileBytes, output);
-            output.flush();
+            WebUtils.setFileDownloadHeader(response, FileHelper.getFilename(downFile), null);
+            serveFile(request, response, fileManager, downFile, fileStat);
         } catch (FileNotFoundException e) {
             response.sendError(HttpServletResponse.SC_NOT_FOUND);
             return;
         } catch (IOException e) {
             log.warn("下载文件异常:" + downFile, e);
-            response.sendError(HttpServletResponse.SC_BAD_GATEWAY, "文件读取异常");
-        } finally {
-            if (output != null) {
-                output.close();
+            if (!response.isCommitted()) {
+                response.sendError(HttpServletResponse.SC_BAD_GATEWAY, "文件读取异常");
             }
         }
 
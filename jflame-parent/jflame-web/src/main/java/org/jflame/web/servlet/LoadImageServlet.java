@@ -1,15 +1,10 @@
 package org.jflame.web.servlet;
 
-import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
-import javax.servlet.ServletOutputStream;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -19,22 +14,25 @@ import org.slf4j.LoggerFactory;
 import org.jflame.commons.config.BaseConfig;
 import org.jflame.commons.config.PropertiesConfigHolder;
 import org.jflame.commons.config.ServletParamConfig;
-import org.jflame.commons.util.IOHelper;
 import org.jflame.commons.util.StringHelper;
 import org.jflame.commons.util.file.FileHelper;
+import org.jflame.context.filemanager.FileStat;
+import org.jflame.context.filemanager.LocalFileManager;
 import org.jflame.web.WebUtils.MimeImages;
 
 /**
- * 读取本地图片输出servlet.
+ * 读取本地图片输出servlet,支持断点续传和协商缓存.
  */
 @SuppressWarnings("serial")
-public class LoadImageServlet extends HttpServlet {
+public class LoadImageServlet extends BaseFileServlet {
 
     private final Logger log = LoggerFactory.getLogger(LoadImageServlet.class);
     private String savePath;
+    private LocalFileManager imageManager;
 
     @Override
     public void init(ServletConfig config) throws ServletException {
+        super.init(config);
         ServletParamConfig servletParam = new ServletParamConfig(config);
         savePath = servletParam.getString(BaseConfig.CFG_SAVE_PATH);
         if (savePath == null) {
@@ -45,30 +43,29 @@ public class LoadImageServlet extends HttpServlet {
             savePath = config.getServletContext()
                     .getRealPath("/");
         }
+        imageManager = new LocalFileManager(savePath, null);
     }
 
     public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-        // 从URL读取文件路径,拼接本地路径,读取文件流输出到客户端
+        // 从URL读取文件路径,拼接本地路径,文件内容直接写入响应
         String imgRelativePath = request.getPathInfo();
         boolean isNotFound = true;
         if (StringHelper.isNotEmpty(imgRelativePath)) {
-            Path imgPath = Paths.get(savePath, request.getPathInfo());
-            File file = imgPath.toFile();
-            if (file.exists()) {
-                String ext = FileHelper.getExtension(file.getName(), false);
-                if (MimeImages.support(ext)) {
+            String ext = FileHelper.getExtension(imgRelativePath, false);
+            if (MimeImages.support(ext)) {
+                try {
+                    FileStat fileStat = imageManager.getFileStat(imgRelativePath);
                     response.setContentType(getMediaType(ext));
-                    try (FileInputStream imgStream = new FileInputStream(file);
-                            ServletOutputStream servletOutStream = response.getOutputStream();) {
-                        IOHelper.copy(imgStream, servletOutStream);
-                        isNotFound = false;
-                    } catch (IOException e) {
-                        log.error("输出图片失败:" + imgPath, e);
-                        isNotFound = true;
-                    }
-                } else {
-                    log.warn("不支持的图片格式{}", imgRelativePath);
+                    serveFile(request, response, imageManager, imgRelativePath, fileStat);
+                    isNotFound = false;
+                } catch (FileNotFoundException e) {
+                    isNotFound = true;
+                } catch (IOException e) {
+                    log.error("输出图片失败:" + imgRelativePath, e);
+                    isNotFound = !response.isCommitted();
                 }
+            } else {
+                log.warn("不支持的图片格式{}", imgRelativePath);
             }
         }
         if (isNotFound) {
@@ -86,6 +83,7 @@ public class LoadImageServlet extends HttpServlet {
 
     public void setSavePath(String savePath) {
         this.savePath = savePath;
+        imageManager = new LocalFileManager(savePath, null);
     }
 
     public void destroy() {